@@ -0,0 +1,146 @@
+// LICENSE:      This file is distributed under the BSD license.
+//               License text is included with the source distribution.
+//
+//               This file is distributed in the hope that it will be useful,
+//               but WITHOUT ANY WARRANTY; without even the implied warranty
+//               of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//
+//               IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+//               CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+//               INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES.
+
+package org.micromanager.data.internal;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.UUID;
+import mmcorej.org.json.JSONArray;
+import mmcorej.org.json.JSONException;
+import mmcorej.org.json.JSONObject;
+import org.micromanager.internal.propertymap.NonPropertyMapJSONFormats;
+
+/**
+ * Measures the per-frame cost of turning TaggedImage tags into metadata,
+ * coords and image format, by the old path (org.json to String, parsed by
+ * Gson) and by direct conversion
+ * ({@link NonPropertyMapJSONFormats#gsonFromJSONObject}).
+ *
+ * <p>The tags are those of a 512x512 camera image with 60 device
+ * properties. Options are given as {@code name=value} arguments:
+ * {@code frames} (measured per path) and {@code warmup} (frames not
+ * measured).
+ */
+public final class TaggedImageConversionBenchmark {
+   private TaggedImageConversionBenchmark() {
+   }
+
+   /**
+    * Run the benchmark and print latency and allocation per frame for each
+    * path.
+    *
+    * @param args options, as {@code name=value}
+    * @throws JSONException if the tags cannot be created
+    */
+   public static void main(String[] args) throws JSONException {
+      int frames = 5000;
+      int warmupFrames = 2000;
+      for (String arg : args) {
+         int eq = arg.indexOf('=');
+         if (eq < 0) {
+            throw new IllegalArgumentException("Expected name=value: " + arg);
+         }
+         String name = arg.substring(0, eq);
+         String value = arg.substring(eq + 1);
+         switch (name) {
+            case "frames":
+               frames = Integer.parseInt(value);
+               break;
+            case "warmup":
+               warmupFrames = Integer.parseInt(value);
+               break;
+            default:
+               throw new IllegalArgumentException("Unknown option: " + name);
+         }
+      }
+
+      JSONObject[] tags = new JSONObject[Math.max(1, frames)];
+      for (int i = 0; i < tags.length; ++i) {
+         tags[i] = makeTags(i);
+      }
+      for (int i = 0; i < warmupFrames; ++i) {
+         extractAll(viaString(tags[i % tags.length]));
+         extractAll(direct(tags[i % tags.length]));
+      }
+      report("toString + Gson parse", tags, false);
+      report("direct org.json to Gson", tags, true);
+   }
+
+   private static JSONObject makeTags(int imageNumber) throws JSONException {
+      JSONObject tags = new JSONObject();
+      tags.put("Width", 512);
+      tags.put("Height", 512);
+      tags.put("PixelType", "GRAY16");
+      tags.put("BitDepth", 16);
+      tags.put("Camera", "Camera");
+      tags.put("Binning", 1);
+      tags.put("ROI", "0-0-512-512");
+      tags.put("Exposure-ms", 10.0);
+      tags.put("ElapsedTime-ms", 1234.5);
+      tags.put("ImageNumber", String.valueOf(imageNumber));
+      tags.put("PixelSizeUm", 0.65);
+      tags.put("PixelSizeAffine", "0.65;0.0;0.0;0.0;0.65;0.0");
+      tags.put("XPositionUm", -1500.25);
+      tags.put("YPositionUm", 200.0);
+      tags.put("ZPositionUm", 3.5);
+      tags.put("UUID", UUID.randomUUID().toString());
+      tags.put("FrameIndex", imageNumber);
+      tags.put("SliceIndex", 0);
+      tags.put("ChannelIndex", 1);
+      tags.put("PositionIndex", 0);
+      // Device properties, as added by the core's system state cache
+      JSONArray scopeDataKeys = new JSONArray();
+      for (int i = 0; i < 60; ++i) {
+         String key = "Device" + (i % 7) + "-Property" + i;
+         tags.put(key, "Value " + i);
+         scopeDataKeys.put(key);
+      }
+      tags.put("ScopeDataKeys", scopeDataKeys);
+      return tags;
+   }
+
+   private static JsonElement viaString(JSONObject tags) {
+      return new JsonParser().parse(tags.toString());
+   }
+
+   private static JsonElement direct(JSONObject tags) {
+      return NonPropertyMapJSONFormats.gsonFromJSONObject(tags);
+   }
+
+   // What DefaultImage extracts from the tags of each frame
+   private static void extractAll(JsonElement je) {
+      DefaultMetadata.fromPropertyMap(NonPropertyMapJSONFormats.metadata().fromGson(je));
+      NonPropertyMapJSONFormats.coords().fromGson(je);
+      NonPropertyMapJSONFormats.imageFormat().fromGson(je);
+   }
+
+   private static void report(String label, JSONObject[] tags, boolean direct) {
+      ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+      com.sun.management.ThreadMXBean allocBean =
+            bean instanceof com.sun.management.ThreadMXBean
+                  ? (com.sun.management.ThreadMXBean) bean : null;
+      long threadId = Thread.currentThread().getId();
+      long startBytes = allocBean == null ? 0 : allocBean.getThreadAllocatedBytes(threadId);
+      long startNs = System.nanoTime();
+      for (JSONObject frameTags : tags) {
+         extractAll(direct ? direct(frameTags) : viaString(frameTags));
+      }
+      long elapsedNs = System.nanoTime() - startNs;
+      long bytes = allocBean == null ? -1
+            : allocBean.getThreadAllocatedBytes(threadId) - startBytes;
+      System.out.println(String.format("%s: %.1f us/frame, %s bytes/frame",
+            label, elapsedNs / 1000.0 / tags.length,
+            bytes < 0 ? "n/a" : String.valueOf(bytes / tags.length)));
+   }
+}
@@ -0,0 +1,615 @@
+// LICENSE:      This file is distributed under the BSD license.
+//               License text is included with the source distribution.
+//
+//               This file is distributed in the hope that it will be useful,
+//               but WITHOUT ANY WARRANTY; without even the implied warranty
+//               of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//
+//               IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+//               CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+//               INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES.
+
+package org.micromanager.display.internal.benchmark;
+
+import com.google.common.base.Preconditions;
+import com.google.common.eventbus.Subscribe;
+import ij.CompositeImage;
+import ij.IJ;
+import ij.ImagePlus;
+import ij.ImageStack;
+import ij.process.ByteProcessor;
+import ij.process.ImageProcessor;
+import ij.process.LUT;
+import ij.process.ShortProcessor;
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Graphics2D;
+import java.awt.Toolkit;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.swing.SwingUtilities;
+import org.micromanager.Studio;
+import org.micromanager.data.Coords;
+import org.micromanager.data.DataProviderHasNewImageEvent;
+import org.micromanager.data.Image;
+import org.micromanager.display.DisplayDidShowImageEvent;
+import org.micromanager.display.DisplayWindow;
+import org.micromanager.display.inspector.internal.panels.intensity.ImageStatsPublisher;
+import org.micromanager.display.internal.displaywindow.DisplayController;
+import org.micromanager.display.internal.displaywindow.DisplayHandoff;
+import org.micromanager.display.internal.imagestats.BoundsRectAndMask;
+import org.micromanager.display.internal.imagestats.DisplayLatencyBudget;
+import org.micromanager.display.internal.imagestats.ImageStatsRequest;
+import org.micromanager.display.internal.imagestats.ImagesAndStats;
+import org.micromanager.display.internal.imagestats.IntegerComponentStats;
+import org.micromanager.display.internal.imagestats.StatsComputeQueue;
+import org.micromanager.display.internal.imagestats.StatsSampling;
+import org.micromanager.internal.utils.CoalescentEDTRunnablePool;
+import org.micromanager.internal.utils.ReportingUtils;
+
+/**
+ * Measures how well the display keeps up with images arriving at a given
+ * rate, without a camera.
+ *
+ * <p>Images come from a {@link SyntheticDataProvider} (live-mode style,
+ * with configurable size, bit depth, number of channels, and rate). The
+ * benchmark reports the achieved display rate, the latency of image
+ * statistics and of painting (both from image arrival), the fraction of
+ * time the EDT was busy, and the allocation rate.
+ *
+ * <p>It runs in one of two ways:
+ * <ul>
+ * <li>{@link #main} (also the Ant target {@code benchmark}) needs no screen.
+ * It does not run {@code DisplayController} or {@code ImageJBridge}, which
+ * need a window. Instead it runs the stats computation and the hand-off to
+ * the EDT ({@code StatsComputeQueue} and {@code DisplayHandoff}, as used by
+ * {@code DisplayController}), and renders through ImageJ on the EDT into an
+ * off-screen image. Changes to the rest of {@code DisplayController} or to
+ * the canvas are not reflected in its numbers.
+ * <li>{@link #runWithDisplay} shows the images in a real image window
+ * ({@code DisplayController}); it needs a running application and a screen
+ * (which can be a virtual framebuffer such as Xvfb). It can be run from the
+ * script panel, with the compiled benchmarks (Ant target
+ * {@code compile-benchmark}) added to the class path.
+ * </ul>
+ *
+ * <p>Options are given as {@code name=value} arguments: {@code width},
+ * {@code height}, {@code bits}, {@code channels}, {@code fps},
+ * {@code seconds}, {@code warmup} (seconds not measured), and
+ * {@code budget} (display latency budget in ms; 0 for none).
+ */
+public final class DisplayPipelineBenchmark {
+   // Largest off-screen canvas, as for a window fitting on a screen
+   private static final int MAX_CANVAS_SIZE = 1024;
+   private static final double[] REPORTED_QUANTILES = {0.5, 0.9, 0.99};
+   private static final String HEADLESS_DESCRIPTION = "Headless display pipeline stages "
+         + "(stats and hand-off; DisplayController and ImageJBridge not run): ";
+
+   /**
+    * Benchmark parameters.
+    */
+   public static final class Config {
+      private int width_ = 2048;
+      private int height_ = 2048;
+      private int bitDepth_ = 16;
+      private int channels_ = 1;
+      private double fps_ = 100.0;
+      private double seconds_ = 10.0;
+      private double warmupSeconds_ = 2.0;
+      private double latencyBudgetMs_ = 0.0;
+
+      /**
+       * Parse {@code name=value} arguments; parameters not given keep their
+       * defaults (2048x2048, 16 bits, 1 channel, 100 fps, 10 s after 2 s of
+       * warm-up, no latency budget).
+       *
+       * @param args the arguments
+       * @return the parameters
+       * @throws IllegalArgumentException if an argument is not understood
+       */
+      public static Config parse(String... args) {
+         Config config = new Config();
+         for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+               throw new IllegalArgumentException("Expected name=value: " + arg);
+            }
+            String name = arg.substring(0, eq);
+            String value = arg.substring(eq + 1);
+            switch (name) {
+               case "width":
+                  config.width_ = Integer.parseInt(value);
+                  break;
+               case "height":
+                  config.height_ = Integer.parseInt(value);
+                  break;
+               case "bits":
+                  config.bitDepth_ = Integer.parseInt(value);
+                  break;
+               case "channels":
+                  config.channels_ = Integer.parseInt(value);
+                  break;
+               case "fps":
+                  config.fps_ = Double.parseDouble(value);
+                  break;
+               case "seconds":
+                  config.seconds_ = Double.parseDouble(value);
+                  break;
+               case "warmup":
+                  config.warmupSeconds_ = Double.parseDouble(value);
+                  break;
+               case "budget":
+                  config.latencyBudgetMs_ = Double.parseDouble(value);
+                  break;
+               default:
+                  throw new IllegalArgumentException("Unknown option: " + name);
+            }
+         }
+         Preconditions.checkArgument(config.fps_ > 0.0, "fps must be positive");
+         Preconditions.checkArgument(config.seconds_ > 0.0, "seconds must be positive");
+         return config;
+      }
+
+      private SyntheticDataProvider createProvider() {
+         return SyntheticDataProvider.create(width_, height_, bitDepth_, channels_);
+      }
+
+      @Override
+      public String toString() {
+         return String.format("%dx%d, %d-bit, %d channel(s) at %.1f fps for %.1f s"
+                     + " (latency budget %s)", width_, height_, bitDepth_, channels_,
+               fps_, seconds_, latencyBudgetMs_ > 0.0
+                     ? String.format("%.0f ms", latencyBudgetMs_) : "none");
+      }
+   }
+
+   /**
+    * Measurements of one run.
+    */
+   public static final class Result {
+      private final String description_;
+      private final double seconds_;
+      private final long framesEmitted_;
+      private final long framesDisplayed_;
+      private final double[] statsLatencyMs_;
+      private final double[] paintLatencyMs_;
+      private final double edtOccupancy_;
+      private final double allocationBytesPerSecond_;
+
+      private Result(String description, double seconds, long framesEmitted,
+                     long framesDisplayed, double[] statsLatencyMs,
+                     double[] paintLatencyMs, double edtOccupancy,
+                     double allocationBytesPerSecond) {
+         description_ = description;
+         seconds_ = seconds;
+         framesEmitted_ = framesEmitted;
+         framesDisplayed_ = framesDisplayed;
+         statsLatencyMs_ = statsLatencyMs;
+         paintLatencyMs_ = paintLatencyMs;
+         edtOccupancy_ = edtOccupancy;
+         allocationBytesPerSecond_ = allocationBytesPerSecond;
+      }
+
+      public double getDisplayFps() {
+         return framesDisplayed_ / seconds_;
+      }
+
+      public double getEmittedFps() {
+         return framesEmitted_ / seconds_;
+      }
+
+      /**
+       * The time from the arrival of images to their stats being ready.
+       *
+       * @return the 50th, 90th, and 99th percentiles, in milliseconds
+       */
+      public double[] getStatsLatencyPercentilesMs() {
+         return statsLatencyMs_.clone();
+      }
+
+      /**
+       * The time from the arrival of images to their being painted.
+       *
+       * @return the 50th, 90th, and 99th percentiles, in milliseconds
+       */
+      public double[] getPaintLatencyPercentilesMs() {
+         return paintLatencyMs_.clone();
+      }
+
+      /**
+       * The fraction of the run during which the EDT was handling events.
+       *
+       * @return occupancy, 0.0-1.0
+       */
+      public double getEdtOccupancy() {
+         return edtOccupancy_;
+      }
+
+      /**
+       * The rate of heap allocation by threads alive at the end of the run.
+       *
+       * @return bytes per second, or a negative value if the JVM cannot
+       *     measure it
+       */
+      public double getAllocationBytesPerSecond() {
+         return allocationBytesPerSecond_;
+      }
+
+      @Override
+      public String toString() {
+         StringBuilder sb = new StringBuilder();
+         sb.append(description_).append('\n');
+         sb.append(String.format("Frames: %d emitted (%.1f fps), %d displayed (%.1f fps)%n",
+               framesEmitted_, getEmittedFps(), framesDisplayed_, getDisplayFps()));
+         sb.append(String.format("Stats latency (ms): 50%% %.1f, 90%% %.1f, 99%% %.1f%n",
+               statsLatencyMs_[0], statsLatencyMs_[1], statsLatencyMs_[2]));
+         sb.append(String.format(
+               "Arrival-to-paint latency (ms): 50%% %.1f, 90%% %.1f, 99%% %.1f%n",
+               paintLatencyMs_[0], paintLatencyMs_[1], paintLatencyMs_[2]));
+         sb.append(String.format("EDT occupancy: %.1f%%%n", 100.0 * edtOccupancy_));
+         if (allocationBytesPerSecond_ >= 0.0) {
+            sb.append(String.format("Allocation rate: %.1f MB/s",
+                  allocationBytesPerSecond_ / (1 << 20)));
+         } else {
+            sb.append("Allocation rate: not available");
+         }
+         return sb.toString();
+      }
+   }
+
+   /**
+    * Run the headless benchmark and print the results.
+    *
+    * @param args options, as {@code name=value}
+    * @throws Exception if the benchmark fails
+    */
+   public static void main(String[] args) throws Exception {
+      Config config = Config.parse(args);
+      System.out.println(runHeadless(config));
+      System.exit(0);
+   }
+
+   /**
+    * Run the stages of the display pipeline that do not need a window, as
+    * DisplayController does but without it (see the class description).
+    *
+    * @param config the parameters
+    * @return the measurements
+    * @throws InterruptedException if interrupted
+    */
+   public static Result runHeadless(final Config config) throws InterruptedException {
+      Preconditions.checkState(!SwingUtilities.isEventDispatchThread());
+      final SyntheticDataProvider provider = config.createProvider();
+      final StatsComputeQueue computeQueue = StatsComputeQueue.create();
+      final DisplayLatencyBudget budget = DisplayLatencyBudget.create();
+      budget.setBudgetMs(config.latencyBudgetMs_);
+      computeQueue.setLatencyBudget(budget);
+      final CoalescentEDTRunnablePool runnablePool = CoalescentEDTRunnablePool.create();
+      final Renderer renderer = new Renderer(config);
+      final Measurements measurements = new Measurements();
+
+      // As DisplayController does: each new image requests stats for all
+      // channels at its position; results are painted on the EDT by the
+      // same hand-off
+      final DisplayHandoff handoff = DisplayHandoff.create(computeQueue, budget,
+            runnablePool, images -> {
+               long startNs = System.nanoTime();
+               renderer.render(images);
+               long endNs = System.nanoTime();
+               budget.recordRenderTime(endNs - startNs);
+               measurements.sampleDisplayed(images.getRequest().getArrivalTimeNs(), endNs);
+            });
+      computeQueue.addListener(result -> {
+         measurements.sampleStatsLatency(result.getRequest().getArrivalTimeNs());
+         return handoff.imageStatsReady(result);
+      });
+      provider.registerForEvents(new Object() {
+         @Subscribe
+         public void onNewImage(DataProviderHasNewImageEvent event) {
+            Coords position = event.getCoords();
+            List<Image> images = provider.getImagesIgnoringAxes(
+                  position.copyRemovingAxes(Coords.CHANNEL), Coords.CHANNEL);
+            ImageStatsRequest request = ImageStatsRequest.create(position, images,
+                  BoundsRectAndMask.unselected(), StatsSampling.fullPrecision(),
+                  System.nanoTime());
+            handoff.submitRequest(request);
+         }
+      });
+
+      try {
+         return drive(config, provider, measurements, null, HEADLESS_DESCRIPTION);
+      } finally {
+         provider.close();
+         computeQueue.shutdown();
+      }
+   }
+
+   /**
+    * Run the benchmark in an image window of a running application.
+    * Must not be called on the EDT.
+    *
+    * @param studio the application
+    * @param args   options, as {@code name=value}
+    * @return the measurements
+    * @throws Exception if the window cannot be created or the benchmark is
+    *                   interrupted
+    */
+   public static Result runWithDisplay(final Studio studio, String... args) throws Exception {
+      Preconditions.checkState(!SwingUtilities.isEventDispatchThread(),
+            "Must not be called on the EDT");
+      final Config config = Config.parse(args);
+      final SyntheticDataProvider provider = config.createProvider();
+      final Measurements measurements = new Measurements();
+      provider.emitFrame(); // So that the window opens at the right size
+
+      final DisplayWindow[] window = new DisplayWindow[1];
+      SwingUtilities.invokeAndWait(() -> window[0] = studio.displays().createDisplay(provider));
+      final DisplayController controller = window[0] instanceof DisplayController
+            ? (DisplayController) window[0] : null;
+      if (controller != null) {
+         controller.setLatencyBudgetMs(config.latencyBudgetMs_);
+      }
+      // Stats latency is measured when the stats are published on the EDT;
+      // paint latency is taken from the display itself (its most recent
+      // paints only)
+      Object listener = new Object() {
+         @Subscribe
+         public void onStatsChanged(ImageStatsPublisher.ImageStatsChangedEvent event) {
+            measurements.sampleStatsLatency(
+                  event.getImagesAndStats().getRequest().getArrivalTimeNs());
+         }
+
+         @Subscribe
+         public void onDidShowImage(DisplayDidShowImageEvent event) {
+            measurements.sampleDisplayed(0, 0);
+         }
+      };
+      window[0].registerForEvents(listener);
+      try {
+         Result result = drive(config, provider, measurements, controller, "Image window: ");
+         ReportingUtils.logMessage("Display benchmark:\n" + result);
+         return result;
+      } finally {
+         window[0].unregisterForEvents(listener);
+         SwingUtilities.invokeLater(() -> window[0].close());
+         provider.close();
+      }
+   }
+
+   // Emit frames at the configured rate, measuring after the warm-up
+   private static Result drive(Config config, SyntheticDataProvider provider,
+                               Measurements measurements, DisplayController controller,
+                               String description)
+         throws InterruptedException {
+      EdtMonitor edtMonitor = EdtMonitor.install();
+      try {
+         long intervalNs = Math.round(1e9 / config.fps_);
+         long warmupFrames = Math.round(config.warmupSeconds_ * config.fps_);
+         long measuredFrames = Math.max(1, Math.round(config.seconds_ * config.fps_));
+         long nextNs = System.nanoTime();
+         long startNs = nextNs;
+         long startEdtBusyNs = 0;
+         long startAllocatedBytes = 0;
+         for (long frame = 0; frame < warmupFrames + measuredFrames; ++frame) {
+            if (frame == warmupFrames) {
+               startNs = System.nanoTime();
+               startEdtBusyNs = edtMonitor.getBusyNs();
+               startAllocatedBytes = getAllocatedBytes();
+               measurements.start();
+            }
+            long waitNs = nextNs - System.nanoTime();
+            if (waitNs > 0) {
+               Thread.sleep(waitNs / 1000000, (int) (waitNs % 1000000));
+            }
+            nextNs += intervalNs;
+            provider.emitFrame();
+         }
+         long endNs = System.nanoTime();
+         long elapsedNs = Math.max(1, endNs - startNs);
+         double seconds = elapsedNs / 1e9;
+         long allocatedBytes = getAllocatedBytes();
+         double allocationRate = startAllocatedBytes < 0 || allocatedBytes < 0 ? -1.0
+               : (allocatedBytes - startAllocatedBytes) / seconds;
+         double[] paintLatencyMs = null;
+         if (controller != null) {
+            paintLatencyMs = new double[REPORTED_QUANTILES.length];
+            for (int i = 0; i < REPORTED_QUANTILES.length; ++i) {
+               paintLatencyMs[i] = controller.getLatencyQuantileMs(REPORTED_QUANTILES[i]);
+            }
+         }
+         return measurements.stop(description + config, seconds, measuredFrames,
+               paintLatencyMs, (edtMonitor.getBusyNs() - startEdtBusyNs) / (double) elapsedNs,
+               allocationRate);
+      } finally {
+         edtMonitor.uninstall();
+      }
+   }
+
+   // Heap bytes allocated so far by all live threads; -1 if not supported
+   private static long getAllocatedBytes() {
+      ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+      if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+         return -1;
+      }
+      long total = 0;
+      for (long bytes : ((com.sun.management.ThreadMXBean) bean)
+            .getThreadAllocatedBytes(bean.getAllThreadIds())) {
+         if (bytes > 0) {
+            total += bytes;
+         }
+      }
+      return total;
+   }
+
+   /**
+    * Latencies and counts, collected from several threads.
+    */
+   private static final class Measurements {
+      // All guarded by monitor on this
+      private boolean isMeasuring_ = false;
+      private long framesDisplayed_ = 0;
+      private final List<Double> statsLatenciesMs_ = new ArrayList<>();
+      private final List<Double> paintLatenciesMs_ = new ArrayList<>();
+
+      synchronized void start() {
+         isMeasuring_ = true;
+      }
+
+      synchronized void sampleStatsLatency(long arrivalNs) {
+         if (isMeasuring_) {
+            statsLatenciesMs_.add((System.nanoTime() - arrivalNs) / 1e6);
+         }
+      }
+
+      // Paint latency is not recorded if paintedNs is 0
+      synchronized void sampleDisplayed(long arrivalNs, long paintedNs) {
+         if (isMeasuring_) {
+            ++framesDisplayed_;
+            if (paintedNs != 0) {
+               paintLatenciesMs_.add((paintedNs - arrivalNs) / 1e6);
+            }
+         }
+      }
+
+      // Paint latencies are those recorded here unless given
+      synchronized Result stop(String description, double seconds, long framesEmitted,
+                               double[] paintLatencyMs, double edtOccupancy,
+                               double allocationRate) {
+         isMeasuring_ = false;
+         return new Result(description, seconds, framesEmitted, framesDisplayed_,
+               percentiles(statsLatenciesMs_),
+               paintLatencyMs != null ? paintLatencyMs : percentiles(paintLatenciesMs_),
+               edtOccupancy, allocationRate);
+      }
+
+      private static double[] percentiles(List<Double> values) {
+         List<Double> sorted = new ArrayList<>(values);
+         Collections.sort(sorted);
+         double[] result = new double[REPORTED_QUANTILES.length];
+         for (int i = 0; i < result.length; ++i) {
+            result[i] = sorted.isEmpty() ? Double.NaN
+                  : sorted.get((int) Math.round(REPORTED_QUANTILES[i] * (sorted.size() - 1)));
+         }
+         return result;
+      }
+   }
+
+   /**
+    * Renders images through ImageJ, as the image window does, but into an
+    * off-screen image. Used only on the EDT.
+    */
+   private static final class Renderer {
+      private final ImagePlus imagePlus_;
+      private final BufferedImage canvas_;
+      private final int canvasWidth_;
+      private final int canvasHeight_;
+
+      Renderer(Config config) {
+         ImageStack stack = new ImageStack(config.width_, config.height_);
+         for (int c = 0; c < config.channels_; ++c) {
+            stack.addSlice(config.bitDepth_ <= 8
+                  ? new ByteProcessor(config.width_, config.height_)
+                  : new ShortProcessor(config.width_, config.height_));
+         }
+         ImagePlus imagePlus = new ImagePlus("Display benchmark", stack);
+         if (config.channels_ > 1) {
+            imagePlus.setDimensions(config.channels_, 1, 1);
+            imagePlus = new CompositeImage(imagePlus, IJ.COMPOSITE);
+         }
+         imagePlus_ = imagePlus;
+         double zoom = Math.min(1.0, MAX_CANVAS_SIZE
+               / (double) Math.max(config.width_, config.height_));
+         canvasWidth_ = Math.max(1, (int) Math.round(config.width_ * zoom));
+         canvasHeight_ = Math.max(1, (int) Math.round(config.height_ * zoom));
+         canvas_ = new BufferedImage(canvasWidth_, canvasHeight_, BufferedImage.TYPE_INT_RGB);
+      }
+
+      void render(ImagesAndStats images) {
+         ImageStatsRequest request = images.getRequest();
+         for (int i = 0; i < request.getNumberOfImages(); ++i) {
+            Image image = request.getImage(i);
+            ImageProcessor proc;
+            if (imagePlus_ instanceof CompositeImage) {
+               int channel = Math.max(0, image.getCoords().getChannel());
+               if (channel >= imagePlus_.getNChannels()) {
+                  continue;
+               }
+               proc = ((CompositeImage) imagePlus_).getProcessor(channel + 1);
+               if (proc == null) {
+                  continue;
+               }
+               setRange(proc, ((CompositeImage) imagePlus_).getChannelLut(channel + 1),
+                     images, i);
+            } else {
+               proc = imagePlus_.getProcessor();
+               setRange(proc, null, images, i);
+            }
+            proc.setPixels(image.getRawPixels());
+         }
+         imagePlus_.updateImage();
+         java.awt.Image rendered = imagePlus_.getImage();
+         if (rendered == null) {
+            return;
+         }
+         Graphics2D g = canvas_.createGraphics();
+         try {
+            g.drawImage(rendered, 0, 0, canvasWidth_, canvasHeight_, null);
+         } finally {
+            g.dispose();
+         }
+      }
+
+      // Autostretch (ignoring the top and bottom 0.1%), when stats are known
+      private static void setRange(ImageProcessor proc, LUT lut, ImagesAndStats images,
+                                   int index) {
+         if (images.getResult().size() <= index) {
+            return;
+         }
+         IntegerComponentStats stats = images.getResult().get(index).getComponentStats(0);
+         double min = stats.getAutoscaleMinForQuantile(0.001);
+         double max = Math.max(min + 1, stats.getAutoscaleMaxForQuantile(0.001));
+         proc.setMinAndMax(min, max);
+         if (lut != null) {
+            lut.min = min;
+            lut.max = max;
+         }
+      }
+   }
+
+   /**
+    * Measures the time the EDT spends dispatching events, by taking the
+    * place of the system event queue.
+    */
+   private static final class EdtMonitor extends EventQueue {
+      private final AtomicLong busyNs_ = new AtomicLong();
+
+      static EdtMonitor install() {
+         EdtMonitor monitor = new EdtMonitor();
+         Toolkit.getDefaultToolkit().getSystemEventQueue().push(monitor);
+         return monitor;
+      }
+
+      @Override
+      protected void dispatchEvent(AWTEvent event) {
+         long startNs = System.nanoTime();
+         try {
+            super.dispatchEvent(event);
+         } finally {
+            busyNs_.addAndGet(System.nanoTime() - startNs);
+         }
+      }
+
+      long getBusyNs() {
+         return busyNs_.get();
+      }
+
+      void uninstall() {
+         pop();
+      }
+   }
+}
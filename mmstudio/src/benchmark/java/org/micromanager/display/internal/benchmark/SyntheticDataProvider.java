@@ -0,0 +1,270 @@
+// LICENSE:      This file is distributed under the BSD license.
+//               License text is included with the source distribution.
+//
+//               This file is distributed in the hope that it will be useful,
+//               but WITHOUT ANY WARRANTY; without even the implied warranty
+//               of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//
+//               IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+//               CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+//               INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES.
+
+package org.micromanager.display.internal.benchmark;
+
+import com.google.common.base.Preconditions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.micromanager.data.Coordinates;
+import org.micromanager.data.Coords;
+import org.micromanager.data.DataProvider;
+import org.micromanager.data.Image;
+import org.micromanager.data.SummaryMetadata;
+import org.micromanager.data.internal.DefaultImage;
+import org.micromanager.data.internal.DefaultMetadata;
+import org.micromanager.data.internal.DefaultNewImageEvent;
+import org.micromanager.data.internal.DefaultSummaryMetadata;
+import org.micromanager.internal.utils.PrioritizedEventBus;
+
+/**
+ * A data provider that behaves like live mode: each new frame replaces the
+ * images (one per channel) at time point 0.
+ *
+ * <p>Frames are cycled from a small set generated up front, so that
+ * producing them costs next to nothing; each frame is a new Image object,
+ * as it would be coming from a camera.
+ */
+public final class SyntheticDataProvider implements DataProvider {
+   private static final int POOL_SIZE = 8;
+
+   private final int width_;
+   private final int height_;
+   private final int bitDepth_;
+   private final int channels_;
+   private final Object[][] pixelPool_; // [frame][channel]
+   private final SummaryMetadata summary_;
+   private final PrioritizedEventBus bus_ = new PrioritizedEventBus(true);
+
+   // All guarded by monitor on this
+   private final Image[] images_;
+   private long frameCount_ = 0;
+
+   /**
+    * Create a provider of images of the given format.
+    *
+    * @param width    image width
+    * @param height   image height
+    * @param bitDepth bits per pixel, 1 to 16; more than 8 gives 16-bit images
+    * @param channels number of channels
+    * @return the provider, without images until the first frame
+    */
+   public static SyntheticDataProvider create(int width, int height, int bitDepth,
+                                              int channels) {
+      Preconditions.checkArgument(width > 0 && height > 0);
+      Preconditions.checkArgument(bitDepth >= 1 && bitDepth <= 16);
+      Preconditions.checkArgument(channels > 0);
+      return new SyntheticDataProvider(width, height, bitDepth, channels);
+   }
+
+   private SyntheticDataProvider(int width, int height, int bitDepth, int channels) {
+      width_ = width;
+      height_ = height;
+      bitDepth_ = bitDepth;
+      channels_ = channels;
+      images_ = new Image[channels];
+      pixelPool_ = new Object[POOL_SIZE][channels];
+      Random random = new Random(0);
+      for (int f = 0; f < POOL_SIZE; ++f) {
+         for (int c = 0; c < channels; ++c) {
+            pixelPool_[f][c] = generatePixels(random, f);
+         }
+      }
+      String[] names = new String[channels];
+      for (int c = 0; c < channels; ++c) {
+         names[c] = "Channel " + c;
+      }
+      summary_ = new DefaultSummaryMetadata.Builder()
+            .channelNames(names)
+            .axisOrder(Coords.CHANNEL, Coords.TIME_POINT)
+            .build();
+   }
+
+   // A diagonal gradient, moving from frame to frame, with noise
+   private Object generatePixels(Random random, int frame) {
+      int maxValue = (1 << bitDepth_) - 1;
+      int offset = frame * (width_ + height_) / POOL_SIZE;
+      if (bitDepth_ <= 8) {
+         byte[] pixels = new byte[width_ * height_];
+         for (int y = 0, i = 0; y < height_; ++y) {
+            for (int x = 0; x < width_; ++x, ++i) {
+               pixels[i] = (byte) sample(random, x + y + offset, maxValue);
+            }
+         }
+         return pixels;
+      }
+      short[] pixels = new short[width_ * height_];
+      for (int y = 0, i = 0; y < height_; ++y) {
+         for (int x = 0; x < width_; ++x, ++i) {
+            pixels[i] = (short) sample(random, x + y + offset, maxValue);
+         }
+      }
+      return pixels;
+   }
+
+   private int sample(Random random, int position, int maxValue) {
+      double ramp = (position % (width_ + height_)) / (double) (width_ + height_);
+      double value = maxValue * (0.1 + 0.7 * ramp) + random.nextGaussian() * maxValue * 0.02;
+      return (int) Math.max(0, Math.min(maxValue, value));
+   }
+
+   /**
+    * Replace the images of all channels with those of the next frame, and
+    * post the new image events.
+    */
+   public void emitFrame() {
+      List<Image> added = new ArrayList<>(channels_);
+      synchronized (this) {
+         Object[] pixels = pixelPool_[(int) (frameCount_ % POOL_SIZE)];
+         for (int c = 0; c < channels_; ++c) {
+            Coords coords = Coordinates.builder().channel(c).time(0).build();
+            images_[c] = new DefaultImage(pixels[c], width_, height_,
+                  bitDepth_ <= 8 ? 1 : 2, 1, coords,
+                  new DefaultMetadata.Builder().bitDepth(bitDepth_).build());
+            added.add(images_[c]);
+         }
+         ++frameCount_;
+      }
+      for (Image image : added) {
+         bus_.post(new DefaultNewImageEvent(image, this));
+      }
+   }
+
+   public synchronized long getFrameCount() {
+      return frameCount_;
+   }
+
+   public int getBitDepth() {
+      return bitDepth_;
+   }
+
+   public int getNumberOfChannels() {
+      return channels_;
+   }
+
+   @Override
+   public void close() {
+      bus_.shutDown();
+   }
+
+   @Override
+   public synchronized Image getAnyImage() {
+      return images_[0];
+   }
+
+   @Override
+   public List<String> getAxes() {
+      return Arrays.asList(Coords.CHANNEL, Coords.TIME_POINT);
+   }
+
+   @Override
+   @Deprecated
+   public int getAxisLength(String axis) {
+      return getNextIndex(axis);
+   }
+
+   @Override
+   public synchronized int getNextIndex(String axis) {
+      if (frameCount_ == 0) {
+         return 0;
+      }
+      if (Coords.CHANNEL.equals(axis)) {
+         return channels_;
+      }
+      return Coords.TIME_POINT.equals(axis) ? 1 : 0;
+   }
+
+   @Override
+   public synchronized Image getImage(Coords coords) {
+      for (Image image : images_) {
+         if (image != null && image.getCoords().equals(coords)) {
+            return image;
+         }
+      }
+      return null;
+   }
+
+   @Override
+   @Deprecated
+   public List<Image> getImagesMatching(Coords coords) {
+      return getImagesIgnoringAxes(coords);
+   }
+
+   @Override
+   public synchronized List<Image> getImagesIgnoringAxes(Coords coords,
+                                                         String... ignoreTheseAxes) {
+      Coords target = coords.copyRemovingAxes(ignoreTheseAxes);
+      List<Image> result = new ArrayList<>();
+      for (Image image : images_) {
+         if (image != null
+               && image.getCoords().copyRemovingAxes(ignoreTheseAxes).equals(target)) {
+            result.add(image);
+         }
+      }
+      return result;
+   }
+
+   @Override
+   public boolean isFrozen() {
+      return false;
+   }
+
+   @Override
+   @Deprecated
+   public synchronized Coords getMaxIndices() {
+      return Coordinates.builder().channel(Math.max(0, getNextIndex(Coords.CHANNEL) - 1))
+            .time(0).build();
+   }
+
+   @Override
+   public synchronized int getNumImages() {
+      return frameCount_ == 0 ? 0 : channels_;
+   }
+
+   @Override
+   public SummaryMetadata getSummaryMetadata() {
+      return summary_;
+   }
+
+   @Override
+   public synchronized Iterable<Coords> getUnorderedImageCoords() {
+      List<Coords> result = new ArrayList<>();
+      for (Image image : images_) {
+         if (image != null) {
+            result.add(image.getCoords());
+         }
+      }
+      return result;
+   }
+
+   @Override
+   public boolean hasImage(Coords coords) {
+      return getImage(coords) != null;
+   }
+
+   @Override
+   public String getName() {
+      return String.format("Synthetic %dx%d, %d-bit, %d channel(s)",
+            width_, height_, bitDepth_, channels_);
+   }
+
+   @Override
+   public void registerForEvents(Object obj) {
+      bus_.register(obj);
+   }
+
+   @Override
+   public void unregisterForEvents(Object obj) {
+      bus_.unregister(obj);
+   }
+}
@@ -1,7 +1,13 @@
 package org.micromanager.acquisition.internal;
 
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.swing.JOptionPane;
 import javax.swing.SwingUtilities;
 import mmcorej.TaggedImage;
@@ -12,18 +18,32 @@ import org.micromanager.data.internal.DefaultImage;
 import org.micromanager.events.EventManager;
 import org.micromanager.internal.MMStudio;
 import org.micromanager.internal.utils.ReportingUtils;
+import org.micromanager.internal.utils.ThreadFactoryFactory;
 
 /**
- * This object spawns a new thread that receives images from the acquisition
- * engine and runs them through a Pipeline to the Datastore. It's also
+ * This object spawns new threads that receive images from the acquisition
+ * engine and run them through a Pipeline to the Datastore. It's also
  * responsible for posting the AcquisitionEndedEvent, which it recognizes when
  * it receives the TaggedImageQueue.POISON object.
  * Functionally this is just glue code between the old acquisition engine and
  * the 2.0 API.
  *
+ * <p>Converting a TaggedImage to a DefaultImage (parsing its JSON tags) is
+ * done on a small pool of threads, so that it does not hold up insertion into
+ * the pipeline during fast (burst) acquisitions. A reader thread takes images
+ * from the engine's queue and hands them to the converters; an inserter
+ * thread waits for the conversions in the order the images arrived, and
+ * inserts them into the pipeline in that order. At most a few images per
+ * converter are in flight; beyond that the reader waits, leaving images in
+ * the engine's queue.
+ *
+ * <p>Pipeline errors are reported on the EDT without holding up the images
+ * that follow; only one such dialog is shown at a time.
+ *
  * @author arthur, modified by Chris Weisiger
  */
 public final class DefaultTaggedImageSink {
+   private static final int IN_FLIGHT_PER_CONVERTER = 4;
 
    private final BlockingQueue<TaggedImage> imageProducingQueue_;
    private final Datastore store_;
@@ -31,6 +51,12 @@ public final class DefaultTaggedImageSink {
    private final AcquisitionEngine engine_;
    private final EventManager studioEvents_;
 
+   private final int converterCount_;
+   // Conversions in arrival order; a null image marks the end of acquisition
+   private final BlockingQueue<Future<DefaultImage>> inFlight_;
+   private final AtomicBoolean isAborted_ = new AtomicBoolean(false);
+   private final AtomicBoolean isErrorDialogShown_ = new AtomicBoolean(false);
+
    public DefaultTaggedImageSink(BlockingQueue<TaggedImage> queue,
                                  Pipeline pipeline,
                                  Datastore store,
@@ -41,6 +67,9 @@ public final class DefaultTaggedImageSink {
       store_ = store;
       engine_ = engine;
       studioEvents_ = studioEvents;
+      converterCount_ = Math.max(1,
+            Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+      inFlight_ = new ArrayBlockingQueue<>(IN_FLIGHT_PER_CONVERTER * converterCount_);
    }
 
    public void start() {
@@ -50,59 +79,130 @@ public final class DefaultTaggedImageSink {
    // sinkFullCallback is a way to stop production of images when/if the sink
    // can no longer accept images.
    public void start(final Runnable sinkFullCallback) {
-      Thread savingThread = new Thread("TaggedImage sink thread") {
+      final ExecutorService converters = Executors.newFixedThreadPool(converterCount_,
+            ThreadFactoryFactory.createThreadFactory("TaggedImage converter"));
+      new Thread(() -> readImages(converters), "TaggedImage sink reader thread").start();
+      new Thread(() -> insertImages(converters, sinkFullCallback),
+            "TaggedImage sink thread").start();
+   }
 
-         @Override
-         public void run() {
-            long t1 = System.currentTimeMillis();
-            int imageCount = 0;
+   /**
+    * Take images from the engine's queue and start converting them, until
+    * the end of acquisition or until the inserter gives up.
+    */
+   private void readImages(ExecutorService converters) {
+      try {
+         while (!isAborted_.get()) {
+            final TaggedImage tagged = imageProducingQueue_.poll(1, TimeUnit.SECONDS);
+            if (tagged == null) {
+               continue;
+            }
+            if (TaggedImageQueue.isPoison(tagged)) {
+               inFlight_.put(converters.submit(() -> null));
+               return;
+            }
+            Future<DefaultImage> conversion = converters.submit(() -> new DefaultImage(tagged));
+            while (!inFlight_.offer(conversion, 1, TimeUnit.SECONDS)) {
+               if (isAborted_.get()) {
+                  return;
+               }
+            }
+         }
+      } catch (InterruptedException e) {
+         ReportingUtils.logError(e, "Interrupted while reading images from acquisition");
+         isAborted_.set(true);
+      } catch (Exception e) {
+         ReportingUtils.logError(e);
+         isAborted_.set(true);
+      }
+   }
+
+   /**
+    * Insert converted images into the pipeline, in acquisition order. Ends
+    * the acquisition (halting the pipeline and posting the
+    * AcquisitionEndedEvent) when the last image has been inserted, or when
+    * images can no longer be stored.
+    */
+   private void insertImages(ExecutorService converters, Runnable sinkFullCallback) {
+      long t1 = System.currentTimeMillis();
+      int imageCount = 0;
+      try {
+         while (true) {
+            Future<DefaultImage> conversion = inFlight_.poll(1, TimeUnit.SECONDS);
+            if (conversion == null) {
+               if (isAborted_.get()) {
+                  // The reader failed; there will be no end marker.
+                  break;
+               }
+               continue;
+            }
+            DefaultImage image;
             try {
-               while (true) {
-                  TaggedImage tagged = imageProducingQueue_.poll(1, TimeUnit.SECONDS);
-                  if (tagged != null) {
-                     if (TaggedImageQueue.isPoison(tagged)) {
-                        // Acquisition has ended. Clean up under "finally"                        
-                        break;
-                     }
-                     try {
-                        ++imageCount;
-                        DefaultImage image = new DefaultImage(tagged);
-                        try {
-                           pipeline_.insertImage(image);
-                        } catch (PipelineErrorException e) {
-                           // TODO: make showing the dialog optional.
-                           MMStudio.getInstance().logs().logError(e,
-                                 "There was an error processing images.");
-                           int result = JOptionPane.showConfirmDialog(
-                                    MMStudio.getInstance().getApplication().getMainWindow(),
-                                 "There was an error processing images.\n"
-                                 + "Abort acquisition?",
-                                 "Error", JOptionPane.YES_NO_OPTION,
-                                 JOptionPane.QUESTION_MESSAGE);
-                           if (result == JOptionPane.YES_OPTION) {
-                              engine_.stop(true);
-                              throw new RuntimeException(e);
-                           }
-                           pipeline_.clearExceptions();
-                        }
-                     } catch (OutOfMemoryError e) {
-                        handleOutOfMemory(e, sinkFullCallback);
-                        break;
-                     }
-                  }
+               image = conversion.get();
+            } catch (ExecutionException e) {
+               if (e.getCause() instanceof OutOfMemoryError) {
+                  handleOutOfMemory((OutOfMemoryError) e.getCause(), sinkFullCallback);
+                  break;
                }
-            } catch (Exception ex2) {
-               ReportingUtils.logError(ex2);
-            } finally {
-               pipeline_.halt();
-               studioEvents_.post(
-                     new DefaultAcquisitionEndedEvent(store_, engine_));
+               ReportingUtils.logError(e.getCause(), "Unable to convert image from acquisition");
+               continue;
+            }
+            if (image == null) {
+               // Acquisition has ended. Clean up under "finally"
+               break;
+            }
+            try {
+               ++imageCount;
+               pipeline_.insertImage(image);
+            } catch (PipelineErrorException e) {
+               MMStudio.getInstance().logs().logError(e,
+                     "There was an error processing images.");
+               // Let the following images through while the user decides
+               pipeline_.clearExceptions();
+               reportPipelineError();
+            } catch (OutOfMemoryError e) {
+               handleOutOfMemory(e, sinkFullCallback);
+               break;
             }
-            long t2 = System.currentTimeMillis();
-            ReportingUtils.logMessage(imageCount + " images stored in " + (t2 - t1) + " ms.");
          }
-      };
-      savingThread.start();
+      } catch (Exception ex2) {
+         ReportingUtils.logError(ex2);
+      } finally {
+         isAborted_.set(true);
+         inFlight_.clear();
+         converters.shutdownNow();
+         pipeline_.halt();
+         studioEvents_.post(
+               new DefaultAcquisitionEndedEvent(store_, engine_));
+      }
+      long t2 = System.currentTimeMillis();
+      ReportingUtils.logMessage(imageCount + " images stored in " + (t2 - t1) + " ms.");
+   }
+
+   /**
+    * Ask the user, on the EDT, whether to abort the acquisition. Errors
+    * occurring while the question is showing are only logged.
+    */
+   private void reportPipelineError() {
+      if (!isErrorDialogShown_.compareAndSet(false, true)) {
+         return;
+      }
+      SwingUtilities.invokeLater(() -> {
+         try {
+            int result = JOptionPane.showConfirmDialog(
+                  MMStudio.getInstance().getApplication().getMainWindow(),
+                  "There was an error processing images.\n"
+                  + "Abort acquisition?",
+                  "Error", JOptionPane.YES_NO_OPTION,
+                  JOptionPane.QUESTION_MESSAGE);
+            if (result == JOptionPane.YES_OPTION) {
+               // The engine will send the end marker once it has stopped.
+               engine_.stop(true);
+            }
+         } finally {
+            isErrorDialogShown_.set(false);
+         }
+      });
    }
 
    // Never called from EDT
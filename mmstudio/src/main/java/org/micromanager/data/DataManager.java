@@ -90,6 +90,23 @@ public interface DataManager {
     */
    Datastore createRAMDatastore();
 
+   /**
+    * Generate a new, "blank" Datastore with RAM-based Storage and return it,
+    * optionally keeping the pixel data outside of the Java heap. Off-heap
+    * storage avoids long garbage collection pauses when many gigabytes of
+    * images are held in RAM, e.g. during long time-lapses. The amount of
+    * off-heap memory available is set by the JVM option
+    * -XX:MaxDirectMemorySize. This Datastore will not be managed by
+    * Micro-Manager by default (see the
+    * org.micromanager.api.display.DisplayManager.manage() method for more
+    * information).
+    *
+    * @param shouldStorePixelsOffHeap if true, pixel data will be kept in
+    *                                 direct (off-heap) memory.
+    * @return an empty RAM-based Datastore.
+    */
+   Datastore createRAMDatastore(boolean shouldStorePixelsOffHeap);
+
    Datastore createRAMDatastore(Datastore storeToCopy);
 
    /**
@@ -444,6 +461,26 @@ public interface DataManager {
    Pipeline createPipeline(List<ProcessorFactory> factories,
                            Datastore store, boolean isSynchronous);
 
+   /**
+    * Create a new Pipeline, running some Processors on several threads.
+    *
+    * @param factories     List of ProcessorFactories which will each be used, in
+    *                      order, to create a Processor for the new Pipeline.
+    * @param threadCounts  Number of threads for each Processor, in the same
+    *                      order as the factories. Only used for asynchronous
+    *                      Pipelines, and for Processors that are thread-safe
+    *                      (see Processor.isThreadSafe()); others use a single
+    *                      thread.
+    * @param store         Datastore in which Images should be stored after making
+    *                      their way through the Pipeline.
+    * @param isSynchronous See createPipeline(List, Datastore, boolean).
+    * @return a Pipeline containing Processors as specified by the input
+    *     factories.
+    */
+   Pipeline createPipeline(List<ProcessorFactory> factories,
+                           List<Integer> threadCounts,
+                           Datastore store, boolean isSynchronous);
+
    /**
     * Create a copy of the current application Pipeline as configured in the
     * "Data Processing Pipeline" window. This pipeline is used by Micro-Manager
@@ -607,4 +644,15 @@ public interface DataManager {
     */
    ImageJConverter getImageJConverter();
 
+   /**
+    * Provide access to the application-wide pool of pixel arrays. Code that
+    * creates many images of the same size (e.g. Processors) can take output
+    * and scratch arrays from the pool, and return arrays it no longer uses,
+    * instead of allocating new arrays for every image. See
+    * {@link PixelBufferPool} for when arrays may be returned.
+    *
+    * @return the pixel buffer pool
+    */
+   PixelBufferPool pixelBufferPool();
+
 }
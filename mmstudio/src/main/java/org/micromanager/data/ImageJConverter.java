@@ -37,6 +37,18 @@ public interface ImageJConverter {
     */
    ImageProcessor createProcessor(Image image);
 
+   /**
+    * Create an ImageProcessor with a copy of the pixel data of the provided
+    * Image, like createProcessor(Image), but with the copy made in an array
+    * taken from DataManager.pixelBufferPool(). Once the processor (and any
+    * Image wrapping its pixels) is no longer used, its pixels can be
+    * returned with PixelBufferPool.recycle(processor.getPixels()).
+    *
+    * @param image Micro-Manager Image object
+    * @return ImageJ ImageProcessor with a copy of the input Image pixel data
+    */
+   ImageProcessor createPooledProcessor(Image image);
+
    /**
     * Create an ImageProcessor whose image pixel data is derived from a
     * single component of the provided Image. Use this to e.g. extract out
@@ -62,4 +74,21 @@ public interface ImageJConverter {
     */
    Image createImage(ImageProcessor processor, Coords coords,
                      Metadata metadata);
+
+   /**
+    * Create a new Image that uses the pixel data of the provided
+    * ImageProcessor without copying it (except for RGB processors, whose
+    * pixels must be converted). The processor must not be modified
+    * afterwards. Use this instead of createImage() when the processor was
+    * created only to produce the Image, to avoid a copy of the pixels.
+    *
+    * @param processor ImageProcessor whose pixel data will form the data of
+    *                  the result image.
+    * @param coords    Coordinates for the new image.
+    * @param metadata  Metadata to use to create the new Image.
+    * @return an Image using the pixel data of the processor and the given
+    *     coordinates and metadata.
+    */
+   Image wrapImage(ImageProcessor processor, Coords coords,
+                   Metadata metadata);
 }
@@ -0,0 +1,94 @@
+///////////////////////////////////////////////////////////////////////////////
+//PROJECT:       Micro-Manager
+//SUBSYSTEM:     Data API
+//-----------------------------------------------------------------------------
+//
+// LICENSE:      This file is distributed under the BSD license.
+//               License text is included with the source distribution.
+//
+//               This file is distributed in the hope that it will be useful,
+//               but WITHOUT ANY WARRANTY; without even the implied warranty
+//               of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//
+//               IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+//               CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+//               INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES.
+
+package org.micromanager.data;
+
+/**
+ * A pool of pixel arrays, keyed by type and length, that lets code handling
+ * many images of the same size reuse arrays instead of allocating new ones
+ * for every image. You can access it via DataManager.pixelBufferPool().
+ *
+ * <p>Arrays obtained from the pool have undefined contents (they may hold
+ * the pixels of an earlier image); callers that need zeros must clear them.
+ * When the pool has no array of the requested length, a new one is
+ * allocated, so using the pool is never worse than allocating directly.
+ *
+ * <p>An array should be passed to {@link #recycle} only by code that knows
+ * that nothing else refers to it any more: typically scratch arrays used
+ * while processing an image, or arrays whose Image has been written and
+ * dropped by the code that created it. Pixels of Images that have been
+ * given to a Datastore or a ProcessorContext are shared with viewers and
+ * other code, and must not be recycled. Recycling an array that is still in
+ * use leads to corrupted images.
+ */
+public interface PixelBufferPool {
+   /**
+    * Get a byte array of the given length.
+    *
+    * @param length number of elements
+    * @return an array with undefined contents
+    */
+   byte[] getBytes(int length);
+
+   /**
+    * Get a short array of the given length.
+    *
+    * @param length number of elements
+    * @return an array with undefined contents
+    */
+   short[] getShorts(int length);
+
+   /**
+    * Get an int array of the given length.
+    *
+    * @param length number of elements
+    * @return an array with undefined contents
+    */
+   int[] getInts(int length);
+
+   /**
+    * Get a float array of the given length.
+    *
+    * @param length number of elements
+    * @return an array with undefined contents
+    */
+   float[] getFloats(int length);
+
+   /**
+    * Get an array of the same type and length as the given one, e.g. to
+    * hold a transformed copy of an image's pixels.
+    *
+    * @param pixels a byte[], short[], int[], or float[] array
+    * @return an array with undefined contents
+    * @throws IllegalArgumentException if the array type is not supported
+    */
+   Object getBufferLike(Object pixels);
+
+   /**
+    * Return an array to the pool, so that it can be handed out again. The
+    * caller must not use the array afterwards. Arrays of unsupported types
+    * (and null) are ignored, as are arrays that do not fit within the
+    * pool's size limit.
+    *
+    * @param buffer an array no longer referred to by anything else
+    */
+   void recycle(Object buffer);
+
+   /**
+    * Drop all arrays held by the pool.
+    */
+   void clear();
+}
@@ -54,6 +54,25 @@ public interface Processor {
     */
    void processImage(Image image, ProcessorContext context);
 
+   /**
+    * Whether this Processor may process several images at once. If true, an
+    * asynchronous Pipeline may call processImage() from several threads
+    * concurrently (with a different ProcessorContext for each call), if
+    * the user asks for more than one thread for this Processor. The Images
+    * output for each input Image are still passed on in the order in which
+    * the input Images arrived.
+    *
+    * <p>Only return true if processImage() keeps no state between images
+    * (or synchronizes access to it), and each call outputs only images
+    * derived from its own input Image. The default implementation returns
+    * false.
+    *
+    * @return true if processImage() is thread-safe
+    */
+   default boolean isThreadSafe() {
+      return false;
+   }
+
    /**
     * Clean up when processing is finished. At this time no more images are
     * going to be sent to the processImage method. The ProcessorContext is
@@ -124,6 +124,9 @@ public final class BufferTools {
          byte[] arr = bb.array();
          return Arrays.copyOf(arr, arr.length);
       } else if (rawPixels instanceof ByteBuffer) {
+         if (!rawPixels.hasArray()) {
+            return bytesFromBuffer((ByteBuffer) rawPixels);
+         }
          byte[] arr = ((ByteBuffer) rawPixels).array();
          return Arrays.copyOf(arr, arr.length);
       } else {
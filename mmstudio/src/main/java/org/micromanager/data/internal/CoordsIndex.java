@@ -0,0 +1,185 @@
+///////////////////////////////////////////////////////////////////////////////
+//PROJECT:       Micro-Manager
+//SUBSYSTEM:     Data API implementation
+//-----------------------------------------------------------------------------
+//
+// LICENSE:      This file is distributed under the BSD license.
+//               License text is included with the source distribution.
+//
+//               This file is distributed in the hope that it will be useful,
+//               but WITHOUT ANY WARRANTY; without even the implied warranty
+//               of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//
+//               IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+//               CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+//               INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES.
+
+package org.micromanager.data.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import org.micromanager.data.Coords;
+
+/**
+ * Index of the Coords in a Storage, answering "which images match these
+ * coords, ignoring these axes" in time proportional to the number of
+ * matches.
+ *
+ * <p>For each set of ignored axes that is asked for, the index keeps a map
+ * from the coords with those axes removed to the full coords of all matching
+ * images. Such a map is built (in a single pass over all coords) the first
+ * time its set of axes is used, and is kept up to date by later calls to
+ * {@link #add}. In practice only one or two sets are used (typically
+ * "channel" for the display), so the memory cost is small.
+ *
+ * <p>The index does not keep a set of all coords of its own; it refers to
+ * the key set of the Storage instead. The Storage must add coords to that
+ * collection before calling {@link #add}, and remove them before calling
+ * {@link #remove}. The collection is iterated when a set of ignored axes is
+ * first used, so it must allow iteration while images are being added (or
+ * be guarded by a lock held while calling this index).
+ *
+ * <p>All methods are thread-safe; coords may be added while other threads
+ * look up images. Returned lists are copies.
+ */
+public final class CoordsIndex {
+   /**
+    * Full coords by coords with the ignored axes removed.
+    */
+   private static final class AxisIndex {
+      private final String[] ignoredAxes_;
+      private final Map<Coords, List<Coords>> matches_ = new HashMap<>();
+
+      AxisIndex(Set<String> ignoredAxes) {
+         ignoredAxes_ = ignoredAxes.toArray(new String[0]);
+      }
+
+      void add(Coords coords) {
+         List<Coords> matches = matches_.computeIfAbsent(
+               coords.copyRemovingAxes(ignoredAxes_), k -> new ArrayList<>(4));
+         // Coords may be added again when an image is overwritten, or when
+         // they were in the Storage while this index was built
+         if (!matches.contains(coords)) {
+            matches.add(coords);
+         }
+      }
+
+      void remove(Coords coords) {
+         Coords key = coords.copyRemovingAxes(ignoredAxes_);
+         List<Coords> matches = matches_.get(key);
+         if (matches != null) {
+            matches.remove(coords);
+            if (matches.isEmpty()) {
+               matches_.remove(key);
+            }
+         }
+      }
+
+      List<Coords> get(Coords coords) {
+         return matches_.get(coords.copyRemovingAxes(ignoredAxes_));
+      }
+   }
+
+   // The key set of the Storage; not owned by this index
+   private final Collection<Coords> coords_;
+   private final Set<String> axesInUse_ = new TreeSet<>();
+   // Secondary indices, by (sorted) set of ignored axes
+   private final Map<Set<String>, AxisIndex> indices_ = new HashMap<>();
+
+   /**
+    * Create an index of the coords in a Storage.
+    *
+    * @param coords live view of the coords of all images in the Storage
+    */
+   public CoordsIndex(Collection<Coords> coords) {
+      coords_ = coords;
+   }
+
+   /**
+    * Add coords, which must already be in the Storage, to the index. Adding
+    * coords that are already present has no effect.
+    */
+   public synchronized void add(Coords coords) {
+      axesInUse_.addAll(coords.getAxes());
+      for (AxisIndex index : indices_.values()) {
+         index.add(coords);
+      }
+   }
+
+   /**
+    * Remove coords, which must already be removed from the Storage, from the
+    * index, if present.
+    */
+   public synchronized void remove(Coords coords) {
+      for (AxisIndex index : indices_.values()) {
+         index.remove(coords);
+      }
+   }
+
+   public boolean contains(Coords coords) {
+      return coords_.contains(coords);
+   }
+
+   /**
+    * Axes that occur in any of the coords added so far.
+    *
+    * @return a copy of the axes, sorted by name
+    */
+   public synchronized Set<String> getAxesInUse() {
+      return new TreeSet<>(axesInUse_);
+   }
+
+   /**
+    * Remove all coords from the index. Does not modify the Storage.
+    */
+   public synchronized void clear() {
+      axesInUse_.clear();
+      indices_.clear();
+   }
+
+   /**
+    * Find the coords that are equal to the given coords on all axes except
+    * the ignored ones.
+    *
+    * @param coords      coords to match; indices along ignored axes do not
+    *                    matter
+    * @param ignoredAxes axes along which any index matches
+    * @return the full coords of all matches, in the order of the Storage's
+    *     coords followed by those added since the first query
+    */
+   public synchronized List<Coords> getMatching(Coords coords, String... ignoredAxes) {
+      Set<String> ignored = new TreeSet<>();
+      for (String axis : ignoredAxes) {
+         // Axes that are not in use match trivially
+         if (axesInUse_.contains(axis)) {
+            ignored.add(axis);
+         }
+      }
+      if (ignored.isEmpty()) {
+         if (coords_.contains(coords)) {
+            return Collections.singletonList(coords);
+         }
+         return Collections.emptyList();
+      }
+
+      AxisIndex index = indices_.get(ignored);
+      if (index == null) {
+         index = new AxisIndex(ignored);
+         for (Coords c : coords_) {
+            index.add(c);
+         }
+         indices_.put(ignored, index);
+      }
+      List<Coords> matches = index.get(coords);
+      if (matches == null) {
+         return Collections.emptyList();
+      }
+      return new ArrayList<>(matches);
+   }
+}
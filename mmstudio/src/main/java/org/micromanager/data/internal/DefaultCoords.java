@@ -23,8 +23,9 @@ package org.micromanager.data.internal;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 import org.apache.commons.lang3.ArrayUtils;
 import org.micromanager.PropertyMap;
@@ -35,19 +36,27 @@ import org.micromanager.data.Coords;
 public final class DefaultCoords implements Coords {
 
    public static class Builder implements Coords.Builder {
-      // Since we only hold several axes, array lists are likely more efficient
-      // than a LinkedHashMap
-      private final List<String> axes_;
-      private final List<Integer> indices_;
+      // Since we only hold several axes, sorted arrays are more efficient
+      // than a map. The axes array may be shared with schema_ until the set
+      // of axes changes.
+      private String[] axes_;
+      private int[] indices_;
+      private int size_;
+      private boolean axesShared_;
+      // Schema matching the current axes, or null if not yet looked up
+      private AxisSchema schema_;
 
       public Builder() {
-         axes_ = new ArrayList<>(5);
-         indices_ = new ArrayList<>(5);
+         axes_ = new String[5];
+         indices_ = new int[5];
       }
 
-      private Builder(List<String> axes, List<Integer> indices) {
-         axes_ = new ArrayList<>(axes);
-         indices_ = new ArrayList<>(indices);
+      private Builder(AxisSchema schema, int[] indices) {
+         axes_ = schema.axes_;
+         axesShared_ = true;
+         indices_ = indices.clone();
+         size_ = indices.length;
+         schema_ = schema;
       }
 
       @Override
@@ -55,28 +64,66 @@ public final class DefaultCoords implements Coords {
          return new DefaultCoords(this);
       }
 
+      private int find(String axis) {
+         for (int i = 0; i < size_; ++i) {
+            if (axes_[i].equals(axis)) {
+               return i;
+            }
+         }
+         return -1;
+      }
+
       @Override
       public Builder index(String axis, int index) {
-         Preconditions.checkArgument(isValidAxis(axis), "Invalid axis name");
+         int i = find(axis);
+         if (i < 0) {
+            // Axes already present have been checked
+            Preconditions.checkArgument(isValidAxis(axis), "Invalid axis name");
+         }
          if (index <= 0) {
             return removeAxis(axis);
          }
-         int i = axes_.indexOf(axis);
-         if (i < 0) {
-            axes_.add(axis);
-            indices_.add(index);
-         } else {
-            indices_.set(i, index);
+         if (i >= 0) {
+            indices_[i] = index;
+            return this;
+         }
+         // Insert keeping the axes sorted
+         int insertAt = 0;
+         while (insertAt < size_ && axes_[insertAt].compareTo(axis) < 0) {
+            ++insertAt;
+         }
+         String[] axes = axes_;
+         if (axesShared_ || size_ == axes_.length) {
+            axes = new String[Math.max(5, size_ + 1)];
+            System.arraycopy(axes_, 0, axes, 0, insertAt);
+            axesShared_ = false;
          }
+         if (size_ == indices_.length) {
+            indices_ = Arrays.copyOf(indices_, Math.max(5, size_ + 1));
+         }
+         System.arraycopy(axes_, insertAt, axes, insertAt + 1, size_ - insertAt);
+         System.arraycopy(indices_, insertAt, indices_, insertAt + 1, size_ - insertAt);
+         axes_ = axes;
+         axes_[insertAt] = axis;
+         indices_[insertAt] = index;
+         ++size_;
+         schema_ = null;
          return this;
       }
 
       @Override
       public Builder removeAxis(String axis) {
-         int i = axes_.indexOf(axis);
+         int i = find(axis);
          if (i >= 0) {
-            axes_.remove(i);
-            indices_.remove(i);
+            if (axesShared_) {
+               axes_ = axes_.clone();
+               axesShared_ = false;
+            }
+            System.arraycopy(axes_, i + 1, axes_, i, size_ - i - 1);
+            System.arraycopy(indices_, i + 1, indices_, i, size_ - i - 1);
+            --size_;
+            axes_[size_] = null;
+            schema_ = null;
          }
          return this;
       }
@@ -84,10 +131,10 @@ public final class DefaultCoords implements Coords {
       @Override
       public Builder offset(String axis, int offset)
             throws IllegalArgumentException, IndexOutOfBoundsException {
-         int i = axes_.indexOf(axis);
+         int i = find(axis);
          int oldIndex = 0;
          if (i >= 0) {
-            oldIndex = indices_.get(i);
+            oldIndex = indices_[i];
          }
          int newIndex = oldIndex + offset;
          if (newIndex < 0) {
@@ -146,37 +193,128 @@ public final class DefaultCoords implements Coords {
       }
    }
 
-   // Since we only hold several axes, array lists are likely more efficient
-   // than a LinkedHashMap
-   private final List<String> axes_;
-   private final List<Integer> indices_;
+   /**
+    * A sorted set of axis names, shared by all Coords that have exactly these
+    * axes. Schemas are interned, so that two Coords have the same axes if and
+    * only if they have the same schema instance. Only a handful of axis sets
+    * are used by any one program, so the intern table stays small.
+    */
+   private static final class AxisSchema {
+      private static final ConcurrentHashMap<List<String>, AxisSchema> INTERNED =
+            new ConcurrentHashMap<>();
+
+      private final String[] axes_;
+      private final List<String> axesList_;
+      private final int axesHash_;
+      // Positions of the standard axes, or -1 if absent
+      private final int channel_;
+      private final int zSlice_;
+      private final int timePoint_;
+      private final int stagePosition_;
+      // Schema with one of our axes removed, by axis name
+      private final ConcurrentHashMap<String, AxisSchema> withoutAxis_ =
+            new ConcurrentHashMap<>(4);
+
+      private AxisSchema(String[] axes) {
+         axes_ = axes;
+         axesList_ = ImmutableList.copyOf(axes);
+         axesHash_ = axesList_.hashCode();
+         channel_ = indexOf(CHANNEL);
+         zSlice_ = indexOf(Z_SLICE);
+         timePoint_ = indexOf(TIME_POINT);
+         stagePosition_ = indexOf(STAGE_POSITION);
+      }
+
+      /**
+       * Return the schema for the given sorted axes. The array must not be
+       * modified afterwards.
+       */
+      static AxisSchema intern(String[] sortedAxes) {
+         List<String> key = Arrays.asList(sortedAxes);
+         AxisSchema schema = INTERNED.get(key);
+         if (schema == null) {
+            AxisSchema created = new AxisSchema(sortedAxes);
+            schema = INTERNED.putIfAbsent(created.axesList_, created);
+            if (schema == null) {
+               schema = created;
+            }
+         }
+         return schema;
+      }
+
+      int size() {
+         return axes_.length;
+      }
+
+      int indexOf(String axis) {
+         for (int i = 0; i < axes_.length; ++i) {
+            if (axes_[i].equals(axis)) {
+               return i;
+            }
+         }
+         return -1;
+      }
+
+      AxisSchema without(String axis) {
+         int i = indexOf(axis);
+         if (i < 0) {
+            return this;
+         }
+         AxisSchema result = withoutAxis_.get(axis);
+         if (result == null) {
+            String[] axes = new String[axes_.length - 1];
+            System.arraycopy(axes_, 0, axes, 0, i);
+            System.arraycopy(axes_, i + 1, axes, i, axes.length - i);
+            result = intern(axes);
+            withoutAxis_.put(axes_[i], result);
+         }
+         return result;
+      }
+   }
+
+   private final AxisSchema schema_;
+   // Index along each axis of schema_
+   private final int[] indices_;
+   private final int hash_;
 
    public DefaultCoords(Builder builder) {
-      // sort by axes name
-      List<String> axes = new ArrayList<>(builder.axes_);
-      Collections.sort(axes);
-      List<Integer> indices = new ArrayList<>(axes.size());
-      for (String axis : axes) {
-         int index = builder.axes_.indexOf(axis);
-         indices.add(builder.indices_.get(index));
+      if (builder.schema_ == null) {
+         builder.schema_ = AxisSchema.intern(Arrays.copyOf(builder.axes_, builder.size_));
+         // The builder's axes now belong to the schema
+         builder.axes_ = builder.schema_.axes_;
+         builder.axesShared_ = true;
       }
+      schema_ = builder.schema_;
+      indices_ = Arrays.copyOf(builder.indices_, builder.size_);
+      hash_ = computeHash();
+   }
+
+   private DefaultCoords(AxisSchema schema, int[] indices) {
+      schema_ = schema;
+      indices_ = indices;
+      hash_ = computeHash();
+   }
+
+   private int computeHash() {
+      // Same value as hashing the lists of axes and (boxed) indices
+      int hash = 3;
+      hash = 23 * hash + schema_.axesHash_;
+      hash = 23 * hash + Arrays.hashCode(indices_);
+      return hash;
+   }
 
-      axes_ = ImmutableList.copyOf(axes);
-      indices_ = ImmutableList.copyOf(indices);
+   private int indexAt(int position) {
+      return position < 0 ? 0 : indices_[position];
    }
 
    @Override
    public int getIndex(String axis) {
-      int i = axes_.indexOf(axis);
-      if (i < 0) {
-         return 0;
-      }
-      return indices_.get(i);
+      return indexAt(schema_.indexOf(axis));
    }
 
    @Override
    public int getTimePoint() {
-      return getIndex(TIME_POINT);
+      return indexAt(schema_.timePoint_);
    }
 
    @Override
@@ -186,7 +324,7 @@ public final class DefaultCoords implements Coords {
 
    @Override
    public int getStagePosition() {
-      return getIndex(STAGE_POSITION);
+      return indexAt(schema_.stagePosition_);
    }
 
    @Override
@@ -196,7 +334,7 @@ public final class DefaultCoords implements Coords {
 
    @Override
    public int getZSlice() {
-      return getIndex(Z_SLICE);
+      return indexAt(schema_.zSlice_);
    }
 
    @Override
@@ -206,7 +344,7 @@ public final class DefaultCoords implements Coords {
 
    @Override
    public int getChannel() {
-      return getIndex(Coords.CHANNEL);
+      return indexAt(schema_.channel_);
    }
 
    @Override
@@ -222,12 +360,12 @@ public final class DefaultCoords implements Coords {
 
    @Override
    public List<String> getAxes() {
-      return new ArrayList<>(axes_);
+      return new ArrayList<>(schema_.axesList_);
    }
 
    @Override
    public boolean hasAxis(String axis) {
-      return axes_.contains(axis);
+      return schema_.indexOf(axis) >= 0;
    }
 
    @Override
@@ -279,7 +417,7 @@ public final class DefaultCoords implements Coords {
 
    @Override
    public Builder copyBuilder() {
-      return new Builder(axes_, indices_);
+      return new Builder(schema_, indices_);
    }
 
    @Override
@@ -290,17 +428,28 @@ public final class DefaultCoords implements Coords {
 
    @Override
    public Coords copyRemovingAxes(String... axes) {
-      Builder b = copyBuilder();
+      AxisSchema schema = schema_;
       for (String axis : axes) {
-         b.removeAxis(axis);
+         schema = schema.without(axis);
       }
-      return b.build();
+      if (schema == schema_) {
+         // Coords are immutable
+         return this;
+      }
+      // Both schemas are sorted, and the new one is a subset of ours
+      int[] indices = new int[schema.size()];
+      for (int i = 0, j = 0; j < indices.length; ++i) {
+         if (schema_.axes_[i].equals(schema.axes_[j])) {
+            indices[j++] = indices_[i];
+         }
+      }
+      return new DefaultCoords(schema, indices);
    }
 
    @Override
    public Coords copyRetainingAxes(String... axes) {
       Builder b = new Builder();
-      for (String axis : axes_) {
+      for (String axis : schema_.axes_) {
          if (ArrayUtils.contains(axes, axis)) {
             b.index(axis, getIndex(axis));
          }
@@ -315,6 +464,12 @@ public final class DefaultCoords implements Coords {
       }
       // Axis order is not considered for equality, but axes are sorted already
       // A zero index axis is no longer possible, so no need to remove zero axes
+      if (other instanceof DefaultCoords) {
+         DefaultCoords theOther = (DefaultCoords) other;
+         // Schemas are interned, so the same axes means the same schema
+         return hash_ == theOther.hash_ && schema_ == theOther.schema_
+               && Arrays.equals(indices_, theOther.indices_);
+      }
       Coords theOther = (Coords) other;
 
       if (this.getAxes().size() != theOther.getAxes().size()) {
@@ -336,17 +491,14 @@ public final class DefaultCoords implements Coords {
    @Override
    public int hashCode() {
       // Axis order is not considered for equality, but axes are sorted already
-      int hash = 3;
-      hash = 23 * hash + axes_.hashCode();
-      hash = 23 * hash + indices_.hashCode();
-      return hash;
+      return hash_;
    }
 
    @Override
    public String toString() {
       StringBuilder sb = new StringBuilder().append("<");
       boolean isFirst = true;
-      for (String axis : axes_) {
+      for (String axis : schema_.axes_) {
          if (!isFirst) {
             sb.append(" ");
          }
@@ -358,7 +510,7 @@ public final class DefaultCoords implements Coords {
 
    public PropertyMap toPropertyMap() {
       PropertyMap.Builder b = PropertyMaps.builder();
-      for (String axis : axes_) {
+      for (String axis : schema_.axes_) {
          b.putInteger(axis, getIndex(axis));
       }
       return b.build();
@@ -382,7 +534,7 @@ public final class DefaultCoords implements Coords {
    @Deprecated
    public String toNormalizedString() {
       StringBuilder sb = new StringBuilder();
-      for (String axis : axes_) {
+      for (String axis : schema_.axes_) {
          // Trailing commas are allowed
          sb.append(String.format("%s=%d,", axis, getIndex(axis)));
       }
@@ -24,6 +24,7 @@ import java.awt.Component;
 import java.awt.Window;
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.List;
 import javax.swing.JOptionPane;
@@ -39,6 +40,7 @@ import org.micromanager.data.Image;
 import org.micromanager.data.ImageJConverter;
 import org.micromanager.data.Metadata;
 import org.micromanager.data.Pipeline;
+import org.micromanager.data.PixelBufferPool;
 import org.micromanager.data.Processor;
 import org.micromanager.data.ProcessorConfigurator;
 import org.micromanager.data.ProcessorFactory;
@@ -51,6 +53,7 @@ import org.micromanager.data.internal.ndtiff.NDTiffAdapter;
 import org.micromanager.data.internal.pipeline.DefaultPipeline;
 import org.micromanager.internal.MMStudio;
 import org.micromanager.internal.UserCancelledException;
+import org.micromanager.internal.pipelineinterface.PipelineFrame;
 import org.micromanager.internal.utils.FileDialogs;
 import org.micromanager.internal.utils.JavaUtils;
 import org.micromanager.internal.utils.ReportingUtils;
@@ -96,6 +99,16 @@ public final class DefaultDataManager implements DataManager {
       return result;
    }
 
+   @Override
+   public Datastore createRAMDatastore(boolean shouldStorePixelsOffHeap) {
+      if (!shouldStorePixelsOffHeap) {
+         return createRAMDatastore();
+      }
+      Datastore result = new DefaultDatastore(studio_);
+      result.setStorage(new StorageRAMOffHeap(result));
+      return result;
+   }
+
    @Override
    public Datastore createRAMDatastore(Datastore storeToCopy) {
       throw new UnsupportedOperationException();
@@ -302,16 +315,12 @@ public final class DefaultDataManager implements DataManager {
    @Override
    public Image createImage(Object pixels, int width, int height, int bytesPerPixel,
                             int numComponents, Coords coords, Metadata metadata) {
-      Object pixelClone;
-      if (pixels instanceof byte[]) {
-         pixelClone = ((byte[]) pixels).clone();
-      } else if (pixels instanceof short[]) {
-         pixelClone = ((short[]) pixels).clone();
-      } else if (pixels instanceof int[]) {
-         pixelClone = ((int[]) pixels).clone();
-      } else {
+      if (!(pixels instanceof byte[] || pixels instanceof short[]
+            || pixels instanceof int[])) {
          throw new IllegalArgumentException("Pixel type is not supported.  It could not be cloned");
       }
+      Object pixelClone = DefaultPixelBufferPool.getInstance().getBufferLike(pixels);
+      System.arraycopy(pixels, 0, pixelClone, 0, Array.getLength(pixels));
       return new DefaultImage(pixelClone, width, height, bytesPerPixel,
             numComponents, coords, metadata);
    }
@@ -378,17 +387,36 @@ public final class DefaultDataManager implements DataManager {
       return new DefaultPipeline(processors, store, isSynchronous);
    }
 
+   @Override
+   public Pipeline createPipeline(List<ProcessorFactory> factories,
+                                  List<Integer> threadCounts,
+                                  Datastore store, boolean isSynchronous) {
+      ArrayList<Processor> processors = new ArrayList<>();
+      for (ProcessorFactory factory : factories) {
+         processors.add(factory.createProcessor());
+      }
+      if (threadCounts != null && threadCounts.size() != processors.size()) {
+         // Can't tell which count goes with which processor; run each on one thread.
+         ReportingUtils.logMessage("Ignoring pipeline thread counts: expected "
+               + processors.size() + ", got " + threadCounts.size());
+         threadCounts = null;
+      }
+      return new DefaultPipeline(processors, threadCounts, store, isSynchronous);
+   }
+
    @Override
    public Pipeline copyApplicationPipeline(Datastore store,
                                            boolean isSynchronous) {
-      return createPipeline(studio_.uiManager().getPipelineFrame().getPipelineFactories(),
-            store, isSynchronous);
+      PipelineFrame frame = studio_.uiManager().getPipelineFrame();
+      return createPipeline(frame.getPipelineFactories(),
+            frame.getPipelineThreadCounts(false), store, isSynchronous);
    }
 
    @Override
    public Pipeline copyLivePipeline(Datastore store, boolean isSynchronous) {
-      return createPipeline(studio_.uiManager().getPipelineFrame().getLivePipelineFactories(),
-            store, isSynchronous);
+      PipelineFrame frame = studio_.uiManager().getPipelineFrame();
+      return createPipeline(frame.getLivePipelineFactories(),
+            frame.getPipelineThreadCounts(true), store, isSynchronous);
    }
 
    @Override
@@ -469,4 +497,9 @@ public final class DefaultDataManager implements DataManager {
    public ImageJConverter getImageJConverter() {
       return ij();
    }
+
+   @Override
+   public PixelBufferPool pixelBufferPool() {
+      return DefaultPixelBufferPool.getInstance();
+   }
 }
\ No newline at end of file
@@ -23,9 +23,8 @@ package org.micromanager.data.internal;
 import com.google.common.base.Preconditions;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import java.lang.reflect.Array;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.ShortBuffer;
@@ -57,7 +56,9 @@ import org.micromanager.internal.utils.imageanalysis.ImageUtils;
 public final class DefaultImage implements Image {
    private DefaultMetadata metadata_;
    private Coords coords_;
-   private Buffer rawPixels_;
+   // Replaced by an array-backed copy the first time an array is needed, if
+   // not array-backed
+   private volatile Buffer rawPixels_;
 
    // Width of the image, in pixels
    int pixelWidth_;
@@ -96,22 +97,19 @@ public final class DefaultImage implements Image {
     */
    public DefaultImage(TaggedImage tagged, Coords coords, Metadata metadata)
          throws IllegalArgumentException {
-      String json = tagged.tags.toString();
-      JsonElement je;
+      // Convert the tags once, directly (without going through a String), and
+      // extract metadata, coords, and format from the same tree.
+      JsonObject je;
       try {
-         je = new JsonParser().parse(json);
+         je = NonPropertyMapJSONFormats.gsonFromJSONObject(tagged.tags);
       } catch (Exception unlikely) {
-         throw new IllegalArgumentException("Failed to parse JSON created from TaggedImage tags",
+         throw new IllegalArgumentException("Failed to convert TaggedImage tags to JSON",
                unlikely);
       }
 
       if (metadata == null) {
-         try {
-            metadata = DefaultMetadata.fromPropertyMap(
-                  NonPropertyMapJSONFormats.metadata().fromGson(je));
-         } catch (Exception e) {
-            throw new IllegalArgumentException("Failed to convert TaggedImage tags to metadata", e);
-         }
+         // Decoded on demand; most consumers only read a few fields
+         metadata = DefaultMetadata.fromMM1Tags(je.getAsJsonObject());
       }
 
       if (coords == null) {
@@ -218,6 +216,47 @@ public final class DefaultImage implements Image {
       pixelType_ = PixelType.valueFor(bytesPerPixel, bpc, numComponents);
    }
 
+   /**
+    * Generates a DefaultImage that uses the given buffer as its pixel storage.
+    *
+    * <p>The buffer is used directly (not copied), so it can be, e.g., a view
+    * onto a memory-mapped file. Its content must not change afterwards.
+    * If the buffer is not backed by an array, the first call to
+    * getRawPixels() copies the pixels into an array, which is kept.
+    *
+    * @param pixels    ByteBuffer (8-bit components) or ShortBuffer (16-bit
+    *                  components) holding exactly the pixel data, starting at
+    *                  index 0
+    * @param width     Image width, in pixels
+    * @param height    Image height, in pixels
+    * @param pixelType Pixel type, which must match the buffer type
+    * @param coords    Coords to be used for this new image (can be null).
+    * @param metadata  Metadata to be used this new image (can be null).
+    * @throws IllegalArgumentException if the buffer does not match the format
+    */
+   public DefaultImage(Buffer pixels, int width, int height, PixelType pixelType,
+                       Coords coords, Metadata metadata) throws IllegalArgumentException {
+      Preconditions.checkNotNull(pixels);
+      Preconditions.checkNotNull(pixelType);
+      metadata_ = metadata == null ? new DefaultMetadata.Builder().build() :
+            (DefaultMetadata) metadata;
+      coords_ = coords == null ? Coordinates.builder().build() : coords;
+
+      int bpc = pixels instanceof ByteBuffer ? 1 : pixels instanceof ShortBuffer ? 2 : 0;
+      if (bpc != pixelType.getBytesPerComponent()) {
+         throw new IllegalArgumentException("Pixel buffer " + pixels
+               + " does not match pixel type " + pixelType);
+      }
+      int samplesPerPixel = pixelType.getBytesPerPixel() / bpc;
+      if (pixels.capacity() < width * height * samplesPerPixel) {
+         throw new IllegalArgumentException("Invalid pixel data " + pixels);
+      }
+      rawPixels_ = pixels;
+      pixelWidth_ = width;
+      pixelHeight_ = height;
+      pixelType_ = pixelType;
+   }
+
    /**
     * Creates a new image object that shares the pixels of the source image
     * Attaches the provided coords and metadata.
@@ -230,13 +269,19 @@ public final class DefaultImage implements Image {
       metadata_ = (DefaultMetadata) metadata;
       coords_ = coords;
 
-      int bytesPerComponent = 0;
-      if (source.getRawPixels() instanceof byte[]) {
-         bytesPerComponent = 1;
-      } else if (source.getRawPixels() instanceof short[]) {
-         bytesPerComponent = 2;
+      if (source instanceof DefaultImage) {
+         // Share the buffer (which may not be array-backed) rather than
+         // wrapping getRawPixels(), which would copy such a buffer
+         rawPixels_ = ((DefaultImage) source).rawPixels_;
+      } else {
+         int bytesPerComponent = 0;
+         if (source.getRawPixels() instanceof byte[]) {
+            bytesPerComponent = 1;
+         } else if (source.getRawPixels() instanceof short[]) {
+            bytesPerComponent = 2;
+         }
+         rawPixels_ = BufferTools.wrapArray(source.getRawPixels(), bytesPerComponent);
       }
-      rawPixels_ = BufferTools.wrapArray(source.getRawPixels(), bytesPerComponent);
 
       if (rawPixels_.capacity() == 0) {
          throw new IllegalArgumentException("Pixel data has length 0.");
@@ -289,10 +334,17 @@ public final class DefaultImage implements Image {
     */
    @Override
    public Object getRawPixels() {
-      if (rawPixels_.hasArray()) {
+      Buffer pixels = rawPixels_;
+      if (pixels.hasArray()) {
+         return pixels.array();
+      }
+      synchronized (this) {
+         if (!rawPixels_.hasArray()) {
+            rawPixels_ = BufferTools.wrapArray(BufferTools.arrayFromBuffer(rawPixels_),
+                  pixelType_.getBytesPerComponent());
+         }
          return rawPixels_.array();
       }
-      return BufferTools.arrayFromBuffer(rawPixels_);
    }
 
    @Override
@@ -302,25 +354,19 @@ public final class DefaultImage implements Image {
 
    @Override
    public Object getRawPixelsCopy() {
-      Object original = getRawPixels();
-      Object copy;
-      int length;
-      if (original instanceof byte[]) {
-         byte[] tmp = (byte[]) original;
-         length = tmp.length;
-         copy = new byte[length];
-      } else if (original instanceof short[]) {
-         short[] tmp = (short[]) original;
-         length = tmp.length;
-         copy = new short[length];
-      } else if (original instanceof int[]) {
-         int[] tmp = (int[]) original;
-         length = tmp.length;
-         copy = new int[length];
-      } else {
+      Buffer pixels = rawPixels_;
+      if (!pixels.hasArray()) {
+         // Already a new array
+         return BufferTools.arrayFromBuffer(pixels);
+      }
+      Object original = pixels.array();
+      if (!(original instanceof byte[] || original instanceof short[]
+            || original instanceof int[])) {
          throw new RuntimeException("Unrecognized pixel type " + original.getClass());
       }
-      System.arraycopy(original, 0, copy, 0, length);
+      // The copy is fully overwritten, so a recycled array will do
+      Object copy = DefaultPixelBufferPool.getInstance().getBufferLike(original);
+      System.arraycopy(original, 0, copy, 0, Array.getLength(original));
       return copy;
    }
 
@@ -424,8 +470,7 @@ public final class DefaultImage implements Image {
             formatToPropertyMap());
       NonPropertyMapJSONFormats.coords().addToGson(jo,
             ((DefaultCoords) coords_).toPropertyMap());
-      NonPropertyMapJSONFormats.metadata().addToGson(jo,
-            metadata_.toPropertyMap());
+      metadata_.addToMM1Gson(jo);
       Gson gson = new GsonBuilder().disableHtmlEscaping().create();
       String json = gson.toJson(jo);
 
@@ -25,6 +25,7 @@ import ij.process.ColorProcessor;
 import ij.process.FloatProcessor;
 import ij.process.ImageProcessor;
 import ij.process.ShortProcessor;
+import java.lang.reflect.Array;
 import org.micromanager.Studio;
 import org.micromanager.data.Coords;
 import org.micromanager.data.Image;
@@ -47,6 +48,40 @@ public final class DefaultImageJConverter implements ImageJConverter {
       return createProcessor(image, true);
    }
 
+   @Override
+   public ImageProcessor createPooledProcessor(Image image) {
+      int width = image.getWidth();
+      int height = image.getHeight();
+      int bytesPerPixel = image.getBytesPerPixel();
+      int numComponents = image.getNumComponents();
+      Object pixels = image.getRawPixels();
+      DefaultPixelBufferPool pool = DefaultPixelBufferPool.getInstance();
+      if (bytesPerPixel == 4 && numComponents == 3 && pixels instanceof byte[]) {
+         // Convert straight into the pooled array
+         byte[] bytes = (byte[]) pixels;
+         int[] ints = pool.getInts(bytes.length / 4);
+         for (int i = 0; i < ints.length; ++i) {
+            ints[i] = (bytes[4 * i] & 0xff)
+                  + ((bytes[4 * i + 1] & 0xff) << 8)
+                  + ((bytes[4 * i + 2] & 0xff) << 16);
+         }
+         return new ColorProcessor(width, height, ints);
+      }
+      Object copy = pool.getBufferLike(pixels);
+      System.arraycopy(pixels, 0, copy, 0, Array.getLength(pixels));
+      if (bytesPerPixel == 4 && numComponents == 3) {
+         return new ColorProcessor(width, height, (int[]) copy);
+      } else if (bytesPerPixel == 1 && numComponents == 1) {
+         return new ByteProcessor(width, height, (byte[]) copy, null);
+      } else if (bytesPerPixel == 2 && numComponents == 1) {
+         return new ShortProcessor(width, height, (short[]) copy, null);
+      } else if (bytesPerPixel == 4 && numComponents == 1) {
+         return new FloatProcessor(width, height, (float[]) copy, null);
+      }
+      pool.recycle(copy);
+      return null;
+   }
+
    public static ImageProcessor createProcessor(Image image, boolean shouldCopy) {
       int width = image.getWidth();
       int height = image.getHeight();
@@ -127,6 +162,17 @@ public final class DefaultImageJConverter implements ImageJConverter {
    @Override
    public Image createImage(ImageProcessor processor, Coords coords,
                             Metadata metadata) {
+      return toImage(processor, coords, metadata, true);
+   }
+
+   @Override
+   public Image wrapImage(ImageProcessor processor, Coords coords,
+                          Metadata metadata) {
+      return toImage(processor, coords, metadata, false);
+   }
+
+   private Image toImage(ImageProcessor processor, Coords coords,
+                         Metadata metadata, boolean shouldCopy) {
       Object pixels = processor.getPixels();
       int bytesPerPixel = -1;
       int numComponents = -1;
@@ -147,7 +193,12 @@ public final class DefaultImageJConverter implements ImageJConverter {
       } else {
          ReportingUtils.logError("Unrecognized processor type " + processor.getClass().getName());
       }
-      return studio_.data().createImage(pixels,
+      if (shouldCopy) {
+         return studio_.data().createImage(pixels,
+               processor.getWidth(), processor.getHeight(), bytesPerPixel,
+               numComponents, coords, metadata);
+      }
+      return studio_.data().wrapImage(pixels,
             processor.getWidth(), processor.getHeight(), bytesPerPixel,
             numComponents, coords, metadata);
    }
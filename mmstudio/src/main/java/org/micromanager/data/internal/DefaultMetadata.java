@@ -39,33 +39,73 @@ import static org.micromanager.data.internal.PropertyKey.X_POSITION_UM;
 import static org.micromanager.data.internal.PropertyKey.Y_POSITION_UM;
 import static org.micromanager.data.internal.PropertyKey.Z_POSITION_UM;
 
+import com.google.common.collect.Sets;
+import com.google.gson.JsonObject;
 import java.awt.Rectangle;
 import java.awt.geom.AffineTransform;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
 import java.util.UUID;
 import org.micromanager.PropertyMap;
 import org.micromanager.PropertyMaps;
 import org.micromanager.data.Metadata;
+import org.micromanager.internal.propertymap.NonPropertyMapJSONFormats;
 
 /**
  * This class holds the metadata for ImagePlanes. It is intended to be
  * immutable; construct new Metadatas using a MetadataBuilder, or by using
  * the copy() method (which provides a MetadataBuilder). Any fields that are
  * not explicitly set will default to null.
+ *
+ * <p>Metadata created with {@link #fromMM1Tags} keeps the MM1-style tags it was
+ * created from and only decodes them when needed: the first getter (or
+ * {@link #toPropertyMap}) decodes and checks the whole map, which is then
+ * kept. Values set through a copy builder are kept separately, so that e.g.
+ * adding a file name does not force decoding. Format errors in such tags
+ * therefore surface when a field is first read rather than at construction.
  */
 public final class DefaultMetadata implements Metadata {
    public static class Builder implements Metadata.Builder {
       private final PropertyMap.Builder b_;
+      // When copying deferred metadata: the undecoded tags, and the keys
+      // whose values in b_ replace those in the tags.
+      private final JsonObject deferredTags_;
+      private final Set<PropertyKey> setKeys_;
 
       public Builder() {
          b_ = PropertyMaps.builder();
+         deferredTags_ = null;
+         setKeys_ = null;
       }
 
       private Builder(PropertyMap toCopy) {
          b_ = toCopy.copyBuilder();
+         deferredTags_ = null;
+         setKeys_ = null;
+      }
+
+      private Builder(JsonObject deferredTags, PropertyMap overrides,
+                      Set<PropertyKey> overriddenKeys) {
+         b_ = overrides.copyBuilder();
+         deferredTags_ = deferredTags;
+         setKeys_ = EnumSet.noneOf(PropertyKey.class);
+         setKeys_.addAll(overriddenKeys);
+      }
+
+      private Builder set(PropertyKey key) {
+         if (setKeys_ != null) {
+            setKeys_.add(key);
+         }
+         return this;
       }
 
       @Override
       public DefaultMetadata build() {
+         if (deferredTags_ != null) {
+            return new DefaultMetadata(deferredTags_, b_.build(),
+                  Sets.immutableEnumSet(setKeys_));
+         }
          return new DefaultMetadata(b_.build());
       }
 
@@ -83,91 +123,91 @@ public final class DefaultMetadata implements Metadata {
       @Override
       public Builder uuid(UUID uuid) {
          b_.putUUID(PropertyKey.UUID.key(), uuid);
-         return this;
+         return set(PropertyKey.UUID);
       }
 
       @Override
       public Builder bitDepth(Integer bitDepth) {
          b_.putInteger(BIT_DEPTH.key(), bitDepth);
-         return this;
+         return set(BIT_DEPTH);
       }
 
       @Override
       public Builder exposureMs(Double exposureMs) {
          b_.putDouble(EXPOSURE_MS.key(), exposureMs);
-         return this;
+         return set(EXPOSURE_MS);
       }
 
       @Override
       public Builder elapsedTimeMs(Double elapsedTimeMs) {
          b_.putDouble(ELAPSED_TIME_MS.key(), elapsedTimeMs);
-         return this;
+         return set(ELAPSED_TIME_MS);
       }
 
       @Override
       public Builder binning(Integer binning) {
          b_.putInteger(BINNING.key(), binning);
-         return this;
+         return set(BINNING);
       }
 
       @Override
       public Builder imageNumber(Long imageNumber) {
          b_.putLong(IMAGE_NUMBER.key(), imageNumber);
-         return this;
+         return set(IMAGE_NUMBER);
       }
 
       @Override
       public Builder positionName(String positionName) {
          b_.putString(POSITION_NAME.key(), positionName);
-         return this;
+         return set(POSITION_NAME);
       }
 
       @Override
       public Builder xPositionUm(Double xPositionUm) {
          b_.putDouble(X_POSITION_UM.key(), xPositionUm);
-         return this;
+         return set(X_POSITION_UM);
       }
 
       @Override
       public Builder yPositionUm(Double yPositionUm) {
          b_.putDouble(Y_POSITION_UM.key(), yPositionUm);
-         return this;
+         return set(Y_POSITION_UM);
       }
 
       @Override
       public Builder zPositionUm(Double zPositionUm) {
          b_.putDouble(Z_POSITION_UM.key(), zPositionUm);
-         return this;
+         return set(Z_POSITION_UM);
       }
 
       @Override
       public Builder pixelSizeUm(Double pixelSizeUm) {
          b_.putDouble(PIXEL_SIZE_UM.key(), pixelSizeUm);
-         return this;
+         return set(PIXEL_SIZE_UM);
       }
 
       @Override
       public Builder pixelSizeAffine(AffineTransform aff) {
          b_.putAffineTransform(PIXEL_SIZE_AFFINE.key(), aff);
-         return this;
+         return set(PIXEL_SIZE_AFFINE);
       }
 
       @Override
       public Builder camera(String camera) {
          b_.putString(CAMERA.key(), camera);
-         return this;
+         return set(CAMERA);
       }
 
       @Override
       public Builder receivedTime(String receivedTime) {
          b_.putString(RECEIVED_TIME.key(), receivedTime);
-         return this;
+         return set(RECEIVED_TIME);
       }
 
       @Override
       public Builder roi(Rectangle roi) {
          b_.putRectangle(ROI.key(), roi);
-         return this;
+         return set(ROI);
       }
 
       @Override
@@ -178,7 +218,7 @@ public final class DefaultMetadata implements Metadata {
       @Override
       public Builder pixelAspect(Double pixelAspect) {
          b_.putDouble(PIXEL_ASPECT.key(), pixelAspect);
-         return this;
+         return set(PIXEL_ASPECT);
       }
 
       @Override
@@ -189,28 +229,39 @@ public final class DefaultMetadata implements Metadata {
             }
          }
          b_.putPropertyMap(SCOPE_DATA.key(), scopeData);
-         return this;
+         return set(SCOPE_DATA);
       }
 
       @Override
       public Builder userData(PropertyMap userData) {
          // This is not read by MM1 so an arbitrary property map is allowed.
          b_.putPropertyMap(USER_DATA.key(), userData);
-         return this;
+         return set(USER_DATA);
       }
 
       @Override
       public Builder fileName(String filename) {
          b_.putString(FILE_NAME.key(), filename);
-         return this;
+         return set(FILE_NAME);
       }
    }
 
 
-   private final PropertyMap pmap_;
+   // The decoded map; null until decoded if created from MM1 tags
+   private volatile PropertyMap pmap_;
+   // Undecoded MM1-style tags; null if created from a PropertyMap or once
+   // decoded
+   private volatile JsonObject deferredTags_;
+   // Values replacing those in deferredTags_, and the keys they replace
+   // (including keys that were removed)
+   private final PropertyMap overrides_;
+   private final Set<PropertyKey> overriddenKeys_;
 
    public DefaultMetadata(PropertyMap pmap) {
       pmap_ = pmap;
+      deferredTags_ = null;
+      overrides_ = PropertyMaps.emptyPropertyMap();
+      overriddenKeys_ = Collections.emptySet();
 
       // Check map format
       getUUID();
@@ -238,19 +289,85 @@ public final class DefaultMetadata implements Metadata {
       getFileName();
    }
 
+   private DefaultMetadata(JsonObject deferredTags, PropertyMap overrides,
+                           Set<PropertyKey> overriddenKeys) {
+      pmap_ = null;
+      deferredTags_ = deferredTags;
+      overrides_ = overrides;
+      overriddenKeys_ = overriddenKeys;
+   }
+
+   /**
+    * Create metadata from MM1-style tags (such as those of a TaggedImage,
+    * converted to Gson) without decoding them up front.
+    *
+    * @param tags MM1-style JSON tags. Must not be modified afterwards.
+    * @return metadata that decodes {@code tags} on demand
+    */
+   public static DefaultMetadata fromMM1Tags(JsonObject tags) {
+      return new DefaultMetadata(tags, PropertyMaps.emptyPropertyMap(),
+            Collections.<PropertyKey>emptySet());
+   }
+
+   private PropertyMap decoded() {
+      PropertyMap pmap = pmap_;
+      if (pmap != null) {
+         return pmap;
+      }
+      JsonObject tags = deferredTags_;
+      synchronized (this) {
+         if (pmap_ == null) {
+            PropertyMap.Builder builder = NonPropertyMapJSONFormats.metadata()
+                  .fromGson(tags).copyBuilder();
+            for (PropertyKey key : overriddenKeys_) {
+               builder.remove(key.key());
+            }
+            // Constructing checks the map format, as for eager metadata
+            pmap_ = new DefaultMetadata(builder.putAll(overrides_).build()).pmap_;
+            deferredTags_ = null;
+         }
+         return pmap_;
+      }
+   }
+
+   /**
+    * Whether this metadata still holds undecoded MM1-style tags.
+    *
+    * @return true if decoding is still deferred
+    */
+   public boolean isDeferred() {
+      return deferredTags_ != null;
+   }
+
+   /**
+    * Add this metadata, in MM1-style JSON, to the given Gson object.
+    *
+    * <p>Deferred tags are decoded (once) as for any other access, so that
+    * saving and then displaying an image does not decode it twice.
+    *
+    * @param dest object to which the metadata entries are added
+    */
+   public void addToMM1Gson(JsonObject dest) {
+      NonPropertyMapJSONFormats.metadata().addToGson(dest, decoded());
+   }
+
    @Override
    public Builder copyBuilderPreservingUUID() {
-      return new Builder(pmap_);
+      JsonObject tags = deferredTags_;
+      if (tags != null && pmap_ == null) {
+         return new Builder(tags, overrides_, overriddenKeys_);
+      }
+      return new Builder(decoded());
    }
 
    @Override
    public Builder copyBuilderWithNewUUID() {
-      return new Builder(pmap_).generateUUID();
+      return copyBuilderPreservingUUID().generateUUID();
    }
 
    @Override
    public Builder copyBuilderRemovingUUID() {
-      return new Builder(pmap_).uuid(null);
+      return copyBuilderPreservingUUID().uuid(null);
    }
 
    @Override
@@ -265,53 +382,58 @@ public final class DefaultMetadata implements Metadata {
    }
 
    public PropertyMap toPropertyMap() {
-      return pmap_;
+      return decoded();
    }
 
    @Override
    public UUID getUUID() {
-      return pmap_.getUUID(PropertyKey.UUID.key(), null);
+      return decoded().getUUID(PropertyKey.UUID.key(), null);
    }
 
    @Override
    public Integer getBitDepth() {
-      return pmap_.containsKey(BIT_DEPTH.key())
-            ? pmap_.getInteger(BIT_DEPTH.key(), 0) : null;
+      PropertyMap pmap = decoded();
+      return pmap.containsKey(BIT_DEPTH.key())
+            ? pmap.getInteger(BIT_DEPTH.key(), 0) : null;
    }
 
    @Override
    public Double getExposureMs() {
-      return pmap_.containsKey(EXPOSURE_MS.key())
-            ? pmap_.getDouble(EXPOSURE_MS.key(), Double.NaN) : null;
+      PropertyMap pmap = decoded();
+      return pmap.containsKey(EXPOSURE_MS.key())
+            ? pmap.getDouble(EXPOSURE_MS.key(), Double.NaN) : null;
    }
 
    @Override
    @Deprecated
    public Double getElapsedTimeMs() {
-      return pmap_.containsKey(ELAPSED_TIME_MS.key())
-            ? pmap_.getDouble(ELAPSED_TIME_MS.key(), Double.NaN) : null;
+      PropertyMap pmap = decoded();
+      return pmap.containsKey(ELAPSED_TIME_MS.key())
+            ? pmap.getDouble(ELAPSED_TIME_MS.key(), Double.NaN) : null;
    }
 
    @Override
    public double getElapsedTimeMs(double elapsedTimeMs) {
-      return pmap_.getDouble(ELAPSED_TIME_MS.key(), elapsedTimeMs);
+      return decoded().getDouble(ELAPSED_TIME_MS.key(), elapsedTimeMs);
    }
 
    @Override
    public boolean hasElapsedTimeMs() {
-      return pmap_.containsKey(ELAPSED_TIME_MS.key());
+      return decoded().containsKey(ELAPSED_TIME_MS.key());
    }
 
    @Override
    public Integer getBinning() {
-      return pmap_.containsKey(BINNING.key())
-            ? pmap_.getInteger(BINNING.key(), 0) : null;
+      PropertyMap pmap = decoded();
+      return pmap.containsKey(BINNING.key())
+            ? pmap.getInteger(BINNING.key(), 0) : null;
    }
 
    @Override
    public Long getImageNumber() {
-      return pmap_.containsKey(IMAGE_NUMBER.key())
-            ? pmap_.getLong(IMAGE_NUMBER.key(), 0L) : null;
+      PropertyMap pmap = decoded();
+      return pmap.containsKey(IMAGE_NUMBER.key())
+            ? pmap.getLong(IMAGE_NUMBER.key(), 0L) : null;
    }
 
    /**
@@ -320,82 +442,87 @@ public final class DefaultMetadata implements Metadata {
    @Override
    @Deprecated
    public String getPositionName() {
-      return pmap_.getString(POSITION_NAME.key(), null);
+      return decoded().getString(POSITION_NAME.key(), null);
    }
 
    @Override
    public String getPositionName(String defaultPosName) {
-      return pmap_.getString(POSITION_NAME.key(), defaultPosName);
+      return decoded().getString(POSITION_NAME.key(), defaultPosName);
    }
 
    @Override
    public boolean hasPositionName() {
-      return pmap_.containsKey(POSITION_NAME.key());
+      return decoded().containsKey(POSITION_NAME.key());
    }
 
    @Override
    public Double getXPositionUm() {
-      return pmap_.containsKey(X_POSITION_UM.key())
-            ? pmap_.getDouble(X_POSITION_UM.key(), Double.NaN) : null;
+      PropertyMap pmap = decoded();
+      return pmap.containsKey(X_POSITION_UM.key())
+            ? pmap.getDouble(X_POSITION_UM.key(), Double.NaN) : null;
    }
 
    @Override
    public Double getYPositionUm() {
-      return pmap_.containsKey(Y_POSITION_UM.key())
-            ? pmap_.getDouble(Y_POSITION_UM.key(), Double.NaN) : null;
+      PropertyMap pmap = decoded();
+      return pmap.containsKey(Y_POSITION_UM.key())
+            ? pmap.getDouble(Y_POSITION_UM.key(), Double.NaN) : null;
    }
 
    @Override
    public Double getZPositionUm() {
-      return pmap_.containsKey(Z_POSITION_UM.key())
-            ? pmap_.getDouble(Z_POSITION_UM.key(), Double.NaN) : null;
+      PropertyMap pmap = decoded();
+      return pmap.containsKey(Z_POSITION_UM.key())
+            ? pmap.getDouble(Z_POSITION_UM.key(), Double.NaN) : null;
    }
 
    @Override
    public Double getPixelSizeUm() {
-      return pmap_.containsKey(PIXEL_SIZE_UM.key())
-            ? pmap_.getDouble(PIXEL_SIZE_UM.key(), Double.NaN) : null;
+      PropertyMap pmap = decoded();
+      return pmap.containsKey(PIXEL_SIZE_UM.key())
+            ? pmap.getDouble(PIXEL_SIZE_UM.key(), Double.NaN) : null;
    }
 
    @Override
    public AffineTransform getPixelSizeAffine() {
-      return pmap_.getAffineTransform(PIXEL_SIZE_AFFINE.key(), null);
+      return decoded().getAffineTransform(PIXEL_SIZE_AFFINE.key(), null);
    }
 
    @Override
    public String getCamera() {
-      return pmap_.getString(CAMERA.key(), null);
+      return decoded().getString(CAMERA.key(), null);
    }
 
    @Override
    public String getReceivedTime() {
-      return pmap_.getString(RECEIVED_TIME.key(), null);
+      return decoded().getString(RECEIVED_TIME.key(), null);
    }
 
    @Override
    public Rectangle getROI() {
-      return pmap_.getRectangle(ROI.key(), null);
+      return decoded().getRectangle(ROI.key(), null);
    }
 
    @Override
    public Double getPixelAspect() {
-      return pmap_.containsKey(PIXEL_ASPECT.key())
-            ? pmap_.getDouble(PIXEL_ASPECT.key(), Double.NaN) : null;
+      PropertyMap pmap = decoded();
+      return pmap.containsKey(PIXEL_ASPECT.key())
+            ? pmap.getDouble(PIXEL_ASPECT.key(), Double.NaN) : null;
    }
 
    @Override
    public PropertyMap getScopeData() {
-      return pmap_.getPropertyMap(SCOPE_DATA.key(), PropertyMaps.emptyPropertyMap());
+      return decoded().getPropertyMap(SCOPE_DATA.key(), PropertyMaps.emptyPropertyMap());
    }
 
    @Override
    public PropertyMap getUserData() {
-      return pmap_.getPropertyMap(USER_DATA.key(), PropertyMaps.emptyPropertyMap());
+      return decoded().getPropertyMap(USER_DATA.key(), PropertyMaps.emptyPropertyMap());
    }
 
    @Override
    public String getFileName() {
-      return pmap_.getString(FILE_NAME.key(), null);
+      return decoded().getString(FILE_NAME.key(), null);
    }
 
    @Override
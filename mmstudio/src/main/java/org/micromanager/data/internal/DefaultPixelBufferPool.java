@@ -0,0 +1,211 @@
+///////////////////////////////////////////////////////////////////////////////
+//PROJECT:       Micro-Manager
+//SUBSYSTEM:     Data API implementation
+//-----------------------------------------------------------------------------
+//
+// LICENSE:      This file is distributed under the BSD license.
+//               License text is included with the source distribution.
+//
+//               This file is distributed in the hope that it will be useful,
+//               but WITHOUT ANY WARRANTY; without even the implied warranty
+//               of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//
+//               IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+//               CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+//               INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES.
+
+package org.micromanager.data.internal;
+
+import java.lang.reflect.Array;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import org.micromanager.data.PixelBufferPool;
+
+/**
+ * Application-wide pool of pixel arrays.
+ *
+ * <p>Arrays are kept per type and length, and handed out most recently
+ * recycled first (the array may still be in cache). The total size of the
+ * pooled arrays is limited; arrays recycled beyond the limit are left to the
+ * garbage collector, as are arrays of lengths that have not been requested
+ * again. When the requested size changes (e.g. after changing binning), the
+ * old sizes are evicted as the new ones are recycled.
+ */
+public final class DefaultPixelBufferPool implements PixelBufferPool {
+   private static final DefaultPixelBufferPool INSTANCE =
+         new DefaultPixelBufferPool(defaultMaxBytes());
+
+   private final long maxBytes_;
+   // Guarded by monitor on this
+   private final Map<Key, Deque<Object>> buffers_ = new HashMap<>();
+   private long pooledBytes_ = 0;
+
+   private static final class Key {
+      private final Class<?> type_;
+      private final int length_;
+
+      Key(Class<?> type, int length) {
+         type_ = type;
+         length_ = length;
+      }
+
+      @Override
+      public boolean equals(Object other) {
+         if (!(other instanceof Key)) {
+            return false;
+         }
+         Key key = (Key) other;
+         return type_ == key.type_ && length_ == key.length_;
+      }
+
+      @Override
+      public int hashCode() {
+         return 31 * type_.hashCode() + length_;
+      }
+   }
+
+   public static DefaultPixelBufferPool getInstance() {
+      return INSTANCE;
+   }
+
+   // A sixteenth of the heap, but no more than 256 MB
+   private static long defaultMaxBytes() {
+      return Math.min(256L << 20, Runtime.getRuntime().maxMemory() / 16);
+   }
+
+   DefaultPixelBufferPool(long maxBytes) {
+      maxBytes_ = maxBytes;
+   }
+
+   @Override
+   public byte[] getBytes(int length) {
+      byte[] buffer = (byte[]) take(byte[].class, length);
+      return buffer != null ? buffer : new byte[length];
+   }
+
+   @Override
+   public short[] getShorts(int length) {
+      short[] buffer = (short[]) take(short[].class, length);
+      return buffer != null ? buffer : new short[length];
+   }
+
+   @Override
+   public int[] getInts(int length) {
+      int[] buffer = (int[]) take(int[].class, length);
+      return buffer != null ? buffer : new int[length];
+   }
+
+   @Override
+   public float[] getFloats(int length) {
+      float[] buffer = (float[]) take(float[].class, length);
+      return buffer != null ? buffer : new float[length];
+   }
+
+   @Override
+   public Object getBufferLike(Object pixels) {
+      if (pixels instanceof byte[]) {
+         return getBytes(((byte[]) pixels).length);
+      } else if (pixels instanceof short[]) {
+         return getShorts(((short[]) pixels).length);
+      } else if (pixels instanceof int[]) {
+         return getInts(((int[]) pixels).length);
+      } else if (pixels instanceof float[]) {
+         return getFloats(((float[]) pixels).length);
+      }
+      throw new IllegalArgumentException("Unsupported pixel type "
+            + (pixels == null ? "null" : pixels.getClass().getName()));
+   }
+
+   @Override
+   public void recycle(Object buffer) {
+      if (!(buffer instanceof byte[] || buffer instanceof short[]
+            || buffer instanceof int[] || buffer instanceof float[])) {
+         return;
+      }
+      long bytes = sizeOf(buffer);
+      if (bytes == 0 || bytes > maxBytes_) {
+         return;
+      }
+      Key key = new Key(buffer.getClass(), Array.getLength(buffer));
+      synchronized (this) {
+         Deque<Object> deque = buffers_.get(key);
+         if (deque != null) {
+            for (Object pooled : deque) {
+               if (pooled == buffer) {
+                  // Recycled twice; handing it out twice would be disastrous
+                  return;
+               }
+            }
+         }
+         if (pooledBytes_ + bytes > maxBytes_) {
+            evictOtherSizes(key, pooledBytes_ + bytes - maxBytes_);
+            if (pooledBytes_ + bytes > maxBytes_) {
+               return;
+            }
+         }
+         if (deque == null) {
+            deque = new ArrayDeque<>();
+            buffers_.put(key, deque);
+         }
+         deque.addFirst(buffer);
+         pooledBytes_ += bytes;
+      }
+   }
+
+   @Override
+   public synchronized void clear() {
+      buffers_.clear();
+      pooledBytes_ = 0;
+   }
+
+   /**
+    * Total size of the arrays currently held.
+    *
+    * @return the number of bytes
+    */
+   public synchronized long getPooledBytes() {
+      return pooledBytes_;
+   }
+
+   private synchronized Object take(Class<?> type, int length) {
+      Deque<Object> deque = buffers_.get(new Key(type, length));
+      if (deque == null || deque.isEmpty()) {
+         return null;
+      }
+      Object buffer = deque.removeFirst();
+      pooledBytes_ -= sizeOf(buffer);
+      return buffer;
+   }
+
+   // Must be called with monitor on this held
+   private void evictOtherSizes(Key keep, long bytesToFree) {
+      Iterator<Map.Entry<Key, Deque<Object>>> it = buffers_.entrySet().iterator();
+      while (it.hasNext() && bytesToFree > 0) {
+         Map.Entry<Key, Deque<Object>> entry = it.next();
+         if (entry.getKey().equals(keep)) {
+            continue;
+         }
+         for (Object buffer : entry.getValue()) {
+            long size = sizeOf(buffer);
+            pooledBytes_ -= size;
+            bytesToFree -= size;
+         }
+         it.remove();
+      }
+   }
+
+   private static long sizeOf(Object buffer) {
+      if (buffer instanceof byte[]) {
+         return ((byte[]) buffer).length;
+      } else if (buffer instanceof short[]) {
+         return 2L * ((short[]) buffer).length;
+      } else if (buffer instanceof int[]) {
+         return 4L * ((int[]) buffer).length;
+      } else {
+         return 4L * ((float[]) buffer).length;
+      }
+   }
+}
@@ -23,11 +23,9 @@ package org.micromanager.data.internal;
 import com.google.common.eventbus.Subscribe;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import org.micromanager.data.Coords;
@@ -50,7 +48,7 @@ import org.micromanager.internal.utils.ReportingUtils;
  */
 public final class StorageRAM implements RewritableStorage {
    private HashMap<Coords, Image> coordsToImage_;
-   private Map<Coords, List<Coords>> coordsIndexedMissingC_;
+   private final CoordsIndex coordsIndex_;
    private Coords maxIndex_;
    private SummaryMetadata summaryMetadata_;
    private final Set<String> axesInUse_;
@@ -65,7 +63,7 @@ public final class StorageRAM implements RewritableStorage {
       maxIndex_ = new DefaultCoords.Builder().build();
       axesInUse_ = new TreeSet<>();
       summaryMetadata_ = (new DefaultSummaryMetadata.Builder()).build();
-      coordsIndexedMissingC_ = new HashMap<>();
+      coordsIndex_ = new CoordsIndex(coordsToImage_.keySet());
       // It is imperative that we be notified of new images before anyone who
       // wants to retrieve the images from the store is notified.
       ((DefaultDatastore) store).registerForEvents(this, 0);
@@ -85,15 +83,8 @@ public final class StorageRAM implements RewritableStorage {
       // index the coords
       Coords coords = image.getCoords();
       coordsToImage_.put(coords, image);
-      Coords coordsNoC = image.getCoords().copyRemovingAxes(Coords.C);
-      if (!coordsIndexedMissingC_.containsKey(coordsNoC)) {
-         coordsIndexedMissingC_.put(coordsNoC, new ArrayList<>(4));
-      }
-      // since we can insert the same coords multiple times in a rewriteable RAMStore
-      // we need to check if this coord was already present
-      if (!coordsIndexedMissingC_.get(coordsNoC).contains(image.getCoords())) {
-         coordsIndexedMissingC_.get(coordsNoC).add(image.getCoords());
-      }
+      // Adding coords that were already present (overwritten images) is a no-op
+      coordsIndex_.add(coords);
 
       for (String axis : coords.getAxes()) {
          axesInUse_.add(axis);
@@ -167,47 +158,10 @@ public final class StorageRAM implements RewritableStorage {
       if (coordsToImage_ == null) {
          return null;
       }
-      // Optimization: traversing large HashMaps is costly, so avoid that when there is no need
-      // without this, there is noticeable slowdown for one axis data > ~10,000 images.
-      // An alternative optimization approach is to keep collections of coords
-      // for all possible ignoredAxes.  There is more upfront work involved but may be
-      // needed for fast multi-camera imaging.
+      // The index finds the matching coords without traversing all images
       List<Image> result = new ArrayList<>();
-      boolean haveIgnoredAxes = false;
-      for (String axis : ignoreTheseAxes) {
-         if (axesInUse_.contains(axis)) {
-            haveIgnoredAxes = true;
-            break;
-         }
-      }
-      if (!haveIgnoredAxes) {
-         result.add(coordsToImage_.get(coords));
-      } else {
-         // special case: if the ignored axis is C, use a special index to find the Coords
-         // otherwise, the search will be very expensive (which will  be the case for other
-         // axes) and result in noticaeble slowodwns with large datasetsz
-         if (ignoreTheseAxes[0].equals(Coords.CHANNEL)) {
-            if (coordsIndexedMissingC_.get(coords) != null) {
-               for (Coords tmpCoords : coordsIndexedMissingC_.get(coords)) {
-                  result.add(coordsToImage_.get(tmpCoords));
-               }
-            }
-         } else {
-            // Brute force it.  This will be slow with large data sets
-            // Note that coordsToReader_ can be modified at the same time,
-            // catch ConcurrentModificationException rather than incur the cost
-            // of a lock that could slow down insertions
-            try {
-               for (Image image : coordsToImage_.values()) {
-                  Coords imCoord = image.getCoords().copyRemovingAxes(ignoreTheseAxes);
-                  if (imCoord.equals(coords)) {
-                     result.add(image);
-                  }
-               }
-            } catch (ConcurrentModificationException cme) {
-               ReportingUtils.logError(cme, "coordsToReader_ was modified while iterating");
-            }
-         }
+      for (Coords match : coordsIndex_.getMatching(coords, ignoreTheseAxes)) {
+         result.add(coordsToImage_.get(match));
       }
       return result;
    }
@@ -252,17 +206,6 @@ public final class StorageRAM implements RewritableStorage {
    @Subscribe
    public void onNewSummary(DataProviderHasNewSummaryMetadataEvent event) {
       summaryMetadata_ = event.getSummaryMetadata();
-
-      // setSummaryMetadata must be called before adding images to the store, so use this moment
-      // to smartly initialize several HashMaps
-      Coords dims = summaryMetadata_.getIntendedDimensions();
-      int nrImagesNoC = 1;
-      for (String axis : dims.getAxes()) {
-         if (!axis.equals(Coords.CHANNEL)) {
-            nrImagesNoC *= dims.getIndex(axis);
-         }
-      }
-      coordsIndexedMissingC_ = new HashMap<>(nrImagesNoC);
    }
 
    @Override
@@ -276,11 +219,16 @@ public final class StorageRAM implements RewritableStorage {
          throw new IllegalArgumentException("Storage does not contain image at " + coords);
       }
       coordsToImage_.remove(coords);
+      coordsIndex_.remove(coords);
    }
 
    @Override
    public void close() {
+      // The index refers to the map, so empty it to release the images
+      if (coordsToImage_ != null) {
+         coordsToImage_.clear();
+      }
       coordsToImage_ = null;
-      coordsIndexedMissingC_ = null;
+      coordsIndex_.clear();
    }
 }
@@ -0,0 +1,319 @@
+///////////////////////////////////////////////////////////////////////////////
+//PROJECT:       Micro-Manager
+//SUBSYSTEM:     Data API implementation
+//-----------------------------------------------------------------------------
+//
+// LICENSE:      This file is distributed under the BSD license.
+//               License text is included with the source distribution.
+//
+//               This file is distributed in the hope that it will be useful,
+//               but WITHOUT ANY WARRANTY; without even the implied warranty
+//               of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//
+//               IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+//               CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+//               INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES.
+
+package org.micromanager.data.internal;
+
+import com.google.common.eventbus.Subscribe;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import org.micromanager.data.Coords;
+import org.micromanager.data.DataProviderHasNewSummaryMetadataEvent;
+import org.micromanager.data.Datastore;
+import org.micromanager.data.Image;
+import org.micromanager.data.ImagesDifferInSizeException;
+import org.micromanager.data.Metadata;
+import org.micromanager.data.Storage;
+import org.micromanager.data.SummaryMetadata;
+import org.micromanager.internal.utils.ReportingUtils;
+
+/**
+ * RAM-based storage that keeps pixel data outside of the Java heap.
+ *
+ * <p>Pixels are copied into large direct ByteBuffers ("slabs"), so that the
+ * garbage collector never has to trace or move them; only Coords, Metadata
+ * and a small record per image stay on the heap. Images are handed out as
+ * views of the slabs, so that reading an image copies no pixels unless the
+ * caller asks for an array (e.g. {@link Image#getRawPixels()}).
+ *
+ * <p>Adding images is synchronized. Looking up single images does not take
+ * a lock.
+ *
+ * <p>Images cannot be overwritten or deleted; use StorageRAM for
+ * RewritableDatastores. Direct memory is limited by the JVM option
+ * -XX:MaxDirectMemorySize (by default the maximum heap size).
+ */
+public final class StorageRAMOffHeap implements Storage {
+   // Slabs grow with the amount of data stored, within these bounds
+   private static final int MIN_SLAB_BYTES = 16 * 1024 * 1024;
+   private static final int MAX_SLAB_BYTES = 1024 * 1024 * 1024;
+
+   /**
+    * Location of the pixels of one image.
+    */
+   private static final class Entry {
+      private final ByteBuffer slab_;
+      private final int offset_;
+      private final int width_;
+      private final int height_;
+      private final PixelType pixelType_;
+      private final Coords coords_;
+      private final Metadata metadata_;
+
+      Entry(ByteBuffer slab, int offset, Image image, PixelType pixelType) {
+         slab_ = slab;
+         offset_ = offset;
+         width_ = image.getWidth();
+         height_ = image.getHeight();
+         pixelType_ = pixelType;
+         coords_ = image.getCoords();
+         metadata_ = image.getMetadata();
+      }
+
+      int numBytes() {
+         return width_ * height_ * pixelType_.getBytesPerPixel();
+      }
+
+      boolean hasSameSizeAs(Image image) {
+         return width_ == image.getWidth() && height_ == image.getHeight()
+               && pixelType_.getBytesPerPixel() == image.getBytesPerPixel()
+               && pixelType_.getNumberOfComponents() == image.getNumComponents();
+      }
+
+      Image toImage() {
+         // Duplicate so that concurrent readers do not share position/limit
+         ByteBuffer bytes = slab_.duplicate();
+         bytes.limit(offset_ + numBytes()).position(offset_);
+         bytes = bytes.slice().order(ByteOrder.nativeOrder());
+         Buffer pixels = pixelType_.getBytesPerComponent() == 2
+               ? bytes.asShortBuffer() : bytes;
+         return new DefaultImage(pixels, width_, height_, pixelType_, coords_, metadata_);
+      }
+   }
+
+   private final ConcurrentHashMap<Coords, Entry> coordsToEntry_ =
+         new ConcurrentHashMap<>();
+   private final CoordsIndex coordsIndex_ = new CoordsIndex(coordsToEntry_.keySet());
+   private final List<ByteBuffer> slabs_ = new ArrayList<>();
+   private ByteBuffer currentSlab_;
+   private long bytesAllocated_;
+   private volatile Entry anyEntry_;
+   private volatile Coords maxIndex_;
+   private volatile SummaryMetadata summaryMetadata_;
+   private volatile boolean closed_;
+
+   /**
+    * Off-heap image data storage located in RAM.
+    *
+    * @param store Datastore that "owns" this storage.
+    */
+   public StorageRAMOffHeap(Datastore store) {
+      maxIndex_ = new DefaultCoords.Builder().build();
+      summaryMetadata_ = (new DefaultSummaryMetadata.Builder()).build();
+      // It is imperative that we be notified of new images before anyone who
+      // wants to retrieve the images from the store is notified.
+      ((DefaultDatastore) store).registerForEvents(this, 0);
+   }
+
+   /**
+    * Copy the pixels of a new image into our slabs, and update maxIndex_.
+    */
+   @Override
+   public synchronized void putImage(Image image) throws IOException {
+      if (closed_) {
+         throw new IOException("Storage is closed");
+      }
+      Coords coords = image.getCoords();
+      // Check before copying, so that a rejected image takes no slab space
+      if (coordsToEntry_.containsKey(coords)) {
+         throw new IllegalArgumentException("Image at " + coords + " is already stored");
+      }
+      Entry existing = anyEntry_;
+      if (existing != null) {
+         if (!existing.hasSameSizeAs(image)) {
+            throw new ImagesDifferInSizeException();
+         }
+      } else {
+         ImageSizeChecker.checkImageSizeInSummary(summaryMetadata_, image);
+      }
+      Buffer source = pixelBuffer(image);
+      PixelType pixelType = PixelType.valueFor(image.getBytesPerPixel(),
+            source instanceof ShortBuffer ? 2 : 1, image.getNumComponents());
+      int numBytes = image.getWidth() * image.getHeight() * image.getBytesPerPixel();
+
+      ByteBuffer slab = slabWithSpaceFor(numBytes);
+      int offset = slab.position();
+      ByteBuffer target = slab.duplicate();
+      target.limit(offset + numBytes);
+      target = target.slice().order(ByteOrder.nativeOrder());
+      if (source instanceof ShortBuffer) {
+         ShortBuffer shorts = ((ShortBuffer) source).duplicate();
+         shorts.rewind().limit(numBytes / 2);
+         target.asShortBuffer().put(shorts);
+      } else {
+         ByteBuffer bytes = ((ByteBuffer) source).duplicate();
+         bytes.rewind().limit(numBytes);
+         target.put(bytes);
+      }
+      slab.position(offset + numBytes);
+
+      Entry entry = new Entry(slab, offset, image, pixelType);
+      // Publishing the entry makes the pixels written above visible to readers
+      coordsToEntry_.put(coords, entry);
+      coordsIndex_.add(coords);
+      if (anyEntry_ == null) {
+         anyEntry_ = entry;
+      }
+
+      Coords maxIndex = maxIndex_;
+      for (String axis : coords.getAxes()) {
+         if (maxIndex.getIndex(axis) < coords.getIndex(axis)) {
+            maxIndex = maxIndex.copyBuilder().index(axis, coords.getIndex(axis)).build();
+         }
+      }
+      maxIndex_ = maxIndex;
+   }
+
+   private static Buffer pixelBuffer(Image image) {
+      if (image instanceof DefaultImage) {
+         return ((DefaultImage) image).getPixelBuffer();
+      }
+      Object pixels = image.getRawPixels();
+      return BufferTools.wrapArray(pixels, pixels instanceof short[] ? 2 : 1);
+   }
+
+   /**
+    * Return a slab with at least numBytes remaining, allocating a new one if
+    * needed. Each new slab is as large as all previous ones together, so
+    * that small datasets use little memory and large ones few slabs.
+    */
+   private ByteBuffer slabWithSpaceFor(int numBytes) {
+      if (currentSlab_ == null || currentSlab_.remaining() < numBytes) {
+         int size = (int) Math.min(MAX_SLAB_BYTES,
+               Math.max(MIN_SLAB_BYTES, bytesAllocated_));
+         size = Math.max(size, numBytes);
+         currentSlab_ = ByteBuffer.allocateDirect(size);
+         slabs_.add(currentSlab_);
+         bytesAllocated_ += size;
+      }
+      return currentSlab_;
+   }
+
+   @Override
+   public void freeze() {
+      // The Datastore handles making certain writes don't occur, and we don't
+      // do anything special to "finish" storing data, so this is a no-op.
+   }
+
+   @Override
+   public Image getImage(Coords coords) {
+      Entry entry = coordsToEntry_.get(coords);
+      return entry == null ? null : entry.toImage();
+   }
+
+   @Override
+   public Image getAnyImage() {
+      Entry entry = anyEntry_;
+      return entry == null ? null : entry.toImage();
+   }
+
+   @Override
+   public Iterable<Coords> getUnorderedImageCoords() {
+      return coordsToEntry_.keySet();
+   }
+
+   @Override
+   public boolean hasImage(Coords coords) {
+      return coordsToEntry_.containsKey(coords);
+   }
+
+   @Override
+   public List<Image> getImagesMatching(Coords coords) {
+      List<String> ignoredAxes = new ArrayList<>();
+      for (String axis : coordsIndex_.getAxesInUse()) {
+         if (!coords.hasAxis(axis)) {
+            ignoredAxes.add(axis);
+         }
+      }
+      return getImagesIgnoringAxes(coords, ignoredAxes.toArray(new String[0]));
+   }
+
+   @Override
+   public List<Image> getImagesIgnoringAxes(Coords coords, String... ignoreTheseAxes) {
+      List<Image> result = new ArrayList<>();
+      for (Coords match : coordsIndex_.getMatching(coords, ignoreTheseAxes)) {
+         Image image = getImage(match);
+         if (image != null) {
+            result.add(image);
+         }
+      }
+      return result;
+   }
+
+   @Override
+   public int getMaxIndex(String axis) {
+      return maxIndex_.getIndex(axis);
+   }
+
+   @Override
+   public List<String> getAxes() {
+      return summaryMetadata_.getOrderedAxes();
+   }
+
+   @Override
+   public Coords getMaxIndices() {
+      return maxIndex_;
+   }
+
+   @Override
+   public SummaryMetadata getSummaryMetadata() {
+      return summaryMetadata_;
+   }
+
+   /**
+    * Receive the new summary through an event.  This is guaranteed to happen before
+    * putImage is called.
+    *
+    * @param event this gives use the summary metadata
+    */
+   @Subscribe
+   public void onNewSummary(DataProviderHasNewSummaryMetadataEvent event) {
+      summaryMetadata_ = event.getSummaryMetadata();
+   }
+
+   @Override
+   public int getNumImages() {
+      return coordsToEntry_.size();
+   }
+
+   /**
+    * Total size of the off-heap buffers held (none once closed).
+    *
+    * @return number of bytes allocated
+    */
+   public synchronized long getBytesAllocated() {
+      return bytesAllocated_;
+   }
+
+   @Override
+   public synchronized void close() {
+      closed_ = true;
+      coordsToEntry_.clear();
+      coordsIndex_.clear();
+      anyEntry_ = null;
+      // The direct buffers are freed once images handed out are no longer used
+      slabs_.clear();
+      currentSlab_ = null;
+      ReportingUtils.logDebugMessage("Released " + bytesAllocated_
+            + " bytes of off-heap image storage");
+      bytesAllocated_ = 0;
+   }
+}
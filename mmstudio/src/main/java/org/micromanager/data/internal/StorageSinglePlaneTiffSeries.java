@@ -536,10 +536,11 @@ public final class StorageSinglePlaneTiffSeries implements Storage {
          int bytesPerPixel = image.getBytesPerPixel();
          int numComponents = image.getNumComponents();
          ImageProcessor proc;
+         // Conversion buffer, returned to the pool once the file is written
+         int[] rgbPixels = null;
          if (numComponents == 3 && bytesPerPixel == 4) {
             // 32-bit RGB
-            proc = new ColorProcessor(width, height);
-            int[] rgbPixels = new int[width * height];
+            rgbPixels = DefaultPixelBufferPool.getInstance().getInts(width * height);
             byte[] rawPixels = (byte[]) pixels;
             for (int i = 0; i < width * height; i++) {
                rgbPixels[i] = (rawPixels[4 * i + 3] << (Byte.SIZE * 3));
@@ -547,21 +548,20 @@ public final class StorageSinglePlaneTiffSeries implements Storage {
                rgbPixels[i] |= (rawPixels[4 * i + 1] & 0xFF) << (Byte.SIZE * 1);
                rgbPixels[i] |= (rawPixels[4 * i] & 0xFF);
             }
-            ((ColorProcessor) proc).setPixels(rgbPixels);
+            proc = new ColorProcessor(width, height, rgbPixels);
          } else if (numComponents == 1 && bytesPerPixel == 1) {
-            // Byte
-            proc = new ByteProcessor(width, height);
-            proc.setPixels((byte[]) pixels);
+            // Byte; the processor only reads the pixels
+            proc = new ByteProcessor(width, height, (byte[]) pixels, null);
          } else if (numComponents == 1 && bytesPerPixel == 2) {
             // Short
-            proc = new ShortProcessor(width, height);
-            proc.setPixels((short[]) pixels);
+            proc = new ShortProcessor(width, height, (short[]) pixels, null);
          } else {
             throw new IllegalArgumentException(String.format(
                   "Unexpected image format with %d bytes per pixel and %d components",
                   bytesPerPixel, numComponents));
          }
          saveImageProcessor(proc, image, path, tiffFileName, metadataJSON);
+         DefaultPixelBufferPool.getInstance().recycle(rgbPixels);
       } catch (IllegalArgumentException ex) {
          ReportingUtils.logError(ex);
       }
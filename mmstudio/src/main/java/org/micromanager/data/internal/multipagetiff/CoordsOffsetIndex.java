@@ -0,0 +1,355 @@
+///////////////////////////////////////////////////////////////////////////////
+//PROJECT:       Micro-Manager
+//SUBSYSTEM:     Multipage TIFF
+//-----------------------------------------------------------------------------
+//
+// LICENSE:      This file is distributed under the BSD license.
+//               License text is included with the source distribution.
+//
+//               This file is distributed in the hope that it will be useful,
+//               but WITHOUT ANY WARRANTY; without even the implied warranty
+//               of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//
+//               IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+//               CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+//               INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES.
+//
+
+package org.micromanager.data.internal.multipagetiff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import org.micromanager.data.Coords;
+import org.micromanager.data.internal.DefaultCoords;
+
+/**
+ * Map from image coordinates (channel, z, time, position) to file offset,
+ * stored in primitive arrays.
+ *
+ * <p>This is the in-memory form of the index map of a Multipage TIFF file.
+ * Compared to a {@code HashMap<Coords, Long>}, it needs no objects per image
+ * (about 32 bytes per image in total), so that opening files with hundreds
+ * of thousands of images is fast. Entries are kept in insertion order in
+ * parallel arrays and found through an open-addressing hash table of entry
+ * numbers.
+ *
+ * <p>Coords are converted using the axes in
+ * {@link MultipageTiffReader#ALLOWED_AXES}; as in the file format, a missing
+ * axis is the same as index 0. Coords with other axes are never found.
+ *
+ * <p>All methods are thread-safe, so that images can be looked up while the
+ * file is being written.
+ */
+final class CoordsOffsetIndex {
+   /**
+    * Receives the entries of the index.
+    */
+   interface EntryConsumer {
+      void accept(int channel, int z, int time, int position, long offset);
+   }
+
+   static final long NOT_FOUND = -1;
+
+   private static final int NUM_AXES = 4;
+   private static final int CHANNEL = 0;
+   private static final int Z = 1;
+   private static final int TIME = 2;
+   private static final int POSITION = 3;
+
+   // NUM_AXES indices per entry, in ALLOWED_AXES order
+   private int[] indices_;
+   private long[] offsets_;
+   private int size_;
+   // Entry number + 1 for each slot; 0 for empty slots
+   private int[] table_;
+   // Largest index seen along each axis
+   private final int[] maxIndices_ = new int[NUM_AXES];
+
+   CoordsOffsetIndex() {
+      this(16);
+   }
+
+   CoordsOffsetIndex(int expectedSize) {
+      int capacity = Math.max(16, expectedSize);
+      indices_ = new int[NUM_AXES * capacity];
+      offsets_ = new long[capacity];
+      table_ = new int[tableSizeFor(capacity)];
+   }
+
+   private static int tableSizeFor(int capacity) {
+      // Power of 2, at most half full
+      return Integer.highestOneBit(Math.max(1, capacity - 1)) << 2;
+   }
+
+   private static int hash(int channel, int z, int time, int position) {
+      int h = ((channel * 31 + z) * 31 + time) * 31 + position;
+      h *= 0x9E3779B9;
+      return h ^ (h >>> 16);
+   }
+
+   /**
+    * Return the slot holding the given entry, or the empty slot where it
+    * would go.
+    */
+   private int findSlot(int channel, int z, int time, int position) {
+      int mask = table_.length - 1;
+      int slot = hash(channel, z, time, position) & mask;
+      while (true) {
+         int entry = table_[slot] - 1;
+         if (entry < 0) {
+            return slot;
+         }
+         int base = NUM_AXES * entry;
+         if (indices_[base + CHANNEL] == channel && indices_[base + Z] == z
+               && indices_[base + TIME] == time && indices_[base + POSITION] == position) {
+            return slot;
+         }
+         slot = (slot + 1) & mask;
+      }
+   }
+
+   /**
+    * Add an entry, replacing the offset if the coordinates are already
+    * present (so that overwritten images are found at their newest offset).
+    */
+   synchronized void put(int channel, int z, int time, int position, long offset) {
+      int slot = findSlot(channel, z, time, position);
+      int entry = table_[slot] - 1;
+      if (entry >= 0) {
+         offsets_[entry] = offset;
+         return;
+      }
+      if (size_ == offsets_.length) {
+         int capacity = 2 * size_;
+         indices_ = Arrays.copyOf(indices_, NUM_AXES * capacity);
+         offsets_ = Arrays.copyOf(offsets_, capacity);
+         if (tableSizeFor(capacity) > table_.length) {
+            rehash(tableSizeFor(capacity));
+            slot = findSlot(channel, z, time, position);
+         }
+      }
+      int base = NUM_AXES * size_;
+      indices_[base + CHANNEL] = channel;
+      indices_[base + Z] = z;
+      indices_[base + TIME] = time;
+      indices_[base + POSITION] = position;
+      offsets_[size_] = offset;
+      table_[slot] = ++size_;
+      maxIndices_[CHANNEL] = Math.max(maxIndices_[CHANNEL], channel);
+      maxIndices_[Z] = Math.max(maxIndices_[Z], z);
+      maxIndices_[TIME] = Math.max(maxIndices_[TIME], time);
+      maxIndices_[POSITION] = Math.max(maxIndices_[POSITION], position);
+   }
+
+   /**
+    * Add an entry for the given coords.
+    *
+    * @throws IllegalArgumentException if coords has axes other than those of
+    *     the index map
+    */
+   void put(Coords coords, long offset) {
+      if (!hasOnlyIndexedAxes(coords)) {
+         throw new IllegalArgumentException("Coords " + coords
+               + " has axes other than " + MultipageTiffReader.ALLOWED_AXES);
+      }
+      put(coords.getChannel(), coords.getZ(), coords.getT(),
+            coords.getStagePosition(), offset);
+   }
+
+   private void rehash(int tableSize) {
+      table_ = new int[tableSize];
+      int mask = tableSize - 1;
+      for (int entry = 0; entry < size_; ++entry) {
+         int base = NUM_AXES * entry;
+         int slot = hash(indices_[base + CHANNEL], indices_[base + Z],
+               indices_[base + TIME], indices_[base + POSITION]) & mask;
+         while (table_[slot] != 0) {
+            slot = (slot + 1) & mask;
+         }
+         table_[slot] = entry + 1;
+      }
+   }
+
+   synchronized long get(int channel, int z, int time, int position) {
+      int entry = table_[findSlot(channel, z, time, position)] - 1;
+      return entry < 0 ? NOT_FOUND : offsets_[entry];
+   }
+
+   /**
+    * Return the file offset of the image at the given coords.
+    *
+    * @return the offset, or NOT_FOUND
+    */
+   long get(Coords coords) {
+      if (!hasOnlyIndexedAxes(coords)) {
+         return NOT_FOUND;
+      }
+      return get(coords.getChannel(), coords.getZ(), coords.getT(),
+            coords.getStagePosition());
+   }
+
+   boolean containsKey(Coords coords) {
+      return get(coords) != NOT_FOUND;
+   }
+
+   synchronized int size() {
+      return size_;
+   }
+
+   /**
+    * Return the largest index along the given axis.
+    *
+    * @return the index, or -1 if the index is empty or the axis is not one
+    *     of the index map axes
+    */
+   synchronized int getMaxIndex(String axis) {
+      int i = MultipageTiffReader.ALLOWED_AXES.indexOf(axis);
+      return i < 0 || size_ == 0 ? -1 : maxIndices_[i];
+   }
+
+   /**
+    * Pass all entries, in the order they were first added, to the consumer.
+    * The consumer must not modify this index.
+    */
+   synchronized void forEach(EntryConsumer consumer) {
+      for (int entry = 0; entry < size_; ++entry) {
+         int base = NUM_AXES * entry;
+         consumer.accept(indices_[base + CHANNEL], indices_[base + Z],
+               indices_[base + TIME], indices_[base + POSITION], offsets_[entry]);
+      }
+   }
+
+   /**
+    * Create the Coords of all entries. This allocates objects for every
+    * image, so should not be called for each lookup.
+    *
+    * @return a new set of coords
+    */
+   Set<Coords> keySet() {
+      final Set<Coords> result = new HashSet<>();
+      forEach((c, z, t, p, offset) -> result.add(toCoords(c, z, t, p)));
+      return result;
+   }
+
+   /**
+    * The coords of all entries, in the order they were first added. Each
+    * Coords is created as the iteration reaches it, so that iterating does
+    * not hold the coords of all images at once. Entries added after an
+    * iteration has started are not included in it.
+    *
+    * @return the coords
+    */
+   Iterable<Coords> coords() {
+      return () -> new Iterator<Coords>() {
+         private final int size_ = size();
+         private int entry_ = 0;
+
+         @Override
+         public boolean hasNext() {
+            return entry_ < size_;
+         }
+
+         @Override
+         public Coords next() {
+            if (!hasNext()) {
+               throw new NoSuchElementException();
+            }
+            return coordsAt(entry_++);
+         }
+      };
+   }
+
+   private synchronized Coords coordsAt(int entry) {
+      int base = NUM_AXES * entry;
+      return toCoords(indices_[base + CHANNEL], indices_[base + Z],
+            indices_[base + TIME], indices_[base + POSITION]);
+   }
+
+   /**
+    * Find the entries that match the given coords on all axes other than the
+    * ignored ones.
+    *
+    * <p>Rather than scanning all entries, this looks up each combination of
+    * indices along the ignored axes, unless there are more combinations than
+    * entries.
+    *
+    * @param coords      coords to match
+    * @param ignoredAxes axes along which any index matches
+    * @return coords of matching entries
+    */
+   synchronized List<Coords> findMatching(Coords coords, String... ignoredAxes) {
+      List<Coords> result = new ArrayList<>();
+      if (!hasOnlyIndexedAxes(coords)) {
+         return result;
+      }
+      int[] target = {coords.getChannel(), coords.getZ(), coords.getT(),
+            coords.getStagePosition()};
+      boolean[] ignored = new boolean[NUM_AXES];
+      long combinations = 1;
+      for (String axis : ignoredAxes) {
+         int i = MultipageTiffReader.ALLOWED_AXES.indexOf(axis);
+         if (i >= 0 && !ignored[i]) {
+            ignored[i] = true;
+            combinations *= maxIndices_[i] + 1L;
+         }
+      }
+
+      if (combinations > size_) {
+         for (int entry = 0; entry < size_; ++entry) {
+            int base = NUM_AXES * entry;
+            boolean matches = true;
+            for (int i = 0; i < NUM_AXES && matches; ++i) {
+               matches = ignored[i] || indices_[base + i] == target[i];
+            }
+            if (matches) {
+               result.add(toCoords(indices_[base + CHANNEL], indices_[base + Z],
+                     indices_[base + TIME], indices_[base + POSITION]));
+            }
+         }
+         return result;
+      }
+
+      // Odometer over the ignored axes
+      int[] probe = target.clone();
+      for (int i = 0; i < NUM_AXES; ++i) {
+         if (ignored[i]) {
+            probe[i] = 0;
+         }
+      }
+      while (true) {
+         if (table_[findSlot(probe[CHANNEL], probe[Z], probe[TIME], probe[POSITION])] != 0) {
+            result.add(toCoords(probe[CHANNEL], probe[Z], probe[TIME], probe[POSITION]));
+         }
+         int i = 0;
+         while (i < NUM_AXES && (!ignored[i] || probe[i] == maxIndices_[i])) {
+            if (ignored[i]) {
+               probe[i] = 0;
+            }
+            ++i;
+         }
+         if (i == NUM_AXES) {
+            return result;
+         }
+         ++probe[i];
+      }
+   }
+
+   private static boolean hasOnlyIndexedAxes(Coords coords) {
+      for (String axis : coords.getAxes()) {
+         if (!MultipageTiffReader.ALLOWED_AXES.contains(axis)) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   static Coords toCoords(int channel, int z, int time, int position) {
+      return new DefaultCoords.Builder().channel(channel).z(z).t(time)
+            .stagePosition(position).build();
+   }
+}
@@ -31,6 +31,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.ThreadPoolExecutor;
 import org.micromanager.PropertyMap;
 import org.micromanager.data.Coords;
 import org.micromanager.data.Image;
@@ -62,6 +63,7 @@ class FileSet {
    private boolean expectedImageOrder_ = true;
    private int ifdCount_ = 0;
    private StorageMultipageTiff masterStorage_;
+   private final ThreadPoolExecutor writingExecutor_;
    int nextExpectedChannel_ = 0;
    int nextExpectedSlice_ = 0;
    int nextExpectedFrame_ = 0;
@@ -69,10 +71,11 @@ class FileSet {
 
 
    public FileSet(Image firstImage, StorageMultipageTiff masterStorage,
-                  OMEMetadata omeMetadata,
+                  ThreadPoolExecutor writingExecutor, OMEMetadata omeMetadata,
                   boolean splitByXYPosition, boolean separateMetadataFile) throws IOException {
       tiffWriters_ = new LinkedList<>();
       masterStorage_ = masterStorage;
+      writingExecutor_ = writingExecutor;
       omeMetadata_ = omeMetadata;
       splitByXYPosition_ = splitByXYPosition;
       separateMetadataFile_ = separateMetadataFile;
@@ -82,7 +85,7 @@ class FileSet {
       currentTiffFilename_ = baseFilename_ + ".ome.tif";
       currentTiffUUID_ = "urn:uuid:" + UUID.randomUUID();
       //make first writer
-      tiffWriters_.add(new MultipageTiffWriter(masterStorage_,
+      tiffWriters_.add(new MultipageTiffWriter(masterStorage_, writingExecutor_,
             firstImage, currentTiffFilename_));
 
       if (separateMetadataFile_) {
@@ -167,7 +170,7 @@ class FileSet {
          currentTiffFilename_ = baseFilename_ + "_" + tiffWriters_.size() + ".ome.tif";
          currentTiffUUID_ = "urn:uuid:" + UUID.randomUUID();
          ifdCount_ = 0;
-         tiffWriters_.add(new MultipageTiffWriter(masterStorage_,
+         tiffWriters_.add(new MultipageTiffWriter(masterStorage_, writingExecutor_,
                img, currentTiffFilename_));
 
          //Add new filename to image tags
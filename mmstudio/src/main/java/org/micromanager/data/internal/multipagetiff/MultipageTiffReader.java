@@ -33,14 +33,17 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Deque;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
 import javax.swing.SwingUtilities;
 import mmcorej.org.json.JSONException;
 import mmcorej.org.json.JSONObject;
@@ -73,6 +76,10 @@ public final class MultipageTiffReader {
    private static final char STRIP_OFFSETS = MultipageTiffWriter.STRIP_OFFSETS;
    private static final char STRIP_BYTE_COUNTS = MultipageTiffWriter.STRIP_BYTE_COUNTS;
    private static final char MM_METADATA = MultipageTiffWriter.MM_METADATA;
+   private static final char WIDTH = MultipageTiffWriter.WIDTH;
+   private static final char HEIGHT = MultipageTiffWriter.HEIGHT;
+   private static final char BITS_PER_SAMPLE = MultipageTiffWriter.BITS_PER_SAMPLE;
+   private static final char SAMPLES_PER_PIXEL = MultipageTiffWriter.SAMPLES_PER_PIXEL;
 
    // Note: ordering of axes here matches that in MDUtils.getLabel().
    // If you change this, you will need to track down places where the size of
@@ -89,9 +96,19 @@ public final class MultipageTiffReader {
    private SummaryMetadata summaryMetadata_;
    private PropertyMap imageFormatReadFromSummary_;
 
-   private HashMap<Coords, Long> coordsToOffset_;
+   private CoordsOffsetIndex coordsToOffset_;
    private long maxImageOffset_ = Long.MAX_VALUE;
 
+   // Memory-mapped reading (finished files only). The file is mapped in
+   // segments, each overlapping the next by MAPPED_SEGMENT_OVERLAP, so that
+   // files over 2 GB can be mapped and almost all images fall entirely
+   // within one segment. Segments are mapped on first use; pause() drops
+   // them. Images are then served as views of the mapping, without copying.
+   private static final long MAPPED_SEGMENT_SIZE = 1L << 30;
+   private static final long MAPPED_SEGMENT_OVERLAP = 1L << 28;
+   private boolean memoryMapped_ = false;
+   private MappedByteBuffer[] mappedSegments_;
+
    //
    // Buffer allocation and recycling, copied from MultipageTiffWriter
    //
@@ -191,7 +208,7 @@ public final class MultipageTiffReader {
     *
     * @param indexMap Relation between coords and indices.
     */
-   public void setIndexMap(HashMap<Coords, Long> indexMap) {
+   void setIndexMap(CoordsOffsetIndex indexMap) {
       coordsToOffset_ = indexMap;
    }
 
@@ -199,6 +216,19 @@ public final class MultipageTiffReader {
       fileChannel_ = fc;
    }
 
+   /**
+    * Serve images as views of the memory-mapped file rather than reading
+    * them into buffers. Pixel data is then not copied (unless an image's
+    * pixels are requested as an array). Only for files that are no longer
+    * being written.
+    *
+    * @param memoryMapped whether to use memory mapping
+    */
+   synchronized void setMemoryMapped(boolean memoryMapped) {
+      memoryMapped_ = memoryMapped;
+      mappedSegments_ = null;
+   }
+
    /**
     * This constructor is used for opening datasets that have already been saved.
     */
@@ -314,15 +344,51 @@ public final class MultipageTiffReader {
 
 
    /**
-    * Returns the Coords this reader knows about .
+    * Returns the Coords this reader knows about. The Coords are created as
+    * they are iterated over (they are not kept), so use
+    * {@link #hasImage} and {@link #findMatchingCoords} for lookups.
     *
-    * @return Set of known Coords
+    * @return the known Coords
     */
-   public Set<Coords> getIndexKeys() {
+   public Iterable<Coords> getIndexCoords() {
       if (coordsToOffset_ == null) {
-         return null;
+         return Collections.emptyList();
+      }
+      return coordsToOffset_.coords();
+   }
+
+   public int getNumImages() {
+      return coordsToOffset_ == null ? 0 : coordsToOffset_.size();
+   }
+
+   public boolean hasImage(Coords coords) {
+      return coordsToOffset_ != null && coordsToOffset_.containsKey(coords);
+   }
+
+   /**
+    * Returns the largest index along the given axis in this file.
+    *
+    * @param axis the axis
+    * @return the index, or -1 if the file has no images or the axis is not
+    *     one of those of the index map
+    */
+   public int getMaxIndex(String axis) {
+      return coordsToOffset_ == null ? -1 : coordsToOffset_.getMaxIndex(axis);
+   }
+
+   /**
+    * Find images in this file matching the given coords on all but the
+    * ignored axes, using the index map rather than scanning all coords.
+    *
+    * @param coords      coords to match
+    * @param ignoredAxes axes along which any index matches
+    * @return coords of the matching images in this file
+    */
+   public List<Coords> findMatchingCoords(Coords coords, String... ignoredAxes) {
+      if (coordsToOffset_ == null) {
+         return new ArrayList<>();
       }
-      return coordsToOffset_.keySet();
+      return coordsToOffset_.findMatching(coords, ignoredAxes);
    }
 
    private void readSummaryMD() throws IOException {
@@ -424,7 +490,7 @@ public final class MultipageTiffReader {
          throw new InvalidIndexMapException();
       }
       int numMappings = header.getInt(4);
-      coordsToOffset_ = new HashMap<>();
+      coordsToOffset_ = new CoordsOffsetIndex(numMappings);
       maxImageOffset_ = 0;
       ByteBuffer mapBuffer = readIntoBuffer(offset + 8, 20 * numMappings);
       for (int i = 0; i < numMappings; i++) {
@@ -441,20 +507,58 @@ public final class MultipageTiffReader {
          }
          // If a duplicate label is read, forget about the previous one
          // if data has been intentionally overwritten, this gives the most current version
-         DefaultCoords.Builder builder = new DefaultCoords.Builder();
-         builder.channel(channel)
-               .z(slice)
-               .t(frame)
-               .stagePosition(position);
-         coordsToOffset_.put(builder.build(), imageOffset);
+         coordsToOffset_.put(channel, slice, frame, position, imageOffset);
+      }
+   }
+
+   /**
+    * Return the given range of the file: a view of the mapping in
+    * memory-mapped mode, otherwise a newly read buffer.
+    */
+   private ByteBuffer viewOrReadBuffer(long position, int length) throws IOException {
+      ByteBuffer view = memoryMapped_ ? mappedView(position, length) : null;
+      return view != null ? view : readIntoBuffer(position, length);
+   }
+
+   /**
+    * Return a read-only view of the given range of the file, or null if it
+    * does not fit within a single mapped segment.
+    */
+   private synchronized ByteBuffer mappedView(long position, int length) throws IOException {
+      if (mappedSegments_ == null) {
+         long size = fileChannel_.size();
+         mappedSegments_ = new MappedByteBuffer[
+               (int) ((size + MAPPED_SEGMENT_SIZE - 1) / MAPPED_SEGMENT_SIZE)];
+      }
+      int index = (int) (position / MAPPED_SEGMENT_SIZE);
+      long segmentStart = index * MAPPED_SEGMENT_SIZE;
+      if (index >= mappedSegments_.length
+            || position + length > segmentStart + MAPPED_SEGMENT_SIZE + MAPPED_SEGMENT_OVERLAP) {
+         return null;
+      }
+      MappedByteBuffer segment = mappedSegments_[index];
+      if (segment == null) {
+         long segmentLength = Math.min(MAPPED_SEGMENT_SIZE + MAPPED_SEGMENT_OVERLAP,
+               fileChannel_.size() - segmentStart);
+         segment = fileChannel_.map(FileChannel.MapMode.READ_ONLY,
+               segmentStart, segmentLength);
+         mappedSegments_[index] = segment;
       }
+      int offset = (int) (position - segmentStart);
+      if (offset + length > segment.capacity()) {
+         return null; // Beyond end of file
+      }
+      ByteBuffer view = segment.duplicate();
+      view.position(offset).limit(offset + length);
+      return view.slice().order(byteOrder_);
    }
 
    private IFDData readIFD(long byteOffset) throws IOException {
-      ByteBuffer buff = readIntoBuffer(byteOffset, 2);
+      ByteBuffer buff = viewOrReadBuffer(byteOffset, 2);
       int numEntries = buff.getChar(0);
 
-      ByteBuffer entries = readIntoBuffer(byteOffset + 2, numEntries * 12 + 4).order(byteOrder_);
+      ByteBuffer entries = viewOrReadBuffer(byteOffset + 2, numEntries * 12 + 4)
+            .order(byteOrder_);
       IFDData data = new IFDData();
       for (int i = 0; i < numEntries; i++) {
          IFDEntry entry = readDirectoryEntry(i * 12, entries);
@@ -465,6 +569,14 @@ public final class MultipageTiffReader {
             data.pixelOffset = entry.value;
          } else if (entry.tag == STRIP_BYTE_COUNTS) {
             data.bytesPerImage = entry.value;
+         } else if (entry.tag == WIDTH) {
+            data.width = (int) entry.value;
+         } else if (entry.tag == HEIGHT) {
+            data.height = (int) entry.value;
+         } else if (entry.tag == BITS_PER_SAMPLE && entry.count == 1) {
+            data.bitsPerSample = (int) entry.value;
+         } else if (entry.tag == SAMPLES_PER_PIXEL) {
+            data.samplesPerPixel = (int) entry.value;
          }
       }
       data.nextIFD = unsignInt(entries.getInt(numEntries * 12));
@@ -479,6 +591,9 @@ public final class MultipageTiffReader {
    }
 
    private String getString(ByteBuffer buffer) {
+      if (!buffer.hasArray()) {
+         return StandardCharsets.UTF_8.decode(buffer.duplicate()).toString();
+      }
       try {
          return new String(buffer.array(), "UTF-8");
       } catch (UnsupportedEncodingException ex) {
@@ -495,12 +610,12 @@ public final class MultipageTiffReader {
     * @throws IOException When reading fails
     */
    public DefaultImage readImage(Coords coords) throws IOException {
-      if (!coordsToOffset_.containsKey(coords)) {
+      long byteOffset = coordsToOffset_.get(coords);
+      if (byteOffset == CoordsOffsetIndex.NOT_FOUND) {
          // Coordinates not in our map; maybe the writer hasn't finished
          // writing it?
          return null;
       }
-      long byteOffset = coordsToOffset_.get(coords);
       if (fileChannel_ == null) {
          createFileChannel(false);
       }
@@ -511,17 +626,60 @@ public final class MultipageTiffReader {
       }
 
       IFDData data = readIFD(byteOffset);
+      if (memoryMapped_) {
+         DefaultImage image = readMappedImage(coords, data);
+         if (image != null) {
+            return image;
+         }
+      }
       return (DefaultImage) readImage(data);
    }
 
-   private Image readImage(IFDData data) throws IOException {
-      ByteBuffer pixelBuffer = getLargeBuffer((int) data.bytesPerImage, byteOrder_);
-      pixelBuffer.rewind();
-      ByteBuffer mdBuffer = ByteBuffer.allocate((int) data.mdLength).order(byteOrder_);
-      fileChannel_.read(pixelBuffer, data.pixelOffset);
-      fileChannel_.read(mdBuffer, data.mdOffset);
+   /**
+    * Create an image backed by the memory-mapped file, taking the format
+    * from the IFD and the coords from the index map.
+    *
+    * <p>The metadata keeps the parsed tags and decodes them when first read
+    * (see {@link DefaultMetadata#fromMM1Tags}).
+    *
+    * @return the image, or null if this image cannot be mapped (RGB, or not
+    *     within a single mapped segment) or its metadata cannot be parsed, in
+    *     which case the copying path reports the error as before
+    */
+   private DefaultImage readMappedImage(Coords coords, IFDData data) throws IOException {
+      PixelType pixelType;
+      if (data.samplesPerPixel == 1 && data.bitsPerSample == 8) {
+         pixelType = PixelType.GRAY8;
+      } else if (data.samplesPerPixel == 1 && data.bitsPerSample == 16) {
+         pixelType = PixelType.GRAY16;
+      } else {
+         return null;
+      }
+      if (data.width < 1 || data.height < 1) {
+         return null;
+      }
+      ByteBuffer pixelView = mappedView(data.pixelOffset, (int) data.bytesPerImage);
+      ByteBuffer mdView = mappedView(data.mdOffset, (int) data.mdLength);
+      if (pixelView == null || mdView == null) {
+         return null;
+      }
+      JsonElement mdGson = parseImageMetadata(getString(mdView));
+      if (mdGson == null || !mdGson.isJsonObject()) {
+         return null;
+      }
+      // Decoded when first read, as most images are displayed or saved
+      // without their metadata being looked at
+      Metadata metadata = DefaultMetadata.fromMM1Tags(mdGson.getAsJsonObject());
+      Buffer pixels = pixelType == PixelType.GRAY8 ? pixelView : pixelView.asShortBuffer();
+      return new DefaultImage(pixels, data.width, data.height, pixelType, coords, metadata);
+   }
 
-      String mdJSON = getString(mdBuffer);
+   /**
+    * Parse per-image metadata, tolerating a truncated end.
+    *
+    * @return the parsed JSON, or null (after logging) if it cannot be parsed
+    */
+   private static JsonElement parseImageMetadata(String mdJSON) {
       String tmp = mdJSON.substring(mdJSON.length() - 3);
       if (!tmp.substring(0, 2).equals("\"}")) {
          mdJSON = (new StringBuilder(mdJSON.substring(0, mdJSON.length() - 3))).append("\"}")
@@ -530,13 +688,25 @@ public final class MultipageTiffReader {
       JsonParser parser = new JsonParser();
       JsonReader reader = new JsonReader(new StringReader(mdJSON));
       reader.setLenient(true);
-      JsonElement mdGson = null;
       try {
-         mdGson = parser.parse(reader);
+         return parser.parse(reader);
       } catch (JsonSyntaxException jse) {
          ReportingUtils.logError(jse, "Error parsing image metadata.");
          return null;
       }
+   }
+
+   private Image readImage(IFDData data) throws IOException {
+      ByteBuffer pixelBuffer = getLargeBuffer((int) data.bytesPerImage, byteOrder_);
+      pixelBuffer.rewind();
+      ByteBuffer mdBuffer = ByteBuffer.allocate((int) data.mdLength).order(byteOrder_);
+      fileChannel_.read(pixelBuffer, data.pixelOffset);
+      fileChannel_.read(mdBuffer, data.mdOffset);
+
+      JsonElement mdGson = parseImageMetadata(getString(mdBuffer));
+      if (mdGson == null) {
+         return null;
+      }
 
       try {
          PropertyMap formatPmap = NonPropertyMapJSONFormats.imageFormat()
@@ -700,6 +870,10 @@ public final class MultipageTiffReader {
     * @throws IOException Accessing disk can cause these
     */
    void pause() throws IOException {
+      synchronized (this) {
+         // Unmapped once no longer referenced (including by images)
+         mappedSegments_ = null;
+      }
       if (fileChannel_ != null) {
          fileChannel_.close();
          fileChannel_ = null;
@@ -741,7 +915,7 @@ public final class MultipageTiffReader {
    // writer from putting in the index map, comments, channels, and OME XML in
    // the ImageDescription tag location
    private void fixIndexMap(final long firstIFD, final String fileName) throws IOException {
-      coordsToOffset_ = new HashMap<>();
+      coordsToOffset_ = new CoordsOffsetIndex();
       long progBarMax = (fileChannel_.size() / 2L);
       final ProgressBar progressBar = new ProgressBar(null, "Fixing " + fileName, 0,
             progBarMax >= Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) progBarMax);
@@ -820,26 +994,14 @@ public final class MultipageTiffReader {
       //Write 4 byte header, 4 byte number of entries, and 20 bytes for each
       //entry
       int numMappings = coordsToOffset_.size();
-      ByteBuffer buffer = ByteBuffer.allocate(8 + 20 * numMappings).order(byteOrder_);
+      final ByteBuffer buffer = ByteBuffer.allocate(8 + 20 * numMappings).order(byteOrder_);
       buffer.putInt(0, MultipageTiffWriter.INDEX_MAP_HEADER);
       buffer.putInt(4, numMappings);
-      int position = 2;
-      for (Coords coords : coordsToOffset_.keySet()) {
-         for (String axis : ALLOWED_AXES) {
-            buffer.putInt(4 * position, coords.getIndex(axis));
-            position++;
-         }
-         // TODO: this probably doesn't help our performance any, but I want
-         // the extra logging just in case.
-         for (String axis : coords.getAxes()) {
-            if (!ALLOWED_AXES.contains(axis)) {
-               ReportingUtils.logError("Axis " + axis
-                     + " is ignored because it is not one of " + ALLOWED_AXES);
-            }
-         }
-         buffer.putInt(4 * position, coordsToOffset_.get(coords).intValue());
-         position++;
-      }
+      buffer.position(8);
+      coordsToOffset_.forEach((channel, z, time, position, offset) ->
+            buffer.putInt(channel).putInt(z).putInt(time).putInt(position)
+                  .putInt((int) offset));
+      buffer.rewind();
       fileChannel_.write(buffer, filePosition);
 
       ByteBuffer header = ByteBuffer.allocate(8).order(byteOrder_);
@@ -854,6 +1016,10 @@ public final class MultipageTiffReader {
       public long bytesPerImage;
       public long mdOffset;
       public long mdLength;
+      public int width;
+      public int height;
+      public int bitsPerSample;
+      public int samplesPerPixel;
       public long nextIFD;
       public long nextIFDOffsetLocation;
 
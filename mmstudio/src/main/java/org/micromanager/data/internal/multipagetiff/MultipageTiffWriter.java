@@ -26,20 +26,25 @@ package org.micromanager.data.internal.multipagetiff;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 import ij.io.TiffDecoder;
 import ij.process.LUT;
 import java.awt.Color;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.CharBuffer;
+import java.nio.ShortBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayDeque;
 import java.util.Deque;
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -57,6 +62,7 @@ import org.micromanager.data.internal.DefaultSummaryMetadata;
 import org.micromanager.data.internal.PropertyKey;
 import org.micromanager.display.ChannelDisplaySettings;
 import org.micromanager.display.DisplaySettings;
+import org.micromanager.display.internal.DefaultChannelDisplaySettings;
 import org.micromanager.display.internal.DefaultDisplaySettings;
 import org.micromanager.display.internal.RememberedDisplaySettings;
 import org.micromanager.internal.MMStudio;
@@ -111,6 +117,7 @@ public final class MultipageTiffWriter {
    private RandomAccessFile raFile_;
    private FileChannel fileChannel_;
    private final ThreadPoolExecutor writingExecutor_;
+   private final WritingQueueBudget writingBudget_;
    private long filePosition_ = 0;
    //current position of the dynamically written index map
    private long indexMapPosition_;
@@ -121,7 +128,7 @@ public final class MultipageTiffWriter {
    private int numSlices_;
    private int numFrames_;
    private List<String> orderedAxes_;
-   private final HashMap<Coords, Long> coordsToOffset_;
+   private final CoordsOffsetIndex coordsToOffset_;
    private long nextIFDOffsetLocation_ = -1;
    private final boolean rgb_;
    private final int byteDepth_;
@@ -139,17 +146,28 @@ public final class MultipageTiffWriter {
    //Reader associated with this file
    private final MultipageTiffReader reader_;
    private long blankPixelsOffset_ = -1;
+   // Per-image metadata is serialized (on the thread calling writeImage())
+   // into a reused byte stream, then copied into a pooled buffer.
+   private final Gson gson_ = new GsonBuilder().disableHtmlEscaping().create();
+   private final MetadataByteStream mdByteStream_ = new MetadataByteStream();
+   private final Writer mdWriter_ = new OutputStreamWriter(mdByteStream_,
+         StandardCharsets.UTF_8);
+   // Metadata serialized by hasSpaceToWrite(), to be used by writeImage()
+   private Image serializedImage_;
+   private ByteBuffer serializedMetadata_;
 
    /**
     * Class writing Multipage Tiffs to disk.
     *
-    * @param masterStorage Associated Storage instance
-    * @param firstImage    image, needed to deduce certain metadata
-    * @param filename      where to store the data
+    * @param masterStorage   Associated Storage instance
+    * @param writingExecutor single-thread executor performing the file writes
+    * @param firstImage      image, needed to deduce certain metadata
+    * @param filename        where to store the data
     * @throws IOException can happen when writing/reading to disk
     */
    public MultipageTiffWriter(
          final StorageMultipageTiff masterStorage,
+         final ThreadPoolExecutor writingExecutor,
          final Image firstImage,
          final String filename)
          throws IOException {
@@ -227,8 +245,9 @@ public final class MultipageTiffWriter {
                "Insufficent space on disk: no room to write data");
       }
       fileChannel_ = raFile_.getChannel();
-      writingExecutor_ = masterStorage_.getWritingExecutor();
-      coordsToOffset_ = new HashMap<>();
+      writingExecutor_ = writingExecutor;
+      writingBudget_ = masterStorage_.getWritingBudget();
+      coordsToOffset_ = new CoordsOffsetIndex();
       reader_.setFileChannel(fileChannel_);
       reader_.setIndexMap(coordsToOffset_);
       buffers_ = new LinkedList<>();
@@ -331,12 +350,79 @@ public final class MultipageTiffWriter {
                pooledBuffers_.removeLast(); // Discard oldest
             }
             pooledBuffers_.addFirst(b);
+         } else if (b.capacity() == pooledMetadataBufferCapacity_) {
+            if (pooledMetadataBuffers_.size() == BUFFER_POOL_SIZE) {
+               pooledMetadataBuffers_.removeLast();
+            }
+            pooledMetadataBuffers_.addFirst(b);
+         }
+      }
+   }
+
+   // Per-image metadata buffers are pooled the same way. Their capacity is
+   // rounded up so that small variations in metadata length (e.g. the number
+   // of digits in a time stamp) still hit the pool; the limit is set to the
+   // actual length.
+
+   private static final int METADATA_BUFFER_GRANULARITY = 4096;
+   private static final Deque<ByteBuffer> pooledMetadataBuffers_ =
+         new ArrayDeque<>(Math.max(1, BUFFER_POOL_SIZE));
+   private static int pooledMetadataBufferCapacity_ = 0;
+
+   private static ByteBuffer getMetadataBuffer(int length) {
+      int capacity = (length + METADATA_BUFFER_GRANULARITY - 1)
+            / METADATA_BUFFER_GRANULARITY * METADATA_BUFFER_GRANULARITY;
+      ByteBuffer b = null;
+      if (BUFFER_POOL_SIZE > 0) {
+         synchronized (MultipageTiffWriter.class) {
+            if (capacity != pooledMetadataBufferCapacity_) {
+               pooledMetadataBuffers_.clear();
+               pooledMetadataBufferCapacity_ = capacity;
+            }
+            b = pooledMetadataBuffers_.pollFirst();
          }
       }
+      if (b == null) {
+         b = allocateByteBuffer(capacity);
+      }
+      b.order(BYTE_ORDER).clear();
+      b.limit(length);
+      return b;
+   }
+
+   /**
+    * ByteArrayOutputStream giving access to its buffer without copying.
+    */
+   private static final class MetadataByteStream extends ByteArrayOutputStream {
+      MetadataByteStream() {
+         super(METADATA_BUFFER_GRANULARITY);
+      }
+
+      /**
+       * Copy the content into a pooled buffer, followed by a null byte.
+       */
+      ByteBuffer toNullTerminatedBuffer() {
+         ByteBuffer b = getMetadataBuffer(count + 1);
+         b.put(buf, 0, count).put((byte) 0);
+         b.rewind();
+         return b;
+      }
    }
 
    private void executeWritingTask(Runnable writingTask) {
-      writingExecutor_.execute(writingTask);
+      executeWritingTask(writingTask, 0);
+   }
+
+   /**
+    * Queue a task for the writing thread, blocking while more than the
+    * configured number of bytes are waiting to be written.
+    */
+   private void executeWritingTask(Runnable writingTask, long bytes) {
+      if (writingBudget_ == null) {
+         writingExecutor_.execute(writingTask);
+      } else {
+         writingBudget_.execute(writingExecutor_, bytes, writingTask);
+      }
    }
 
    private void fileChannelWrite(final ByteBuffer buffer, final long position) {
@@ -348,10 +434,14 @@ public final class MultipageTiffWriter {
             ReportingUtils.logError(e);
          }
          tryRecycleLargeBuffer(buffer);
-      });
+      }, buffer.limit());
    }
 
    private void fileChannelWrite(final ByteBuffer[] buffers) {
+      long bytes = 0;
+      for (ByteBuffer buffer : buffers) {
+         bytes += buffer.remaining();
+      }
       executeWritingTask(() -> {
          try {
             fileChannel_.write(buffers);
@@ -361,14 +451,14 @@ public final class MultipageTiffWriter {
          for (ByteBuffer buffer : buffers) {
             tryRecycleLargeBuffer(buffer);
          }
-      });
+      }, bytes);
    }
 
    public MultipageTiffReader getReader() {
       return reader_;
    }
 
-   public HashMap<Coords, Long> getIndexMap() {
+   CoordsOffsetIndex getIndexMap() {
       return coordsToOffset_;
    }
 
@@ -443,6 +533,7 @@ public final class MultipageTiffWriter {
       }
       synchronized (MultipageTiffWriter.class) {
          pooledBuffers_.clear();
+         pooledMetadataBuffers_.clear();
       }
    }
 
@@ -503,8 +594,13 @@ public final class MultipageTiffWriter {
     */
    public boolean hasSpaceToWrite(Image img, int omeMDLength) {
       boolean splitByFrame = true;
-      PropertyMap mdPmap = ((DefaultMetadata) img.getMetadata()).toPropertyMap();
-      int mdLength = NonPropertyMapJSONFormats.metadata().toJSON(mdPmap).length();
+      // Keep the serialized metadata for writeImage(), which usually follows
+      if (serializedMetadata_ != null) {
+         tryRecycleLargeBuffer(serializedMetadata_);
+      }
+      serializedImage_ = img;
+      serializedMetadata_ = serializeImageMetadata(img);
+      int mdLength = serializedMetadata_.remaining();
       int ifdsize = ENTRIES_PER_IFD * 12 + 4 + 16;
       int channelsLeft = numChannels_ - img.getCoords().getC();
       int slicesLeft = numSlices_ - img.getCoords().getZ();
@@ -567,23 +663,8 @@ public final class MultipageTiffWriter {
     * @throws IOException can happen
     */
    public void writeImage(Image img) throws IOException {
-      if (writingExecutor_ != null) {
-         int queueSize = writingExecutor_.getQueue().size();
-         int attemptCount = 0;
-         while (queueSize > 20) {
-            if (attemptCount == 0) {
-               ReportingUtils.logMessage("Warning: writing queue behind by "
-                     + queueSize + " images.");
-            }
-            ++attemptCount;
-            try {
-               Thread.sleep(5);
-               queueSize = writingExecutor_.getQueue().size();
-            } catch (InterruptedException ex) {
-               ReportingUtils.logError(ex);
-            }
-         }
-      }
+      // Backpressure (if the disk cannot keep up) is applied when the
+      // buffers are queued for writing; see executeWritingTask().
       long offset = filePosition_;
       writeIFD(img);
       addToIndexMap(img.getCoords(), offset);
@@ -593,7 +674,8 @@ public final class MultipageTiffWriter {
    private void addToIndexMap(Coords coords, long offset) {
       // If a duplicate key is received, forget about the previous one
       // this allows overwriting of images without loss of data
-      coordsToOffset_.put(coords, offset);
+      coordsToOffset_.put(coords.getChannel(), coords.getZ(), coords.getT(),
+            coords.getStagePosition(), offset);
       ByteBuffer buffer = allocateByteBuffer(20);
       int bufOffset = 0;
       for (String axis : MultipageTiffReader.ALLOWED_AXES) {
@@ -622,20 +704,43 @@ public final class MultipageTiffWriter {
       fileChannelWrite(buffs);
    }
 
-   private void writeIFD(Image img) {
+   /**
+    * Serialize the image format, coords, and metadata as UTF-8 JSON,
+    * null-terminated, without going through a String.
+    */
+   private ByteBuffer serializeImageMetadata(Image img) {
       JsonObject jo = new JsonObject();
       NonPropertyMapJSONFormats.imageFormat().addToGson(jo,
             ((DefaultImage) img).formatToPropertyMap());
       NonPropertyMapJSONFormats.coords().addToGson(jo,
             ((DefaultCoords) img.getCoords()).toPropertyMap());
-      NonPropertyMapJSONFormats.metadata().addToGson(jo,
-            ((DefaultMetadata) img.getMetadata()).toPropertyMap());
-      Gson gson = new GsonBuilder().disableHtmlEscaping().create();
-      String mdJSON = gson.toJson(jo);
+      ((DefaultMetadata) img.getMetadata()).addToMM1Gson(jo);
 
-      byte[] mdBytes = getBytesFromString(mdJSON + " "); // Space for null
-      // Null-terminate buffer.
-      mdBytes[mdBytes.length - 1] = 0;
+      mdByteStream_.reset();
+      try {
+         JsonWriter jsonWriter = gson_.newJsonWriter(mdWriter_);
+         gson_.toJson(jo, jsonWriter);
+         jsonWriter.flush();
+      } catch (IOException unexpected) {
+         // Writing to memory
+         throw new RuntimeException(unexpected);
+      }
+      return mdByteStream_.toNullTerminatedBuffer();
+   }
+
+   private void writeIFD(Image img) {
+      ByteBuffer mdBuffer;
+      if (img == serializedImage_) {
+         mdBuffer = serializedMetadata_;
+      } else {
+         if (serializedMetadata_ != null) {
+            tryRecycleLargeBuffer(serializedMetadata_);
+         }
+         mdBuffer = serializeImageMetadata(img);
+      }
+      serializedImage_ = null;
+      serializedMetadata_ = null;
+      int mdLength = mdBuffer.remaining();
 
       // 2 bytes for number of directory entries,
       // 12 bytes per directory entry,
@@ -689,8 +794,8 @@ public final class MultipageTiffWriter {
          ijMetadataTagPosition_ = filePosition_ + bufferPosition_;
          writeIFDEntry(ifdBuffer, charView, IJ_METADATA, (char) 1, 0, 0);
       }
-      writeIFDEntry(ifdBuffer, charView, MM_METADATA, (char) 2, mdBytes.length, tagDataOffset);
-      tagDataOffset += mdBytes.length;
+      writeIFDEntry(ifdBuffer, charView, MM_METADATA, (char) 2, mdLength, tagDataOffset);
+      tagDataOffset += mdLength;
       //NextIFDOffset
       ifdBuffer.putInt(bufferPosition_, (int) tagDataOffset);
       bufferPosition_ += 4;
@@ -703,9 +808,9 @@ public final class MultipageTiffWriter {
       buffers_.add(ifdBuffer);
       buffers_.add(getPixelBuffer(img.getRawPixels()));
       buffers_.add(getResolutionValuesBuffer());
-      buffers_.add(ByteBuffer.wrap(mdBytes));
+      buffers_.add(mdBuffer);
 
-      int totalBytes = 2 + numEntries * 12 + 4 + (rgb_ ? 6 : 0) + 16 + mdBytes.length
+      int totalBytes = 2 + numEntries * 12 + 4 + (rgb_ ? 6 : 0) + 16 + mdLength
             + bytesPerImagePixels_;
       filePosition_ += totalBytes;
       firstIFD_ = false;
@@ -744,52 +849,28 @@ public final class MultipageTiffWriter {
 
    private ByteBuffer getPixelBuffer(Object pixels) {
       if (rgb_) {
+         // Drop the alpha channel and swap R and B for the TIFF format,
+         // straight into a pooled buffer
          if (byteDepth_ == 1) {
             byte[] originalPix = (byte[]) pixels;
-            byte[] rgbaPix = new byte[originalPix.length * 3 / 4];
-            int count = 0;
-            for (int i = 0; i < originalPix.length; i++) {
-               //skip alpha channel
-               if ((i + 1) % 4 != 0) {
-                  //swap R and B for correct format
-                  switch ((i + 1) % 4) {
-                     case 1:
-                        rgbaPix[count] = originalPix[i + 2];
-                        break;
-                     case 3:
-                        rgbaPix[count] = originalPix[i - 2];
-                        break;
-                     default:
-                        rgbaPix[count] = originalPix[i];
-                        break;
-                  }
-                  count++;
-               }
+            int numPixels = originalPix.length / 4;
+            ByteBuffer buffer = getLargeBuffer(numPixels * 3);
+            for (int p = 0; p < numPixels; p++) {
+               buffer.put(3 * p, originalPix[4 * p + 2]);
+               buffer.put(3 * p + 1, originalPix[4 * p + 1]);
+               buffer.put(3 * p + 2, originalPix[4 * p]);
             }
-            return ByteBuffer.wrap(rgbaPix);
+            return buffer;
          } else {
             short[] originalPix = (short[]) pixels;
-            short[] rgbaPix = new short[originalPix.length * 3 / 4];
-            int count = 0;
-            for (int i = 0; i < originalPix.length; i++) {
-               if ((i + 1) % 4 != 0) {
-                  //swap R and B for correct format
-                  switch ((i + 1) % 4) {
-                     case 1:
-                        rgbaPix[count] = originalPix[i + 2];
-                        break;
-                     case 3:
-                        rgbaPix[count] = originalPix[i - 2];
-                        break;
-                     default:
-                        rgbaPix[count] = originalPix[i];
-                        break;
-                  }
-                  count++;
-               }
+            int numPixels = originalPix.length / 4;
+            ByteBuffer buffer = getLargeBuffer(numPixels * 3 * 2);
+            ShortBuffer shorts = buffer.asShortBuffer();
+            for (int p = 0; p < numPixels; p++) {
+               shorts.put(3 * p, originalPix[4 * p + 2]);
+               shorts.put(3 * p + 1, originalPix[4 * p + 1]);
+               shorts.put(3 * p + 2, originalPix[4 * p]);
             }
-            ByteBuffer buffer = getLargeBuffer(rgbaPix.length * 2);
-            buffer.asShortBuffer().put(rgbaPix);
             return buffer;
          }
       } else {
@@ -903,8 +984,7 @@ public final class MultipageTiffWriter {
       if (ds == null) {
          for (int ch = 0; ch < numChannels; ch++) {
             String name = summary.getSafeChannelName(ch);
-            ChannelDisplaySettings cds = RememberedDisplaySettings.loadChannel(
-                  MMStudio.getInstance(), channelGroup, name, null);
+            ChannelDisplaySettings cds = rememberedChannelSettings(channelGroup, name);
             // Display Ranges: For each channel, write min then max
             // TODO: doesn't handle multi-component images.
             mdBuffer.putDouble(bufferPosition, (double)
@@ -931,8 +1011,7 @@ public final class MultipageTiffWriter {
          Color color;
          if (ds == null) {
             String name = summary.getSafeChannelName(ch);
-            color = RememberedDisplaySettings.loadChannel(
-                  MMStudio.getInstance(), channelGroup, name, null).getColor();
+            color = rememberedChannelSettings(channelGroup, name).getColor();
          } else {
             color = ds.getChannelColor(ch);
          }
@@ -957,6 +1036,20 @@ public final class MultipageTiffWriter {
       filePosition_ += mdBufferSize;
    }
 
+   /**
+    * Channel settings remembered by the application, or the defaults when
+    * writing without it.
+    */
+   private static ChannelDisplaySettings rememberedChannelSettings(String channelGroup,
+                                                                   String channelName) {
+      MMStudio studio = MMStudio.getInstance();
+      if (studio == null) {
+         return DefaultChannelDisplaySettings.builder().groupName(channelGroup)
+               .name(channelName).component(1).build();
+      }
+      return RememberedDisplaySettings.loadChannel(studio, channelGroup, channelName, null);
+   }
+
    private void writeImageDescription(String text, long imageDescriptionTagOffset) {
       byte[] bytes = getBytesFromString(text + " ");
       // Null-terminate string
@@ -19,6 +19,7 @@
 
 package org.micromanager.data.internal.multipagetiff;
 
+import com.google.common.collect.Iterables;
 import com.google.common.eventbus.Subscribe;
 import ij.ImageJ;
 import java.awt.Component;
@@ -26,11 +27,12 @@ import java.awt.GraphicsEnvironment;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.AbstractCollection;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -38,6 +40,7 @@ import java.util.Set;
 import java.util.TreeSet;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -52,6 +55,7 @@ import org.micromanager.data.Datastore;
 import org.micromanager.data.Image;
 import org.micromanager.data.Storage;
 import org.micromanager.data.SummaryMetadata;
+import org.micromanager.data.internal.CoordsIndex;
 import org.micromanager.data.internal.DefaultCoords;
 import org.micromanager.data.internal.DefaultDatastore;
 import org.micromanager.data.internal.DefaultImage;
@@ -65,6 +69,8 @@ import org.micromanager.internal.utils.MMException;
 import org.micromanager.internal.utils.ProgressBar;
 import org.micromanager.internal.utils.ReportingUtils;
 import org.micromanager.internal.utils.ThreadFactoryFactory;
+import org.micromanager.internal.utils.performance.PerformanceMonitor;
+import org.micromanager.internal.utils.performance.gui.PerformanceMonitorUI;
 
 
 /**
@@ -79,6 +85,13 @@ public final class StorageMultipageTiff implements Storage {
          "generate a metadata file when saving datasets as multipage TIFF files";
    private static final String SHOULD_USE_SEPARATE_FILES_FOR_POSITIONS =
          "generate a separate multipage TIFF file for each stage position";
+   private static final String SHOULD_USE_WRITER_THREAD_PER_FILE =
+         "write each multipage TIFF file series on its own thread";
+   private static final String SHOULD_MEMORY_MAP_FILES =
+         "memory-map multipage TIFF files when opening saved datasets";
+   private static final String WRITING_QUEUE_SIZE_MB =
+         "maximum megabytes of image data waiting to be written to disk";
+   public static final int DEFAULT_WRITING_QUEUE_SIZE_MB = 128;
    private static final HashSet<String> ALLOWED_AXES = new HashSet<>(
          Arrays.asList(Coords.CHANNEL, Coords.T, Coords.Z,
                Coords.STAGE_POSITION));
@@ -93,11 +106,22 @@ public final class StorageMultipageTiff implements Storage {
    private final String directory_;
    private final boolean separateMetadataFile_;
    private boolean splitByXYPosition_ = true;
+   private boolean writerThreadPerFileSet_ = false;
+   private final boolean memoryMapFiles_;
    private volatile boolean finished_ = false;
    private OMEMetadata omeMetadata_;
    private int lastFrame_ = 0;
    private int lastAcquiredPosition_ = 0;
+   // Executor shared by all FileSets, unless writerThreadPerFileSet_ is set,
+   // in which case each FileSet gets its own (in fileSetExecutors_). Either
+   // way, everything written to a given file goes through one single-thread
+   // executor, so ordering within each file is deterministic.
    private ThreadPoolExecutor writingExecutor_;
+   private final Map<Integer, ThreadPoolExecutor> fileSetExecutors_ = new HashMap<>();
+   private long writingQueueMaxBytes_ = DEFAULT_WRITING_QUEUE_SIZE_MB * 1024L * 1024L;
+   private WritingQueueBudget writingBudget_;
+   private final PerformanceMonitor perfMon_ =
+         PerformanceMonitor.createWithTimeConstantMs(1000.0);
    private Image firstImage_;
 
    // Images that are currently being written. We keep them around until
@@ -110,10 +134,34 @@ public final class StorageMultipageTiff implements Storage {
    // Map of position indices to objects associated with each
    private HashMap<Integer, FileSet> positionToFileSet_;
 
-   // Map of image Coords to files
+   // Map of image Coords to files, for images we write; read by the display
+   // while we write
    private Map<Coords, MultipageTiffReader> coordsToReader_;
+   // Files opened from disk. Their images are found through the index map of
+   // each file, so that no Coords need to be kept for them.
+   private final CopyOnWriteArrayList<MultipageTiffReader> loadedReaders_ =
+         new CopyOnWriteArrayList<>();
+   // All readers (loaded and written), each once
+   private final CopyOnWriteArrayList<MultipageTiffReader> readers_ = new CopyOnWriteArrayList<>();
    private MultipageTiffReader lastReader_;
-   private Map<Coords, List<Coords>> coordsIndexedMissingC_;
+   // Finds the coords in coordsToReader_ matching getImagesIgnoringAxes()
+   // queries. Refers to the current map, which setSummaryMetadata() replaces.
+   private final CoordsIndex coordsIndex_ = new CoordsIndex(new AbstractCollection<Coords>() {
+      @Override
+      public Iterator<Coords> iterator() {
+         return coordsToReader_.keySet().iterator();
+      }
+
+      @Override
+      public int size() {
+         return coordsToReader_.size();
+      }
+
+      @Override
+      public boolean contains(Object coords) {
+         return coordsToReader_.containsKey(coords);
+      }
+   });
    // Cache the axes that are in use
    private final Set<String> axesInUse_;
    // Keeps track of our maximum extent along each axis.
@@ -124,7 +172,9 @@ public final class StorageMultipageTiff implements Storage {
                                Boolean amInWriteMode)
          throws IOException {
       this(parent, store, dir, amInWriteMode, getShouldGenerateMetadataFile(),
-            getShouldSplitPositions());
+            getShouldSplitPositions(), !amInWriteMode && getShouldMemoryMapFiles());
+      setWritingQueueMaxBytes(getWritingQueueSizeMB() * 1024L * 1024L);
+      setWriterThreadPerFileSet(getShouldUseWriterThreadPerFile());
    }
 
    /**
@@ -144,6 +194,30 @@ public final class StorageMultipageTiff implements Storage {
    public StorageMultipageTiff(Component parent, Datastore store, String dir,
                                boolean amInWriteMode, boolean separateMDFile,
                                boolean separateFilesForPositions) throws IOException {
+      this(parent, store, dir, amInWriteMode, separateMDFile,
+            separateFilesForPositions, false);
+   }
+
+   /**
+    * Constructor that doesn't make reference to MMStudio so it can be used
+    * independently of MM GUI.
+    *
+    * @param parent                    GUI element on top of which a ProgressBar
+    *                                  (or other things) can be displayed
+    * @param store                     Datastore to be saved
+    * @param dir                       Directory in which to store the data
+    * @param amInWriteMode             whether or not we are also writing data
+    * @param separateMDFile            Whether or not to write a separate file with the MM metadata
+    * @param separateFilesForPositions If true, will store positions in separate files,
+    *                                  otherwise all data will go into a single file
+    * @param memoryMapFiles            When opening existing data (not in write mode),
+    *                                  serve images from memory-mapped files
+    * @throws java.io.IOException can happen
+    */
+   public StorageMultipageTiff(Component parent, Datastore store, String dir,
+                               boolean amInWriteMode, boolean separateMDFile,
+                               boolean separateFilesForPositions, boolean memoryMapFiles)
+         throws IOException {
       store_ = (DefaultDatastore) store;
       parent_ = parent;
       // We must be notified of changes in the Datastore before everyone else,
@@ -151,12 +225,13 @@ public final class StorageMultipageTiff implements Storage {
       store_.registerForEvents(this, 0);
       separateMetadataFile_ = separateMDFile;
       splitByXYPosition_ = separateFilesForPositions;
+      memoryMapFiles_ = memoryMapFiles && !amInWriteMode;
 
       amInWriteMode_ = amInWriteMode;
       directory_ = dir;
       store_.setSavePath(directory_);
       store_.setName(new File(directory_).getName());
-      coordsToReader_ = new HashMap<>();
+      coordsToReader_ = new ConcurrentHashMap<>();
       axesInUse_ = new TreeSet<>();
 
       if (amInWriteMode_) {
@@ -196,6 +271,54 @@ public final class StorageMultipageTiff implements Storage {
       return writingExecutor_;
    }
 
+   WritingQueueBudget getWritingBudget() {
+      return writingBudget_;
+   }
+
+   /**
+    * Set the maximum amount of image data that may be waiting to be written.
+    * When this is exceeded, putImage() blocks until the writing thread has
+    * caught up. Must be called before the first image is written.
+    *
+    * @param maxBytes maximum number of bytes in the writing queue
+    */
+   public void setWritingQueueMaxBytes(long maxBytes) {
+      if (maxBytes <= 0) {
+         throw new IllegalArgumentException("Writing queue size must be positive");
+      }
+      if (writingBudget_ != null) {
+         throw new IllegalStateException("Writing has already started");
+      }
+      writingQueueMaxBytes_ = maxBytes;
+   }
+
+   /**
+    * Write each file series (i.e., each stage position, when positions are
+    * split into separate files) on its own thread, so that files on
+    * different drives can be written in parallel. Images within a file are
+    * still written in the order they were received. The writing queue size
+    * limit (setWritingQueueMaxBytes) applies to all threads together.
+    * Has no effect unless positions are split into separate files. Must be
+    * called before the first image is written.
+    *
+    * @param perFileSet whether to use a writing thread per file series
+    */
+   public void setWriterThreadPerFileSet(boolean perFileSet) {
+      if (writingBudget_ != null) {
+         throw new IllegalStateException("Writing has already started");
+      }
+      writerThreadPerFileSet_ = perFileSet;
+   }
+
+   /**
+    * Statistics of the writing queue (depth, bytes in flight, stall time).
+    *
+    * @return the PerformanceMonitor holding the writing queue statistics
+    */
+   public PerformanceMonitor getPerformanceMonitor() {
+      return perfMon_;
+   }
+
    /**
     * Indicator of Acquisition order.  This function is difficult to name.
     * "First" means that the axis comes before another axis in the ordered axes
@@ -305,22 +428,16 @@ public final class StorageMultipageTiff implements Storage {
             // Open the file normally.
             reader = new MultipageTiffReader(this, f);
          }
-         Set<Coords> readerCoords = reader.getIndexKeys();
-         if (readerCoords != null) {
-            coordsIndexedMissingC_ = new HashMap<>();
-            for (Coords coords : readerCoords) {
-               coordsToReader_.put(coords, reader);
-               axesInUse_.addAll(coords.getAxes());
-               final Coords coordsNoC = coords.copyRemovingAxes(Coords.C);
-               if (!coordsIndexedMissingC_.containsKey(coordsNoC)) {
-                  coordsIndexedMissingC_.put(coordsNoC, new ArrayList<>(ALLOWED_AXES.size()));
-               }
-               coordsIndexedMissingC_.get(coordsNoC).add(coords);
-               lastFrameOpenedDataSet_ = Math.max(coords.getT(),
-                     lastFrameOpenedDataSet_);
-               if (firstImage_ == null) {
-                  firstImage_ = reader.readImage(coords);
-               }
+         reader.setMemoryMapped(memoryMapFiles_);
+         readers_.add(reader);
+         if (reader.getNumImages() > 0) {
+            loadedReaders_.add(reader);
+            // The index map gives every image all of these axes
+            axesInUse_.addAll(MultipageTiffReader.ALLOWED_AXES);
+            lastFrameOpenedDataSet_ = Math.max(reader.getMaxIndex(Coords.T),
+                  lastFrameOpenedDataSet_);
+            if (firstImage_ == null) {
+               firstImage_ = reader.readImage(reader.getIndexCoords().iterator().next());
             }
          }
       } catch (IOException ex) {
@@ -355,11 +472,7 @@ public final class StorageMultipageTiff implements Storage {
          ReportingUtils.showError(e, "Failed to write image at " + image.getCoords());
       }
       // index the coords
-      Coords coordsNoC = image.getCoords().copyRemovingAxes(Coords.C);
-      if (!coordsIndexedMissingC_.containsKey(coordsNoC)) {
-         coordsIndexedMissingC_.put(coordsNoC, new ArrayList<>(ALLOWED_AXES.size()));
-      }
-      coordsIndexedMissingC_.get(coordsNoC).add(image.getCoords());
+      coordsIndex_.add(image.getCoords());
    }
 
    @Override
@@ -371,8 +484,9 @@ public final class StorageMultipageTiff implements Storage {
          throws MMException, InterruptedException, ExecutionException, IOException {
       writeImage(image);
       if (waitForWritingToFinish) {
-         Future<?> f = writingExecutor_.submit(() -> {
-         });
+         Future<?> f = getWritingExecutor(getFileSetIndex(image.getCoords()))
+               .submit(() -> {
+               });
          f.get();
       }
    }
@@ -398,7 +512,8 @@ public final class StorageMultipageTiff implements Storage {
 
       startWritingTask(image);
 
-      writingExecutor_.submit(() -> {
+      // Runs after the image has been written to its file
+      getWritingExecutor(getFileSetIndex(coords)).submit(() -> {
          synchronized (coordsToPendingImage_) {
             coordsToPendingImage_.remove(coords);
          }
@@ -423,20 +538,12 @@ public final class StorageMultipageTiff implements Storage {
       }
 
       // initialize writing executor
-      if (writingExecutor_ == null) {
-         writingExecutor_ = new ThreadPoolExecutor(1, 1, 0,
-               TimeUnit.NANOSECONDS,
-               new LinkedBlockingQueue<>(),
-               ThreadFactoryFactory.createThreadFactory("StorageMultiPageTiff"));
-      }
-      int fileSetIndex = 0;
-      if (splitByXYPosition_) {
-         fileSetIndex = image.getCoords().getStagePosition();
-         if (fileSetIndex == -1) {
-            // No position axis, so just default to 0.
-            fileSetIndex = 0;
-         }
+      if (writingBudget_ == null) {
+         writingBudget_ = new WritingQueueBudget(writingQueueMaxBytes_, perfMon_);
+         PerformanceMonitorUI.create(perfMon_, "Multipage TIFF writing: "
+               + new File(directory_).getName());
       }
+      int fileSetIndex = getFileSetIndex(image.getCoords());
 
       if (omeMetadata_ == null) {
          omeMetadata_ = new OMEMetadata(this);
@@ -444,8 +551,8 @@ public final class StorageMultipageTiff implements Storage {
 
       if (!positionToFileSet_.containsKey(fileSetIndex)) {
          positionToFileSet_.put(fileSetIndex,
-               new FileSet(image, this, omeMetadata_,
-                     splitByXYPosition_, separateMetadataFile_));
+               new FileSet(image, this, getWritingExecutor(fileSetIndex),
+                     omeMetadata_, splitByXYPosition_, separateMetadataFile_));
       }
       FileSet set = positionToFileSet_.get(fileSetIndex);
 
@@ -453,6 +560,7 @@ public final class StorageMultipageTiff implements Storage {
          set.writeImage(image);
          Coords coords = image.getCoords();
          coordsToReader_.put(coords, set.getCurrentReader());
+         readers_.addIfAbsent(set.getCurrentReader());
       } catch (IOException ex) {
          ReportingUtils.showError(ex, "Failed to write image to file.");
       }
@@ -462,8 +570,36 @@ public final class StorageMultipageTiff implements Storage {
 
    }
 
-   public Set<Coords> imageKeys() {
-      return coordsToReader_.keySet();
+   private int getFileSetIndex(Coords coords) {
+      if (!splitByXYPosition_) {
+         return 0;
+      }
+      // No position axis (-1), so just default to 0.
+      return Math.max(0, coords.getStagePosition());
+   }
+
+   private ThreadPoolExecutor getWritingExecutor(int fileSetIndex) {
+      if (!writerThreadPerFileSet_ || !splitByXYPosition_) {
+         if (writingExecutor_ == null) {
+            writingExecutor_ = createWritingExecutor("StorageMultiPageTiff");
+         }
+         return writingExecutor_;
+      }
+      ThreadPoolExecutor executor = fileSetExecutors_.get(fileSetIndex);
+      if (executor == null) {
+         executor = createWritingExecutor("StorageMultiPageTiff Pos" + fileSetIndex);
+         fileSetExecutors_.put(fileSetIndex, executor);
+      }
+      return executor;
+   }
+
+   private static ThreadPoolExecutor createWritingExecutor(String threadName) {
+      // The queue itself is unbounded; its size in bytes is limited by
+      // writingBudget_, which blocks the caller when the disk falls behind.
+      return new ThreadPoolExecutor(1, 1, 0,
+            TimeUnit.NANOSECONDS,
+            new LinkedBlockingQueue<>(),
+            ThreadFactoryFactory.createThreadFactory(threadName));
    }
 
    /**
@@ -560,20 +696,26 @@ public final class StorageMultipageTiff implements Storage {
          // writing so that no attempt is made to close the dataset (and thus
          // the FileChannel) before everything has finished writing make sure
          // all images have finished writing if they are on separate thread
-         if (writingExecutor_ != null && !writingExecutor_.isShutdown()) {
-            writingExecutor_.shutdown();
-            try {
+         List<ThreadPoolExecutor> executors = new ArrayList<>(fileSetExecutors_.values());
+         if (writingExecutor_ != null) {
+            executors.add(writingExecutor_);
+         }
+         for (ThreadPoolExecutor executor : executors) {
+            executor.shutdown();
+         }
+         try {
+            for (ThreadPoolExecutor executor : executors) {
                // Wait for tasks to finish.
                int i = 0;
-               while (!writingExecutor_.awaitTermination(4, TimeUnit.SECONDS)) {
+               while (!executor.awaitTermination(4, TimeUnit.SECONDS)) {
                   ReportingUtils.logMessage(
                         "Waiting for image stack to finish writing (" + i + ")...");
                   i++;
                }
-            } catch (InterruptedException e) {
-               ReportingUtils.logError("File finishing thread interrupted");
-               Thread.interrupted();
             }
+         } catch (InterruptedException e) {
+            ReportingUtils.logError("File finishing thread interrupted");
+            Thread.interrupted();
          }
       } catch (IOException ex) {
          ReportingUtils.logError(ex);
@@ -603,20 +745,9 @@ public final class StorageMultipageTiff implements Storage {
       summaryMetadataString_ = NonPropertyMapJSONFormats.summaryMetadata()
             .toJSON(summary.toPropertyMap());
 
-      // setSummaryMetadata must be called before adding images to the store, so use this moment
-      // to smartly initialize several HashMaps
-      Coords dims = summaryMetadata_.getIntendedDimensions();
-      int nrImagesNoC = 1;
-      for (String axis : dims.getAxes()) {
-         if (!axis.equals(Coords.CHANNEL)) {
-            nrImagesNoC *= dims.getIndex(axis);
-         }
-      }
-      coordsIndexedMissingC_ = new HashMap<>(nrImagesNoC);
-
       // TODO: under what circumstances can coordsToReader_ already contain data?
       Map<Coords, MultipageTiffReader> oldImageMap = coordsToReader_;
-      coordsToReader_ = new HashMap<>();
+      coordsToReader_ = new ConcurrentHashMap<>();
       if (showProgress && !GraphicsEnvironment.isHeadless()) {
          ProgressBar progressBar = new ProgressBar(parent_,
                "Building image location map", 0, oldImageMap.keySet().size());
@@ -734,6 +865,10 @@ public final class StorageMultipageTiff implements Storage {
     */
    DisplaySettings getDisplaySettings() {
       MMStudio studio = MMStudio.getInstance();
+      if (studio == null) {
+         // Used independently of the GUI, so there are no viewers
+         return null;
+      }
       DataViewer activeDataViewer = studio.displays().getActiveDataViewer();
       try {
          if (activeDataViewer != null && isViewingOurStore(activeDataViewer)) {
@@ -849,7 +984,11 @@ public final class StorageMultipageTiff implements Storage {
 
    @Override
    public int getNumImages() {
-      return coordsToReader_.keySet().size();
+      int numImages = coordsToReader_.size();
+      for (MultipageTiffReader reader : loadedReaders_) {
+         numImages += reader.getNumImages();
+      }
+      return numImages;
    }
 
    @Override
@@ -866,6 +1005,14 @@ public final class StorageMultipageTiff implements Storage {
                }
             }
          }
+         for (MultipageTiffReader reader : loadedReaders_) {
+            for (String axis : MultipageTiffReader.ALLOWED_AXES) {
+               int index = reader.getMaxIndex(axis);
+               if (!maxIndices.containsKey(axis) || index > maxIndices.get(axis)) {
+                  maxIndices.put(axis, index);
+               }
+            }
+         }
          DefaultCoords.Builder builder = new DefaultCoords.Builder();
          for (String axis : maxIndices.keySet()) {
             builder.index(axis, maxIndices.get(axis));
@@ -895,6 +1042,9 @@ public final class StorageMultipageTiff implements Storage {
             maxIndex = coords.getIndex(axis);
          }
       }
+      for (MultipageTiffReader reader : loadedReaders_) {
+         maxIndex = Math.max(maxIndex, reader.getMaxIndex(axis));
+      }
       return maxIndex;
    }
 
@@ -948,54 +1098,27 @@ public final class StorageMultipageTiff implements Storage {
    public List<Image> getImagesIgnoringAxes(Coords coords, String... ignoreTheseAxes)
          throws IOException {
       HashSet<Image> result = new HashSet<>();
+      Set<Coords> pendingCoords = new HashSet<>();
       synchronized (coordsToPendingImage_) {
          for (Coords imageCoords : coordsToPendingImage_.keySet()) {
             if (coords.equals(imageCoords.copyRemovingAxes(ignoreTheseAxes))) {
                result.add(coordsToPendingImage_.get(imageCoords));
+               pendingCoords.add(imageCoords);
             }
          }
       }
-      // Optimization: traversing large HashMaps is costly, so avoid that when there is no need
-      // without this, there is noticeable slowdown for one axis data > ~10,000 images.
-      // An alternative optimization approach is to keep collections of coords
-      // for all possible ignoredAxes.  There is more upfront work involved but may be
-      // needed for fast multi-camera imaging.
-      boolean haveIgnoredAxes = false;
-      for (String axis : ignoreTheseAxes) {
-         if (axesInUse_.contains(axis)) {
-            haveIgnoredAxes = true;
-            break;
+      // The indices find the matching coords without traversing all images
+      for (Coords imageCoords : coordsIndex_.getMatching(coords, ignoreTheseAxes)) {
+         MultipageTiffReader reader = coordsToReader_.get(imageCoords);
+         // Images still being written were found above
+         if (reader == null || pendingCoords.contains(imageCoords)) {
+            continue;
          }
+         result.add(reader.readImage(imageCoords));
       }
-      if (!haveIgnoredAxes) {
-         result.add(coordsToReader_.get(coords).readImage(coords));
-      } else {
-         // special case: if the ignored axis is C, use a special index to find the Coords
-         // otherwise, the search will be very expensive (which will  be the case for other
-         // axes) and result in noticaeble slowodwns with large datasetsz
-         if (ignoreTheseAxes[0].equals(Coords.CHANNEL)
-               && coordsIndexedMissingC_.containsKey(coords)) {
-            for (Coords tmpCoords : coordsIndexedMissingC_.get(coords)) {
-               result.add(coordsToReader_.get(tmpCoords).readImage(tmpCoords));
-            }
-         } else {
-            // Brute force it.  This will be slow with large data sets
-            // Note that coordsToReader_ can be modified at the same time,
-            // catch ConcurrentModificationException rather than incur the cost
-            // of a lock that could slow down insertions
-            try {
-               for (Coords imageCoords : coordsToReader_.keySet()) {
-                  if (coords.equals(imageCoords.copyRemovingAxes(ignoreTheseAxes))) {
-                     try {
-                        result.add(coordsToReader_.get(imageCoords).readImage(imageCoords));
-                     } catch (IOException ex) {
-                        ReportingUtils.logError("Failed to read image at " + imageCoords);
-                     }
-                  }
-               }
-            } catch (ConcurrentModificationException cme) {
-               ReportingUtils.logError(cme, "coordsToReader_ was modified while iterating");
-            }
+      for (MultipageTiffReader reader : loadedReaders_) {
+         for (Coords imageCoords : reader.findMatchingCoords(coords, ignoreTheseAxes)) {
+            result.add(reader.readImage(imageCoords));
          }
       }
       return new ArrayList<>(result);
@@ -1009,12 +1132,12 @@ public final class StorageMultipageTiff implements Storage {
             return coordsToPendingImage_.get(coords);
          }
       }
-      if (!coordsToReader_.containsKey(coords)) {
+      MultipageTiffReader mptReader = findReader(coords);
+      if (mptReader == null) {
          ReportingUtils.logError("Asked for image at " + coords + " that doesn't exist");
          return null;
       }
       try {
-         MultipageTiffReader mptReader = coordsToReader_.get(coords);
          if (!amInWriteMode_ && lastReader_ != null && mptReader != lastReader_) {
             // this could be optional.  Not doing it can result in large memory leaks.
             // After freeze() (amInWriteMode_ == false), write-mode readers have file_ set
@@ -1035,15 +1158,34 @@ public final class StorageMultipageTiff implements Storage {
       return firstImage_;
    }
 
+   // The reader of the file holding the image, or null
+   private MultipageTiffReader findReader(Coords coords) {
+      MultipageTiffReader reader = coordsToReader_.get(coords);
+      if (reader != null) {
+         return reader;
+      }
+      // As when the index maps were merged, later files take precedence
+      for (int i = loadedReaders_.size() - 1; i >= 0; --i) {
+         if (loadedReaders_.get(i).hasImage(coords)) {
+            return loadedReaders_.get(i);
+         }
+      }
+      return null;
+   }
+
    @Override
    public Iterable<Coords> getUnorderedImageCoords() {
-      return coordsToReader_.keySet();
+      List<Iterable<Coords>> coords = new ArrayList<>();
+      coords.add(coordsToReader_.keySet());
+      for (MultipageTiffReader reader : loadedReaders_) {
+         coords.add(reader.getIndexCoords());
+      }
+      return Iterables.concat(coords);
    }
 
    @Override
    public boolean hasImage(Coords coords) {
-      return coordsToPendingImage_.containsKey(coords)
-            || coordsToReader_.containsKey(coords);
+      return coordsToPendingImage_.containsKey(coords) || findReader(coords) != null;
    }
 
    /**
@@ -1059,7 +1201,7 @@ public final class StorageMultipageTiff implements Storage {
       }
       // For files we read from disk.
       int errorCounter = 0;
-      for (MultipageTiffReader reader : coordsToReader_.values()) {
+      for (MultipageTiffReader reader : readers_) {
          try {
             reader.close();
          } catch (IOException e) {
@@ -1092,4 +1234,35 @@ public final class StorageMultipageTiff implements Storage {
       MMStudio.getInstance().profile().getSettings(StorageMultipageTiff.class)
             .putBoolean(SHOULD_USE_SEPARATE_FILES_FOR_POSITIONS, shouldSplit);
    }
+
+   public static boolean getShouldUseWriterThreadPerFile() {
+      return MMStudio.getInstance().profile().getSettings(StorageMultipageTiff.class)
+            .getBoolean(SHOULD_USE_WRITER_THREAD_PER_FILE, false);
+   }
+
+   public static void setShouldUseWriterThreadPerFile(boolean perFile) {
+      MMStudio.getInstance().profile().getSettings(StorageMultipageTiff.class)
+            .putBoolean(SHOULD_USE_WRITER_THREAD_PER_FILE, perFile);
+   }
+
+   public static boolean getShouldMemoryMapFiles() {
+      return MMStudio.getInstance().profile().getSettings(StorageMultipageTiff.class)
+            .getBoolean(SHOULD_MEMORY_MAP_FILES, false);
+   }
+
+   public static void setShouldMemoryMapFiles(boolean memoryMap) {
+      MMStudio.getInstance().profile().getSettings(StorageMultipageTiff.class)
+            .putBoolean(SHOULD_MEMORY_MAP_FILES, memoryMap);
+   }
+
+   public static int getWritingQueueSizeMB() {
+      return Math.max(1, MMStudio.getInstance().profile()
+            .getSettings(StorageMultipageTiff.class)
+            .getInteger(WRITING_QUEUE_SIZE_MB, DEFAULT_WRITING_QUEUE_SIZE_MB));
+   }
+
+   public static void setWritingQueueSizeMB(int sizeMB) {
+      MMStudio.getInstance().profile().getSettings(StorageMultipageTiff.class)
+            .putInteger(WRITING_QUEUE_SIZE_MB, sizeMB);
+   }
 }
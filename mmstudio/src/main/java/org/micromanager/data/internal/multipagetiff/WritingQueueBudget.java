@@ -0,0 +1,134 @@
+///////////////////////////////////////////////////////////////////////////////
+//PROJECT:       Micro-Manager
+//SUBSYSTEM:     Multipage TIFF
+//-----------------------------------------------------------------------------
+//
+// LICENSE:      This file is distributed under the BSD license.
+//               License text is included with the source distribution.
+//
+//               This file is distributed in the hope that it will be useful,
+//               but WITHOUT ANY WARRANTY; without even the implied warranty
+//               of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//
+//               IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+//               CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+//               INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES.
+//
+
+package org.micromanager.data.internal.multipagetiff;
+
+import java.util.concurrent.Executor;
+import org.micromanager.internal.utils.ReportingUtils;
+import org.micromanager.internal.utils.performance.PerformanceMonitor;
+
+/**
+ * Limits the number of bytes queued for writing, blocking the submitting
+ * thread until the writing thread has caught up.
+ *
+ * <p>A single task larger than the whole budget is still accepted once the
+ * queue is empty, so that nothing can deadlock on an unusually large image.
+ *
+ * <p>Queue depth, bytes in flight, and time spent blocked are sampled into
+ * the given PerformanceMonitor each time a task is submitted.
+ */
+final class WritingQueueBudget {
+   private final long maxBytes_;
+   private final PerformanceMonitor perfMon_;
+
+   private long bytesInFlight_;
+   private int tasksInFlight_;
+   private long totalStallNs_;
+
+   WritingQueueBudget(long maxBytes, PerformanceMonitor perfMon) {
+      if (maxBytes <= 0) {
+         throw new IllegalArgumentException("Writing queue size must be positive");
+      }
+      maxBytes_ = maxBytes;
+      perfMon_ = perfMon;
+   }
+
+   /**
+    * Submit a task to the executor, first waiting until {@code bytes} fit
+    * within the budget. The bytes are returned to the budget when the task
+    * has run.
+    *
+    * <p>If the calling thread is interrupted while waiting, it keeps waiting
+    * until the bytes fit, and the task is submitted anyway (we never drop
+    * data); the interrupt status is restored before returning.
+    *
+    * @param executor executor that runs the writing tasks
+    * @param bytes    number of bytes the task will write
+    * @param task     the writing task
+    */
+   void execute(Executor executor, final long bytes, final Runnable task) {
+      acquire(bytes);
+      try {
+         executor.execute(() -> {
+            try {
+               task.run();
+            } finally {
+               release(bytes);
+            }
+         });
+      } catch (RuntimeException e) {
+         release(bytes);
+         throw e;
+      }
+   }
+
+   private synchronized void acquire(long bytes) {
+      long stallNs = 0;
+      if (!fits(bytes)) {
+         ReportingUtils.logMessage("Warning: writing queue behind by "
+               + tasksInFlight_ + " tasks (" + bytesInFlight_ + " bytes)");
+         long startNs = System.nanoTime();
+         boolean interrupted = false;
+         while (!fits(bytes)) {
+            try {
+               wait();
+            } catch (InterruptedException e) {
+               // Keep waiting: setting the flag now would make wait() throw
+               // again at once, and leaving would exceed the budget
+               interrupted = true;
+            }
+         }
+         if (interrupted) {
+            Thread.currentThread().interrupt();
+         }
+         stallNs = System.nanoTime() - startNs;
+         totalStallNs_ += stallNs;
+      }
+      bytesInFlight_ += bytes;
+      ++tasksInFlight_;
+
+      if (perfMon_ != null) {
+         perfMon_.sample("Writing queue depth (tasks)", tasksInFlight_);
+         perfMon_.sample("Writing queue bytes in flight (MB)",
+               bytesInFlight_ / (1024.0 * 1024.0));
+         perfMon_.sample("Writing queue stall (ms)", stallNs / 1e6);
+         perfMon_.sample("Writing queue total stall (s)", totalStallNs_ / 1e9);
+      }
+   }
+
+   private synchronized void release(long bytes) {
+      bytesInFlight_ -= bytes;
+      --tasksInFlight_;
+      notifyAll();
+   }
+
+   private boolean fits(long bytes) {
+      return bytesInFlight_ == 0 || bytesInFlight_ + bytes <= maxBytes_;
+   }
+
+   long getMaxBytes() {
+      return maxBytes_;
+   }
+
+   synchronized long getBytesInFlight() {
+      return bytesInFlight_;
+   }
+
+   synchronized long getTotalStallNs() {
+      return totalStallNs_;
+   }
+}
@@ -1,21 +1,22 @@
 package org.micromanager.data.internal.ndtiff;
 
 import com.google.common.eventbus.Subscribe;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonParser;
+import com.google.gson.JsonObject;
 import java.io.File;
 import java.io.IOException;
+import java.util.AbstractCollection;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Stream;
 import mmcorej.TaggedImage;
 import mmcorej.org.json.JSONException;
 import mmcorej.org.json.JSONObject;
+import org.micromanager.PropertyMap;
 import org.micromanager.data.Coordinates;
 import org.micromanager.data.Coords;
 import org.micromanager.data.DataProviderHasNewSummaryMetadataEvent;
@@ -24,6 +25,7 @@ import org.micromanager.data.Image;
 import org.micromanager.data.Metadata;
 import org.micromanager.data.Storage;
 import org.micromanager.data.SummaryMetadata;
+import org.micromanager.data.internal.CoordsIndex;
 import org.micromanager.data.internal.DefaultDatastore;
 import org.micromanager.data.internal.DefaultImage;
 import org.micromanager.data.internal.DefaultMetadata;
@@ -50,12 +52,25 @@ public class NDTiffAdapter implements Storage {
    private NDTiffAPI storage_;
    private DefaultDatastore store_;
    private SummaryMetadata summaryMetadata_ = (new DefaultSummaryMetadata.Builder()).build();
-   // ShadowList of Coords in the datastore.  In read mode derived from the storage, in write mode
+   // Index of the Coords in the datastore.  In read mode derived from the storage, in write mode
    // added whenever an image is added
-   private final List<Coords> coords_;
-   // ShadowList of Coords indexed by Coords missing channel.
-   // In read mode derived from the storage, in write mode added whenever an image is added
-   private final Map<Coords, List<Coords>> coordsIndexedMissingC_;
+   private final CoordsIndex coordsIndex_ = new CoordsIndex(new AbstractCollection<Coords>() {
+      @Override
+      public Iterator<Coords> iterator() {
+         return storage_ == null ? Collections.emptyIterator()
+               : getUnorderedImageCoords().iterator();
+      }
+
+      @Override
+      public int size() {
+         return storage_ == null ? 0 : storage_.getAxesSet().size();
+      }
+
+      @Override
+      public boolean contains(Object coords) {
+         return coords instanceof Coords && hasImage((Coords) coords);
+      }
+   });
 
    /**
     * Constructor of NDTiffAdapter.
@@ -74,25 +89,14 @@ public class NDTiffAdapter implements Storage {
 
       store_.setSavePath(dir);
       store_.setName(new File(dir).getName());
-      coords_ = new ArrayList<>();
-      coordsIndexedMissingC_ = new HashMap<>();
 
       // If not writing, wait until summary metadata set to create storage
       if (!amInWriteMode) {
          storage_ = new NDTiffStorage(dir);
-         getUnorderedImageCoords().forEach(this::addCoordsToIndex);
+         getUnorderedImageCoords().forEach(coordsIndex_::add);
       }
    }
 
-   private void addCoordsToIndex(Coords coords) {
-      coords_.add(coords);
-      Coords coordMissingC = coords.copyRemovingAxes(Coords.C);
-      if (!coordsIndexedMissingC_.containsKey(coordMissingC)) {
-         coordsIndexedMissingC_.put(coordMissingC, new LinkedList<>());
-      }
-      coordsIndexedMissingC_.get(coordMissingC).add(coords);
-   }
-
    public static boolean isNDTiffDataSet(String dir) {
       return new File(dir + (dir.endsWith(File.separator)
               ? "" : File.separator) + "NDTiff.index").exists();
@@ -180,16 +184,12 @@ public class NDTiffAdapter implements Storage {
       boolean rgb = image.getNumComponents() > 1;
       HashMap<String, Object> axes = coordsToHashMap(image.getCoords());
 
-      //TODO: This is getting the JSON metadata as a String, and then converting it into
-      // A JSONObject again, and then it gets converted to string again in NDTiffStorage
-      // Certainly inefficient, possibly performance limitiing depending on which
-      // Thread this is called on.
-      String mdString = NonPropertyMapJSONFormats.metadata().toJSON(
-              ((DefaultMetadata) image.getMetadata()).toPropertyMap());
-
-      JSONObject json = null;
+      // Metadata that has not been decoded is written without keeping the decoded form
+      JsonObject mdJson = new JsonObject();
+      ((DefaultMetadata) image.getMetadata()).addToMM1Gson(mdJson);
+      JSONObject json;
       try {
-         json = new JSONObject(mdString);
+         json = NonPropertyMapJSONFormats.jsonObjectFromGson(mdJson);
       } catch (JSONException e) {
          throw new RuntimeException(e);
       }
@@ -197,7 +197,7 @@ public class NDTiffAdapter implements Storage {
       int bitDepth = image.getBytesPerPixel() * 8;
       storage_.putImage(image.getRawPixels(), json, axes, rgb, bitDepth,
               image.getHeight(), image.getWidth());
-      addCoordsToIndex(image.getCoords());
+      coordsIndex_.add(image.getCoords());
    }
 
    @Override
@@ -239,63 +239,28 @@ public class NDTiffAdapter implements Storage {
       };
    }
 
-   /**
-    * This implementation only check for an exact match. It does not actually return a list
-    * of all images that match the given coordinates, as I am not quite sure how to implement that.
-    *
-    * @param coords Coordinates specifying images to match
-    * @return List of images matching the coordinates
-    * @throws IOException can always happen.
-    */
    @Override
    public List<Image> getImagesMatching(Coords coords) throws IOException {
-      List<Image> imageList = new LinkedList<>();
-      if (storage_ == null) {
-         return imageList;
-      }
-      HashMap<String, Object> ndTiffCoords = coordsToHashMap(coords);
-      if (storage_.hasImage(ndTiffCoords)) {
-         TaggedImage ti = addEssentialImageMetadata(storage_.getImage(ndTiffCoords), ndTiffCoords);
-         Image img = new DefaultImage(ti, hashMapToCoords(ndTiffCoords),
-                 studioMetadataFromJSON(ti.tags));
-         imageList.add(img);
+      List<String> ignoredAxes = new ArrayList<>();
+      for (String axis : coordsIndex_.getAxesInUse()) {
+         if (!coords.hasAxis(axis)) {
+            ignoredAxes.add(axis);
+         }
       }
-      return imageList;
+      return getImagesIgnoringAxes(coords, ignoredAxes.toArray(new String[0]));
    }
 
    @Override
    public List<Image> getImagesIgnoringAxes(
            Coords coords, String... ignoreTheseAxes) throws IOException {
-      // This is obviously wrong, but not quite sure what to do at this point....
-      if (ignoreTheseAxes.length == 0) {
-         return getImagesMatching(coords);
-      } else if (ignoreTheseAxes.length == 1 && ignoreTheseAxes[0].equals(Coords.C)) {
-         Coords matchCoord = coords.copyRemovingAxes(Coords.C);
-         List<Coords> coords1 = coordsIndexedMissingC_.get(matchCoord);
-         final List<Image> result = new ArrayList<>();
-         coords1.forEach(coords2 -> {
-            try {
-               result.add(getImagesMatching(coords2).get(0));
-            } catch (IOException e) {
-               throw new RuntimeException(e);
-            }
-         });
-         return result;
-      } else {
-         Coords matchCoord = coords.copyRemovingAxes(ignoreTheseAxes);
-         final List<Image> result = new ArrayList<>();
-         getUnorderedImageCoords().iterator().forEachRemaining(
-               coords1 -> {
-                  if (coords1.copyRemovingAxes(ignoreTheseAxes).equals(matchCoord)) {
-                     try {
-                        result.add(getImage(coords1));
-                     } catch (IOException e) {
-                        throw new RuntimeException(e);
-                     }
-                  }
-               });
+      final List<Image> result = new ArrayList<>();
+      if (storage_ == null) {
          return result;
       }
+      for (Coords match : coordsIndex_.getMatching(coords, ignoreTheseAxes)) {
+         result.add(getImage(match));
+      }
+      return result;
    }
 
    @Override
@@ -398,15 +363,14 @@ public class NDTiffAdapter implements Storage {
    }
 
    private Metadata studioMetadataFromJSON(JSONObject tags) {
-      JsonElement je;
+      PropertyMap pmap;
       try {
-         je = new JsonParser().parse(tags.toString());
+         pmap = NonPropertyMapJSONFormats.metadata().fromJSONObject(tags);
       } catch (Exception unlikely) {
-         throw new IllegalArgumentException("Failed to parse JSON created from TaggedImage tags",
+         throw new IllegalArgumentException("Failed to convert TaggedImage tags to metadata",
                  unlikely);
       }
-      return DefaultMetadata.fromPropertyMap(
-              NonPropertyMapJSONFormats.metadata().fromGson(je));
+      return DefaultMetadata.fromPropertyMap(pmap);
    }
 }
 
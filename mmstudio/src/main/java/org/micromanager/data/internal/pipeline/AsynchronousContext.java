@@ -82,13 +82,7 @@ public final class AsynchronousContext extends BaseContext {
          } else {
             // Non-null image: process it.
             isFlushed_ = false;
-            try {
-               processor_.processImage(wrapper.getImage(), this);
-            } catch (Exception e) {
-               ReportingUtils.logError(e, "Processor failed to process image");
-               // Pass the exception to our parent.
-               parent_.exceptionOccurred(e);
-            }
+            runProcessor(wrapper, this);
          }
       }
    }
@@ -100,6 +94,7 @@ public final class AsynchronousContext extends BaseContext {
    public void insertImage(ImageWrapper wrapper) {
       try {
          inputQueue_.put(wrapper);
+         metrics_.recordQueueDepth(inputQueue_.size());
       } catch (InterruptedException e) {
          ReportingUtils.logError(e, "Interrupted while passing image along pipeline");
       }
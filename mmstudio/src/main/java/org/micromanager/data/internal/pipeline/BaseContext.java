@@ -35,12 +35,41 @@ public abstract class BaseContext implements ProcessorContext {
    protected Datastore store_;
    protected DefaultPipeline parent_;
    protected CountDownLatch flushLatch_;
+   protected final StageMetrics metrics_;
 
    public BaseContext(Processor processor, Datastore store,
                       DefaultPipeline parent) {
       processor_ = processor;
       store_ = store;
       parent_ = parent;
+      metrics_ = new StageMetrics(processor.getClass().getSimpleName(),
+            parent == null ? null : parent.getPerformanceMonitor());
+   }
+
+   /**
+    * Timings and image counts for this stage of the pipeline.
+    */
+   public StageMetrics getMetrics() {
+      return metrics_;
+   }
+
+   /**
+    * Run the processor on an image, recording how long it waited and how
+    * long processing took. Exceptions thrown by the processor are passed to
+    * the pipeline, and the image is counted as dropped.
+    */
+   protected void runProcessor(ImageWrapper wrapper, ProcessorContext context) {
+      long startNs = System.nanoTime();
+      try {
+         processor_.processImage(wrapper.getImage(), context);
+      } catch (Exception e) {
+         ReportingUtils.logError(e, "Processor failed to process image");
+         metrics_.recordImageDropped();
+         // Pass the exception to our parent.
+         parent_.exceptionOccurred(e);
+      }
+      metrics_.recordImage(startNs - wrapper.getCreationTimeNs(),
+            System.nanoTime() - startNs);
    }
 
    /**
@@ -49,6 +78,7 @@ public abstract class BaseContext implements ProcessorContext {
     */
    @Override
    public void outputImage(Image image) {
+      metrics_.recordImageOut();
       if (sink_ == null) {
          // Send the image to the Datastore.
          try {
@@ -56,6 +86,7 @@ public abstract class BaseContext implements ProcessorContext {
          } catch (IOException e) {
             // TODO Report to user!
             ReportingUtils.logError(e, "Unable to store processed image");
+            metrics_.recordImageDropped();
          }
       } else {
          // Send the image to the next context in the chain.
@@ -22,7 +22,10 @@ package org.micromanager.data.internal.pipeline;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.CountDownLatch;
 import org.micromanager.data.Datastore;
 import org.micromanager.data.DatastoreFrozenException;
@@ -31,39 +34,112 @@ import org.micromanager.data.Pipeline;
 import org.micromanager.data.PipelineErrorException;
 import org.micromanager.data.Processor;
 import org.micromanager.data.SummaryMetadata;
+import org.micromanager.internal.MMStudio;
 import org.micromanager.internal.utils.ReportingUtils;
+import org.micromanager.internal.utils.performance.PerformanceMonitor;
+import org.micromanager.internal.utils.performance.gui.PerformanceMonitorUI;
 
 public final class DefaultPipeline implements Pipeline {
+   private static final String SHOULD_USE_RING_BUFFERS = "use ring buffers between processors";
+   private static final String RING_BUFFER_DEPTH = "ring buffer depth";
+   private static final String RING_BUFFER_BATCH_SIZE = "ring buffer batch size";
+
+   // Pipelines that have processors and have not been halted, for monitoring
+   private static final Set<DefaultPipeline> ACTIVE_PIPELINES =
+         Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
 
    private final List<Processor> processors_;
-   private final List<BaseContext> contexts_;
+   // Unmodifiable; replaced by an empty list on halt(), so that it can be
+   // read (e.g. by getStageMetrics()) without taking the monitor
+   private volatile List<BaseContext> contexts_;
    private final Datastore store_;
    private final boolean isSynchronous_;
    private boolean haveInsertedImages_ = false;
    private boolean amHalting_ = false;
    private boolean isHalted_ = false;
    private final ArrayList<Exception> exceptions_;
+   private final PerformanceMonitor perfMon_ =
+         PerformanceMonitor.createWithTimeConstantMs(1000.0);
 
-   @SuppressWarnings("LeakingThisInConstructor")
    public DefaultPipeline(List<Processor> processors, Datastore store,
                           boolean isSynchronous) {
+      this(processors, null, store, isSynchronous);
+   }
+
+   public DefaultPipeline(List<Processor> processors, List<Integer> threadCounts,
+                          Datastore store, boolean isSynchronous) {
+      this(processors, threadCounts, store, isSynchronous,
+            isSynchronous ? 0 : configuredRingBufferDepth(),
+            isSynchronous ? 1 : configuredRingBufferBatchSize());
+   }
+
+   // Pipelines can be created without a running application (e.g. in tests)
+   private static int configuredRingBufferDepth() {
+      if (MMStudio.getInstance() == null || !getShouldUseRingBuffers()) {
+         return 0;
+      }
+      return getRingBufferDepth();
+   }
+
+   private static int configuredRingBufferBatchSize() {
+      return MMStudio.getInstance() == null ? 1 : getRingBufferBatchSize();
+   }
+
+   /**
+    * Create a pipeline.
+    *
+    * @param processors      processors, in order
+    * @param threadCounts    number of threads for each processor, used for
+    *                        asynchronous pipelines and thread-safe
+    *                        processors; null for a single thread each
+    * @param store           datastore receiving the processed images
+    * @param isSynchronous   whether processors run on the thread inserting
+    *                        images
+    * @param ringBufferDepth for asynchronous pipelines, the number of images
+    *                        that can wait for each processor in a ring
+    *                        buffer; 0 to use a blocking hand-off instead
+    * @param batchSize       maximum number of images a processor thread
+    *                        takes from its ring buffer at once
+    */
+   @SuppressWarnings("LeakingThisInConstructor")
+   public DefaultPipeline(List<Processor> processors, List<Integer> threadCounts,
+                          Datastore store, boolean isSynchronous,
+                          int ringBufferDepth, int batchSize) {
       processors_ = processors;
       store_ = store;
-      contexts_ = new ArrayList<>();
+      List<BaseContext> contexts = new ArrayList<>();
       exceptions_ = new ArrayList<>();
-      for (Processor processor : processors_) {
+      for (int i = 0; i < processors_.size(); ++i) {
+         Processor processor = processors_.get(i);
+         int threadCount = threadCounts == null || i >= threadCounts.size()
+               ? 1 : threadCounts.get(i);
+         if (threadCount > 1 && !processor.isThreadSafe()) {
+            ReportingUtils.logMessage("Processor " + processor.getClass().getName()
+                  + " is not thread-safe; using a single thread");
+            threadCount = 1;
+         }
          if (isSynchronous) {
-            contexts_.add(new SynchronousContext(processor, store_, this));
+            contexts.add(new SynchronousContext(processor, store_, this));
+         } else if (threadCount > 1) {
+            contexts.add(new ParallelContext(processor, store_, this, threadCount));
+         } else if (ringBufferDepth > 0) {
+            contexts.add(new RingBufferContext(processor, store_, this,
+                  ringBufferDepth, batchSize));
          } else {
-            contexts_.add(new AsynchronousContext(processor, store_, this));
+            contexts.add(new AsynchronousContext(processor, store_, this));
          }
       }
       // Chain the contexts together. The last one goes to the Datastore by
       // default as it has no sink.
-      for (int i = 0; i < contexts_.size() - 1; ++i) {
-         contexts_.get(i).setSink(contexts_.get(i + 1));
+      for (int i = 0; i < contexts.size() - 1; ++i) {
+         contexts.get(i).setSink(contexts.get(i + 1));
       }
+      contexts_ = Collections.unmodifiableList(contexts);
       isSynchronous_ = isSynchronous;
+      if (!contexts_.isEmpty()) {
+         ACTIVE_PIPELINES.add(this);
+         PerformanceMonitorUI.create(perfMon_, "On-the-fly processing pipeline");
+      }
    }
 
    @Override
@@ -145,8 +221,9 @@ public final class DefaultPipeline implements Pipeline {
       } catch (InterruptedException e) {
          ReportingUtils.logError("Interrupted while waiting for flush to complete.");
       }
+      ACTIVE_PIPELINES.remove(this);
       // cleanup to avoid memory leaks
-      contexts_.clear();
+      contexts_ = Collections.emptyList();
       processors_.clear();
       exceptions_.clear();
 
@@ -176,4 +253,71 @@ public final class DefaultPipeline implements Pipeline {
    public void exceptionOccurred(Exception e) {
       exceptions_.add(e);
    }
+
+   /**
+    * Metrics of each processor of the pipeline.
+    *
+    * <p>Does not wait for images being inserted or for halt() to finish, so
+    * it can be called from the EDT.
+    *
+    * @return metrics for each processor, in pipeline order; empty once the
+    *     pipeline has been halted
+    */
+   public List<StageMetrics> getStageMetrics() {
+      List<StageMetrics> result = new ArrayList<>();
+      for (BaseContext context : contexts_) {
+         result.add(context.getMetrics());
+      }
+      return result;
+   }
+
+   /**
+    * Performance monitor to which the processors of this pipeline report
+    * (smoothed) timings.
+    */
+   public PerformanceMonitor getPerformanceMonitor() {
+      return perfMon_;
+   }
+
+   /**
+    * Pipelines that are currently processing images (created with at least
+    * one processor and not yet halted).
+    *
+    * @return the pipelines, in no particular order
+    */
+   public static List<DefaultPipeline> getActivePipelines() {
+      synchronized (ACTIVE_PIPELINES) {
+         return new ArrayList<>(ACTIVE_PIPELINES);
+      }
+   }
+
+   public static boolean getShouldUseRingBuffers() {
+      return MMStudio.getInstance().profile().getSettings(DefaultPipeline.class)
+            .getBoolean(SHOULD_USE_RING_BUFFERS, false);
+   }
+
+   public static void setShouldUseRingBuffers(boolean useRingBuffers) {
+      MMStudio.getInstance().profile().getSettings(DefaultPipeline.class)
+            .putBoolean(SHOULD_USE_RING_BUFFERS, useRingBuffers);
+   }
+
+   public static int getRingBufferDepth() {
+      return MMStudio.getInstance().profile().getSettings(DefaultPipeline.class)
+            .getInteger(RING_BUFFER_DEPTH, 16);
+   }
+
+   public static void setRingBufferDepth(int depth) {
+      MMStudio.getInstance().profile().getSettings(DefaultPipeline.class)
+            .putInteger(RING_BUFFER_DEPTH, depth);
+   }
+
+   public static int getRingBufferBatchSize() {
+      return MMStudio.getInstance().profile().getSettings(DefaultPipeline.class)
+            .getInteger(RING_BUFFER_BATCH_SIZE, 4);
+   }
+
+   public static void setRingBufferBatchSize(int batchSize) {
+      MMStudio.getInstance().profile().getSettings(DefaultPipeline.class)
+            .putInteger(RING_BUFFER_BATCH_SIZE, batchSize);
+   }
 }
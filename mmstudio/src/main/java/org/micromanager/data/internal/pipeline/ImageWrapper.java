@@ -29,6 +29,7 @@ import org.micromanager.data.Image;
  */
 public final class ImageWrapper {
    private Image image_;
+   private final long creationTimeNs_ = System.nanoTime();
 
    public ImageWrapper(Image image) {
       image_ = image;
@@ -37,4 +38,13 @@ public final class ImageWrapper {
    public Image getImage() {
       return image_;
    }
+
+   /**
+    * When the image was handed to a context, for measuring queue latency.
+    *
+    * @return value of System.nanoTime() when this wrapper was created
+    */
+   public long getCreationTimeNs() {
+      return creationTimeNs_;
+   }
 }
@@ -0,0 +1,150 @@
+///////////////////////////////////////////////////////////////////////////////
+//PROJECT:       Micro-Manager
+//SUBSYSTEM:     Data API implementation
+//-----------------------------------------------------------------------------
+//
+// LICENSE:      This file is distributed under the BSD license.
+//               License text is included with the source distribution.
+//
+//               This file is distributed in the hope that it will be useful,
+//               but WITHOUT ANY WARRANTY; without even the implied warranty
+//               of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//
+//               IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+//               CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+//               INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES.
+
+package org.micromanager.data.internal.pipeline;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import org.micromanager.data.Datastore;
+import org.micromanager.data.Image;
+import org.micromanager.data.Processor;
+import org.micromanager.data.ProcessorContext;
+import org.micromanager.data.SummaryMetadata;
+import org.micromanager.internal.utils.ThreadFactoryFactory;
+
+/**
+ * Asynchronous context that runs a thread-safe processor on several images
+ * at once.
+ *
+ * <p>Each image is processed on one of a fixed number of threads. The images
+ * output by the processor for each input image are collected, and passed on
+ * (to the next context or the Datastore) in the order in which the input
+ * images arrived, so that later stages see the same sequence as with a
+ * single thread. At most two images per thread can be in flight; beyond
+ * that, insertImage() waits.
+ *
+ * <p>See {@link Processor#isThreadSafe()}.
+ */
+public final class ParallelContext extends BaseContext {
+   private final ExecutorService executor_;
+   private final int maxInFlight_;
+   private final Semaphore inFlight_;
+
+   // Guarded by monitor on this
+   private long nextInputSequence_ = 0;
+
+   private final Object reorderLock_ = new Object();
+   // Guarded by reorderLock_
+   private final Map<Long, List<Image>> completed_ = new HashMap<>();
+   private long nextOutputSequence_ = 0;
+
+   /**
+    * Collects the output of the processor for one input image.
+    */
+   private final class CollectingContext implements ProcessorContext {
+      private final List<Image> outputs_ = new ArrayList<>(1);
+
+      @Override
+      public void outputImage(Image image) {
+         outputs_.add(image);
+      }
+
+      @Override
+      public SummaryMetadata getSummaryMetadata() {
+         return ParallelContext.this.getSummaryMetadata();
+      }
+   }
+
+   /**
+    * Create a context and its processing threads.
+    *
+    * @param processor   the processor to run; must be thread-safe
+    * @param store       datastore receiving the output of the last stage
+    * @param parent      pipeline this context belongs to
+    * @param threadCount number of images processed at once
+    */
+   public ParallelContext(Processor processor, Datastore store,
+                          DefaultPipeline parent, int threadCount) {
+      super(processor, store, parent);
+      executor_ = Executors.newFixedThreadPool(threadCount,
+            ThreadFactoryFactory.createThreadFactory("Processor context for " + processor));
+      maxInFlight_ = 2 * threadCount;
+      inFlight_ = new Semaphore(maxInFlight_);
+   }
+
+   /**
+    * Start processing an image. If the input ImageWrapper has a null image,
+    * then wait for all images to be passed on, and flush the pipeline,
+    * passing the null along to the next context.
+    */
+   @Override
+   public synchronized void insertImage(ImageWrapper wrapper) {
+      if (wrapper.getImage() == null) {
+         flush(wrapper);
+         return;
+      }
+      inFlight_.acquireUninterruptibly();
+      metrics_.recordQueueDepth(maxInFlight_ - inFlight_.availablePermits());
+      final long sequence = nextInputSequence_++;
+      executor_.execute(() -> {
+         CollectingContext context = new CollectingContext();
+         runProcessor(wrapper, context);
+         complete(sequence, context.outputs_);
+      });
+   }
+
+   /**
+    * Record the output for an input image, and pass on all output that is
+    * next in order. Passing on happens under the lock, so that downstream
+    * sees one image at a time, in order.
+    */
+   private void complete(long sequence, List<Image> outputs) {
+      synchronized (reorderLock_) {
+         completed_.put(sequence, outputs);
+         List<Image> next;
+         while ((next = completed_.remove(nextOutputSequence_)) != null) {
+            for (Image image : next) {
+               outputImage(image);
+            }
+            ++nextOutputSequence_;
+            inFlight_.release();
+         }
+      }
+   }
+
+   // Must be called with monitor on this held
+   private void flush(ImageWrapper wrapper) {
+      // Wait until every image has been passed on
+      inFlight_.acquireUninterruptibly(maxInFlight_);
+      try {
+         processor_.cleanup(this);
+         if (sink_ != null) {
+            sink_.insertImage(wrapper);
+         }
+      } finally {
+         inFlight_.release(maxInFlight_);
+      }
+      executor_.shutdown();
+      if (flushLatch_ != null) {
+         flushLatch_.countDown();
+      }
+   }
+}
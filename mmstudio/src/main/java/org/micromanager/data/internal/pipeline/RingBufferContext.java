@@ -0,0 +1,124 @@
+///////////////////////////////////////////////////////////////////////////////
+//PROJECT:       Micro-Manager
+//SUBSYSTEM:     Data API implementation
+//-----------------------------------------------------------------------------
+//
+// LICENSE:      This file is distributed under the BSD license.
+//               License text is included with the source distribution.
+//
+//               This file is distributed in the hope that it will be useful,
+//               but WITHOUT ANY WARRANTY; without even the implied warranty
+//               of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//
+//               IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+//               CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+//               INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES.
+
+package org.micromanager.data.internal.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.micromanager.data.Datastore;
+import org.micromanager.data.Processor;
+import org.micromanager.internal.utils.ReportingUtils;
+
+/**
+ * Asynchronous context that receives images through a ring buffer.
+ *
+ * <p>Like AsynchronousContext, each processor runs on its own thread, but
+ * images are handed over through a bounded single-producer/single-consumer
+ * ring buffer instead of a blocking queue of size 1. This lets the upstream
+ * stage run ahead by up to the buffer depth, and the processing thread takes
+ * up to a batch of images at a time, so that the threads rarely need to wake
+ * each other up.
+ *
+ * <p>Images are normally inserted by a single thread (the previous stage, or
+ * the caller of Pipeline.insertImage(), which is synchronized). Insertion is
+ * nevertheless serialized with an (uncontended) lock, in case a processor
+ * outputs images from more than one thread.
+ */
+public final class RingBufferContext extends BaseContext {
+   private static final long IDLE_TIMEOUT_NS = TimeUnit.SECONDS.toNanos(1);
+
+   private final SpscRingBuffer<ImageWrapper> inputQueue_;
+   private final int batchSize_;
+   private final Object producerLock_ = new Object();
+   private boolean isFlushed_ = false;
+
+   /**
+    * Create a context and start its processing thread.
+    *
+    * @param processor the processor to run
+    * @param store     datastore receiving the output of the last stage
+    * @param parent    pipeline this context belongs to
+    * @param depth     number of images that can wait for the processor
+    * @param batchSize maximum number of images taken from the buffer at once
+    */
+   public RingBufferContext(Processor processor, Datastore store,
+                            DefaultPipeline parent, int depth, int batchSize) {
+      super(processor, store, parent);
+      inputQueue_ = new SpscRingBuffer<>(depth);
+      batchSize_ = Math.max(1, batchSize);
+      new Thread(this::processImages, "Processor context for " + processor_).start();
+   }
+
+   private void processImages() {
+      List<ImageWrapper> batch = new ArrayList<>(batchSize_);
+      while (true) {
+         int count;
+         try {
+            count = inputQueue_.drainTo(batch, batchSize_, IDLE_TIMEOUT_NS);
+         } catch (InterruptedException e) {
+            // Ignore it.
+            continue;
+         }
+         if (count == 0) {
+            if (isFlushed_) {
+               // All done.
+               return;
+            }
+            continue;
+         }
+         metrics_.recordQueueDepth(count + inputQueue_.size());
+         for (ImageWrapper wrapper : batch) {
+            processImage(wrapper);
+         }
+         batch.clear();
+      }
+   }
+
+   private void processImage(ImageWrapper wrapper) {
+      if (wrapper.getImage() == null) {
+         // Flushing the queue; cleanup the processor and pass the empty
+         // wrapper along.
+         processor_.cleanup(this);
+         if (sink_ != null) {
+            sink_.insertImage(wrapper);
+         }
+         isFlushed_ = true;
+         if (flushLatch_ != null) {
+            flushLatch_.countDown();
+         }
+         return;
+      }
+      isFlushed_ = false;
+      runProcessor(wrapper, this);
+   }
+
+   /**
+    * Queue an image for processing, waiting if the buffer is full. If the
+    * input ImageWrapper has a null image, then we flush the pipeline instead,
+    * passing the null along to the next context.
+    */
+   @Override
+   public void insertImage(ImageWrapper wrapper) {
+      synchronized (producerLock_) {
+         try {
+            inputQueue_.put(wrapper);
+         } catch (InterruptedException e) {
+            ReportingUtils.logError(e, "Interrupted while passing image along pipeline");
+         }
+      }
+   }
+}
@@ -0,0 +1,193 @@
+///////////////////////////////////////////////////////////////////////////////
+//PROJECT:       Micro-Manager
+//SUBSYSTEM:     Data API implementation
+//-----------------------------------------------------------------------------
+//
+// LICENSE:      This file is distributed under the BSD license.
+//               License text is included with the source distribution.
+//
+//               This file is distributed in the hope that it will be useful,
+//               but WITHOUT ANY WARRANTY; without even the implied warranty
+//               of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//
+//               IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+//               CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+//               INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES.
+
+package org.micromanager.data.internal.pipeline;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded queue for exactly one producer thread and one consumer thread at a
+ * time.
+ *
+ * <p>Elements are passed through an array, with the producer and the consumer
+ * each advancing their own counter; neither side takes a lock. A side that
+ * has to wait (for space or for elements) first spins briefly, then parks
+ * until the other side wakes it up.
+ *
+ * <p>Callers must make sure that producers (and consumers) do not overlap;
+ * successive producers on different threads are fine if they are ordered
+ * (e.g. by a lock).
+ *
+ * @param <E> element type
+ */
+final class SpscRingBuffer<E> {
+   // Number of times a waiting thread yields before it parks
+   private static final int SPINS = 64;
+   // Upper bound on a single park, in case a wake-up is missed
+   private static final long MAX_PARK_NS = TimeUnit.MILLISECONDS.toNanos(10);
+
+   private final Object[] elements_;
+   private final int mask_;
+   // Index of the next element to take; only advanced by the consumer
+   private final AtomicLong head_ = new AtomicLong();
+   // Index of the next free slot; only advanced by the producer
+   private final AtomicLong tail_ = new AtomicLong();
+   private volatile Thread parkedProducer_;
+   private volatile Thread parkedConsumer_;
+
+   /**
+    * Create a ring buffer.
+    *
+    * @param minCapacity number of elements that fit; rounded up to a power
+    *                    of 2
+    */
+   SpscRingBuffer(int minCapacity) {
+      if (minCapacity < 1 || minCapacity > (1 << 30)) {
+         throw new IllegalArgumentException("Invalid capacity: " + minCapacity);
+      }
+      int capacity = Integer.highestOneBit(minCapacity);
+      if (capacity < minCapacity) {
+         capacity <<= 1;
+      }
+      elements_ = new Object[capacity];
+      mask_ = capacity - 1;
+   }
+
+   int capacity() {
+      return elements_.length;
+   }
+
+   /**
+    * Number of elements in the buffer. Exact only when called by the
+    * producer or the consumer while the other side is idle.
+    */
+   int size() {
+      return (int) (tail_.get() - head_.get());
+   }
+
+   /**
+    * Add an element if there is space (producer only).
+    *
+    * @param element the element; not null
+    * @return false if the buffer was full
+    */
+   boolean offer(E element) {
+      long tail = tail_.get();
+      if (tail - head_.get() == elements_.length) {
+         return false;
+      }
+      elements_[(int) tail & mask_] = element;
+      tail_.set(tail + 1);
+      Thread consumer = parkedConsumer_;
+      if (consumer != null) {
+         LockSupport.unpark(consumer);
+      }
+      return true;
+   }
+
+   /**
+    * Add an element, waiting for space if needed (producer only).
+    *
+    * @param element the element; not null
+    * @throws InterruptedException if interrupted while waiting
+    */
+   void put(E element) throws InterruptedException {
+      int spins = 0;
+      while (!offer(element)) {
+         if (spins < SPINS) {
+            ++spins;
+            Thread.yield();
+            continue;
+         }
+         parkedProducer_ = Thread.currentThread();
+         // Check again after announcing ourselves, so a wake-up is not missed
+         if (tail_.get() - head_.get() == elements_.length) {
+            LockSupport.parkNanos(this, MAX_PARK_NS);
+         }
+         parkedProducer_ = null;
+         if (Thread.interrupted()) {
+            throw new InterruptedException();
+         }
+      }
+   }
+
+   /**
+    * Take up to maxElements elements, waiting up to the timeout for the first
+    * one (consumer only).
+    *
+    * @param target      list to add the elements to
+    * @param maxElements maximum number of elements to take
+    * @param timeoutNs   maximum time to wait if the buffer is empty
+    * @return number of elements taken; 0 on timeout
+    * @throws InterruptedException if interrupted while waiting
+    */
+   int drainTo(List<? super E> target, int maxElements, long timeoutNs)
+         throws InterruptedException {
+      long head = head_.get();
+      long available = tail_.get() - head;
+      if (available == 0) {
+         available = awaitElements(head, timeoutNs);
+         if (available == 0) {
+            return 0;
+         }
+      }
+      int count = (int) Math.min(available, maxElements);
+      for (int i = 0; i < count; ++i) {
+         int index = (int) (head + i) & mask_;
+         @SuppressWarnings("unchecked")
+         E element = (E) elements_[index];
+         elements_[index] = null;
+         target.add(element);
+      }
+      head_.set(head + count);
+      Thread producer = parkedProducer_;
+      if (producer != null) {
+         LockSupport.unpark(producer);
+      }
+      return count;
+   }
+
+   private long awaitElements(long head, long timeoutNs) throws InterruptedException {
+      final long deadline = System.nanoTime() + timeoutNs;
+      int spins = 0;
+      while (true) {
+         long available = tail_.get() - head;
+         if (available > 0) {
+            return available;
+         }
+         long remaining = deadline - System.nanoTime();
+         if (remaining <= 0) {
+            return 0;
+         }
+         if (spins < SPINS) {
+            ++spins;
+            Thread.yield();
+            continue;
+         }
+         parkedConsumer_ = Thread.currentThread();
+         if (tail_.get() == head) {
+            LockSupport.parkNanos(this, Math.min(remaining, MAX_PARK_NS));
+         }
+         parkedConsumer_ = null;
+         if (Thread.interrupted()) {
+            throw new InterruptedException();
+         }
+      }
+   }
+}
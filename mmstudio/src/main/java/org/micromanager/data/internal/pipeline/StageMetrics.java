@@ -0,0 +1,176 @@
+///////////////////////////////////////////////////////////////////////////////
+//PROJECT:       Micro-Manager
+//SUBSYSTEM:     Data API implementation
+//-----------------------------------------------------------------------------
+//
+// LICENSE:      This file is distributed under the BSD license.
+//               License text is included with the source distribution.
+//
+//               This file is distributed in the hope that it will be useful,
+//               but WITHOUT ANY WARRANTY; without even the implied warranty
+//               of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//
+//               IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+//               CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+//               INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES.
+
+package org.micromanager.data.internal.pipeline;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.micromanager.internal.utils.performance.PerformanceMonitor;
+
+/**
+ * Running totals describing the work of one pipeline stage (processor).
+ *
+ * <p>Updated by the thread(s) running the stage and readable from any
+ * thread. Totals are cumulative since the pipeline was created. If a
+ * PerformanceMonitor is given, each image is also sampled there, so that
+ * recent (smoothed) values can be seen alongside the totals.
+ */
+public final class StageMetrics {
+   private final String name_;
+   private final PerformanceMonitor perfMon_;
+   // PerformanceMonitor keys, built once rather than for every image
+   private final String queueDepthKey_;
+   private final String queueWaitKey_;
+   private final String processingKey_;
+   private final String imageInKey_;
+   private final String imageDroppedKey_;
+   private final AtomicLong imagesIn_ = new AtomicLong();
+   private final AtomicLong imagesOut_ = new AtomicLong();
+   private final AtomicLong imagesDropped_ = new AtomicLong();
+   private final AtomicLong queueWaitNs_ = new AtomicLong();
+   private final AtomicLong processingNs_ = new AtomicLong();
+   private final AtomicInteger queueDepth_ = new AtomicInteger();
+   private final AtomicInteger maxQueueDepth_ = new AtomicInteger();
+
+   StageMetrics(String name, PerformanceMonitor perfMon) {
+      name_ = name;
+      perfMon_ = perfMon;
+      queueDepthKey_ = name + " queue depth";
+      queueWaitKey_ = name + " queue wait (ms)";
+      processingKey_ = name + " processing (ms)";
+      imageInKey_ = name + " image in";
+      imageDroppedKey_ = name + " image dropped";
+   }
+
+   /**
+    * Record the number of images waiting for the stage.
+    */
+   void recordQueueDepth(int depth) {
+      queueDepth_.set(depth);
+      int max = maxQueueDepth_.get();
+      while (depth > max && !maxQueueDepth_.compareAndSet(max, depth)) {
+         max = maxQueueDepth_.get();
+      }
+      if (perfMon_ != null) {
+         perfMon_.sample(queueDepthKey_, depth);
+      }
+   }
+
+   /**
+    * Record that an image was processed.
+    *
+    * @param queueWaitNs  time between hand-off to the stage and the start of
+    *                     processing
+    * @param processingNs time taken by the processor
+    */
+   void recordImage(long queueWaitNs, long processingNs) {
+      imagesIn_.incrementAndGet();
+      queueWaitNs_.addAndGet(queueWaitNs);
+      processingNs_.addAndGet(processingNs);
+      if (perfMon_ != null) {
+         perfMon_.sample(queueWaitKey_, queueWaitNs / 1e6);
+         perfMon_.sample(processingKey_, processingNs / 1e6);
+         perfMon_.sampleTimeInterval(imageInKey_);
+      }
+   }
+
+   /**
+    * Record that the stage passed an image on.
+    */
+   void recordImageOut() {
+      imagesOut_.incrementAndGet();
+   }
+
+   /**
+    * Record that an image was lost, because the processor failed on it or
+    * because it could not be stored.
+    */
+   void recordImageDropped() {
+      imagesDropped_.incrementAndGet();
+      if (perfMon_ != null) {
+         perfMon_.sampleTimeInterval(imageDroppedKey_);
+      }
+   }
+
+   /**
+    * Name of the stage (usually that of the processor).
+    *
+    * @return the name
+    */
+   public String getName() {
+      return name_;
+   }
+
+   /**
+    * Number of images given to the processor.
+    *
+    * @return the number of images
+    */
+   public long getImagesIn() {
+      return imagesIn_.get();
+   }
+
+   /**
+    * Number of images the stage passed on. Processors may output more or
+    * fewer images than they receive.
+    *
+    * @return the number of images
+    */
+   public long getImagesOut() {
+      return imagesOut_.get();
+   }
+
+   public long getImagesDropped() {
+      return imagesDropped_.get();
+   }
+
+   /**
+    * Mean time images waited before being processed.
+    *
+    * @return the mean wait in milliseconds, or 0 if no image was processed
+    */
+   public double getMeanQueueWaitMs() {
+      long n = imagesIn_.get();
+      return n == 0 ? 0.0 : queueWaitNs_.get() / 1e6 / n;
+   }
+
+   /**
+    * Mean time the processor took per image.
+    *
+    * @return the mean processing time in milliseconds, or 0 if no image was
+    *     processed
+    */
+   public double getMeanProcessingMs() {
+      long n = imagesIn_.get();
+      return n == 0 ? 0.0 : processingNs_.get() / 1e6 / n;
+   }
+
+   public int getQueueDepth() {
+      return queueDepth_.get();
+   }
+
+   public int getMaxQueueDepth() {
+      return maxQueueDepth_.get();
+   }
+
+   @Override
+   public String toString() {
+      return String.format("%s: %d in, %d out, %d dropped, wait %.3f ms, processing %.3f ms, "
+                  + "queue %d (max %d)",
+            name_, getImagesIn(), getImagesOut(), getImagesDropped(), getMeanQueueWaitMs(),
+            getMeanProcessingMs(), getQueueDepth(), getMaxQueueDepth());
+   }
+}
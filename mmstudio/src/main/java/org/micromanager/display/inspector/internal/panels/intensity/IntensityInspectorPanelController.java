@@ -38,6 +38,7 @@ import org.micromanager.display.inspector.internal.panels.intensity.ImageStatsPu
 import org.micromanager.display.internal.displaywindow.DisplayController;
 import org.micromanager.display.internal.imagestats.ImageStats;
 import org.micromanager.display.internal.imagestats.ImagesAndStats;
+import org.micromanager.display.internal.imagestats.StatsSampling;
 import org.micromanager.internal.utils.CoalescentEDTRunnablePool;
 import org.micromanager.internal.utils.CoalescentEDTRunnablePool.CoalescentRunnable;
 import org.micromanager.internal.utils.ColorPalettes;
@@ -54,6 +55,7 @@ public class IntensityInspectorPanelController
       extends AbstractInspectorPanelController {
    public static final String HISTOGRAM_UPDATE_FREQUENCY = "HistogramUpdateFrequency";
    public static final String COLOR_PALETTE = "ColorPalette";
+   public static final String APPROXIMATE_LIVE_STATS = "ApproximateLiveHistograms";
    private static final String COLOR_BLIND_FRIENDLY = "Colorblind-friendly";
    private static final String RGBCMYW = "RGBCMYW";
    private static final String CUSTOM = "Custom";
@@ -64,6 +66,8 @@ public class IntensityInspectorPanelController
    private static final String RATE_1HZ = "1 Hz";
    private static final String RATE_05HZ = "0.5 Hz";
    private static final String IGNORE_LABEL = " ignoring zero pixels)";
+   // Quantiles within 0.5% of the pixels; half of the weight on earlier frames
+   private static final StatsSampling LIVE_STATS_SAMPLING = StatsSampling.create(0.005, 0.5);
 
    private final Studio studio_;
    private final JPanel panel_ = new JPanel();
@@ -104,6 +108,8 @@ public class IntensityInspectorPanelController
          new JCheckBoxMenuItem("Use ROI for Histograms and Autostretch");
    private final JCheckBoxMenuItem gearMenuIgnoreZerosItem_ =
          new JCheckBoxMenuItem("Ignore zero value pixels in Autostretch and Stats");
+   private final JCheckBoxMenuItem gearMenuApproximateLiveStatsItem_ =
+         new JCheckBoxMenuItem("Fast Approximate Histograms for Incoming Images");
 
    private final JPanel generalControlPanel_ = new JPanel();
    private final JComboBox<ColorModeCell.Item> colorModeComboBox_ = new JComboBox<>();
@@ -220,6 +226,17 @@ public class IntensityInspectorPanelController
       gearMenuIgnoreZerosItem_.addActionListener((ActionEvent e) ->
             handleIgnoreZeros(gearMenuIgnoreZerosItem_.isSelected()));
 
+      gearMenu_.add(gearMenuApproximateLiveStatsItem_);
+      gearMenuApproximateLiveStatsItem_.setSelected(studio_.profile().getSettings(
+            IntensityInspectorPanelController.class).getBoolean(
+            APPROXIMATE_LIVE_STATS, false));
+      gearMenuApproximateLiveStatsItem_.addActionListener((ActionEvent e) -> {
+         handleApproximateLiveStats(gearMenuApproximateLiveStatsItem_.isSelected());
+         studio_.profile().getSettings(
+               IntensityInspectorPanelController.class).putBoolean(
+               APPROXIMATE_LIVE_STATS, gearMenuApproximateLiveStatsItem_.isSelected());
+      });
+
    }
 
    private void setUpGeneralControlPanel() {
@@ -344,6 +361,13 @@ public class IntensityInspectorPanelController
       }
    }
 
+   private void handleApproximateLiveStats(boolean approximate) {
+      if (viewer_ instanceof DisplayController) {
+         ((DisplayController) viewer_).setLiveStatsSampling(approximate
+               ? LIVE_STATS_SAMPLING : StatsSampling.fullPrecision());
+      }
+   }
+
    private void handleHistogramUseROI(boolean useROI) {
       DisplaySettings oldSettings;
       DisplaySettings newSettings;
@@ -526,6 +550,7 @@ public class IntensityInspectorPanelController
          if (histogramMenuMap_.get(updateRate) != null) {
             handleHistogramUpdateRate(histogramMenuMap_.get(updateRate));
          }
+         handleApproximateLiveStats(gearMenuApproximateLiveStatsItem_.isSelected());
       });
    }
 
@@ -14,6 +14,7 @@
 package org.micromanager.display.internal.animate;
 
 import com.google.common.collect.Lists;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import org.micromanager.data.Coords;
@@ -82,6 +83,35 @@ public class DataCoordsAnimationState implements AnimationStateDelegate<Coords>
       return advanceAnimationPositionImpl(frames, true);
    }
 
+   /**
+    * Compute the positions that playback will display next, without changing
+    * the current position.
+    *
+    * @param count  maximum number of positions
+    * @param stride number of frames advanced per step (at least 1)
+    * @return the next positions, soonest first; fewer than count if playback
+    *     would come back to a position already listed
+    */
+   public synchronized List<Coords> peekNextPositions(int count, int stride) {
+      final Coords savedCoords = animationCoords_;
+      final double savedError = cumulativeFrameCountError_;
+      List<Coords> result = new ArrayList<>(count);
+      try {
+         while (result.size() < count) {
+            cumulativeFrameCountError_ = 0.0;
+            Coords next = advanceAnimationPositionImpl(Math.max(1, stride), true);
+            if (next == null || next.equals(savedCoords) || result.contains(next)) {
+               break;
+            }
+            result.add(next);
+         }
+      } finally {
+         animationCoords_ = savedCoords;
+         cumulativeFrameCountError_ = savedError;
+      }
+      return result;
+   }
+
    private Coords advanceAnimationPositionImpl(double frames,
                                                boolean skipNonExistent) {
       final Coords prevPos = animationCoords_;
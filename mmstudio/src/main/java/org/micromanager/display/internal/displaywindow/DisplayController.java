@@ -25,15 +25,18 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.RunnableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import org.micromanager.Studio;
 import org.micromanager.data.Coordinates;
 import org.micromanager.data.Coords;
@@ -44,6 +47,8 @@ import org.micromanager.data.Datastore;
 import org.micromanager.data.DatastoreClosingEvent;
 import org.micromanager.data.DatastoreFrozenEvent;
 import org.micromanager.data.Image;
+import org.micromanager.data.ImageDeletedEvent;
+import org.micromanager.data.ImageOverwrittenEvent;
 import org.micromanager.display.DataViewerListener;
 import org.micromanager.display.DisplaySettings;
 import org.micromanager.display.DisplayWindow;
@@ -53,6 +58,7 @@ import org.micromanager.display.internal.DefaultDisplaySettings;
 import org.micromanager.display.internal.RememberedDisplaySettings;
 import org.micromanager.display.internal.animate.AnimationController;
 import org.micromanager.display.internal.animate.DataCoordsAnimationState;
+import org.micromanager.display.internal.displaywindow.imagej.DisplayPyramid;
 import org.micromanager.display.internal.event.DataViewerDidBecomeActiveEvent;
 import org.micromanager.display.internal.event.DataViewerDidBecomeInvisibleEvent;
 import org.micromanager.display.internal.event.DataViewerDidBecomeVisibleEvent;
@@ -61,9 +67,11 @@ import org.micromanager.display.internal.event.DefaultDisplayDidShowImageEvent;
 import org.micromanager.display.internal.event.DisplayWindowDidAddOverlayEvent;
 import org.micromanager.display.internal.event.DisplayWindowDidRemoveOverlayEvent;
 import org.micromanager.display.internal.imagestats.BoundsRectAndMask;
+import org.micromanager.display.internal.imagestats.DisplayLatencyBudget;
 import org.micromanager.display.internal.imagestats.ImageStatsRequest;
 import org.micromanager.display.internal.imagestats.ImagesAndStats;
 import org.micromanager.display.internal.imagestats.StatsComputeQueue;
+import org.micromanager.display.internal.imagestats.StatsSampling;
 import org.micromanager.display.internal.link.LinkManager;
 import org.micromanager.display.internal.link.internal.DefaultLinkManager;
 import org.micromanager.display.overlay.Overlay;
@@ -73,6 +81,7 @@ import org.micromanager.internal.utils.CoalescentEDTRunnablePool.CoalescentRunna
 import org.micromanager.internal.utils.MustCallOnEDT;
 import org.micromanager.internal.utils.ReportingUtils;
 import org.micromanager.internal.utils.performance.PerformanceMonitor;
+import org.micromanager.internal.utils.performance.gui.PerformanceMonitorUI;
 
 /**
  * Main controller for the standard image viewer.
@@ -87,7 +96,6 @@ public final class DisplayController extends DisplayWindowAPIAdapter
       ImageStatsPublisher,
       DataCoordsAnimationState.CoordsProvider,
       AnimationController.Listener<Coords>,
-      StatsComputeQueue.Listener,
       OverlayListener {
    private final Studio studio_;
    private final DataProvider dataProvider_;
@@ -100,11 +108,14 @@ public final class DisplayController extends DisplayWindowAPIAdapter
 
    // Not final but set only upon creation
    private AnimationController<Coords> animationController_;
+   private DataCoordsAnimationState animationState_;
+
+   private final PlaybackReadAheadCache readAheadCache_;
 
    private final Set<String> playbackAxes_ = new HashSet<>();
 
    private final StatsComputeQueue computeQueue_ = StatsComputeQueue.create();
-   private static final long MIN_REPAINT_PERIOD_NS = Math.round(1e9 / 60.0);
+   private final DisplayHandoff handoff_;
    private static final double HIGH_SPEED_THRESHOLD_FPS = 30.0;
 
    private final LinkManager linkManager_;
@@ -148,6 +159,37 @@ public final class DisplayController extends DisplayWindowAPIAdapter
    private final long[] imageArrivalTimes_ = new long[IMAGE_TIMING_WINDOW_SIZE];
    private int imageTimingIndex_ = 0;
    private volatile double estimatedCameraFps_ = 0.0;
+   private volatile long lastImageArrivalNs_ = 0;
+   private volatile Coords lastImagePosition_;
+
+   // Latency-first display: images that would be painted later than the
+   // budget allows are dropped when newer images follow
+   private static final String SHOULD_LIMIT_LATENCY = "limit display latency";
+   private static final String LATENCY_BUDGET_MS = "display latency budget ms";
+   private static final int DEFAULT_LATENCY_BUDGET_MS = 100;
+   private static final int MAX_ARRIVAL_TIMES = 64;
+   private final DisplayLatencyBudget latencyBudget_ = DisplayLatencyBudget.create();
+   // Arrival times of images not yet requested for display, by coords
+   // Guarded by monitor on itself
+   private final Map<Coords, Long> arrivalTimes_ = new LinkedHashMap<Coords, Long>() {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Coords, Long> eldest) {
+         return size() > MAX_ARRIVAL_TIMES;
+      }
+   };
+   // Images shown in place of the data provider's images at the same coords;
+   // see displayLiveImage()
+   private final Map<Coords, Image> liveImages_ = new ConcurrentHashMap<>();
+
+   // Approximate stats are used only for the newest images while images keep
+   // arriving; once none has arrived for this long, they get exact stats.
+   private static final int LIVE_STATS_IDLE_MS = 500;
+   private volatile StatsSampling liveStatsSampling_ = StatsSampling.fullPrecision();
+   private final Timer exactStatsTimer_ = new Timer(LIVE_STATS_IDLE_MS, e -> {
+      if (!closeCompleted_) {
+         setDisplayPosition(getDisplayPosition(), true);
+      }
+   });
 
    //This static counter makes sure that each object has it's own unique id during runtime.
    private static final AtomicInteger counter = new AtomicInteger();
@@ -245,7 +287,7 @@ public final class DisplayController extends DisplayWindowAPIAdapter
                   builder.linkManager_);
       instance.initialize();
 
-      instance.computeQueue_.addListener(instance);
+      instance.computeQueue_.addListener(instance.handoff_);
 
       if (instance.dataProvider_.getNumImages() > 0) {
          Coords.Builder startPosition = Coordinates.builder();
@@ -273,8 +315,18 @@ public final class DisplayController extends DisplayWindowAPIAdapter
       dataProvider_ = dataProvider;
       controlsFactory_ = controlsFactory;
       linkManager_ = linkManager;
+      readAheadCache_ = PlaybackReadAheadCache.create(
+            position -> dataProvider.getImagesIgnoringAxes(position, Coords.CHANNEL));
 
       computeQueue_.setPerformanceMonitor(perfMon_);
+      computeQueue_.setLatencyBudget(latencyBudget_);
+      handoff_ = DisplayHandoff.create(computeQueue_, latencyBudget_, runnablePool_,
+            this::showImages);
+      handoff_.setPerformanceMonitor(perfMon_);
+      if (getShouldLimitLatency(studio)) {
+         latencyBudget_.setBudgetMs(getLatencyBudgetMs(studio));
+      }
+      exactStatsTimer_.setRepeats(false);
 
       ReportingUtils.logMessage("Class: " + this.getClass());
       ReportingUtils.logMessage("Classloader: " + this.getClass().getClassLoader());
@@ -284,14 +336,15 @@ public final class DisplayController extends DisplayWindowAPIAdapter
    private void initialize() {
       // Initialize some things that would leak 'this' if done in the
       // constructor
-      DataCoordsAnimationState animationState = DataCoordsAnimationState.create(this);
-      animationController_ = AnimationController.create(animationState);
+      animationState_ = DataCoordsAnimationState.create(this);
+      animationController_ = AnimationController.create(animationState_);
       animationController_.setPerformanceMonitor(perfMon_);
       animationController_.addListener(this);
 
       uiController_ = DisplayUIController.create(studio_, this, controlsFactory_,
             animationController_);
       uiController_.setPerformanceMonitor(perfMon_);
+      PerformanceMonitorUI.create(perfMon_, "Image display: " + dataProvider_.getName());
       // TODO Make sure frame controller forwards messages to us (e.g.
       // windowClosing() -> requestToClose())
 
@@ -324,6 +377,7 @@ public final class DisplayController extends DisplayWindowAPIAdapter
    }
 
    void frameDidBecomeActive() {
+      computeQueue_.setFocused();
       postEvent(DataViewerDidBecomeActiveEvent.create(this));
    }
 
@@ -341,18 +395,6 @@ public final class DisplayController extends DisplayWindowAPIAdapter
    // Scheduling images for display
    //
 
-   @Override
-   public long imageStatsReady(ImagesAndStats stats) {
-      if (perfMon_ != null) {
-         perfMon_.sampleTimeInterval("Image stats ready");
-      }
-
-      scheduleDisplayInUI(stats);
-
-      // Throttle display scheduling
-      return MIN_REPAINT_PERIOD_NS;
-   }
-
    /**
     * Calculate estimated camera frame rate from recent image arrivals.
     * Used for adaptive display throttling during high-speed acquisition.
@@ -388,112 +430,70 @@ public final class DisplayController extends DisplayWindowAPIAdapter
    }
 
 
-   private void scheduleDisplayInUI(final ImagesAndStats images) {
-      Preconditions.checkArgument(images.getRequest().getNumberOfImages() > 0);
-
-      // A note about congestion of event queue by excessive paint events:
-      //
-      // We know from experience (since Micro-Manager 1.4) that scheduling
-      // repaints too frequently will congest the EDT.
-      //
-      // One method to avoid congestion (which was previously used) is to
-      // explicitly detect and wait for the completion of painting on the EDT.
-      // If using that method, here would be the place to wait for previously
-      // requested paints to finish.
-      //
-      // Here, we schedule painting using coalescent runnables. No repaint is
-      // scheduled until the EDT catches up to the last of (the InvocationEvent
-      // resulting from) our coalescent runnables. Because the EDT will not
-      // catch up if congested, we don't exacerbate the situation by scheduling
-      // further repaints.
-      // It is also guaranteed that a repaint _will_ be scheduled when no
-      // longer congested, because before becoming idle the EDT will have to
-      // process the last of our coalescent runnable, thereby scheduling a
-      // repaint with the latest requested display position.
-      // One of the nice things about doing it this way is that we can
-      // coalesce the displaying tasks for multiple display windows.
-
-      runnablePool_.invokeAsLateAsPossibleWithCoalescence(new CoalescentRunnable() {
-         @Override
-         public Class<?> getCoalescenceClass() {
-            return getClass();
-         }
-
-         @Override
-         public CoalescentRunnable coalesceWith(CoalescentRunnable later) {
-            // Only the most recent repaint task need be run
-            if (perfMon_ != null) {
-               perfMon_.sampleTimeInterval("Scheduling of repaint coalesced");
+   // Called on the EDT by the hand-off, for images not dropped
+   @MustCallOnEDT
+   private void showImages(ImagesAndStats images) {
+      if (uiController_ == null) { // Closed
+         return;
+      }
+      Image primaryImage = images.getRequest().getImage(0);
+      Coords nominalCoords = images.getRequest().getNominalCoords();
+      if (nominalCoords.hasAxis(Coords.CHANNEL)) {
+         int channel = nominalCoords.getChannel();
+         for (Image image : images.getRequest().getImages()) {
+            if (image.getCoords().hasAxis(Coords.CHANNEL)
+                  && image.getCoords().getChannel() == channel) {
+               primaryImage = image;
+               break;
             }
-            return later;
          }
+      }
 
-         @Override
-         public void run() {
-            if (uiController_ == null) { // Closed
-               return;
-            }
-
-            Image primaryImage = images.getRequest().getImage(0);
-            Coords nominalCoords = images.getRequest().getNominalCoords();
-            if (nominalCoords.hasAxis(Coords.CHANNEL)) {
-               int channel = nominalCoords.getChannel();
-               for (Image image : images.getRequest().getImages()) {
-                  if (image.getCoords().hasAxis(Coords.CHANNEL)
-                        && image.getCoords().getChannel() == channel) {
-                     primaryImage = image;
-                     break;
-                  }
-               }
-            }
-
-            boolean imagesDiffer = true;
-            if (displayedImages_ != null
-                  && images.getRequest().getNumberOfImages()
-                  == displayedImages_.getRequest().getNumberOfImages()) {
-               imagesDiffer = false;
-               for (int i = 0; i < images.getRequest().getNumberOfImages(); ++i) {
-                  if (images.getRequest().getImage(i)
-                        != displayedImages_.getRequest().getImage(i)) {
-                     imagesDiffer = true;
-                     break;
-                  }
-               }
+      boolean imagesDiffer = true;
+      if (displayedImages_ != null
+            && images.getRequest().getNumberOfImages()
+            == displayedImages_.getRequest().getNumberOfImages()) {
+         imagesDiffer = false;
+         for (int i = 0; i < images.getRequest().getNumberOfImages(); ++i) {
+            if (images.getRequest().getImage(i)
+                  != displayedImages_.getRequest().getImage(i)) {
+               imagesDiffer = true;
+               break;
             }
+         }
+      }
 
-            if (perfMon_ != null) {
-               perfMon_.sample("Scheduling identical images (%)", imagesDiffer ? 0.0 : 100.0);
-            }
-            if (imagesDiffer || getDisplaySettings().isAutostretchEnabled()
-                  || getDisplaySettings().getColorMode()
-                  != DisplaySettings.ColorMode.COMPOSITE) {
-               uiController_.displayImages(images);
-            } else if (getDisplaySettings().getColorMode()
-                  == DisplaySettings.ColorMode.COMPOSITE) {
-               // in composite mode, keep the channel name in sync with the 
-               // channel set by the slider.  It would be even better to 
-               // disable the channel slider and display the names of all 
-               // channels, but that becomes very hacky
-               uiController_.updateSliders(images);
-               uiController_.setImageInfoLabel(images);
-            }
+      if (perfMon_ != null) {
+         perfMon_.sample("Scheduling identical images (%)", imagesDiffer ? 0.0 : 100.0);
+      }
+      if (imagesDiffer || getDisplaySettings().isAutostretchEnabled()
+            || getDisplaySettings().getColorMode()
+            != DisplaySettings.ColorMode.COMPOSITE) {
+         uiController_.displayImages(images);
+      } else if (getDisplaySettings().getColorMode()
+            == DisplaySettings.ColorMode.COMPOSITE) {
+         // in composite mode, keep the channel name in sync with the 
+         // channel set by the slider.  It would be even better to 
+         // disable the channel slider and display the names of all 
+         // channels, but that becomes very hacky
+         uiController_.updateSliders(images);
+         uiController_.setImageInfoLabel(images);
+      }
 
-            postEvent(DefaultDisplayDidShowImageEvent.create(
-                  DisplayController.this,
-                  images.getRequest().getImages(),
-                  primaryImage));
+      postEvent(DefaultDisplayDidShowImageEvent.create(
+            this,
+            images.getRequest().getImages(),
+            primaryImage));
 
-            if (images.getStatsSequenceNumber() > latestStatsSeqNr_) {
-               postEvent(ImageStatsChangedEvent.create(images));
-               latestStatsSeqNr_ = images.getStatsSequenceNumber();
-            }
-            displayedImages_ = images;
+      if (images.getStatsSequenceNumber() > latestStatsSeqNr_) {
+         postEvent(ImageStatsChangedEvent.create(images));
+         latestStatsSeqNr_ = images.getStatsSequenceNumber();
+      }
+      displayedImages_ = images;
 
-            if (perfMon_ != null) {
-               perfMon_.sampleTimeInterval("Scheduled repaint on EDT");
-            }
-         }
-      });
+      if (perfMon_ != null) {
+         perfMon_.sampleTimeInterval("Scheduled repaint on EDT");
+      }
    }
 
    @Override
@@ -565,7 +565,10 @@ public final class DisplayController extends DisplayWindowAPIAdapter
       // We don't currently make any adjustments (normalizations) to the
       // settings, but we probably should check that they are consistent.
 
-      if (adjustedSettings.isROIAutoscaleEnabled() != oldSettings.isROIAutoscaleEnabled()) {
+      if (adjustedSettings.isROIAutoscaleEnabled() != oldSettings.isROIAutoscaleEnabled()
+            || DisplayPyramid.getDownsamplingForZoom(adjustedSettings.getZoomRatio())
+            != DisplayPyramid.getDownsamplingForZoom(oldSettings.getZoomRatio())) {
+         // Stats depend on the ROI and on the level drawn at the zoom ratio.
          // We can't let this coalesce. No need to run on EDT but it's just as
          // good a thread as any.
          SwingUtilities.invokeLater(() -> {
@@ -607,15 +610,32 @@ public final class DisplayController extends DisplayWindowAPIAdapter
       }
 
       // Always compute stats for all channels
+      Coords positionNoChannel = position.copyRemovingAxes(Coords.CHANNEL);
+      AnimationController<Coords> animationController = animationController_;
+      boolean isPlaying = animationController != null && animationController.isAnimating();
       List<Image> images;
       try {
-         images = dataProvider_.getImagesIgnoringAxes(
-               position.copyRemovingAxes(Coords.CHANNEL),
-               Coords.CHANNEL);
+         images = readAheadCache_.get(positionNoChannel);
+         if (perfMon_ != null && isPlaying) {
+            perfMon_.sample("Playback read-ahead hit (%)", images != null ? 100.0 : 0.0);
+         }
+         if (images == null) {
+            images = dataProvider_.getImagesIgnoringAxes(positionNoChannel, Coords.CHANNEL);
+            if (isPlaying) {
+               readAheadCache_.put(positionNoChannel, images);
+            }
+         }
+         images = withLiveImages(position, images);
       } catch (IOException e) {
          // TODO Should display error
          images = Collections.emptyList();
       }
+      if (isPlaying) {
+         readAhead(animationController);
+      } else {
+         // Give the memory back as soon as playback stops
+         readAheadCache_.clear();
+      }
 
 
       // Handle missing images.
@@ -712,14 +732,59 @@ public final class DisplayController extends DisplayWindowAPIAdapter
       if (perfMon_ != null) {
          perfMon_.sampleTimeInterval("Submitting compute request");
       }
-      computeQueue_.submitRequest(ImageStatsRequest.create(position,
+      StatsSampling sampling = StatsSampling.fullPrecision();
+      if (!liveStatsSampling_.isFullPrecision()
+            && System.nanoTime() - lastImageArrivalNs_ < LIVE_STATS_IDLE_MS * 1000000L
+            && position.copyRemovingAxes(Coords.CHANNEL).equals(lastImagePosition_)) {
+         sampling = liveStatsSampling_;
+         // Replace the approximate stats once new images stop arriving
+         exactStatsTimer_.restart();
+      } else if (!images.isEmpty()) {
+         // When zoomed out, describe the downsampled level that is drawn
+         sampling = StatsSampling.downsampled(DisplayPyramid.getDownsampling(
+               getZoom(), images.get(0).getWidth(), images.get(0).getHeight()));
+      }
+      long arrivalNs = System.nanoTime();
+      synchronized (arrivalTimes_) {
+         for (Image image : images) {
+            Long imageArrivalNs = arrivalTimes_.remove(image.getCoords());
+            if (imageArrivalNs != null) {
+               arrivalNs = Math.min(arrivalNs, imageArrivalNs);
+            }
+         }
+      }
+      ImageStatsRequest request = ImageStatsRequest.create(position,
             images,
-            selection));
+            selection,
+            sampling,
+            arrivalNs);
+      handoff_.submitRequest(request);
 
       return position;
    }
 
 
+   /**
+    * Let the read-ahead cache read the positions that playback will display
+    * next.
+    */
+   private void readAhead(AnimationController<Coords> animationController) {
+      double fps = animationController.getAnimationRateFPS();
+      // Positions advanced per tick; at high rates, positions are skipped
+      int stride = Math.max(1, (int) Math.round(
+            fps * animationController.getTickIntervalMs() / 1000.0));
+      int count = readAheadCache_.getReadAheadCount(fps);
+      List<Coords> upcoming = new ArrayList<>(count);
+      for (Coords next : animationState_.peekNextPositions(count, stride)) {
+         Coords nextNoChannel = next.copyRemovingAxes(Coords.CHANNEL);
+         if (!upcoming.contains(nextNoChannel)) {
+            upcoming.add(nextNoChannel);
+         }
+      }
+      readAheadCache_.readAhead(upcoming);
+   }
+
+
    //
    // Implementation of AnimationController.Listener<Coords>
    //
@@ -887,6 +952,80 @@ public final class DisplayController extends DisplayWindowAPIAdapter
       computeQueue_.setProcessIntervalNs(intervalNs);
    }
 
+   /**
+    * Sets how precisely image statistics are computed while new images are
+    * arriving (e.g. during live mode). Stats for images that are displayed
+    * after new images stop arriving, or that the user navigates to, are
+    * always computed from every pixel.
+    *
+    * @param sampling sampling mode for statistics of incoming images
+    */
+   public void setLiveStatsSampling(StatsSampling sampling) {
+      Preconditions.checkNotNull(sampling);
+      liveStatsSampling_ = sampling;
+   }
+
+   public StatsSampling getLiveStatsSampling() {
+      return liveStatsSampling_;
+   }
+
+   /**
+    * Sets the limit on the time from the arrival of an image to its being
+    * painted. Images that would be painted later are dropped, as long as
+    * newer images follow them.
+    *
+    * @param budgetMs the limit in milliseconds, or 0 to display every image
+    *                 that the display rate allows, however late
+    */
+   public void setLatencyBudgetMs(double budgetMs) {
+      latencyBudget_.setBudgetMs(budgetMs);
+   }
+
+   public double getLatencyBudgetMs() {
+      return latencyBudget_.getBudgetMs();
+   }
+
+   DisplayLatencyBudget getLatencyBudget() {
+      return latencyBudget_;
+   }
+
+   /**
+    * Get a quantile of the arrival-to-paint latencies of the most recently
+    * painted images.
+    *
+    * @param q the quantile (0.0-1.0)
+    * @return the latency, in milliseconds
+    */
+   public double getLatencyQuantileMs(double q) {
+      return latencyBudget_.getLatencyQuantileMs(q);
+   }
+
+   /**
+    * Whether new display windows drop images to keep to a latency budget.
+    *
+    * @param studio the Studio instance
+    * @return true if display latency is limited
+    */
+   public static boolean getShouldLimitLatency(Studio studio) {
+      return studio.profile().getSettings(DisplayController.class)
+            .getBoolean(SHOULD_LIMIT_LATENCY, false);
+   }
+
+   public static void setShouldLimitLatency(Studio studio, boolean shouldLimit) {
+      studio.profile().getSettings(DisplayController.class)
+            .putBoolean(SHOULD_LIMIT_LATENCY, shouldLimit);
+   }
+
+   public static int getLatencyBudgetMs(Studio studio) {
+      return studio.profile().getSettings(DisplayController.class)
+            .getInteger(LATENCY_BUDGET_MS, DEFAULT_LATENCY_BUDGET_MS);
+   }
+
+   public static void setLatencyBudgetMs(Studio studio, int budgetMs) {
+      studio.profile().getSettings(DisplayController.class)
+            .putInteger(LATENCY_BUDGET_MS, budgetMs);
+   }
+
    /**
     * Returns the rate at which image statistics are computed.
     *
@@ -982,10 +1121,97 @@ public final class DisplayController extends DisplayWindowAPIAdapter
     */
    @Subscribe
    public void onNewImage(final DataProviderHasNewImageEvent event) {
+      readAheadCache_.invalidate(event.getImage().getCoords().copyRemovingAxes(Coords.CHANNEL));
+      newImageArrived(event.getImage().getCoords());
+   }
 
+   /**
+    * An image in the Datastore was replaced; forget the old one.
+    *
+    * @param event Contains the replaced image.
+    */
+   @Subscribe
+   public void onImageOverwritten(final ImageOverwrittenEvent event) {
+      readAheadCache_.invalidate(event.getNewImage().getCoords().copyRemovingAxes(Coords.CHANNEL));
+   }
+
+   /**
+    * An image was deleted from the Datastore; forget it.
+    *
+    * @param event Contains the deleted image.
+    */
+   @Subscribe
+   public void onImageDeleted(final ImageDeletedEvent event) {
+      readAheadCache_.invalidate(event.getImage().getCoords().copyRemovingAxes(Coords.CHANNEL));
+   }
+
+   /**
+    * Display an image that has not been added to the data provider, in place
+    * of the provider's image at the same coords. The provider should have an
+    * image at those coords, so that the axes and channels are known. The
+    * image is shown, and used for statistics, until it is replaced by another
+    * live image or removed with {@link #clearLiveImage(Coords)}.
+    *
+    * <p>This lets live mode show frames without storing each one in the
+    * Datastore and posting its events.
+    *
+    * @param image the image to display
+    */
+   public void displayLiveImage(Image image) {
+      liveImages_.put(image.getCoords(), image);
+      newImageArrived(image.getCoords());
+   }
+
+   /**
+    * Stop showing the live image at the given coords, e.g. because the image
+    * in the data provider is now at least as new.
+    *
+    * @param coords coords of the live image
+    */
+   public void clearLiveImage(Coords coords) {
+      liveImages_.remove(coords);
+   }
+
+   /**
+    * Stop showing any live images.
+    */
+   public void clearLiveImages() {
+      liveImages_.clear();
+   }
+
+   /**
+    * Replace the images from the data provider by the live images at the same
+    * position (ignoring channel), and add live images of channels missing from
+    * the provider.
+    */
+   private List<Image> withLiveImages(Coords position, List<Image> images) {
+      if (liveImages_.isEmpty()) {
+         return images;
+      }
+      Coords positionNoChannel = position.copyRemovingAxes(Coords.CHANNEL);
+      Map<Integer, Image> byChannel = new TreeMap<>();
+      for (Image image : images) {
+         byChannel.put(image.getCoords().getChannel(), image);
+      }
+      for (Image image : liveImages_.values()) {
+         if (image.getCoords().copyRemovingAxes(Coords.CHANNEL).equals(positionNoChannel)) {
+            byChannel.put(image.getCoords().getChannel(), image);
+         }
+      }
+      return new ArrayList<>(byChannel.values());
+   }
+
+   private void newImageArrived(Coords coords) {
       // Track image arrival time for adaptive display throttling
       long now = System.nanoTime();
       imageArrivalTimes_[imageTimingIndex_] = now;
+      lastImageArrivalNs_ = now;
+      lastImagePosition_ = coords.copyRemovingAxes(Coords.CHANNEL);
+      synchronized (arrivalTimes_) {
+         // A newer image at the same coords replaces the older one
+         arrivalTimes_.remove(coords);
+         arrivalTimes_.put(coords, now);
+      }
       imageTimingIndex_ = (imageTimingIndex_ + 1) % IMAGE_TIMING_WINDOW_SIZE;
       estimatedCameraFps_ = calculateCameraFps();
       if (perfMon_ != null) {
@@ -1003,7 +1229,7 @@ public final class DisplayController extends DisplayWindowAPIAdapter
       // any ongoing playback animation. Actual display of new images happens
       // upon receiving callbacks via the AnimationController.Listener
       // interface.
-      animationController_.newDataPosition(event.getImage().getCoords());
+      animationController_.newDataPosition(coords);
    }
 
 
@@ -1055,10 +1281,12 @@ public final class DisplayController extends DisplayWindowAPIAdapter
       // TODO Make sure this is accurate for composite and single-channel
       if (getDisplaySettings().getColorMode().equals(DisplaySettings.ColorMode.COMPOSITE)) {
          Coords displayPositionNoChannel = getDisplayPosition().copyRemovingAxes(Coords.CHANNEL);
-         return dataProvider_.getImagesIgnoringAxes(displayPositionNoChannel, Coords.CHANNEL);
+         return withLiveImages(displayPositionNoChannel,
+               dataProvider_.getImagesIgnoringAxes(displayPositionNoChannel, Coords.CHANNEL));
       }
       List<Image> result = new ArrayList<>();
-      result.add(dataProvider_.getImage(getDisplayPosition()));
+      Image liveImage = liveImages_.get(getDisplayPosition());
+      result.add(liveImage != null ? liveImage : dataProvider_.getImage(getDisplayPosition()));
       return result;
    }
 
@@ -1200,13 +1428,16 @@ public final class DisplayController extends DisplayWindowAPIAdapter
             // RememberedDisplaySettings we do not need to do it again here
          }
          dataProvider_.unregisterForEvents(this);
+         exactStatsTimer_.stop();
          try {
-            computeQueue_.removeListener(this);
+            computeQueue_.removeListener(handoff_);
             computeQueue_.shutdown();
          } catch (InterruptedException ie) {
             // TODO: report exception
          }
          perfMon_ = null;
+         handoff_.setPerformanceMonitor(null);
+         readAheadCache_.shutdown();
          animationController_.shutdown();
          animationController_.removeListener(this);
          animationController_ = null;
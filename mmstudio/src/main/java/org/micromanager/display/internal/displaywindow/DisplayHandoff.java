@@ -0,0 +1,171 @@
+// LICENSE:      This file is distributed under the BSD license.
+//               License text is included with the source distribution.
+//
+//               This file is distributed in the hope that it will be useful,
+//               but WITHOUT ANY WARRANTY; without even the implied warranty
+//               of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//
+//               IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+//               CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+//               INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES.
+
+package org.micromanager.display.internal.displaywindow;
+
+import com.google.common.base.Preconditions;
+import org.micromanager.display.internal.imagestats.DisplayLatencyBudget;
+import org.micromanager.display.internal.imagestats.ImageStatsRequest;
+import org.micromanager.display.internal.imagestats.ImagesAndStats;
+import org.micromanager.display.internal.imagestats.StatsComputeQueue;
+import org.micromanager.internal.utils.CoalescentEDTRunnablePool;
+import org.micromanager.internal.utils.CoalescentEDTRunnablePool.CoalescentRunnable;
+import org.micromanager.internal.utils.performance.PerformanceMonitor;
+
+/**
+ * Hands images whose stats are ready over to the EDT for painting.
+ *
+ * <p>Requests are submitted here rather than to the stats compute queue
+ * directly, so that the newest request is known: older images are dropped
+ * on the EDT if painting them would exceed the latency budget. Painting is
+ * scheduled with coalescent runnables, so that only the most recent images
+ * are painted when the EDT is behind, and the rate of scheduling is limited
+ * to that of the screen.
+ *
+ * <p>Used by {@code DisplayController}, and by the display benchmark so that
+ * it measures the same logic.
+ */
+public final class DisplayHandoff implements StatsComputeQueue.Listener {
+   private static final long MIN_REPAINT_PERIOD_NS = Math.round(1e9 / 60.0);
+
+   /**
+    * Paints images handed off to the EDT.
+    */
+   public interface Painter {
+      /**
+       * Paint the images. Called on the EDT.
+       *
+       * @param images the images and their stats
+       */
+      void paint(ImagesAndStats images);
+   }
+
+   private final StatsComputeQueue computeQueue_;
+   private final DisplayLatencyBudget latencyBudget_;
+   private final CoalescentEDTRunnablePool runnablePool_;
+   private final Painter painter_;
+   private volatile PerformanceMonitor perfMon_;
+
+   // The request most recently submitted for stats and display
+   private volatile ImageStatsRequest latestRequest_;
+
+   /**
+    * Create a hand-off. It must be added as a listener to the compute queue
+    * to receive results.
+    *
+    * @param computeQueue  the queue computing the stats of submitted requests
+    * @param latencyBudget the budget for dropping images that are too late
+    * @param runnablePool  pool used to schedule painting on the EDT
+    * @param painter       paints the images on the EDT
+    * @return the new hand-off
+    */
+   public static DisplayHandoff create(StatsComputeQueue computeQueue,
+                                       DisplayLatencyBudget latencyBudget,
+                                       CoalescentEDTRunnablePool runnablePool,
+                                       Painter painter) {
+      return new DisplayHandoff(computeQueue, latencyBudget, runnablePool, painter);
+   }
+
+   private DisplayHandoff(StatsComputeQueue computeQueue,
+                          DisplayLatencyBudget latencyBudget,
+                          CoalescentEDTRunnablePool runnablePool,
+                          Painter painter) {
+      computeQueue_ = computeQueue;
+      latencyBudget_ = latencyBudget;
+      runnablePool_ = runnablePool;
+      painter_ = painter;
+   }
+
+   public void setPerformanceMonitor(PerformanceMonitor perfMon) {
+      perfMon_ = perfMon;
+   }
+
+   /**
+    * Submit images for stats computation and then display.
+    *
+    * @param request the images to display
+    */
+   public void submitRequest(ImageStatsRequest request) {
+      latestRequest_ = request;
+      computeQueue_.submitRequest(request);
+   }
+
+   @Override
+   public long imageStatsReady(ImagesAndStats stats) {
+      PerformanceMonitor perfMon = perfMon_;
+      if (perfMon != null) {
+         perfMon.sampleTimeInterval("Image stats ready");
+      }
+
+      scheduleDisplayInUI(stats);
+
+      // Throttle display scheduling
+      return MIN_REPAINT_PERIOD_NS;
+   }
+
+   private void scheduleDisplayInUI(final ImagesAndStats images) {
+      Preconditions.checkArgument(images.getRequest().getNumberOfImages() > 0);
+
+      // A note about congestion of event queue by excessive paint events:
+      //
+      // We know from experience (since Micro-Manager 1.4) that scheduling
+      // repaints too frequently will congest the EDT.
+      //
+      // One method to avoid congestion (which was previously used) is to
+      // explicitly detect and wait for the completion of painting on the EDT.
+      // If using that method, here would be the place to wait for previously
+      // requested paints to finish.
+      //
+      // Here, we schedule painting using coalescent runnables. No repaint is
+      // scheduled until the EDT catches up to the last of (the InvocationEvent
+      // resulting from) our coalescent runnables. Because the EDT will not
+      // catch up if congested, we don't exacerbate the situation by scheduling
+      // further repaints.
+      // It is also guaranteed that a repaint _will_ be scheduled when no
+      // longer congested, because before becoming idle the EDT will have to
+      // process the last of our coalescent runnable, thereby scheduling a
+      // repaint with the latest requested display position.
+      // One of the nice things about doing it this way is that we can
+      // coalesce the displaying tasks for multiple display windows.
+
+      runnablePool_.invokeAsLateAsPossibleWithCoalescence(new CoalescentRunnable() {
+         @Override
+         public Class<?> getCoalescenceClass() {
+            return getClass();
+         }
+
+         @Override
+         public CoalescentRunnable coalesceWith(CoalescentRunnable later) {
+            // Only the most recent repaint task need be run
+            PerformanceMonitor perfMon = perfMon_;
+            if (perfMon != null) {
+               perfMon.sampleTimeInterval("Scheduling of repaint coalesced");
+            }
+            return later;
+         }
+
+         @Override
+         public void run() {
+            // Newer images will follow if a newer request was made
+            if (images.getRequest() != latestRequest_
+                  && latencyBudget_.wouldExceedWithRender(
+                        images.getRequest().getArrivalTimeNs(), System.nanoTime())) {
+               PerformanceMonitor perfMon = perfMon_;
+               if (perfMon != null) {
+                  perfMon.sampleTimeInterval("Display dropped (latency budget)");
+               }
+               return;
+            }
+            painter_.paint(images);
+         }
+      });
+   }
+}
@@ -98,6 +98,7 @@ import org.micromanager.display.internal.event.DisplayMouseEvent;
 import org.micromanager.display.internal.event.DisplayMouseWheelEvent;
 import org.micromanager.display.internal.gearmenu.GearButton;
 import org.micromanager.display.internal.imagestats.BoundsRectAndMask;
+import org.micromanager.display.internal.imagestats.DisplayLatencyBudget;
 import org.micromanager.display.internal.imagestats.ImageStats;
 import org.micromanager.display.internal.imagestats.ImagesAndStats;
 import org.micromanager.display.overlay.Overlay;
@@ -219,6 +220,11 @@ public final class DisplayUIController implements Closeable, WindowListener,
 
    final ScheduledThreadPoolExecutor skippedImageDisplayExecutor_;
    private ScheduledFuture<?> scheduledDisplayFuture_;
+   // With a latency budget, images skipped while a repaint was pending are
+   // displayed as soon as it completes. Accessed only on EDT.
+   private ImagesAndStats imagesAwaitingRepaint_;
+   // When the images being painted were handed to us. Accessed only on EDT.
+   private long newImagesReceivedNs_;
 
    // Display rate estimation
    private static final int DISPLAY_INTERVAL_SMOOTH_N_SAMPLES = 50;
@@ -888,10 +894,15 @@ public final class DisplayUIController implements Closeable, WindowListener,
       }
       if (repaintScheduledForNewImages_.get()) {
          scheduledDisplayFuture_ = scheduleSkippedImages(images);
+         if (displayController_.getLatencyBudget().isEnabled()) {
+            imagesAwaitingRepaint_ = images;
+         }
          return;
       }
 
       repaintScheduledForNewImages_.set(true);
+      imagesAwaitingRepaint_ = null;
+      newImagesReceivedNs_ = System.nanoTime();
 
       boolean firstTime = false;
       if (ijBridge_ == null) {
@@ -1732,6 +1743,32 @@ public final class DisplayUIController implements Closeable, WindowListener,
                   displayIntervalEstimator_.get().getQuantile(0.75));
          }
          showFPS();
+         recordLatency();
+
+         if (imagesAwaitingRepaint_ != null) {
+            final ImagesAndStats images = imagesAwaitingRepaint_;
+            imagesAwaitingRepaint_ = null;
+            SwingUtilities.invokeLater(() -> displayImages(images));
+         }
+      }
+   }
+
+   private void recordLatency() {
+      if (displayedImages_ == null) {
+         return;
+      }
+      long nowNs = System.nanoTime();
+      DisplayLatencyBudget budget = displayController_.getLatencyBudget();
+      budget.recordRenderTime(nowNs - newImagesReceivedNs_);
+      budget.recordLatency(nowNs - displayedImages_.getRequest().getArrivalTimeNs());
+      if (perfMon_ != null) {
+         perfMon_.sample("Render time (ms)", (nowNs - newImagesReceivedNs_) / 1e6);
+         perfMon_.sample("Arrival-to-paint latency 50th percentile (ms)",
+               budget.getLatencyQuantileMs(0.5));
+         perfMon_.sample("Arrival-to-paint latency 90th percentile (ms)",
+               budget.getLatencyQuantileMs(0.9));
+         perfMon_.sample("Arrival-to-paint latency 99th percentile (ms)",
+               budget.getLatencyQuantileMs(0.99));
       }
    }
 
@@ -0,0 +1,317 @@
+// LICENSE:      This file is distributed under the BSD license.
+//               License text is included with the source distribution.
+//
+//               This file is distributed in the hope that it will be useful,
+//               but WITHOUT ANY WARRANTY; without even the implied warranty
+//               of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//
+//               IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+//               CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+//               INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES.
+
+package org.micromanager.display.internal.displaywindow;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.micromanager.data.Coords;
+import org.micromanager.data.Image;
+import org.micromanager.internal.utils.ReportingUtils;
+import org.micromanager.internal.utils.ThreadFactoryFactory;
+
+/**
+ * Cache of the images (all channels) at the positions that animated playback
+ * is about to display, read ahead on a background thread.
+ *
+ * <p>During playback, the display controller asks for the images at each
+ * position it displays, and tells the cache which positions come next. The
+ * cache reads those positions, in order, on its own thread, so that the
+ * (possibly slow) reads from disk-backed data overlap with displaying
+ * earlier positions. Reads of positions that are no longer coming (because
+ * the user moved to another position, or playback stopped) are cancelled if
+ * they have not started yet.
+ *
+ * <p>Cached images are kept, most recently used first, up to a limit on the
+ * total size of their pixels, so that short datasets played in a loop are
+ * read only once. The limit is shared by the caches of all viewers. Images
+ * are dropped when playback stops. The cached images are the same objects
+ * that are passed on for statistics and rendering; nothing is copied.
+ */
+final class PlaybackReadAheadCache {
+   /**
+    * Reads the images of all channels at a position.
+    */
+   interface Loader {
+      List<Image> load(Coords positionNoChannel) throws IOException;
+   }
+
+   /**
+    * Limit on the total size of the images in a group of caches.
+    */
+   static final class Budget {
+      private final long maxBytes_;
+      // Guarded by monitor on this
+      private long bytes_ = 0;
+
+      Budget(long maxBytes) {
+         maxBytes_ = maxBytes;
+      }
+
+      synchronized boolean tryAcquire(long bytes) {
+         if (bytes_ + bytes > maxBytes_) {
+            return false;
+         }
+         bytes_ += bytes;
+         return true;
+      }
+
+      synchronized void release(long bytes) {
+         bytes_ -= bytes;
+      }
+
+      long getMaxBytes() {
+         return maxBytes_;
+      }
+
+      synchronized long getBytes() {
+         return bytes_;
+      }
+   }
+
+   // Read ahead this much playback time, within the bounds below
+   private static final double READ_AHEAD_SECONDS = 0.5;
+   private static final int MIN_READ_AHEAD_POSITIONS = 2;
+   private static final int MAX_READ_AHEAD_POSITIONS = 32;
+
+   // Shared by all viewers: an eighth of the heap, but no more than 512 MB
+   private static final Budget SHARED_BUDGET =
+         new Budget(Math.min(512L << 20, Runtime.getRuntime().maxMemory() / 8));
+
+   private final Loader loader_;
+   private final Budget budget_;
+   private final ExecutorService ioExecutor_;
+
+   // All guarded by monitor on this
+   private final LinkedHashMap<Coords, List<Image>> entries_ =
+         new LinkedHashMap<>(16, 0.75f, true);
+   private long bytes_ = 0;
+   // Reads not yet finished, including those cancelled after they started
+   private final Map<Coords, Read> pendingReads_ = new LinkedHashMap<>();
+
+   /**
+    * Read of the images at one position, on the read-ahead thread.
+    */
+   private final class Read implements Runnable {
+      private final Coords positionNoChannel_;
+      // All guarded by monitor on the cache
+      private Future<?> future_;
+      private boolean started_ = false;
+      // Set when the images at the position may have changed since the
+      // read started, so that its (possibly old) images are not stored
+      private boolean stale_ = false;
+
+      Read(Coords positionNoChannel) {
+         positionNoChannel_ = positionNoChannel;
+      }
+
+      @Override
+      public void run() {
+         synchronized (PlaybackReadAheadCache.this) {
+            started_ = true;
+         }
+         List<Image> images = null;
+         try {
+            images = loader_.load(positionNoChannel_);
+         } catch (IOException e) {
+            ReportingUtils.logError(e, "Failed to read images ahead for playback");
+         } finally {
+            synchronized (PlaybackReadAheadCache.this) {
+               pendingReads_.remove(positionNoChannel_, this);
+               if (images != null && !stale_) {
+                  put(positionNoChannel_, images);
+               }
+            }
+         }
+      }
+
+      // Must be called with monitor on the cache held
+      void cancel() {
+         future_.cancel(false);
+      }
+   }
+
+   static PlaybackReadAheadCache create(Loader loader) {
+      return new PlaybackReadAheadCache(loader, SHARED_BUDGET);
+   }
+
+   PlaybackReadAheadCache(Loader loader, long maxBytes) {
+      this(loader, new Budget(maxBytes));
+   }
+
+   PlaybackReadAheadCache(Loader loader, Budget budget) {
+      loader_ = loader;
+      budget_ = budget;
+      ioExecutor_ = Executors.newSingleThreadExecutor(
+            ThreadFactoryFactory.createThreadFactory("Playback read-ahead"));
+   }
+
+   /**
+    * Get the cached images at a position.
+    *
+    * @param positionNoChannel the position, without channel axis
+    * @return a new list of the images, or null if not cached
+    */
+   synchronized List<Image> get(Coords positionNoChannel) {
+      List<Image> images = entries_.get(positionNoChannel);
+      return images == null ? null : new ArrayList<>(images);
+   }
+
+   /**
+    * Add images read by the caller, so that they need not be read again
+    * when playback loops.
+    *
+    * @param positionNoChannel the position, without channel axis
+    * @param images            the images of all channels at the position
+    */
+   synchronized void put(Coords positionNoChannel, List<Image> images) {
+      if (images.isEmpty()) {
+         return;
+      }
+      long size = sizeOf(images);
+      if (size > budget_.getMaxBytes()) {
+         return;
+      }
+      remove(positionNoChannel);
+      // Make room by dropping our own least recently used images; if the
+      // budget is taken by other viewers, do not cache
+      Iterator<List<Image>> it = entries_.values().iterator();
+      while (!budget_.tryAcquire(size)) {
+         if (!it.hasNext()) {
+            return;
+         }
+         release(sizeOf(it.next()));
+         it.remove();
+      }
+      entries_.put(positionNoChannel, new ArrayList<>(images));
+      bytes_ += size;
+   }
+
+   // Must be called with monitor on this held
+   private void remove(Coords positionNoChannel) {
+      List<Image> removed = entries_.remove(positionNoChannel);
+      if (removed != null) {
+         release(sizeOf(removed));
+      }
+   }
+
+   // Must be called with monitor on this held
+   private void release(long size) {
+      bytes_ -= size;
+      budget_.release(size);
+   }
+
+   /**
+    * The number of positions to read ahead when playback advances through
+    * the given number of positions per second, limited so that the
+    * positions read ahead take at most half of the cache.
+    *
+    * @param positionsPerSecond rate at which positions are displayed
+    * @return the number of positions, at least 1
+    */
+   synchronized int getReadAheadCount(double positionsPerSecond) {
+      int count = (int) Math.ceil(positionsPerSecond * READ_AHEAD_SECONDS);
+      count = Math.max(MIN_READ_AHEAD_POSITIONS, Math.min(MAX_READ_AHEAD_POSITIONS, count));
+      if (!entries_.isEmpty()) {
+         long entryBytes = Math.max(1, bytes_ / entries_.size());
+         count = (int) Math.min(count, Math.max(1, budget_.getMaxBytes() / 2 / entryBytes));
+      }
+      return count;
+   }
+
+   /**
+    * Make sure the given positions are (being) read, in order. Pending reads
+    * of other positions are cancelled.
+    *
+    * @param upcomingNoChannel the positions playback will display next,
+    *                          without channel axis, soonest first
+    */
+   synchronized void readAhead(List<Coords> upcomingNoChannel) {
+      Set<Coords> upcoming = new HashSet<>(upcomingNoChannel);
+      Iterator<Read> it = pendingReads_.values().iterator();
+      while (it.hasNext()) {
+         Read read = it.next();
+         // Reads already started are left to finish and store their images
+         if (!read.started_ && !upcoming.contains(read.positionNoChannel_)) {
+            read.cancel();
+            it.remove();
+         }
+      }
+      for (Coords position : upcomingNoChannel) {
+         if (entries_.containsKey(position) || pendingReads_.containsKey(position)) {
+            continue;
+         }
+         Read read = new Read(position);
+         read.future_ = ioExecutor_.submit(read);
+         pendingReads_.put(position, read);
+      }
+   }
+
+   /**
+    * Cancel all pending reads and drop all images, because playback stopped.
+    * The memory is then available to the caches of other viewers.
+    */
+   synchronized void clear() {
+      // Reads that have already started do not store their images
+      for (Read read : pendingReads_.values()) {
+         read.stale_ = true;
+         read.cancel();
+      }
+      pendingReads_.clear();
+      release(bytes_);
+      entries_.clear();
+   }
+
+   /**
+    * Forget the images at a position, because they have changed. A read of
+    * that position in progress does not store its images; reads of other
+    * positions are not affected.
+    *
+    * @param positionNoChannel the position, without channel axis
+    */
+   synchronized void invalidate(Coords positionNoChannel) {
+      Read read = pendingReads_.remove(positionNoChannel);
+      if (read != null) {
+         read.stale_ = true;
+         read.cancel();
+      }
+      remove(positionNoChannel);
+   }
+
+   synchronized long getBytes() {
+      return bytes_;
+   }
+
+   /**
+    * Stop the read-ahead thread and drop all images.
+    */
+   void shutdown() {
+      clear();
+      ioExecutor_.shutdown();
+   }
+
+   private static long sizeOf(List<Image> images) {
+      long size = 0;
+      for (Image image : images) {
+         size += (long) image.getWidth() * image.getHeight() * image.getBytesPerPixel();
+      }
+      return size;
+   }
+}
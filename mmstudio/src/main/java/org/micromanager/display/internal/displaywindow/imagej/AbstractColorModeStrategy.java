@@ -36,14 +36,15 @@ abstract class AbstractColorModeStrategy implements ColorModeStrategy {
    protected AbstractColorModeStrategy(int nColors) {
    }
 
-   private int getMinimum(int index) {
+   // Also used for direct compositing (see CompositeRenderer)
+   int getMinimum(int index) {
       if (index >= minima_.size()) {
          return 0;
       }
       return minima_.get(index);
    }
 
-   private int getMaximum(int index) {
+   int getMaximum(int index) {
       if (index >= maxima_.size()) {
          return getSampleMax();
       }
@@ -81,7 +82,7 @@ abstract class AbstractColorModeStrategy implements ColorModeStrategy {
 
    protected abstract int getModeForCompositeImage();
 
-   private LUT getCachedLUT(int index) {
+   LUT getCachedLUT(int index) {
       if (cachedLUTs_ == null) {
          cachedLUTs_ = new ArrayList<LUT>();
       }
@@ -0,0 +1,446 @@
+// LICENSE:      This file is distributed under the BSD license.
+//               License text is included with the source distribution.
+//
+//               This file is distributed in the hope that it will be useful,
+//               but WITHOUT ANY WARRANTY; without even the implied warranty
+//               of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//
+//               IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+//               CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+//               INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES.
+
+package org.micromanager.display.internal.displaywindow.imagej;
+
+import ij.process.LUT;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RecursiveAction;
+import org.micromanager.display.internal.imagestats.StatsScheduler;
+import org.micromanager.internal.utils.ReportingUtils;
+import org.micromanager.internal.utils.ThreadFactoryFactory;
+
+/**
+ * Renders multi-channel composite images directly from the channels' pixel
+ * arrays, in place of ImageJ's {@code CompositeImage}.
+ *
+ * <p>ImageJ composites channel by channel on the EDT: it copies each
+ * channel's pixels, converts each to an RGB image, and then adds the RGB
+ * images together. Here, each channel's samples are mapped to RGB with a
+ * table (built once per LUT and display range, for every possible sample
+ * value), and the channels are added, saturating each color component, in
+ * one pass over the pixels. The rows are divided among the threads of the
+ * band pool of the {@link StatsScheduler} (so that, like image statistics,
+ * compositing leaves processors free for acquisition), and all of this
+ * happens on the renderer's own thread; the EDT only draws the finished
+ * image.
+ *
+ * <p>Rendering is asynchronous: a submitted request is rendered as soon as
+ * the previous one is done, and requests submitted in the meantime replace
+ * one another, so that only the newest is rendered. When an image has been
+ * rendered, the callback given at construction is called (on the renderer's
+ * thread), typically to repaint the canvas, which then draws the newest
+ * rendered image. Rendered images are reused once they are no longer
+ * displayed.
+ *
+ * <p>The result matches ImageJ's composite (additive) mode, with ImageJ's
+ * mapping of 16-bit samples to LUT indices applied to 8-bit samples as well.
+ * A request can also ask for a downsampled image (every n-th pixel of every
+ * n-th row; see {@link DisplayPyramid}), for zoomed-out display.
+ */
+final class CompositeRenderer {
+   // Bands of fewer output pixels than this are not split further
+   private static final int MIN_PIXELS_PER_BAND = 1 << 16;
+   private static final int MAX_CACHED_TABLES = 32;
+   private static final int MAX_SPARE_IMAGES = 2;
+
+   /**
+    * What to render: the pixels, LUT and display range of each visible
+    * channel.
+    */
+   static final class Request {
+      private final int width_;
+      private final int height_;
+      private final int downsampling_;
+      private final List<Object> pixels_ = new ArrayList<>();
+      private final List<LUT> luts_ = new ArrayList<>();
+      private final List<int[]> ranges_ = new ArrayList<>();
+
+      /**
+       * Create an empty (black) request.
+       *
+       * @param width        width of the channel images
+       * @param height       height of the channel images
+       * @param downsampling 1, or a power of 2 to render a downsampled image
+       */
+      Request(int width, int height, int downsampling) {
+         width_ = width;
+         height_ = height;
+         downsampling_ = downsampling;
+      }
+
+      /**
+       * Add a channel.
+       *
+       * @param pixels the channel's samples, as {@code byte[]} or
+       *               {@code short[]}, in rows of width samples
+       * @param lut    the channel's LUT
+       * @param min    sample value mapped to the first LUT entry
+       * @param max    sample value mapped to the last LUT entry
+       * @return false if the pixels are not supported
+       */
+      boolean addChannel(Object pixels, LUT lut, int min, int max) {
+         int length;
+         if (pixels instanceof byte[]) {
+            length = ((byte[]) pixels).length;
+         } else if (pixels instanceof short[]) {
+            length = ((short[]) pixels).length;
+         } else {
+            return false;
+         }
+         if (length != width_ * height_) {
+            return false;
+         }
+         pixels_.add(pixels);
+         luts_.add(lut);
+         ranges_.add(new int[] {min, max});
+         return true;
+      }
+
+      int getDownsampling() {
+         return downsampling_;
+      }
+
+      int getRenderedWidth() {
+         return DisplayPyramid.getLevelSize(width_, downsampling_);
+      }
+
+      int getRenderedHeight() {
+         return DisplayPyramid.getLevelSize(height_, downsampling_);
+      }
+
+      // Whether the rendered image would be the same. Pixel arrays and LUTs
+      // are compared by identity.
+      boolean isSameAs(Request other) {
+         if (other == null || width_ != other.width_ || height_ != other.height_
+               || downsampling_ != other.downsampling_
+               || pixels_.size() != other.pixels_.size()) {
+            return false;
+         }
+         for (int i = 0; i < pixels_.size(); ++i) {
+            if (pixels_.get(i) != other.pixels_.get(i)
+                  || luts_.get(i) != other.luts_.get(i)
+                  || !Arrays.equals(ranges_.get(i), other.ranges_.get(i))) {
+               return false;
+            }
+         }
+         return true;
+      }
+   }
+
+   /**
+    * A rendered image, valid until {@link #endDrawing} is called.
+    */
+   static final class Rendering {
+      private final Request request_;
+      private final BufferedImage image_;
+      private final boolean isCurrent_;
+
+      private Rendering(Request request, BufferedImage image, boolean isCurrent) {
+         request_ = request;
+         image_ = image;
+         isCurrent_ = isCurrent;
+      }
+
+      BufferedImage getImage() {
+         return image_;
+      }
+
+      int getDownsampling() {
+         return request_.getDownsampling();
+      }
+
+      /**
+       * Whether this is the rendering of the last submitted request.
+       *
+       * @return false if a newer request is yet to be rendered
+       */
+      boolean isCurrent() {
+         return isCurrent_;
+      }
+   }
+
+   private static final class TableKey {
+      private final LUT lut_;
+      private final int min_;
+      private final int max_;
+      private final int valueCount_;
+
+      TableKey(LUT lut, int min, int max, int valueCount) {
+         lut_ = lut;
+         min_ = min;
+         max_ = max;
+         valueCount_ = valueCount;
+      }
+
+      @Override
+      public boolean equals(Object other) {
+         if (!(other instanceof TableKey)) {
+            return false;
+         }
+         TableKey key = (TableKey) other;
+         return lut_ == key.lut_ && min_ == key.min_ && max_ == key.max_
+               && valueCount_ == key.valueCount_;
+      }
+
+      @Override
+      public int hashCode() {
+         return ((System.identityHashCode(lut_) * 31 + min_) * 31 + max_) * 31 + valueCount_;
+      }
+   }
+
+   private final Runnable renderedCallback_;
+   private final ExecutorService renderExecutor_;
+
+   // Only accessed on the render thread
+   private final Map<TableKey, int[]> tables_ =
+         new LinkedHashMap<TableKey, int[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<TableKey, int[]> eldest) {
+               return size() > MAX_CACHED_TABLES;
+            }
+         };
+
+   // All guarded by monitor on this
+   private Request submitted_;
+   private Request pending_;
+   private Request published_;
+   private BufferedImage publishedImage_;
+   private BufferedImage drawingImage_;
+   private final Deque<BufferedImage> spareImages_ = new ArrayDeque<>();
+   private boolean isShutDown_ = false;
+
+   /**
+    * Create a renderer.
+    *
+    * @param renderedCallback called on the render thread each time an image
+    *                         has been rendered
+    */
+   CompositeRenderer(Runnable renderedCallback) {
+      renderedCallback_ = renderedCallback;
+      renderExecutor_ = Executors.newSingleThreadExecutor(
+            ThreadFactoryFactory.createThreadFactory("Composite renderer"));
+   }
+
+   /**
+    * Request rendering, unless the request is the same as the previous one.
+    *
+    * @param request what to render
+    */
+   synchronized void submit(Request request) {
+      if (isShutDown_ || request.isSameAs(submitted_)) {
+         return;
+      }
+      submitted_ = request;
+      boolean isRenderScheduled = pending_ != null;
+      pending_ = request;
+      if (!isRenderScheduled) {
+         renderExecutor_.submit(this::renderPending);
+      }
+   }
+
+   /**
+    * Get the newest rendered image for drawing. Must be followed by
+    * {@link #endDrawing}, after which the image may be overwritten.
+    *
+    * @return the rendering, or null if nothing has been rendered yet
+    */
+   synchronized Rendering beginDrawing() {
+      if (publishedImage_ == null) {
+         return null;
+      }
+      drawingImage_ = publishedImage_;
+      return new Rendering(published_, publishedImage_, published_ == submitted_);
+   }
+
+   synchronized void endDrawing() {
+      if (drawingImage_ != null && drawingImage_ != publishedImage_) {
+         recycle(drawingImage_);
+      }
+      drawingImage_ = null;
+   }
+
+   /**
+    * Stop rendering and drop the rendered images.
+    */
+   void shutdown() {
+      synchronized (this) {
+         isShutDown_ = true;
+         pending_ = null;
+         publishedImage_ = null;
+         spareImages_.clear();
+      }
+      renderExecutor_.shutdown();
+   }
+
+   private void renderPending() {
+      Request request;
+      BufferedImage image;
+      synchronized (this) {
+         request = pending_;
+         pending_ = null;
+         if (request == null) {
+            return;
+         }
+         image = takeImage(request.getRenderedWidth(), request.getRenderedHeight());
+      }
+      try {
+         render(request, ((DataBufferInt) image.getRaster().getDataBuffer()).getData());
+      } catch (RuntimeException e) {
+         ReportingUtils.logError(e, "Failed to render composite image");
+         return;
+      }
+      synchronized (this) {
+         if (isShutDown_) {
+            return;
+         }
+         if (publishedImage_ != null && publishedImage_ != drawingImage_) {
+            recycle(publishedImage_);
+         }
+         published_ = request;
+         publishedImage_ = image;
+      }
+      renderedCallback_.run();
+   }
+
+   // Must be called with monitor on this held
+   private BufferedImage takeImage(int width, int height) {
+      while (!spareImages_.isEmpty()) {
+         BufferedImage image = spareImages_.pop();
+         if (image.getWidth() == width && image.getHeight() == height) {
+            return image;
+         }
+      }
+      return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+   }
+
+   // Must be called with monitor on this held
+   private void recycle(BufferedImage image) {
+      if (!isShutDown_ && spareImages_.size() < MAX_SPARE_IMAGES) {
+         spareImages_.push(image);
+      }
+   }
+
+   private void render(Request request, int[] rgb) {
+      int[][] tables = new int[request.pixels_.size()][];
+      for (int i = 0; i < tables.length; ++i) {
+         int valueCount = request.pixels_.get(i) instanceof byte[] ? 1 << 8 : 1 << 16;
+         int[] range = request.ranges_.get(i);
+         TableKey key = new TableKey(request.luts_.get(i), range[0], range[1], valueCount);
+         tables[i] = tables_.get(key);
+         if (tables[i] == null) {
+            tables[i] = createTable(request.luts_.get(i), range[0], range[1], valueCount);
+            tables_.put(key, tables[i]);
+         }
+      }
+      StatsScheduler.getInstance().getBandPool().invoke(new BandTask(request, tables, rgb,
+            0, request.getRenderedHeight()));
+   }
+
+   /**
+    * Map every sample value to the RGB color it is displayed with. Samples
+    * are mapped to LUT indices the same way as ImageJ does for 16-bit images.
+    *
+    * @param lut        the LUT
+    * @param min        sample value mapped to the first LUT entry
+    * @param max        sample value mapped to the last LUT entry
+    * @param valueCount number of possible sample values
+    * @return the RGB color for each sample value
+    */
+   static int[] createTable(LUT lut, int min, int max, int valueCount) {
+      int[] colors = new int[256];
+      for (int i = 0; i < colors.length; ++i) {
+         colors[i] = lut.getRGB(i) & 0xffffff;
+      }
+      double scale = 256.0 / (max - min + 1);
+      int[] table = new int[valueCount];
+      for (int value = 0; value < valueCount; ++value) {
+         int index = (int) (Math.max(0, value - min) * scale + 0.5);
+         table[value] = colors[Math.min(255, index)];
+      }
+      return table;
+   }
+
+   // Add two RGB colors, saturating each component
+   static int addSaturated(int rgb1, int rgb2) {
+      int r = Math.min(255, ((rgb1 >> 16) & 0xff) + ((rgb2 >> 16) & 0xff));
+      int g = Math.min(255, ((rgb1 >> 8) & 0xff) + ((rgb2 >> 8) & 0xff));
+      int b = Math.min(255, (rgb1 & 0xff) + (rgb2 & 0xff));
+      return (r << 16) | (g << 8) | b;
+   }
+
+   private static final class BandTask extends RecursiveAction {
+      private final Request request_;
+      private final int[][] tables_;
+      private final int[] rgb_;
+      private final int startRow_;
+      private final int endRow_;
+
+      BandTask(Request request, int[][] tables, int[] rgb, int startRow, int endRow) {
+         request_ = request;
+         tables_ = tables;
+         rgb_ = rgb;
+         startRow_ = startRow;
+         endRow_ = endRow;
+      }
+
+      @Override
+      protected void compute() {
+         int rows = endRow_ - startRow_;
+         if (rows > 1 && (long) rows * request_.getRenderedWidth() > MIN_PIXELS_PER_BAND) {
+            int mid = startRow_ + rows / 2;
+            invokeAll(new BandTask(request_, tables_, rgb_, startRow_, mid),
+                  new BandTask(request_, tables_, rgb_, mid, endRow_));
+            return;
+         }
+         int width = request_.width_;
+         int step = request_.downsampling_;
+         int renderedWidth = request_.getRenderedWidth();
+         if (tables_.length == 0) {
+            Arrays.fill(rgb_, startRow_ * renderedWidth, endRow_ * renderedWidth, 0);
+            return;
+         }
+         for (int channel = 0; channel < tables_.length; ++channel) {
+            Object pixels = request_.pixels_.get(channel);
+            int[] table = tables_[channel];
+            boolean isFirst = channel == 0;
+            for (int row = startRow_; row < endRow_; ++row) {
+               int src = row * step * width;
+               int dst = row * renderedWidth;
+               int end = dst + renderedWidth;
+               if (pixels instanceof byte[]) {
+                  byte[] samples = (byte[]) pixels;
+                  for (; dst < end; ++dst, src += step) {
+                     int color = table[samples[src] & 0xff];
+                     rgb_[dst] = isFirst ? color : addSaturated(rgb_[dst], color);
+                  }
+               } else {
+                  short[] samples = (short[]) pixels;
+                  for (; dst < end; ++dst, src += step) {
+                     int color = table[samples[src] & 0xffff];
+                     rgb_[dst] = isFirst ? color : addSaturated(rgb_[dst], color);
+                  }
+               }
+            }
+         }
+      }
+   }
+}
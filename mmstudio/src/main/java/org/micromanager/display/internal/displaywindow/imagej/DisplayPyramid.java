@@ -0,0 +1,308 @@
+// LICENSE:      This file is distributed under the BSD license.
+//               License text is included with the source distribution.
+//
+//               This file is distributed in the hope that it will be useful,
+//               but WITHOUT ANY WARRANTY; without even the implied warranty
+//               of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//
+//               IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+//               CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+//               INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES.
+
+package org.micromanager.display.internal.displaywindow.imagej;
+
+import ij.process.ByteProcessor;
+import ij.process.ColorProcessor;
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+import ij.process.LUT;
+import ij.process.ShortProcessor;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Downsampled levels of large images, for drawing them when zoomed out.
+ *
+ * <p>Level n of an image holds every 2^n-th pixel of every 2^n-th row,
+ * starting at the top left pixel. Drawing such a level scaled up by 2^n
+ * shows the same pixels as drawing the full image with nearest-neighbor
+ * scaling, but converting it to screen colors takes a 4^n-th of the time.
+ * The level used is the coarsest one that still has at least one pixel per
+ * screen pixel at the current zoom.
+ *
+ * <p>Levels are generated when first needed (from the nearest finer level
+ * already generated) and kept, most recently used first, up to a limit on their total
+ * size. They are keyed by the identity of the full image's pixel array, which
+ * is not retained by the cache; levels of pixel arrays no longer in use are
+ * evicted as new levels are added. Pixel arrays must not be modified while
+ * they are displayed.
+ *
+ * <p>Image statistics computed while zoomed out use the same pixel grid (see
+ * {@code StatsSampling.downsampled}), so that the histogram describes the
+ * pixels that are shown.
+ *
+ * <p>Must be used on a single thread (the EDT, for the canvas).
+ */
+public final class DisplayPyramid {
+   // Images smaller than this are always drawn at full resolution
+   private static final long MIN_PIXELS = 1L << 22;
+   private static final int MAX_DOWNSAMPLING = 64;
+
+   private final long maxBytes_;
+   private final LinkedHashMap<PixelsKey, Object[]> levels_ =
+         new LinkedHashMap<>(16, 0.75f, true);
+   private long bytes_ = 0;
+
+   private static final class PixelsKey {
+      private final WeakReference<Object> pixels_;
+      private final int hash_;
+
+      PixelsKey(Object pixels) {
+         pixels_ = new WeakReference<>(pixels);
+         hash_ = System.identityHashCode(pixels);
+      }
+
+      @Override
+      public boolean equals(Object other) {
+         if (!(other instanceof PixelsKey)) {
+            return false;
+         }
+         Object pixels = pixels_.get();
+         return pixels != null && pixels == ((PixelsKey) other).pixels_.get();
+      }
+
+      @Override
+      public int hashCode() {
+         return hash_;
+      }
+   }
+
+   /**
+    * The downsampling factor (a power of 2) of the level matching a zoom
+    * ratio, regardless of image size.
+    *
+    * @param zoomRatio the zoom ratio of the display
+    * @return the downsampling factor; 1 for full resolution
+    */
+   public static int getDownsamplingForZoom(double zoomRatio) {
+      if (!(zoomRatio > 0.0) || zoomRatio > 0.5) {
+         return 1;
+      }
+      return Integer.highestOneBit(
+            (int) Math.min(MAX_DOWNSAMPLING, Math.floor(1.0 / zoomRatio)));
+   }
+
+   /**
+    * The downsampling factor (a power of 2) to use for displaying an image
+    * at a zoom ratio.
+    *
+    * @param zoomRatio the zoom ratio of the display
+    * @param width     image width
+    * @param height    image height
+    * @return the downsampling factor; 1 for full resolution
+    */
+   public static int getDownsampling(double zoomRatio, int width, int height) {
+      if ((long) width * height < MIN_PIXELS) {
+         return 1;
+      }
+      int factor = getDownsamplingForZoom(zoomRatio);
+      while (factor > 1 && (factor > width || factor > height)) {
+         factor /= 2;
+      }
+      return factor;
+   }
+
+   static int getLevelSize(int size, int downsampling) {
+      return (size + downsampling - 1) / downsampling;
+   }
+
+   static DisplayPyramid create() {
+      // A sixteenth of the heap, but no more than 256 MB
+      return new DisplayPyramid(Math.min(256L << 20, Runtime.getRuntime().maxMemory() / 16));
+   }
+
+   DisplayPyramid(long maxBytes) {
+      maxBytes_ = maxBytes;
+   }
+
+   /**
+    * Get the level of an ImageJ image that matches a zoom ratio, with the
+    * same LUT and display range.
+    *
+    * @param proc      the full resolution image
+    * @param zoomRatio the zoom ratio of the display
+    * @return the level, or null if the image should be drawn at full
+    *     resolution
+    */
+   ImageProcessor getLevel(ImageProcessor proc, double zoomRatio) {
+      int width = proc.getWidth();
+      int height = proc.getHeight();
+      int downsampling = getDownsampling(zoomRatio, width, height);
+      if (downsampling == 1) {
+         return null;
+      }
+      Object pixels = getLevelPixels(proc.getPixels(), width, height, downsampling);
+      if (pixels == null) {
+         return null;
+      }
+      int levelWidth = getLevelSize(width, downsampling);
+      int levelHeight = getLevelSize(height, downsampling);
+      if (proc instanceof ColorProcessor) {
+         return new ColorProcessor(levelWidth, levelHeight, (int[]) pixels);
+      }
+      ImageProcessor level;
+      if (proc instanceof ByteProcessor) {
+         level = new ByteProcessor(levelWidth, levelHeight, (byte[]) pixels, null);
+      } else if (proc instanceof ShortProcessor) {
+         level = new ShortProcessor(levelWidth, levelHeight, (short[]) pixels, null);
+      } else if (proc instanceof FloatProcessor) {
+         level = new FloatProcessor(levelWidth, levelHeight, (float[]) pixels, null);
+      } else {
+         return null;
+      }
+      LUT lut = proc.getLut();
+      if (lut != null) {
+         level.setLut(lut); // Also sets the display range
+      } else {
+         level.setMinAndMax(proc.getMin(), proc.getMax());
+      }
+      return level;
+   }
+
+   /**
+    * Get the pixels of a level of an image, generating them if necessary.
+    *
+    * @param pixels       the full resolution pixels (byte, short, int, or
+    *                     float array)
+    * @param width        image width
+    * @param height       image height
+    * @param downsampling a power of 2
+    * @return the level's pixels, in rows of {@code getLevelSize(width,
+    *     downsampling)}; null if the pixel type is not supported
+    */
+   Object getLevelPixels(Object pixels, int width, int height, int downsampling) {
+      int levelIndex = Integer.numberOfTrailingZeros(downsampling);
+      PixelsKey key = new PixelsKey(pixels);
+      Object[] levels = levels_.get(key);
+      if (levels != null && levelIndex < levels.length && levels[levelIndex] != null) {
+         return levels[levelIndex];
+      }
+
+      // Start from the coarsest level we have that is finer than needed
+      Object source = pixels;
+      int sourceFactor = 1;
+      if (levels != null) {
+         for (int i = Math.min(levelIndex, levels.length) - 1; i > 0; --i) {
+            if (levels[i] != null) {
+               source = levels[i];
+               sourceFactor = 1 << i;
+               break;
+            }
+         }
+      }
+      Object result = decimate(source, getLevelSize(width, sourceFactor),
+            getLevelSize(height, sourceFactor), downsampling / sourceFactor);
+      if (result == null) {
+         return null;
+      }
+
+      long size = sizeOf(result);
+      if (size > maxBytes_) {
+         return result;
+      }
+      if (levels == null) {
+         levels = new Object[levelIndex + 1];
+      } else if (levels.length <= levelIndex) {
+         Object[] grown = new Object[levelIndex + 1];
+         System.arraycopy(levels, 0, grown, 0, levels.length);
+         levels = grown;
+      }
+      levels[levelIndex] = result;
+      levels_.put(key, levels);
+      bytes_ += size;
+      Iterator<Object[]> it = levels_.values().iterator();
+      while (bytes_ > maxBytes_ && it.hasNext()) {
+         Object[] evicted = it.next();
+         if (evicted == levels) {
+            continue;
+         }
+         for (Object level : evicted) {
+            if (level != null) {
+               bytes_ -= sizeOf(level);
+            }
+         }
+         it.remove();
+      }
+      return result;
+   }
+
+   long getBytes() {
+      return bytes_;
+   }
+
+   void clear() {
+      levels_.clear();
+      bytes_ = 0;
+   }
+
+   private static Object decimate(Object pixels, int width, int height, int factor) {
+      int levelWidth = getLevelSize(width, factor);
+      int levelHeight = getLevelSize(height, factor);
+      int length = levelWidth * levelHeight;
+      if (pixels instanceof byte[]) {
+         byte[] src = (byte[]) pixels;
+         byte[] dst = new byte[length];
+         int i = 0;
+         for (int y = 0; y < height; y += factor) {
+            for (int x = y * width, end = x + width; x < end; x += factor) {
+               dst[i++] = src[x];
+            }
+         }
+         return dst;
+      } else if (pixels instanceof short[]) {
+         short[] src = (short[]) pixels;
+         short[] dst = new short[length];
+         int i = 0;
+         for (int y = 0; y < height; y += factor) {
+            for (int x = y * width, end = x + width; x < end; x += factor) {
+               dst[i++] = src[x];
+            }
+         }
+         return dst;
+      } else if (pixels instanceof int[]) {
+         int[] src = (int[]) pixels;
+         int[] dst = new int[length];
+         int i = 0;
+         for (int y = 0; y < height; y += factor) {
+            for (int x = y * width, end = x + width; x < end; x += factor) {
+               dst[i++] = src[x];
+            }
+         }
+         return dst;
+      } else if (pixels instanceof float[]) {
+         float[] src = (float[]) pixels;
+         float[] dst = new float[length];
+         int i = 0;
+         for (int y = 0; y < height; y += factor) {
+            for (int x = y * width, end = x + width; x < end; x += factor) {
+               dst[i++] = src[x];
+            }
+         }
+         return dst;
+      }
+      return null;
+   }
+
+   private static long sizeOf(Object pixels) {
+      if (pixels instanceof byte[]) {
+         return ((byte[]) pixels).length;
+      } else if (pixels instanceof short[]) {
+         return 2L * ((short[]) pixels).length;
+      } else if (pixels instanceof int[]) {
+         return 4L * ((int[]) pixels).length;
+      } else {
+         return 4L * ((float[]) pixels).length;
+      }
+   }
+}
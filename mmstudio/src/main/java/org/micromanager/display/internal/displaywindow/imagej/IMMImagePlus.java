@@ -14,6 +14,8 @@
 
 package org.micromanager.display.internal.displaywindow.imagej;
 
+import java.awt.Image;
+
 /**
  * Common interface of {@code MMImagePlus} and {@code MMCompositeImage},
  * providing access to protected members of {@code ij.ImagePlus}.
@@ -74,4 +76,20 @@ interface IMMImagePlus {
     * @return the extent of the time axis
     */
    public int getNFramesWithoutSideEffect();
-}
\ No newline at end of file
+
+   /**
+    * Make {@code getImage} return the given image, and postpone the
+    * conversion of the image by {@code updateImage}, until
+    * {@link #endSubstituteImage} is called.
+    *
+    * <p>This lets the canvas have ImageJ draw an image rendered by other
+    * means (or no image, if the canvas has already drawn it), together with
+    * the selection, overlays, and zoom indicator.
+    *
+    * @param image the image to draw in place of ImageJ's, in the same
+    *              coordinates; null to draw no image
+    */
+   public void beginSubstituteImage(Image image);
+
+   public void endSubstituteImage();
+}
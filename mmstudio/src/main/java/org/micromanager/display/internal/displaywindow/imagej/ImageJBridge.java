@@ -24,6 +24,7 @@ import ij.gui.Roi;
 import ij.io.FileInfo;
 import ij.measure.Calibration;
 import ij.process.ByteProcessor;
+import ij.process.LUT;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics2D;
@@ -114,6 +115,14 @@ public final class ImageJBridge {
    // which may be monochrome, composite, or RGB.
    private ColorModeStrategy colorModeStrategy_;
 
+   // Draws composite images in place of ImageJ's CompositeImage
+   private final CompositeRenderer compositeRenderer_ = new CompositeRenderer(
+         () -> SwingUtilities.invokeLater(() -> {
+            if (canvas_ != null) {
+               canvas_.repaint();
+            }
+         }));
+
    private Roi lastSeenRoi_;
    private Rectangle lastSeenRoiRect_;
 
@@ -236,6 +245,7 @@ public final class ImageJBridge {
       imagePlus_.close(); // Also closes the window
       imagePlus_ = null;
       colorModeStrategy_.releaseImagePlus();
+      compositeRenderer_.shutdown();
       proxyStack_ = null;
       uiController_ = null;
    }
@@ -487,6 +497,46 @@ public final class ImageJBridge {
       uiController_.paintDidFinish();
    }
 
+   CompositeRenderer getCompositeRenderer() {
+      return compositeRenderer_;
+   }
+
+   /**
+    * Describe the currently displayed composite image for the direct
+    * renderer.
+    *
+    * @param downsampling 1, or a power of 2 to render a downsampled image
+    * @return the request, or null if not in composite mode or if the images
+    *     are not supported (ImageJ then draws the composite)
+    */
+   @MustCallOnEDT
+   CompositeRenderer.Request getCompositeRenderRequest(int downsampling) {
+      if (!(imagePlus_ instanceof MMCompositeImage)
+            || !(colorModeStrategy_ instanceof CompositeColorModeStrategy)
+            || ((CompositeImage) imagePlus_).getMode() != CompositeImage.COMPOSITE) {
+         return null;
+      }
+      CompositeColorModeStrategy strategy = (CompositeColorModeStrategy) colorModeStrategy_;
+      int nChannels = getIJNumberOfChannels();
+      CompositeRenderer.Request request = new CompositeRenderer.Request(
+            getMMWidth(), getMMHeight(), downsampling);
+      for (Image image : uiController_.getDisplayedImages()) {
+         if (image.getNumComponents() != 1) {
+            return null;
+         }
+         int channel = Math.max(0, image.getCoords().getChannel());
+         if (channel >= nChannels || !strategy.isVisibleInComposite(channel)) {
+            continue;
+         }
+         LUT lut = strategy.getCachedLUT(channel);
+         if (!request.addChannel(image.getRawPixels(), lut,
+               strategy.getMinimum(channel), strategy.getMaximum(channel))) {
+            return null;
+         }
+      }
+      return request;
+   }
+
    Coords getMMCoordsForIJFlatIndex(int flatIndex) {
       int[] ijPos3d = imagePlus_.convertIndexToPosition(flatIndex);
       int channel = ijPos3d[0] - 1;
@@ -16,6 +16,7 @@ package org.micromanager.display.internal.displaywindow.imagej;
 
 import ij.CompositeImage;
 import ij.ImagePlus;
+import java.awt.Image;
 
 /**
  * Wrapped version of ImageJ's {@code CompositeImage}.
@@ -25,6 +26,11 @@ import ij.ImagePlus;
  */
 public final class MMCompositeImage extends CompositeImage
       implements IMMImagePlus {
+   // See beginSubstituteImage()
+   private boolean isSubstituting_ = false;
+   private Image substituteImage_;
+   private boolean imageStale_ = false;
+
    static MMCompositeImage create(ImageJBridge parent, ImagePlus predecessor) {
       return new MMCompositeImage(parent, predecessor);
    }
@@ -34,6 +40,39 @@ public final class MMCompositeImage extends CompositeImage
       // So far we don't use parent reference
    }
 
+   @Override
+   public void beginSubstituteImage(Image image) {
+      isSubstituting_ = true;
+      substituteImage_ = image;
+   }
+
+   @Override
+   public void endSubstituteImage() {
+      isSubstituting_ = false;
+      substituteImage_ = null;
+   }
+
+   @Override
+   public void updateImage() {
+      if (isSubstituting_) {
+         imageStale_ = true;
+         return;
+      }
+      imageStale_ = false;
+      super.updateImage();
+   }
+
+   @Override
+   public Image getImage() {
+      if (isSubstituting_) {
+         return substituteImage_;
+      }
+      if (imageStale_) {
+         updateImage();
+      }
+      return super.getImage();
+   }
+
    @Override
    public void setDimensionsWithoutUpdate(
          int nChannels, int nSlices, int nFrames) {
@@ -15,12 +15,16 @@
 package org.micromanager.display.internal.displaywindow.imagej;
 
 import ij.IJ;
+import ij.Prefs;
 import ij.gui.ImageCanvas;
+import ij.process.ImageProcessor;
 import java.awt.Container;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Image;
 import java.awt.Rectangle;
+import java.awt.RenderingHints;
 import java.awt.Window;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
@@ -33,6 +37,7 @@ import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
+import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
 import javax.swing.SwingUtilities;
 import org.micromanager.internal.utils.MustCallOnEDT;
@@ -48,6 +53,7 @@ public final class MMImageCanvas extends ImageCanvas
 
    private Dimension preferredSize_;
    private BufferedImage offscreenBuffer_;
+   private final DisplayPyramid pyramid_ = DisplayPyramid.create();
 
    @MustCallOnEDT
    static MMImageCanvas create(ImageJBridge parent) {
@@ -108,9 +114,10 @@ public final class MMImageCanvas extends ImageCanvas
          offscreenBuffer_ = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
       }
       Graphics2D offG = offscreenBuffer_.createGraphics();
+      boolean isImageCurrent;
       try {
          // Let ImageJ draw the image, selection, zoom indicator, etc. into the buffer
-         super.paint(offG);
+         isImageCurrent = paintImage(offG);
          // Paint MM overlays on top, still into the buffer
          parent_.paintMMOverlays(offG, w, h, srcRect);
       } finally {
@@ -118,7 +125,97 @@ public final class MMImageCanvas extends ImageCanvas
       }
       // Blit the complete composite to the screen in one operation — no flicker
       g.drawImage(offscreenBuffer_, 0, 0, null);
-      parent_.ijPaintDidFinish();
+      // Otherwise, we will be repainted when the new image has been rendered
+      if (isImageCurrent) {
+         parent_.ijPaintDidFinish();
+      }
+   }
+
+   /**
+    * Let ImageJ draw the image and everything on it, except where we can
+    * render the image faster ourselves: composite images are rendered by
+    * the {@code CompositeRenderer}, and large images viewed zoomed out are
+    * drawn from a downsampled level.
+    *
+    * @return false if an older rendering of a composite image was drawn
+    *     because the current one is not ready
+    */
+   private boolean paintImage(Graphics2D g) {
+      // ImageJ draws ROIs and overlays on its own off-screen image, which
+      // would cover an image drawn by us first
+      boolean mayDrawFirst = imp.getRoi() == null && getOverlay() == null
+            && getShowAllList() == null && !Prefs.paintDoubleBuffered;
+      double zoom = getMagnification();
+      int downsampling = mayDrawFirst
+            ? DisplayPyramid.getDownsampling(zoom, imp.getWidth(), imp.getHeight()) : 1;
+
+      CompositeRenderer.Request request = parent_.getCompositeRenderRequest(downsampling);
+      if (request != null) {
+         CompositeRenderer renderer = parent_.getCompositeRenderer();
+         renderer.submit(request);
+         CompositeRenderer.Rendering rendering = renderer.beginDrawing();
+         try {
+            if (rendering == null) {
+               // Nothing rendered yet; draw everything but the image
+               paintWithSubstituteImage(g, null);
+               return false;
+            }
+            if (rendering.getDownsampling() == 1) {
+               paintWithSubstituteImage(g, rendering.getImage());
+            } else if (mayDrawFirst) {
+               drawLevel(g, rendering.getImage(), rendering.getDownsampling());
+               paintWithSubstituteImage(g, null);
+            } else {
+               // Downsampled rendering from before an ROI was set
+               paintWithSubstituteImage(g, null);
+               return false;
+            }
+            return rendering.isCurrent();
+         } finally {
+            renderer.endDrawing();
+         }
+      }
+
+      if (downsampling > 1 && imp instanceof MMImagePlus && imp.getProcessor() != null) {
+         ImageProcessor level = pyramid_.getLevel(imp.getProcessor(), zoom);
+         if (level != null) {
+            drawLevel(g, level.createImage(), downsampling);
+            paintWithSubstituteImage(g, null);
+            return true;
+         }
+      }
+      super.paint(g);
+      return true;
+   }
+
+   // Let ImageJ paint, drawing the given image (or none) instead of its own
+   private void paintWithSubstituteImage(Graphics2D g, Image image) {
+      IMMImagePlus mmImagePlus = (IMMImagePlus) imp;
+      mmImagePlus.beginSubstituteImage(image);
+      try {
+         super.paint(g);
+      } finally {
+         mmImagePlus.endSubstituteImage();
+      }
+   }
+
+   // Draw a downsampled image, whose pixel (x, y) is image pixel (x, y) times
+   // the downsampling, in place of the image
+   private void drawLevel(Graphics2D g, Image level, int downsampling) {
+      double zoom = getMagnification();
+      double scale = zoom * downsampling;
+      Graphics2D levelG = (Graphics2D) g.create();
+      try {
+         levelG.clipRect(0, 0, (int) (srcRect.width * zoom), (int) (srcRect.height * zoom));
+         if (Prefs.interpolateScaledImages) {
+            levelG.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                  RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+         }
+         levelG.drawImage(level, new AffineTransform(scale, 0.0, 0.0, scale,
+               -srcRect.x * zoom, -srcRect.y * zoom), null);
+      } finally {
+         levelG.dispose();
+      }
    }
 
    @Override
@@ -15,6 +15,7 @@
 package org.micromanager.display.internal.displaywindow.imagej;
 
 import ij.ImagePlus;
+import java.awt.Image;
 
 /**
  * Wrapped version of ImageJ's {@code ImagePlus}.
@@ -23,6 +24,11 @@ import ij.ImagePlus;
  * @see MMCompositeImage
  */
 public final class MMImagePlus extends ImagePlus implements IMMImagePlus {
+   // See beginSubstituteImage()
+   private boolean isSubstituting_ = false;
+   private Image substituteImage_;
+   private boolean imageStale_ = false;
+
    public static MMImagePlus create(ImageJBridge parent) {
       return new MMImagePlus(parent);
    }
@@ -31,6 +37,39 @@ public final class MMImagePlus extends ImagePlus implements IMMImagePlus {
       // So far we don't use parent reference
    }
 
+   @Override
+   public void beginSubstituteImage(Image image) {
+      isSubstituting_ = true;
+      substituteImage_ = image;
+   }
+
+   @Override
+   public void endSubstituteImage() {
+      isSubstituting_ = false;
+      substituteImage_ = null;
+   }
+
+   @Override
+   public void updateImage() {
+      if (isSubstituting_) {
+         imageStale_ = true;
+         return;
+      }
+      imageStale_ = false;
+      super.updateImage();
+   }
+
+   @Override
+   public Image getImage() {
+      if (isSubstituting_) {
+         return substituteImage_;
+      }
+      if (imageStale_) {
+         updateImage();
+      }
+      return super.getImage();
+   }
+
    @Override
    public void setDimensionsWithoutUpdate(
          int nChannels, int nSlices, int nFrames) {
@@ -0,0 +1,137 @@
+// LICENSE:      This file is distributed under the BSD license.
+//               License text is included with the source distribution.
+//
+//               This file is distributed in the hope that it will be useful,
+//               but WITHOUT ANY WARRANTY; without even the implied warranty
+//               of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//
+//               IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+//               CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+//               INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES.
+
+package org.micromanager.display.internal.imagestats;
+
+import org.micromanager.internal.utils.performance.RunningQuantile;
+import org.micromanager.internal.utils.performance.SkipListRunningQuantile;
+
+/**
+ * Limit on the time from the arrival of an image to its being painted on
+ * screen, and the measurements needed to keep to it.
+ *
+ * <p>Without a budget, every image that reaches a stage of the display
+ * pipeline (statistics, then rendering) goes through it, so that under load
+ * the display can fall behind the camera. With a budget, an image is dropped
+ * before a stage if, given how long it has already waited and how long the
+ * remaining stages have recently taken, it would be painted too late, and a
+ * newer image is already on its way. The newest image is never dropped, so
+ * the display shows the latest image as soon as the pipeline allows.
+ *
+ * <p>The arrival-to-paint latencies of painted images are also recorded here,
+ * whether or not a budget is set.
+ */
+public final class DisplayLatencyBudget {
+   // Weight of the latest measurement in the stage time estimates
+   private static final double STAGE_TIME_WEIGHT = 0.25;
+   private static final int LATENCY_N_SAMPLES = 100;
+
+   // All guarded by monitor on this
+   private long budgetNs_ = 0; // 0 = no budget
+   private double statsNs_ = 0.0;
+   private double renderNs_ = 0.0;
+   private final RunningQuantile latencyMs_ =
+         SkipListRunningQuantile.create(LATENCY_N_SAMPLES);
+
+   public static DisplayLatencyBudget create() {
+      return new DisplayLatencyBudget();
+   }
+
+   private DisplayLatencyBudget() {
+   }
+
+   /**
+    * Set the budget.
+    *
+    * @param budgetMs the maximum arrival-to-paint latency, in milliseconds;
+    *                 0 to never drop images
+    */
+   public synchronized void setBudgetMs(double budgetMs) {
+      budgetNs_ = Math.max(0L, Math.round(budgetMs * 1e6));
+   }
+
+   public synchronized double getBudgetMs() {
+      return budgetNs_ / 1e6;
+   }
+
+   public synchronized boolean isEnabled() {
+      return budgetNs_ > 0;
+   }
+
+   /**
+    * Record the time taken to compute the statistics of an image.
+    *
+    * @param elapsedNs time taken, in nanoseconds
+    */
+   public synchronized void recordStatsTime(long elapsedNs) {
+      statsNs_ = smooth(statsNs_, elapsedNs);
+   }
+
+   /**
+    * Record the time taken from handing images to the UI to their being
+    * painted.
+    *
+    * @param elapsedNs time taken, in nanoseconds
+    */
+   public synchronized void recordRenderTime(long elapsedNs) {
+      renderNs_ = smooth(renderNs_, elapsedNs);
+   }
+
+   /**
+    * Record the arrival-to-paint latency of painted images.
+    *
+    * @param latencyNs the latency, in nanoseconds
+    */
+   public synchronized void recordLatency(long latencyNs) {
+      latencyMs_.sample(latencyNs / 1e6);
+   }
+
+   /**
+    * Get a quantile of the recent arrival-to-paint latencies.
+    *
+    * @param q the quantile (0.0-1.0)
+    * @return the latency, in milliseconds; 0 if none has been recorded
+    */
+   public synchronized double getLatencyQuantileMs(double q) {
+      return latencyMs_.getQuantile(q);
+   }
+
+   /**
+    * Whether an image that has yet to have its statistics computed would be
+    * painted later than the budget allows.
+    *
+    * @param arrivalNs the arrival time of the image (System.nanoTime())
+    * @param nowNs     the current time (System.nanoTime())
+    * @return true if the image should be dropped, if newer images follow
+    */
+   public synchronized boolean wouldExceedWithStats(long arrivalNs, long nowNs) {
+      return budgetNs_ > 0 && nowNs - arrivalNs + statsNs_ + renderNs_ > budgetNs_;
+   }
+
+   /**
+    * Whether an image that has yet to be rendered would be painted later than
+    * the budget allows.
+    *
+    * @param arrivalNs the arrival time of the image (System.nanoTime())
+    * @param nowNs     the current time (System.nanoTime())
+    * @return true if the image should be dropped, if newer images follow
+    */
+   public synchronized boolean wouldExceedWithRender(long arrivalNs, long nowNs) {
+      return budgetNs_ > 0 && nowNs - arrivalNs + renderNs_ > budgetNs_;
+   }
+
+   private static double smooth(double estimate, long sample) {
+      if (estimate == 0.0) {
+         return sample;
+      }
+      return STAGE_TIME_WEIGHT * sample + (1.0 - STAGE_TIME_WEIGHT) * estimate;
+   }
+}
@@ -17,13 +17,12 @@ import com.google.common.base.Preconditions;
 import java.awt.Rectangle;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-import java.util.concurrent.SynchronousQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadLocalRandom;
 import net.imglib2.Cursor;
 import net.imglib2.IterableInterval;
 import net.imglib2.histogram.BinMapper1d;
@@ -40,7 +39,7 @@ import net.imglib2.view.IntervalView;
 import net.imglib2.view.MixedTransformView;
 import net.imglib2.view.Views;
 import org.micromanager.data.Image;
-import org.micromanager.internal.utils.ThreadFactoryFactory;
+import org.micromanager.data.internal.PixelType;
 import org.micromanager.internal.utils.performance.CPUTimer;
 import org.micromanager.internal.utils.performance.PerformanceMonitor;
 import org.micromanager.internal.utils.performance.WallTimer;
@@ -51,24 +50,45 @@ import org.micromanager.internal.utils.performance.WallTimer;
 public final class ImageStatsProcessor {
    private static final int MASK_THRESH = 128;
 
-   private final ExecutorService executor_;
+   private final StatsScheduler.Client scheduler_;
+
+   // Smoothed sampled histograms of the previous request, by image index
+   private final Map<Integer, SmoothingState> smoothing_ = new ConcurrentHashMap<>();
 
    private PerformanceMonitor perfMon_;
 
+   /**
+    * Estimated value counts for one image of successive sampled requests.
+    */
+   private static final class SmoothingState {
+      private final Rectangle bounds_;
+      private final double[][] counts_;
+
+      SmoothingState(Rectangle bounds, double[][] counts) {
+         bounds_ = bounds;
+         counts_ = counts;
+      }
+   }
+
    public static ImageStatsProcessor create() {
       return new ImageStatsProcessor();
    }
 
    private ImageStatsProcessor() {
-      // Allow as many threads as requested jobs, since there should be no more
-      // than a handful of channels.
-      executor_ = new ThreadPoolExecutor(1, Integer.MAX_VALUE,
-            60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
-            ThreadFactoryFactory.createThreadFactory("ImageStatsProcessor"));
+      // Images (channels) are computed in parallel, on threads shared with
+      // all other viewers
+      scheduler_ = StatsScheduler.getInstance().createClient();
    }
 
    public void shutdown() {
-      executor_.shutdown();
+      scheduler_.close();
+   }
+
+   /**
+    * Let requests from this processor go before those of other viewers.
+    */
+   public void setFocused() {
+      scheduler_.setFocused();
    }
 
    void setPerformanceMonitor(PerformanceMonitor perfMon) {
@@ -81,12 +101,17 @@ public final class ImageStatsProcessor {
          throws InterruptedException {
       WallTimer timer = WallTimer.createStarted();
 
+      if (request.getSampling().getTemporalSmoothing() == 0.0) {
+         // Do not blend frames from before a pause or an exact request
+         smoothing_.clear();
+      }
+
       ImageStats[] results = new ImageStats[request.getNumberOfImages()];
       List<Future<ImageStats>> futures = new ArrayList<Future<ImageStats>>();
       for (int i = 0; i < request.getNumberOfImages(); ++i) {
          final Image image = request.getImage(i);
          final int ii = i;
-         futures.add(executor_.submit(new Callable<ImageStats>() {
+         futures.add(scheduler_.submit(new Callable<ImageStats>() {
             @Override
             public ImageStats call() throws Exception {
                return computeStats(image, request, ii);
@@ -100,7 +125,8 @@ public final class ImageStatsProcessor {
                try {
                   results[i] = futures.get(i).get();
                } catch (InterruptedException ie) {
-                  if (interruptible) {
+                  // Drop an obsolete request, unless computation has started
+                  if (interruptible && scheduler_.cancelIfNoneStarted(futures)) {
                      throw ie;
                   }
                }
@@ -175,7 +201,26 @@ public final class ImageStatsProcessor {
       }
 
       ImageStats result = null;
-      if (bytesPerSample == 1) {
+      int samplesPerPixel = image.getBytesPerPixel() / bytesPerSample;
+      if ((maskBytes == null || maskEmpty) && (bytesPerSample == 1 || bytesPerSample == 2)
+            && (nComponents == 1 || (nComponents == 3 && samplesPerPixel == 4))) {
+         // Fast path for gray and RGB32 images without a mask
+         int[] componentOffsets = new int[nComponents];
+         for (int component = 0; component < nComponents; ++component) {
+            componentOffsets[component] = nComponents == 1
+                  ? 0 : PixelType.RGB32.getComponentSampleOffset(component);
+         }
+         StatsSampling sampling = request.getSampling();
+         if (sampling.isFullPrecision()) {
+            result = ImageStats.create(index, PixelStatsKernels.compute(
+                  image.getRawPixels(), image.getWidth(), samplesPerPixel,
+                  componentOffsets, statsBounds, bitDepth, binCountPowerOf2, useROI));
+         } else {
+            result = ImageStats.create(index, computeSampled(image, samplesPerPixel,
+                  componentOffsets, statsBounds, bitDepth, binCountPowerOf2, useROI,
+                  sampling, index));
+         }
+      } else if (bytesPerSample == 1) {
          Img<UnsignedByteType> img =
                ArrayImgs.unsignedBytes((byte[]) image.getRawPixels(),
                      nComponents, image.getWidth(), image.getHeight());
@@ -202,6 +247,59 @@ public final class ImageStatsProcessor {
       return result; // null if we don't know how to compute (TODO FIX)
    }
 
+   private IntegerComponentStats[] computeSampled(Image image, int samplesPerPixel,
+         int[] componentOffsets, Rectangle statsBounds, int bitDepth,
+         int binCountPowerOf2, boolean useROI, StatsSampling sampling, int index) {
+      int stride = sampling.getStride(statsBounds.width, statsBounds.height);
+      int xPhase;
+      int yPhase;
+      if (sampling.isDownsampled()) {
+         // Count the pixels of the displayed level
+         xPhase = (stride - statsBounds.x % stride) % stride;
+         yPhase = (stride - statsBounds.y % stride) % stride;
+      } else {
+         // Vary the grid from frame to frame, so that smoothing covers all pixels
+         ThreadLocalRandom random = ThreadLocalRandom.current();
+         xPhase = random.nextInt(stride);
+         yPhase = random.nextInt(stride);
+      }
+      long[][] sampled = PixelStatsKernels.countValues(image.getRawPixels(),
+            image.getWidth(), samplesPerPixel, componentOffsets, statsBounds,
+            stride, xPhase, yPhase);
+      long sampleCount = 0;
+      for (long n : sampled[0]) {
+         sampleCount += n;
+      }
+      double scale = (double) statsBounds.width * statsBounds.height
+            / Math.max(1, sampleCount);
+
+      double smoothingWeight = sampling.getTemporalSmoothing();
+      double[][] previous = null;
+      SmoothingState state = smoothing_.get(index);
+      if (smoothingWeight > 0.0 && state != null
+            && state.bounds_.equals(statsBounds)
+            && state.counts_.length == sampled.length
+            && state.counts_[0].length == sampled[0].length) {
+         previous = state.counts_;
+      }
+      double[][] estimates = PixelStatsKernels.estimateFullCounts(
+            sampled, scale, previous, smoothingWeight);
+      if (smoothingWeight > 0.0) {
+         smoothing_.put(index, new SmoothingState(new Rectangle(statsBounds), estimates));
+      }
+
+      IntegerComponentStats[] result = new IntegerComponentStats[sampled.length];
+      for (int component = 0; component < result.length; ++component) {
+         result[component] = PixelStatsKernels.statsFromFullHistogram(
+               PixelStatsKernels.round(estimates[component]),
+               bitDepth, binCountPowerOf2, useROI);
+      }
+      if (perfMon_ != null) {
+         perfMon_.sample("Sampling stride", stride);
+      }
+      return result;
+   }
+
    private <T extends IntegerType<T>> ImageStats compute(
          IterableInterval<T> img, IterableInterval<UnsignedByteType> mask,
          int nComponents, int sampleBitDepth, int binCountPowerOf2,
@@ -30,21 +30,56 @@ public final class ImageStatsRequest {
    private final Coords nominalCoords_;
    private final List<Image> images_ = new ArrayList<>();
    private final BoundsRectAndMask roi_;
+   private final StatsSampling sampling_;
+   private final long arrivalNs_;
 
    public static ImageStatsRequest create(Coords nominalCoords,
                                           List<Image> images,
                                           BoundsRectAndMask roi) {
-      return new ImageStatsRequest(nominalCoords, images, roi);
+      return new ImageStatsRequest(nominalCoords, images, roi,
+            StatsSampling.fullPrecision(), System.nanoTime());
+   }
+
+   public static ImageStatsRequest create(Coords nominalCoords,
+                                          List<Image> images,
+                                          BoundsRectAndMask roi,
+                                          StatsSampling sampling) {
+      return new ImageStatsRequest(nominalCoords, images, roi, sampling,
+            System.nanoTime());
+   }
+
+   /**
+    * Create a request for images that arrived at a known time.
+    *
+    * @param nominalCoords the coords to display
+    * @param images        the images (all channels)
+    * @param roi           the region for statistics
+    * @param sampling      how precisely to compute statistics
+    * @param arrivalNs     when the (earliest not yet displayed of the)
+    *                      images arrived, as System.nanoTime()
+    * @return the request
+    */
+   public static ImageStatsRequest create(Coords nominalCoords,
+                                          List<Image> images,
+                                          BoundsRectAndMask roi,
+                                          StatsSampling sampling,
+                                          long arrivalNs) {
+      return new ImageStatsRequest(nominalCoords, images, roi, sampling, arrivalNs);
    }
 
    private ImageStatsRequest(Coords nominalCoords,
                              List<Image> images,
-                             BoundsRectAndMask roi) {
+                             BoundsRectAndMask roi,
+                             StatsSampling sampling,
+                             long arrivalNs) {
       Preconditions.checkNotNull(nominalCoords);
       Preconditions.checkNotNull(images);
+      Preconditions.checkNotNull(sampling);
       nominalCoords_ = nominalCoords;
       images_.addAll(images);
       roi_ = roi;
+      sampling_ = sampling;
+      arrivalNs_ = arrivalNs;
    }
 
    public Coords getNominalCoords() {
@@ -74,4 +109,18 @@ public final class ImageStatsRequest {
    public byte[] getROIMask() {
       return roi_.getMask();
    }
+
+   public StatsSampling getSampling() {
+      return sampling_;
+   }
+
+   /**
+    * When the images arrived, for measuring display latency. Requests not
+    * made for newly arrived images have the time they were created.
+    *
+    * @return arrival time, as System.nanoTime()
+    */
+   public long getArrivalTimeNs() {
+      return arrivalNs_;
+   }
 }
@@ -0,0 +1,303 @@
+// LICENSE:      This file is distributed under the BSD license.
+//               License text is included with the source distribution.
+//
+//               This file is distributed in the hope that it will be useful,
+//               but WITHOUT ANY WARRANTY; without even the implied warranty
+//               of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//
+//               IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+//               CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+//               INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES.
+
+package org.micromanager.display.internal.imagestats;
+
+import java.awt.Rectangle;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Image statistics computed directly on {@code byte[]} and {@code short[]}
+ * pixel arrays, for images without an ROI mask.
+ *
+ * <p>Rather than updating every statistic for every sample, each sample only
+ * increments a full-resolution histogram (one count per possible value).
+ * Minimum, maximum, sums, and the binned histogram are then derived from
+ * that histogram, which takes time proportional to the number of possible
+ * values rather than the number of pixels. Large images are split into bands
+ * of rows that are counted in parallel on the band pool of the
+ * {@link StatsScheduler}, and the band histograms are added together.
+ *
+ * <p>The results are identical to those of the generic (ImgLib2) code path
+ * in {@link ImageStatsProcessor}. For faster, approximate statistics (see
+ * {@link StatsSampling}), the counting can be limited to a regular grid of
+ * pixels, and the counts scaled to estimates for the whole image.
+ */
+final class PixelStatsKernels {
+   // Bands smaller than this are not split further
+   private static final int MIN_SAMPLES_PER_BAND = 1 << 18;
+
+   // Counts of one band, reused by each thread so that counting allocates
+   // nothing per band; all zero between uses
+   private static final ThreadLocal<int[]> BAND_COUNTS =
+         ThreadLocal.withInitial(() -> new int[1 << 16]);
+
+   private PixelStatsKernels() {
+   }
+
+   /**
+    * Compute per-component statistics.
+    *
+    * @param pixels           {@code byte[]} or {@code short[]} samples, in
+    *                         rows of {@code width} pixels
+    * @param width            image width
+    * @param samplesPerPixel  number of samples per pixel in the array (e.g.
+    *                         4 for RGB32, which has 3 components)
+    * @param componentOffsets offset within each pixel of the sample of each
+    *                         component
+    * @param bounds           the part of the image to compute stats for
+    * @param sampleBitDepth   bit depth of the samples
+    * @param binCountPowerOf2 log2 of the number of histogram bins
+    * @param isROI            whether bounds is an ROI
+    * @return stats for each component
+    */
+   static IntegerComponentStats[] compute(Object pixels, int width,
+         int samplesPerPixel, int[] componentOffsets, Rectangle bounds,
+         int sampleBitDepth, int binCountPowerOf2, boolean isROI) {
+      long[][] fullHistograms = countValues(pixels, width, samplesPerPixel,
+            componentOffsets, bounds, 1, 0, 0);
+      IntegerComponentStats[] result = new IntegerComponentStats[componentOffsets.length];
+      for (int component = 0; component < result.length; ++component) {
+         result[component] = statsFromFullHistogram(fullHistograms[component],
+               sampleBitDepth, binCountPowerOf2, isROI);
+      }
+      return result;
+   }
+
+   /**
+    * Count the occurrences of each sample value, for every pixel or for a
+    * regular grid of pixels.
+    *
+    * @param pixels           {@code byte[]} or {@code short[]} samples
+    * @param width            image width
+    * @param samplesPerPixel  number of samples per pixel in the array
+    * @param componentOffsets offset within each pixel of the sample of each
+    *                         component
+    * @param bounds           the part of the image to count
+    * @param stride           count every stride-th pixel of every stride-th
+    *                         row of bounds
+    * @param xPhase           offset (less than stride) of the first counted
+    *                         pixel of each row from bounds.x
+    * @param yPhase           offset (less than stride) of the first counted
+    *                         row from bounds.y
+    * @return for each component, a histogram with one bin per sample value
+    */
+   static long[][] countValues(Object pixels, int width, int samplesPerPixel,
+         int[] componentOffsets, Rectangle bounds, int stride, int xPhase, int yPhase) {
+      int valueCount;
+      if (pixels instanceof byte[]) {
+         valueCount = 1 << 8;
+      } else if (pixels instanceof short[]) {
+         valueCount = 1 << 16;
+      } else {
+         throw new IllegalArgumentException("Unsupported pixel array " + pixels);
+      }
+      if (stride < 1 || xPhase < 0 || xPhase >= stride || yPhase < 0 || yPhase >= stride) {
+         throw new IllegalArgumentException("Invalid sampling grid");
+      }
+      long[][] totals = new long[componentOffsets.length][valueCount];
+      BandTask task = new BandTask(pixels, width, samplesPerPixel,
+            componentOffsets, bounds, stride, xPhase, yPhase,
+            bounds.y, bounds.y + bounds.height, totals);
+      StatsScheduler.getInstance().getBandPool().invoke(task);
+      return totals;
+   }
+
+   /**
+    * Scale sampled value counts to estimates of the counts over all pixels,
+    * optionally blending them with the estimates for previous frames
+    * (exponential moving average).
+    *
+    * @param sampled   counts of the sampled pixels, per component
+    * @param scale     ratio of the number of pixels to the number sampled
+    * @param previous  estimates returned for the previous frame, or null
+    * @param smoothing weight of previous in the new estimates
+    * @return the new estimates, to be passed as previous for the next frame
+    */
+   static double[][] estimateFullCounts(long[][] sampled, double scale,
+         double[][] previous, double smoothing) {
+      double[][] result = new double[sampled.length][];
+      for (int component = 0; component < sampled.length; ++component) {
+         long[] counts = sampled[component];
+         double[] estimate = new double[counts.length];
+         if (previous == null) {
+            for (int i = 0; i < counts.length; ++i) {
+               estimate[i] = counts[i] * scale;
+            }
+         } else {
+            double[] prev = previous[component];
+            double current = (1.0 - smoothing) * scale;
+            for (int i = 0; i < counts.length; ++i) {
+               estimate[i] = smoothing * prev[i] + current * counts[i];
+            }
+         }
+         result[component] = estimate;
+      }
+      return result;
+   }
+
+   static long[] round(double[] counts) {
+      long[] result = new long[counts.length];
+      for (int i = 0; i < counts.length; ++i) {
+         result[i] = Math.round(counts[i]);
+      }
+      return result;
+   }
+
+   /**
+    * Derive the stats from a histogram with one bin per sample value. The
+    * binned histogram follows {@link PowerOf2BinMapper}: bin 0 and the last
+    * bin count samples below and above the range.
+    */
+   static IntegerComponentStats statsFromFullHistogram(long[] full,
+         int sampleBitDepth, int binCountPowerOf2, boolean isROI) {
+      int sampleShift = Math.max(0, sampleBitDepth - binCountPowerOf2);
+      long endOfRange = (1L << sampleBitDepth) - 1;
+      long[] bins = new long[(1 << binCountPowerOf2) + 2];
+      long count = 0;
+      long min = Long.MAX_VALUE;
+      long minExcludingZeros = Long.MAX_VALUE;
+      long max = Long.MIN_VALUE;
+      long sum = 0;
+      long sumOfSquares = 0;
+      for (int value = 0; value < full.length; ++value) {
+         long n = full[value];
+         if (n == 0) {
+            continue;
+         }
+         count += n;
+         if (min == Long.MAX_VALUE) {
+            min = value;
+         }
+         if (value > 0 && minExcludingZeros == Long.MAX_VALUE) {
+            minExcludingZeros = value;
+         }
+         max = value;
+         sum += n * value;
+         sumOfSquares += n * value * (long) value;
+         if (value > endOfRange) {
+            bins[bins.length - 1] += n;
+         } else {
+            bins[(value >> sampleShift) + 1] += n;
+         }
+      }
+      return IntegerComponentStats.builder()
+            .histogram(bins, sampleShift)
+            .pixelCount(count)
+            .pixelCountExcludingZeros(count - full[0])
+            .usedROI(isROI)
+            .minimum(min)
+            .minimumExcludingZeros(minExcludingZeros)
+            .maximum(max)
+            .sum(sum)
+            .sumOfSquares(sumOfSquares)
+            .build();
+   }
+
+   /**
+    * Counts sample values in a band of rows, splitting it if large, and adds
+    * the counts to the totals for the whole image.
+    */
+   private static final class BandTask extends RecursiveAction {
+      private final Object pixels_;
+      private final int width_;
+      private final int samplesPerPixel_;
+      private final int[] componentOffsets_;
+      private final Rectangle bounds_;
+      private final int stride_;
+      private final int xPhase_;
+      private final int yPhase_;
+      private final int startRow_;
+      private final int endRow_;
+      // Shared by all bands; each component's array is guarded by its monitor
+      private final long[][] totals_;
+
+      BandTask(Object pixels, int width, int samplesPerPixel,
+            int[] componentOffsets, Rectangle bounds, int stride, int xPhase,
+            int yPhase, int startRow, int endRow, long[][] totals) {
+         pixels_ = pixels;
+         width_ = width;
+         samplesPerPixel_ = samplesPerPixel;
+         componentOffsets_ = componentOffsets;
+         bounds_ = bounds;
+         stride_ = stride;
+         xPhase_ = xPhase;
+         yPhase_ = yPhase;
+         startRow_ = startRow;
+         endRow_ = endRow;
+         totals_ = totals;
+      }
+
+      @Override
+      protected void compute() {
+         long samples = (long) (endRow_ - startRow_) * bounds_.width
+               * componentOffsets_.length / ((long) stride_ * stride_);
+         if (samples > 2L * MIN_SAMPLES_PER_BAND && endRow_ - startRow_ > 1) {
+            int middle = (startRow_ + endRow_) >>> 1;
+            invokeAll(new BandTask(pixels_, width_, samplesPerPixel_,
+                        componentOffsets_, bounds_, stride_, xPhase_, yPhase_,
+                        startRow_, middle, totals_),
+                  new BandTask(pixels_, width_, samplesPerPixel_,
+                        componentOffsets_, bounds_, stride_, xPhase_, yPhase_,
+                        middle, endRow_, totals_));
+            return;
+         }
+
+         // Bands are small enough that int counts cannot overflow
+         int[] counts = BAND_COUNTS.get();
+         for (int component = 0; component < componentOffsets_.length; ++component) {
+            if (pixels_ instanceof byte[]) {
+               countBytes((byte[]) pixels_, componentOffsets_[component], counts);
+            } else {
+               countShorts((short[]) pixels_, componentOffsets_[component], counts);
+            }
+            long[] total = totals_[component];
+            synchronized (total) {
+               for (int i = 0; i < total.length; ++i) {
+                  total[i] += counts[i];
+                  counts[i] = 0;
+               }
+            }
+         }
+      }
+
+      // First row at or after startRow_ that is on the sampling grid
+      private int firstRow() {
+         int gridStart = bounds_.y + yPhase_;
+         if (startRow_ <= gridStart) {
+            return gridStart;
+         }
+         return gridStart + (startRow_ - gridStart + stride_ - 1) / stride_ * stride_;
+      }
+
+      private void countBytes(byte[] pixels, int offset, int[] counts) {
+         final int step = samplesPerPixel_ * stride_;
+         for (int y = firstRow(); y < endRow_; y += stride_) {
+            int rowStart = (y * width_ + bounds_.x) * samplesPerPixel_ + offset;
+            int end = rowStart + bounds_.width * samplesPerPixel_;
+            for (int i = rowStart + xPhase_ * samplesPerPixel_; i < end; i += step) {
+               ++counts[pixels[i] & 0xff];
+            }
+         }
+      }
+
+      private void countShorts(short[] pixels, int offset, int[] counts) {
+         final int step = samplesPerPixel_ * stride_;
+         for (int y = firstRow(); y < endRow_; y += stride_) {
+            int rowStart = (y * width_ + bounds_.x) * samplesPerPixel_ + offset;
+            int end = rowStart + bounds_.width * samplesPerPixel_;
+            for (int i = rowStart + xPhase_ * samplesPerPixel_; i < end; i += step) {
+               ++counts[pixels[i] & 0xffff];
+            }
+         }
+      }
+   }
+}
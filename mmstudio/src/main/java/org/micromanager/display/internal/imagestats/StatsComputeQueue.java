@@ -39,7 +39,7 @@ public final class StatsComputeQueue {
    private final EventListenerSupport<Listener> listeners_ =
          new EventListenerSupport<>(Listener.class, Listener.class.getClassLoader());
 
-   // Only accessed from compute executor thread
+   // Only accessed from compute executor thread (except setFocused())
    private final ImageStatsProcessor processor_ = ImageStatsProcessor.create();
 
    private final ExecutorService computeExecutor_ =
@@ -89,6 +89,10 @@ public final class StatsComputeQueue {
 
    private PerformanceMonitor perfMon_;
 
+   // Images that would be displayed too late are dropped if newer images
+   // follow (see DisplayLatencyBudget)
+   private volatile DisplayLatencyBudget latencyBudget_ = DisplayLatencyBudget.create();
+
 
    public static StatsComputeQueue create() {
       return new StatsComputeQueue();
@@ -102,6 +106,10 @@ public final class StatsComputeQueue {
       perfMon_ = perfMon;
    }
 
+   public void setLatencyBudget(DisplayLatencyBudget budget) {
+      latencyBudget_ = budget;
+   }
+
    public synchronized void addListener(Listener listener) {
       listeners_.addListener(listener, true);
    }
@@ -110,6 +118,14 @@ public final class StatsComputeQueue {
       listeners_.removeListener(listener);
    }
 
+   /**
+    * Give the requests of this queue priority over those of other viewers,
+    * e.g. when its window is activated.
+    */
+   public void setFocused() {
+      processor_.setFocused();
+   }
+
    public synchronized void shutdown() throws InterruptedException {
       processor_.shutdown();
       computeExecutor_.shutdown();
@@ -171,16 +187,28 @@ public final class StatsComputeQueue {
                }
             }
 
+            DisplayLatencyBudget budget = latencyBudget_;
+            long startNs = System.nanoTime();
+            if (budget.wouldExceedWithStats(request.getArrivalTimeNs(), startNs)
+                  && isSuperseded(sequenceNumber)) {
+               if (perfMon_ != null) {
+                  perfMon_.sampleTimeInterval("Compute dropped (latency budget)");
+               }
+               return;
+            }
+
             final ImagesAndStats result;
             try {
-               result = processor_.process(sequenceNumber, request, false);
-            } catch (InterruptedException shouldNotHappen) {
-               Thread.currentThread().interrupt();
+               // Dropped (through cancellation by a newer request) if the
+               // stats threads have not yet started on this one
+               result = processor_.process(sequenceNumber, request, true);
+            } catch (InterruptedException cancel) {
                if (perfMon_ != null) {
-                  perfMon_.sampleTimeInterval("Compute interrupted (!)");
+                  perfMon_.sampleTimeInterval("Compute dropped (obsolete)");
                }
                return;
             }
+            budget.recordStatsTime(System.nanoTime() - startNs);
             if (perfMon_ != null) {
                perfMon_.sampleTimeInterval("Compute submitting result");
             }
@@ -291,6 +319,15 @@ public final class StatsComputeQueue {
             }
 
             synchronized (StatsComputeQueue.this) {
+               // A newer result is queued if its sequence number was recorded
+               if (sequenceNumber < lastResultSequenceNumber_
+                     && latencyBudget_.wouldExceedWithRender(
+                           result.getRequest().getArrivalTimeNs(), System.nanoTime())) {
+                  if (perfMon_ != null) {
+                     perfMon_.sampleTimeInterval("Compute result dropped (latency budget)");
+                  }
+                  return;
+               }
                long intervalNs = listeners_.fire().imageStatsReady(result);
                nextStatsReadyCallAllowedNs_ = System.nanoTime() + intervalNs;
             }
@@ -298,6 +335,11 @@ public final class StatsComputeQueue {
       }));
    }
 
+   // Whether a request newer than the given one has been submitted
+   private synchronized boolean isSuperseded(long sequenceNumber) {
+      return sequenceNumber < nextRequestSequenceNumber_ - 1;
+   }
+
    public synchronized void setProcessIntervalNs(long intervalNs) {
       updateIntervalNs_ = Math.max(0, intervalNs);
    }
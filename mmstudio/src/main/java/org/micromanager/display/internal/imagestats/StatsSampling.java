@@ -0,0 +1,186 @@
+// LICENSE:      This file is distributed under the BSD license.
+//               License text is included with the source distribution.
+//
+//               This file is distributed in the hope that it will be useful,
+//               but WITHOUT ANY WARRANTY; without even the implied warranty
+//               of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//
+//               IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+//               CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+//               INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES.
+
+package org.micromanager.display.internal.imagestats;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * How precisely image statistics should be computed.
+ *
+ * <p>With full precision, every pixel is counted. Otherwise, only a regular
+ * grid of pixels (every n-th pixel of every n-th row, starting at a random
+ * offset for each frame) is counted, with n chosen so that enough pixels are
+ * sampled for the requested accuracy of the intensity quantiles used for
+ * autostretch. By the Dvoretzky-Kiefer-Wolfowitz inequality, a random sample
+ * of {@link #getMinimumSampleCount()} pixels places each reported quantile
+ * within {@link #getMaxQuantileError()} (as a fraction of the pixels) of its
+ * true value with 99% confidence. A regular grid behaves like a random sample
+ * unless the image has structure at the period of the grid.
+ *
+ * <p>Sampled histograms can optionally be smoothed over successive frames
+ * (exponential moving average), which steadies autostretch on noisy live
+ * images. Minimum and maximum are then those of the smoothed histogram, and
+ * all counts are scaled to estimate those of the full image.
+ *
+ * <p>While a large image is displayed zoomed out, statistics can instead be
+ * computed from the downsampled level that is drawn (every n-th pixel of
+ * every n-th row, starting at the top left pixel of the image), so that the
+ * histogram describes the pixels on screen.
+ */
+public final class StatsSampling {
+   // 1 - confidence level of the quantile error bound
+   private static final double ERROR_PROBABILITY = 0.01;
+
+   private static final StatsSampling FULL_PRECISION = new StatsSampling(0.0, 0.0, 1);
+
+   private final double maxQuantileError_;
+   private final double temporalSmoothing_;
+   private final int downsampling_;
+
+   /**
+    * Statistics computed from every pixel, without smoothing.
+    *
+    * @return the full precision mode
+    */
+   public static StatsSampling fullPrecision() {
+      return FULL_PRECISION;
+   }
+
+   /**
+    * Create a sampling mode.
+    *
+    * @param maxQuantileError  allowed error of quantiles, as a fraction of
+    *                          the pixel count (e.g. 0.005); 0 for full
+    *                          precision
+    * @param temporalSmoothing weight (at least 0 and less than 1) of the
+    *                          previous frames in the smoothed histogram; 0
+    *                          disables smoothing
+    * @return the sampling mode
+    */
+   public static StatsSampling create(double maxQuantileError, double temporalSmoothing) {
+      Preconditions.checkArgument(maxQuantileError >= 0.0 && maxQuantileError < 0.5,
+            "Quantile error must be in [0, 0.5)");
+      Preconditions.checkArgument(temporalSmoothing >= 0.0 && temporalSmoothing < 1.0,
+            "Temporal smoothing must be in [0, 1)");
+      if (maxQuantileError == 0.0 && temporalSmoothing == 0.0) {
+         return FULL_PRECISION;
+      }
+      return new StatsSampling(maxQuantileError, temporalSmoothing, 1);
+   }
+
+   /**
+    * Statistics computed from a downsampled level of the image, without
+    * smoothing.
+    *
+    * @param downsampling interval, in both x and y, of the counted pixels;
+    *                     1 for full precision
+    * @return the sampling mode
+    */
+   public static StatsSampling downsampled(int downsampling) {
+      Preconditions.checkArgument(downsampling >= 1, "Downsampling must be positive");
+      if (downsampling == 1) {
+         return FULL_PRECISION;
+      }
+      return new StatsSampling(0.0, 0.0, downsampling);
+   }
+
+   private StatsSampling(double maxQuantileError, double temporalSmoothing, int downsampling) {
+      maxQuantileError_ = maxQuantileError;
+      temporalSmoothing_ = temporalSmoothing;
+      downsampling_ = downsampling;
+   }
+
+   public boolean isFullPrecision() {
+      return this == FULL_PRECISION;
+   }
+
+   public double getMaxQuantileError() {
+      return maxQuantileError_;
+   }
+
+   public double getTemporalSmoothing() {
+      return temporalSmoothing_;
+   }
+
+   /**
+    * Whether the counted pixels are those of a downsampled level, aligned
+    * with the top left pixel of the image, rather than a randomly placed
+    * grid.
+    *
+    * @return true if created by {@link #downsampled}
+    */
+   public boolean isDownsampled() {
+      return downsampling_ > 1;
+   }
+
+   /**
+    * Number of pixels that need to be sampled for the quantile error bound.
+    *
+    * @return the sample count, or Long.MAX_VALUE if every pixel is needed
+    */
+   public long getMinimumSampleCount() {
+      if (maxQuantileError_ == 0.0) {
+         return Long.MAX_VALUE;
+      }
+      return (long) Math.ceil(Math.log(2.0 / ERROR_PROBABILITY)
+            / (2.0 * maxQuantileError_ * maxQuantileError_));
+   }
+
+   /**
+    * Sampling interval, in both x and y, for an area.
+    *
+    * @param width  width of the area
+    * @param height height of the area
+    * @return the interval; 1 if every pixel should be counted
+    */
+   public int getStride(int width, int height) {
+      if (downsampling_ > 1) {
+         return Math.max(1, Math.min(downsampling_, Math.min(width, height)));
+      }
+      long samples = getMinimumSampleCount();
+      if (samples == Long.MAX_VALUE) {
+         return 1;
+      }
+      // Rounding down keeps the number of samples at or above the minimum
+      int stride = (int) Math.floor(Math.sqrt((double) width * height / samples));
+      return Math.max(1, Math.min(stride, Math.min(width, height)));
+   }
+
+   @Override
+   public boolean equals(Object other) {
+      if (!(other instanceof StatsSampling)) {
+         return false;
+      }
+      StatsSampling o = (StatsSampling) other;
+      return maxQuantileError_ == o.maxQuantileError_
+            && temporalSmoothing_ == o.temporalSmoothing_
+            && downsampling_ == o.downsampling_;
+   }
+
+   @Override
+   public int hashCode() {
+      return (Double.hashCode(maxQuantileError_) * 31 + Double.hashCode(temporalSmoothing_))
+            * 31 + downsampling_;
+   }
+
+   @Override
+   public String toString() {
+      if (isFullPrecision()) {
+         return "StatsSampling[full precision]";
+      }
+      if (isDownsampled()) {
+         return "StatsSampling[downsampled " + downsampling_ + "x]";
+      }
+      return "StatsSampling[quantile error " + maxQuantileError_
+            + ", smoothing " + temporalSmoothing_ + "]";
+   }
+}
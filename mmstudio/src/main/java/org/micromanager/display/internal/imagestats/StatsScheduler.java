@@ -0,0 +1,226 @@
+// LICENSE:      This file is distributed under the BSD license.
+//               License text is included with the source distribution.
+//
+//               This file is distributed in the hope that it will be useful,
+//               but WITHOUT ANY WARRANTY; without even the implied warranty
+//               of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//
+//               IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+//               CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+//               INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES.
+
+package org.micromanager.display.internal.imagestats;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import org.micromanager.internal.utils.ThreadFactoryFactory;
+
+/**
+ * Application-wide pool of threads computing image statistics for all
+ * viewers.
+ *
+ * <p>The number of threads is fixed and depends on the number of processors,
+ * leaving processors free for acquisition and saving no matter how many
+ * viewers are open. Each viewer submits its tasks through its own
+ * {@link Client}. Clients are served in turn (one task at a time), except
+ * that tasks of the focused client (the viewer most recently activated) are
+ * run first.
+ *
+ * <p>Tasks that split their work (e.g. into bands of rows) run the parts on
+ * the scheduler's {@link #getBandPool() band pool}, which has as many
+ * threads as the scheduler, so that this work is bounded in the same way.
+ *
+ * <p>Tasks that are still queued can be cancelled when their result is no
+ * longer needed; this is how {@link ImageStatsProcessor} drops obsolete
+ * requests when the pool cannot keep up. Requests whose computation has
+ * started are always completed, so that stats keep being updated however
+ * often new requests arrive.
+ */
+public final class StatsScheduler {
+   private static final StatsScheduler INSTANCE =
+         new StatsScheduler(defaultThreadCount());
+
+   // Guarded by monitor on this
+   private final List<Client> clients_ = new ArrayList<>();
+   private int nextClientIndex_ = 0;
+   private Client focusedClient_;
+
+   private final ForkJoinPool bandPool_;
+
+   /**
+    * A source of tasks (usually one viewer).
+    */
+   public final class Client {
+      // Guarded by monitor on the scheduler
+      private final Deque<FutureTask<?>> queue_ = new ArrayDeque<>();
+      private boolean closed_;
+
+      private Client() {
+      }
+
+      /**
+       * Queue a task.
+       *
+       * @param task the task
+       * @param <T>  result type
+       * @return future for the result
+       */
+      public <T> Future<T> submit(Callable<T> task) {
+         FutureTask<T> future = new FutureTask<>(task);
+         synchronized (StatsScheduler.this) {
+            if (closed_) {
+               throw new IllegalStateException("Stats scheduler client is closed");
+            }
+            queue_.addLast(future);
+            StatsScheduler.this.notify();
+         }
+         return future;
+      }
+
+      /**
+       * Cancel a group of tasks, unless any of them has already started.
+       *
+       * @param tasks futures returned by {@link #submit}
+       * @return true if the tasks were cancelled; false if at least one of
+       *     them is running or done, in which case none is cancelled
+       */
+      public boolean cancelIfNoneStarted(Collection<? extends Future<?>> tasks) {
+         synchronized (StatsScheduler.this) {
+            for (Future<?> task : tasks) {
+               if (!task.isCancelled() && !queue_.contains(task)) {
+                  return false;
+               }
+            }
+            for (Future<?> task : tasks) {
+               queue_.remove(task);
+               task.cancel(false);
+            }
+            return true;
+         }
+      }
+
+      /**
+       * Make this the focused client, whose tasks run before those of others.
+       */
+      public void setFocused() {
+         synchronized (StatsScheduler.this) {
+            focusedClient_ = this;
+         }
+      }
+
+      /**
+       * Cancel all queued tasks and stop accepting new ones.
+       */
+      public void close() {
+         synchronized (StatsScheduler.this) {
+            closed_ = true;
+            for (FutureTask<?> task : queue_) {
+               task.cancel(false);
+            }
+            queue_.clear();
+            clients_.remove(this);
+            if (focusedClient_ == this) {
+               focusedClient_ = null;
+            }
+         }
+      }
+   }
+
+   /**
+    * The scheduler shared by all viewers.
+    *
+    * @return the scheduler
+    */
+   public static StatsScheduler getInstance() {
+      return INSTANCE;
+   }
+
+   // Half of the processors, so that acquisition and saving are not starved
+   static int defaultThreadCount() {
+      return Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+   }
+
+   StatsScheduler(int threadCount) {
+      bandPool_ = new ForkJoinPool(threadCount);
+      ThreadFactory factory =
+            ThreadFactoryFactory.createThreadFactory("Image Stats Scheduler");
+      for (int i = 0; i < threadCount; ++i) {
+         factory.newThread(this::runTasks).start();
+      }
+   }
+
+   /**
+    * Pool on which tasks run the parts of work they split up, in place of
+    * the common fork-join pool (which uses all processors).
+    *
+    * @return the pool, with as many threads as the scheduler
+    */
+   public ForkJoinPool getBandPool() {
+      return bandPool_;
+   }
+
+   /**
+    * Register a new source of tasks.
+    *
+    * @return the client, to be closed when no longer used
+    */
+   public synchronized Client createClient() {
+      Client client = new Client();
+      clients_.add(client);
+      return client;
+   }
+
+   /**
+    * Number of tasks waiting for a thread.
+    *
+    * @return the number of queued tasks
+    */
+   public synchronized int getQueuedTaskCount() {
+      int count = 0;
+      for (Client client : clients_) {
+         count += client.queue_.size();
+      }
+      return count;
+   }
+
+   private void runTasks() {
+      while (true) {
+         FutureTask<?> task;
+         synchronized (this) {
+            while ((task = nextTask()) == null) {
+               try {
+                  wait();
+               } catch (InterruptedException e) {
+                  return;
+               }
+            }
+         }
+         // Cancelled tasks do nothing when run
+         task.run();
+      }
+   }
+
+   // Must be called with monitor on this held
+   private FutureTask<?> nextTask() {
+      if (focusedClient_ != null && !focusedClient_.queue_.isEmpty()) {
+         return focusedClient_.queue_.removeFirst();
+      }
+      for (int i = 0; i < clients_.size(); ++i) {
+         int index = (nextClientIndex_ + i) % clients_.size();
+         Deque<FutureTask<?>> queue = clients_.get(index).queue_;
+         if (!queue.isEmpty()) {
+            nextClientIndex_ = index + 1;
+            return queue.removeFirst();
+         }
+      }
+      return null;
+   }
+}
@@ -22,7 +22,6 @@ import java.awt.Dimension;
 import java.awt.Insets;
 import java.awt.event.ActionEvent;
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -30,7 +29,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.CancellationException;
+import java.util.TreeMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -47,13 +46,13 @@ import org.micromanager.data.Coords;
 import org.micromanager.data.DatastoreFrozenException;
 import org.micromanager.data.DatastoreRewriteException;
 import org.micromanager.data.Image;
-import org.micromanager.data.Metadata;
 import org.micromanager.data.NewPipelineEvent;
 import org.micromanager.data.Pipeline;
 import org.micromanager.data.PipelineErrorException;
 import org.micromanager.data.ProcessorConfigurator;
 import org.micromanager.data.internal.DefaultImage;
 import org.micromanager.data.internal.DefaultRewritableDatastore;
+import org.micromanager.data.internal.PixelType;
 import org.micromanager.data.internal.PropertyKey;
 import org.micromanager.data.internal.StorageRAM;
 import org.micromanager.display.ChannelDisplaySettings;
@@ -95,6 +94,17 @@ public final class SnapLiveManager extends DataViewerListener
    // skipped.
    private static final double DISPLAY_INTERVAL_ESTIMATE_Q = 0.25;
 
+   private static final String IMAGE_NUMBER_TAG = "ImageNumber";
+   private static final String ELAPSED_TIME_TAG = "ElapsedTime-ms";
+   // Weight of the latest measurement in the camera frame interval estimate
+   private static final double FRAME_INTERVAL_WEIGHT = 0.25;
+
+   private static final String SHOULD_BYPASS_DATASTORE =
+         "display live images without storing every image";
+   // When bypassing the Datastore, each channel's image is still stored at
+   // this interval, so that the Datastore is never far behind the display
+   private static final long STORE_REFRESH_INTERVAL_NS = TimeUnit.SECONDS.toNanos(1);
+
    private final MMStudio mmStudio_;
    private final CMMCore core_;
    private final UiMovesStageManager uiMovesStageManager_;
@@ -110,6 +120,20 @@ public final class SnapLiveManager extends DataViewerListener
 
    private final List<DefaultImage> lastImageForEachChannel_ = new ArrayList<>();
 
+   // Newest grabbed image of each camera channel, waiting for the EDT. An
+   // image not yet displayed is replaced by a newer one of its channel.
+   // Guarded by monitor on pendingLiveImages_
+   private final Map<Integer, Image> pendingLiveImages_ = new TreeMap<>();
+   private boolean isLiveDisplayPending_ = false;
+
+   // Whether live images are shown by the display without storing each one;
+   // read from the profile when live mode starts
+   private volatile boolean shouldBypassDatastore_ = false;
+   // Time at which each channel's image was last stored. Accessed only on EDT
+   private final Map<Integer, Long> lastStoredNs_ = new HashMap<>();
+   // Accessed only on EDT
+   private boolean haveUnstoredLiveImages_ = false;
+
    private final ScheduledExecutorService scheduler_ =
          Executors.newSingleThreadScheduledExecutor(
                ThreadFactoryFactory.createThreadFactory("SnapLiveManager"));
@@ -173,6 +197,99 @@ public final class SnapLiveManager extends DataViewerListener
       }
    }
 
+   /**
+    * State of one run of live mode, used by the grabber (on the scheduler
+    * thread) only.
+    */
+   private static final class LiveGrabState {
+      private final String camName_;
+      private final double exposureMs_;
+      private final long width_;
+      private final long height_;
+      private final long bitDepth_;
+      private final String pixelType_;
+      private final Map<Integer, Long> imageNumbers_ = new HashMap<>();
+      private final Map<Integer, Double> elapsedTimesMs_ = new HashMap<>();
+      // Smoothed interval between camera frames; NaN until measured
+      private double frameIntervalMs_ = Double.NaN;
+
+      LiveGrabState(CMMCore core, String camName, double exposureMs) {
+         camName_ = camName;
+         exposureMs_ = exposureMs;
+         // The image format cannot change while live mode runs
+         width_ = core.getImageWidth();
+         height_ = core.getImageHeight();
+         bitDepth_ = core.getImageBitDepth();
+         pixelType_ = pixelTypeName(core.getBytesPerPixel(), core.getNumberOfComponents());
+      }
+
+      private static String pixelTypeName(long bytesPerPixel, long numComponents) {
+         if (numComponents == 1 && bytesPerPixel == 1) {
+            return PixelType.GRAY8.name();
+         } else if (numComponents == 1 && bytesPerPixel == 2) {
+            return PixelType.GRAY16.name();
+         } else if (numComponents == 4 && bytesPerPixel == 4) {
+            return PixelType.RGB32.name();
+         }
+         return null;
+      }
+
+      /**
+       * Record the newest image of a channel in the sequence buffer, and
+       * update the frame interval estimate.
+       *
+       * @return false if this image has already been grabbed
+       */
+      boolean recordFrame(int channel, long imageNumber, double elapsedMs) {
+         Long previousNumber = imageNumbers_.put(channel, imageNumber);
+         Double previousElapsedMs = elapsedTimesMs_.put(channel, elapsedMs);
+         if (previousNumber == null) {
+            return true;
+         }
+         if (previousNumber == imageNumber) {
+            return false;
+         }
+         // The image number goes down when the sequence buffer is reset
+         if (imageNumber > previousNumber && previousElapsedMs != null) {
+            double intervalMs = (elapsedMs - previousElapsedMs) / (imageNumber - previousNumber);
+            if (intervalMs > 0.0) {
+               frameIntervalMs_ = Double.isNaN(frameIntervalMs_) ? intervalMs
+                     : FRAME_INTERVAL_WEIGHT * intervalMs
+                           + (1.0 - FRAME_INTERVAL_WEIGHT) * frameIntervalMs_;
+            }
+         }
+         return true;
+      }
+
+      /**
+       * The interval between frames reported by the camera (via the elapsed
+       * time of the images), or the exposure time until that is known.
+       */
+      double getFrameIntervalMs() {
+         return Double.isNaN(frameIntervalMs_) ? exposureMs_ : frameIntervalMs_;
+      }
+
+      /**
+       * Create the live image from pixels and metadata obtained from the
+       * sequence buffer. The pixels are not copied.
+       */
+      Image createImage(Object pixels, mmcorej.Metadata md, int channel)
+            throws JSONException {
+         JSONObject tags = new JSONObject();
+         for (String key : md.GetKeys()) {
+            tags.put(key, md.GetSingleTag(key).GetValue());
+         }
+         tags.put(PropertyKey.WIDTH.key(), width_);
+         tags.put(PropertyKey.HEIGHT.key(), height_);
+         tags.put(PropertyKey.BIT_DEPTH.key(), bitDepth_);
+         if (pixelType_ != null) {
+            tags.put(PropertyKey.PIXEL_TYPE.key(), pixelType_);
+         }
+         return new DefaultImage(new TaggedImage(pixels, tags),
+               Coordinates.builder().t(0).c(channel).build(), null);
+      }
+   }
+
    /**
     * Implementation of SnapLiveManager interface.
     *
@@ -288,7 +405,9 @@ public final class SnapLiveManager extends DataViewerListener
          mmStudio_.logs().showError(e, "Unable to determine exposure time");
          return;
       }
-      final String camName = core_.getCameraDevice();
+      final LiveGrabState state = new LiveGrabState(core_, core_.getCameraDevice(), exposureMs);
+      shouldBypassDatastore_ = getShouldBypassDatastore();
+      clearPendingLiveImages();
 
       synchronized (displayInfoLock_) {
          if (displayInfo_ != null) {
@@ -318,11 +437,12 @@ public final class SnapLiveManager extends DataViewerListener
                      return;
                   }
                }
-               grabAndAddImages(camName, liveModeCount);
+               grabAndAddImages(state);
 
                // Choose an interval within the absolute bounds, and at least as
-               // long as the exposure. Within that range, try to match the
-               // actual frequency at which the images are getting displayed.
+               // long as the camera's frame interval (or, until that is known,
+               // the exposure). Within that range, try to match the actual
+               // frequency at which the images are getting displayed.
 
                double displayIntervalLowQuantileMs;
                if (display_ != null) {
@@ -339,13 +459,14 @@ public final class SnapLiveManager extends DataViewerListener
                         || liveModeStartCount_ != liveModeCount) {
                      return;
                   }
-                  delayMs = computeGrabDelayMs(exposureMs,
+                  delayMs = computeGrabDelayMs(state.getFrameIntervalMs(),
                         displayIntervalLowQuantileMs,
                         -scheduledGrab_.getDelay(TimeUnit.MILLISECONDS));
                   scheduledGrab_ = scheduler_.schedule(this,
                         delayMs, TimeUnit.MILLISECONDS);
                }
                perfMon_.sample("Grab schedule delay (ms)", delayMs);
+               perfMon_.sample("Camera frame interval (ms)", state.getFrameIntervalMs());
             }
          };
          scheduledGrab_ = scheduler_.schedule(grab, 0, TimeUnit.MILLISECONDS);
@@ -356,9 +477,9 @@ public final class SnapLiveManager extends DataViewerListener
       }
    }
 
-   private static long computeGrabDelayMs(double exposureMs,
+   private static long computeGrabDelayMs(double frameIntervalMs,
                                           double displayIntervalMs, double alreadyElapsedMs) {
-      double delayMs = Math.max(exposureMs, displayIntervalMs);
+      double delayMs = Math.max(frameIntervalMs, displayIntervalMs);
       delayMs -= alreadyElapsedMs;
 
       // Clip to allowed range
@@ -389,6 +510,8 @@ public final class SnapLiveManager extends DataViewerListener
             scheduledGrab_ = null;
          }
       }
+      clearPendingLiveImages();
+      SwingUtilities.invokeLater(this::storeLiveImages);
 
       try {
          if (core_.isSequenceRunning()) {
@@ -408,79 +531,104 @@ public final class SnapLiveManager extends DataViewerListener
    }
 
    /**
-    * This method takes images out of the Core and inserts them into our
-    * pipeline.
+    * This method takes images out of the Core and hands them to the display.
+    *
+    * <p>The image numbers and channel indices in the core metadata are used
+    * to find the newest image of each camera channel; only those images, and
+    * only if they have not been grabbed before, are converted to Images. The
+    * images are handed to the EDT through pendingLiveImages_, so that the
+    * grabber never waits for the display.
     */
-   private void grabAndAddImages(String camName, final long liveModeCount) {
+   private void grabAndAddImages(LiveGrabState state) {
       try {
-         // We scan over 2*numCameraChannels here because, in multi-camera
+         // We scan over 6*numCameraChannels here because, in multi-camera
          // setups, one camera could be generating images faster than the
-         // other(s). Of course, 2x isn't guaranteed to be enough here, either,
+         // other(s). Of course, 6x isn't guaranteed to be enough here, either,
          // but it's what we've historically used.
          HashSet<Integer> channelsSet = new HashSet<>();
          for (int c = 0; c < 6 * numCameraChannels_; ++c) {
-            TaggedImage tagged;
+            mmcorej.Metadata md = new mmcorej.Metadata();
+            Object pixels;
             try {
-               tagged = core_.getNBeforeLastTaggedImage(c);
-               perfMon_.sampleTimeInterval("getNBeforeLastTaggedImage");
+               pixels = core_.getNBeforeLastImageMD(c, md);
+               perfMon_.sampleTimeInterval("getNBeforeLastImageMD");
                perfMon_.sample("No image in sequence buffer (%)", 0.0);
             } catch (Exception e) {
                // No image in the sequence buffer.
                perfMon_.sample("No image in sequence buffer (%)", 100.0);
                continue;
             }
-            JSONObject tags = tagged.tags;
             int imageChannel = c;
-            if ((numCameraChannels_ > 1) && tags.has(camName + "-CameraChannelIndex")) {
-               imageChannel = tags.getInt(camName + "-CameraChannelIndex");
+            String channelIndexTag = state.camName_ + "-CameraChannelIndex";
+            if ((numCameraChannels_ > 1) && md.HasTag(channelIndexTag)) {
+               imageChannel = Integer.parseInt(md.GetSingleTag(channelIndexTag).GetValue());
             }
-            if (channelsSet.contains(imageChannel)) {
-               // Already provided a more recent version of this channel.
+            if (!channelsSet.add(imageChannel)) {
+               // Already found a more recent version of this channel.
                continue;
             }
-            DefaultImage image = new DefaultImage(tagged);
-            final Long seqNr = image.getMetadata().getImageNumber();
+            Long seqNr = md.HasTag(IMAGE_NUMBER_TAG)
+                  ? Long.valueOf(md.GetSingleTag(IMAGE_NUMBER_TAG).GetValue()) : null;
             perfMon_.sample("Image missing ImageNumber (%)",
                   seqNr == null ? 100.0 : 0.0);
-            Coords newCoords = image.getCoords().copyBuilder()
-                  .t(0)
-                  .c(imageChannel).build();
-            // Generate a new UUID for the image, so that our histogram
-            // update code realizes this is a new image.
-            Metadata newMetadata = image.getMetadata().copyBuilderWithNewUUID()
-                  .build();
-            final Image newImage = image.copyWith(newCoords, newMetadata);
-
-            try {
-               SwingUtilities.invokeAndWait(() -> {
-                  synchronized (SnapLiveManager.this) {
-                     if (scheduledGrab_ == null
-                           || liveModeStartCount_ != liveModeCount) {
-                        throw new CancellationException();
-                     }
-                  }
-                  displayImage(newImage);
-               });
-
-            } catch (InterruptedException unexpected) {
-               Thread.currentThread().interrupt();
-            } catch (InvocationTargetException e) {
-               if (e.getCause() instanceof CancellationException) {
-                  return;
-               }
-               throw new RuntimeException(e.getCause());
+            boolean isNew = seqNr == null || state.recordFrame(imageChannel, seqNr,
+                  md.HasTag(ELAPSED_TIME_TAG)
+                        ? Double.parseDouble(md.GetSingleTag(ELAPSED_TIME_TAG).GetValue())
+                        : Double.NaN);
+            perfMon_.sample("Unchanged image skipped (%)", isNew ? 0.0 : 100.0);
+            if (isNew) {
+               postLiveImage(imageChannel, state.createImage(pixels, md, imageChannel));
             }
-            channelsSet.add(imageChannel);
             if (channelsSet.size() == numCameraChannels_) {
                // Got every channel.
                break;
             }
          }
-      } catch (JSONException e) {
+      } catch (JSONException | IllegalArgumentException e) {
          ReportingUtils.logError(e, "Exception in image grabber thread.");
       }
    }
 
+   /**
+    * Make the image the next one to display for its channel, replacing any
+    * image of that channel that the EDT has not yet picked up.
+    */
+   private void postLiveImage(int channel, Image image) {
+      synchronized (pendingLiveImages_) {
+         pendingLiveImages_.put(channel, image);
+         if (isLiveDisplayPending_) {
+            return;
+         }
+         isLiveDisplayPending_ = true;
+      }
+      SwingUtilities.invokeLater(this::displayPendingLiveImages);
+   }
+
+   @MustCallOnEDT
+   private void displayPendingLiveImages() {
+      List<Image> images;
+      synchronized (pendingLiveImages_) {
+         images = new ArrayList<>(pendingLiveImages_.values());
+         pendingLiveImages_.clear();
+         isLiveDisplayPending_ = false;
+      }
+      synchronized (this) {
+         if (scheduledGrab_ == null) {
+            // Live mode stopped since the images were grabbed.
+            return;
+         }
+      }
+      for (Image image : images) {
+         displayImage(image);
+      }
+   }
+
+   private void clearPendingLiveImages() {
+      synchronized (pendingLiveImages_) {
+         pendingLiveImages_.clear();
+      }
+   }
+
    @Override
    public boolean isLiveModeOn() {
       return isLiveOn_;
@@ -546,6 +694,8 @@ public final class SnapLiveManager extends DataViewerListener
       synchronized (lastImageForEachChannel_) {
          lastImageForEachChannel_.clear();
       }
+      lastStoredNs_.clear();
+      haveUnstoredLiveImages_ = false;
 
       synchronized (displayInfoLock_) {
          displayInfo_ = null;
@@ -608,6 +758,7 @@ public final class SnapLiveManager extends DataViewerListener
       toAlbumButton.setFont(GUIUtils.buttonFont);
       toAlbumButton.setMargin(zeroInsets);
       toAlbumButton.addActionListener((ActionEvent event) -> {      
+         storeLiveImages();
          // Send all images at current channel to the album.
          Coords.CoordsBuilder builder = Coordinates.builder();
          boolean hadChannels = false;
@@ -748,6 +899,17 @@ public final class SnapLiveManager extends DataViewerListener
             }
          }
 
+         if (canBypassDatastore(newImageChannel)) {
+            display_.displayLiveImage(newImage);
+            haveUnstoredLiveImages_ = true;
+            perfMon_.sampleTimeInterval("Image displayed without storing");
+            return;
+         }
+         if (display_ != null) {
+            display_.clearLiveImage(newImage.getCoords());
+         }
+         lastStoredNs_.put(newImageChannel, System.nanoTime());
+
          synchronized (pipelineLock_) {
             try {
                pipeline_.insertImage(newImage);
@@ -776,6 +938,79 @@ public final class SnapLiveManager extends DataViewerListener
       }
    }
 
+   /**
+    * Whether a live image can be shown without storing it: only when there
+    * are no on-the-fly processors (which need to see every image), and only
+    * if the channel's image has been stored recently.
+    */
+   @MustCallOnEDT
+   private boolean canBypassDatastore(int channel) {
+      if (!shouldBypassDatastore_ || !isLiveOn_ || suspendCount_ != 0
+            || display_ == null || display_.isClosed()) {
+         return false;
+      }
+      synchronized (pipelineLock_) {
+         if (!pipeline_.getProcessors().isEmpty()) {
+            return false;
+         }
+      }
+      Long lastStored = lastStoredNs_.get(channel);
+      return lastStored != null
+            && System.nanoTime() - lastStored < STORE_REFRESH_INTERVAL_NS;
+   }
+
+   /**
+    * Store the newest image of each channel if it was displayed without
+    * being stored, so that the Datastore matches the display (for the album,
+    * saving, or after live mode stops).
+    */
+   @MustCallOnEDT
+   private void storeLiveImages() {
+      if (!haveUnstoredLiveImages_) {
+         return;
+      }
+      haveUnstoredLiveImages_ = false;
+      List<DefaultImage> images;
+      synchronized (lastImageForEachChannel_) {
+         images = new ArrayList<>(lastImageForEachChannel_);
+      }
+      synchronized (pipelineLock_) {
+         for (DefaultImage image : images) {
+            if (image == null) {
+               continue;
+            }
+            try {
+               pipeline_.insertImage(image);
+               lastStoredNs_.put(image.getCoords().getChannel(), System.nanoTime());
+            } catch (IOException | PipelineErrorException e) {
+               mmStudio_.logs().logError(e, "Unable to store live image");
+               pipeline_.clearExceptions();
+            }
+         }
+      }
+      if (display_ != null) {
+         display_.clearLiveImages();
+      }
+   }
+
+   /**
+    * Whether live mode shows images without storing each one in the
+    * Datastore, when there are no on-the-fly processors. This reduces the
+    * work per image at high frame rates; code that watches the Preview
+    * Datastore for new images only sees about one image per second.
+    *
+    * @return true if images may bypass the Datastore
+    */
+   public static boolean getShouldBypassDatastore() {
+      return MMStudio.getInstance().profile().getSettings(SnapLiveManager.class)
+            .getBoolean(SHOULD_BYPASS_DATASTORE, false);
+   }
+
+   public static void setShouldBypassDatastore(boolean shouldBypass) {
+      MMStudio.getInstance().profile().getSettings(SnapLiveManager.class)
+            .putBoolean(SHOULD_BYPASS_DATASTORE, shouldBypass);
+   }
+
    @MustCallOnEDT
    private void createOrResetDatastoreAndDisplay() {
       if (numCameraChannels_ == -1) {
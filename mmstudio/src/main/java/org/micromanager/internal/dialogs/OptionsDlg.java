@@ -40,8 +40,11 @@ import org.micromanager.ApplicationSkin.SkinMode;
 import org.micromanager.Studio;
 import org.micromanager.UserProfile;
 import org.micromanager.data.internal.multipagetiff.StorageMultipageTiff;
+import org.micromanager.data.internal.pipeline.DefaultPipeline;
+import org.micromanager.display.internal.displaywindow.DisplayController;
 import org.micromanager.internal.MMStudio;
 import org.micromanager.internal.MainFrame;
+import org.micromanager.internal.SnapLiveManager;
 import org.micromanager.internal.StartupSettings;
 import org.micromanager.internal.logging.LogFileManager;
 import org.micromanager.internal.script.ScriptPanel;
@@ -63,6 +66,7 @@ public final class OptionsDlg extends JDialog {
    private final JTextField startupScriptFile_;
    private final JTextField bufSizeField_;
    private final JTextField logDeleteDaysField_;
+   private final JTextField latencyBudgetField_;
    private final JComboBox<String> comboDisplayBackground_;
 
    private final CMMCore core_;
@@ -247,6 +251,61 @@ public final class OptionsDlg extends JDialog {
             StorageMultipageTiff.setShouldSplitPositions(
                   separateFilesForPositionsMPTiffCheckBox.isSelected()));
 
+      final JCheckBox writerThreadPerFileMPTiffCheckBox = new JCheckBox();
+      writerThreadPerFileMPTiffCheckBox.setText(
+            "Write separate XY position files in parallel");
+      writerThreadPerFileMPTiffCheckBox.setToolTipText(
+            "Use one writing thread per position file, e.g. to write to several drives at once");
+      writerThreadPerFileMPTiffCheckBox.setSelected(
+            StorageMultipageTiff.getShouldUseWriterThreadPerFile());
+      writerThreadPerFileMPTiffCheckBox.addActionListener((ActionEvent arg0) ->
+            StorageMultipageTiff.setShouldUseWriterThreadPerFile(
+                  writerThreadPerFileMPTiffCheckBox.isSelected()));
+
+      final JCheckBox memoryMapMPTiffCheckBox = new JCheckBox();
+      memoryMapMPTiffCheckBox.setText(
+            "Memory-map Image Stack Files when opening saved data");
+      memoryMapMPTiffCheckBox.setToolTipText(
+            "Faster browsing of large saved datasets; files stay open while displayed");
+      memoryMapMPTiffCheckBox.setSelected(
+            StorageMultipageTiff.getShouldMemoryMapFiles());
+      memoryMapMPTiffCheckBox.addActionListener((ActionEvent arg0) ->
+            StorageMultipageTiff.setShouldMemoryMapFiles(
+                  memoryMapMPTiffCheckBox.isSelected()));
+
+      final JCheckBox ringBufferPipelineCheckBox = new JCheckBox();
+      ringBufferPipelineCheckBox.setText(
+            "Use ring buffers between on-the-fly processors");
+      ringBufferPipelineCheckBox.setToolTipText(
+            "Faster hand-off of images between processors at high frame rates");
+      ringBufferPipelineCheckBox.setSelected(DefaultPipeline.getShouldUseRingBuffers());
+      ringBufferPipelineCheckBox.addActionListener((ActionEvent arg0) ->
+            DefaultPipeline.setShouldUseRingBuffers(ringBufferPipelineCheckBox.isSelected()));
+
+      final JCheckBox bypassLiveDatastoreCheckBox = new JCheckBox();
+      bypassLiveDatastoreCheckBox.setText(
+            "Display live images without storing every image");
+      bypassLiveDatastoreCheckBox.setToolTipText(
+            "Faster live mode without on-the-fly processors; images are stored "
+            + "about once per second");
+      bypassLiveDatastoreCheckBox.setSelected(SnapLiveManager.getShouldBypassDatastore());
+      bypassLiveDatastoreCheckBox.addActionListener((ActionEvent arg0) ->
+            SnapLiveManager.setShouldBypassDatastore(bypassLiveDatastoreCheckBox.isSelected()));
+
+      final JCheckBox limitDisplayLatencyCheckBox = new JCheckBox();
+      limitDisplayLatencyCheckBox.setText("Skip display of images later than");
+      limitDisplayLatencyCheckBox.setToolTipText(
+            "Keep image windows close to the camera under load by skipping images "
+            + "that would be shown too long after they arrived; applies to "
+            + "windows opened afterwards");
+      limitDisplayLatencyCheckBox.setSelected(DisplayController.getShouldLimitLatency(mmStudio_));
+      limitDisplayLatencyCheckBox.addActionListener((ActionEvent arg0) ->
+            DisplayController.setShouldLimitLatency(mmStudio_,
+                  limitDisplayLatencyCheckBox.isSelected()));
+
+      latencyBudgetField_ = new JTextField(
+            Integer.toString(DisplayController.getLatencyBudgetMs(mmStudio_)), 4);
+
       final JCheckBox includeVerboseMetadataCheckBox = new JCheckBox();
       includeVerboseMetadataCheckBox.setText(
             "Include verbose metadata with MDA images");
@@ -327,7 +386,14 @@ public final class OptionsDlg extends JDialog {
 
       super.add(metadataFileWithMultipageTiffCheckBox, "wrap");
       super.add(separateFilesForPositionsMPTiffCheckBox, "wrap");
+      super.add(writerThreadPerFileMPTiffCheckBox, "gapleft 20, wrap");
+      super.add(memoryMapMPTiffCheckBox, "wrap");
       super.add(includeVerboseMetadataCheckBox, "wrap");
+      super.add(ringBufferPipelineCheckBox, "wrap");
+      super.add(bypassLiveDatastoreCheckBox, "wrap");
+      super.add(limitDisplayLatencyCheckBox, "split 3, gapright related");
+      super.add(latencyBudgetField_, "gapright related");
+      super.add(new JLabel("ms"), "gapright push, wrap");
 
       super.add(new JSeparator(), "wrap");
 
@@ -375,11 +441,14 @@ public final class OptionsDlg extends JDialog {
    private void closeRequested() {
       int seqBufSize;
       int deleteLogDays;
+      int latencyBudgetMs;
       try {
          seqBufSize =
                NumberUtils.displayStringToInt(bufSizeField_.getText());
          deleteLogDays =
                NumberUtils.displayStringToInt(logDeleteDaysField_.getText());
+         latencyBudgetMs =
+               NumberUtils.displayStringToInt(latencyBudgetField_.getText());
       } catch (ParseException ex) {
          ReportingUtils.showError(ex);
          return;
@@ -387,6 +456,7 @@ public final class OptionsDlg extends JDialog {
 
       mmStudio_.settings().setCircularBufferSize(seqBufSize);
       mmStudio_.settings().setCoreLogLifetimeDays(deleteLogDays);
+      DisplayController.setLatencyBudgetMs(mmStudio_, Math.max(1, latencyBudgetMs));
 
       ScriptPanel.setStartupScript(mmStudio_, startupScriptFile_.getText());
       mmStudio_.app().makeActive();
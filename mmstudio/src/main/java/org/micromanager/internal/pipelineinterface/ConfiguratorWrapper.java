@@ -38,6 +38,7 @@ public final class ConfiguratorWrapper {
    private String name_;
    private boolean isEnabled_;
    private boolean isEnabledInLive_;
+   private int threadCount_;
 
    public ConfiguratorWrapper(ProcessorPlugin plugin,
                               ProcessorConfigurator configurator, String name) {
@@ -46,6 +47,7 @@ public final class ConfiguratorWrapper {
       name_ = name;
       isEnabled_ = true;
       isEnabledInLive_ = true;
+      threadCount_ = 1;
    }
 
    public ProcessorPlugin getPlugin() {
@@ -80,6 +82,17 @@ public final class ConfiguratorWrapper {
       isEnabledInLive_ = isEnabled;
    }
 
+   /**
+    * Number of threads the processor should run on, if it is thread-safe.
+    */
+   public int getThreadCount() {
+      return threadCount_;
+   }
+
+   public void setThreadCount(int threadCount) {
+      threadCount_ = Math.max(1, threadCount);
+   }
+
    /**
     * Serialize ourselves into JSON for storage.
     */
@@ -89,6 +102,7 @@ public final class ConfiguratorWrapper {
          json.put("name", name_);
          json.put("isEnabled", isEnabled_);
          json.put("isEnabledInLive", isEnabledInLive_);
+         json.put("threadCount", threadCount_);
          json.put("pluginName", plugin_.getClass().getName());
          json.put("configSettings", configurator_.getSettings().toJSON());
          return json.toString();
@@ -125,6 +139,9 @@ public final class ConfiguratorWrapper {
          } else {
             result.setEnabledInLive(result.isEnabled());
          }
+         if (json.has("threadCount")) {
+            result.setThreadCount(json.getInt("threadCount"));
+         }
          return result;
       } catch (JSONException e) {
          ReportingUtils.logError(e,
@@ -330,6 +330,14 @@ public final class PipelineFrame extends JFrame
       return getTableModel().getPipelineFactories(true);
    }
 
+   /**
+    * Number of threads requested for each processor, in the same order as
+    * getPipelineFactories() or getLivePipelineFactories().
+    */
+   public List<Integer> getPipelineThreadCounts(boolean isLiveMode) {
+      return getTableModel().getPipelineThreadCounts(isLiveMode);
+   }
+
    private List<ProcessorConfigurator> convertWrappersToConfigurators(
          List<ConfiguratorWrapper> configs) {
       ArrayList<ProcessorConfigurator> result = new ArrayList<>();
@@ -119,7 +119,7 @@ public final class PipelineTable extends JTable {
 
       // Shrink the checkbox columns down to size.
       for (int columnID : new int[] {PipelineTableModel.ENABLED_COLUMN,
-            PipelineTableModel.ENABLED_LIVE_COLUMN}) {
+            PipelineTableModel.ENABLED_LIVE_COLUMN, PipelineTableModel.THREADS_COLUMN}) {
          TableColumn column = getColumnModel().getColumn(columnID);
          column.setMinWidth(column.getPreferredWidth());
          column.setMaxWidth(column.getPreferredWidth());
@@ -36,8 +36,9 @@ public final class PipelineTableModel extends AbstractTableModel {
    static final int ENABLED_COLUMN = 0;
    static final int ENABLED_LIVE_COLUMN = 1;
    static final int NAME_COLUMN = 2;
-   static final int CONFIGURE_COLUMN = 3;
-   private static final int NUM_COLUMNS = 4;
+   static final int THREADS_COLUMN = 3;
+   static final int CONFIGURE_COLUMN = 4;
+   private static final int NUM_COLUMNS = 5;
    private static final String SAVED_PIPELINE = "saved pipeline configuration";
 
    private final ArrayList<ConfiguratorWrapper> pipelineConfigs_;
@@ -121,6 +122,21 @@ public final class PipelineTableModel extends AbstractTableModel {
       return result;
    }
 
+   /**
+    * Provide the number of threads for each enabled processor, in the same
+    * order as getPipelineFactories().
+    *
+    * @param isLiveMode if true, select configurators enabled for live, if
+    *                   false, select generally-enabled configurators.
+    */
+   public List<Integer> getPipelineThreadCounts(boolean isLiveMode) {
+      ArrayList<Integer> result = new ArrayList<>();
+      for (ConfiguratorWrapper config : getEnabledConfigurators(isLiveMode)) {
+         result.add(config.getThreadCount());
+      }
+      return result;
+   }
+
    /**
     * Provide a list of configurators for all processors.
     */
@@ -161,6 +177,8 @@ public final class PipelineTableModel extends AbstractTableModel {
             return Boolean.class;
          case NAME_COLUMN:
             return String.class;
+         case THREADS_COLUMN:
+            return Integer.class;
          case CONFIGURE_COLUMN:
             return ConfiguratorWrapper.class;
          default:
@@ -177,6 +195,8 @@ public final class PipelineTableModel extends AbstractTableModel {
             return "Snap/Live";
          case NAME_COLUMN:
             return "Processor";
+         case THREADS_COLUMN:
+            return "Threads";
          case CONFIGURE_COLUMN:
             return "Settings";
          default:
@@ -191,6 +211,7 @@ public final class PipelineTableModel extends AbstractTableModel {
          case ENABLED_LIVE_COLUMN:
          case CONFIGURE_COLUMN:
          case NAME_COLUMN:
+         case THREADS_COLUMN:
             return true;
          default:
             return false;
@@ -206,6 +227,8 @@ public final class PipelineTableModel extends AbstractTableModel {
             return pipelineConfigs_.get(row).isEnabledInLive();
          case NAME_COLUMN:
             return pipelineConfigs_.get(row).getName();
+         case THREADS_COLUMN:
+            return pipelineConfigs_.get(row).getThreadCount();
          case CONFIGURE_COLUMN:
             return pipelineConfigs_.get(row);
          default:
@@ -224,6 +247,11 @@ public final class PipelineTableModel extends AbstractTableModel {
       } else if (column == NAME_COLUMN) {
          pipelineConfigs_.get(row).setName((String) value);
          fireTableDataChanged();
+      } else if (column == THREADS_COLUMN && value != null) {
+         // Processors that are not thread-safe ignore this
+         pipelineConfigs_.get(row).setThreadCount(Math.min((Integer) value,
+               Runtime.getRuntime().availableProcessors()));
+         fireTableDataChanged();
       }
    }
 
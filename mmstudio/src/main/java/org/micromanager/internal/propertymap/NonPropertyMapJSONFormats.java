@@ -73,12 +73,22 @@ import static org.micromanager.data.internal.PropertyKey.Z_STEP_UM;
 import com.google.common.collect.ImmutableList;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
 import com.google.gson.stream.JsonReader;
 import java.io.IOException;
 import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Iterator;
+import java.util.Map;
+import mmcorej.org.json.JSONArray;
+import mmcorej.org.json.JSONException;
+import mmcorej.org.json.JSONObject;
 import org.micromanager.PropertyMap;
 import org.micromanager.PropertyMaps;
 import org.micromanager.data.internal.PropertyKey;
@@ -173,6 +183,134 @@ public abstract class NonPropertyMapJSONFormats {
       return gson.toJson(toGson(canonical));
    }
 
+   /**
+    * Constructs a PropertyMap from MM1-style JSON tags, such as those attached
+    * to a TaggedImage by the core.
+    *
+    * <p>This walks the org.json tree directly and does not go through a
+    * String, so it avoids serializing and re-parsing the tags for every image.
+    *
+    * @param tags MM1-style JSON tags
+    * @return PropertyMap
+    */
+   public final PropertyMap fromJSONObject(JSONObject tags) {
+      return fromGson(gsonFromJSONObject(tags));
+   }
+
+   /**
+    * Converts an org.json (as used by MMCoreJ) object into the equivalent
+    * Gson tree, without an intermediate String.
+    *
+    * <p>The result is identical to parsing {@code tags.toString()} with Gson,
+    * including the textual form of floating point numbers, so that the
+    * PropertyKey extractors behave exactly as they do for parsed JSON. Callers
+    * that need to extract several formats from the same tags (metadata,
+    * coords, image format) should convert once and call
+    * {@link #fromGson(JsonElement)} for each.
+    *
+    * @param tags org.json object to convert
+    * @return Gson tree with the same content
+    */
+   public static JsonObject gsonFromJSONObject(JSONObject tags) {
+      JsonObject jo = new JsonObject();
+      Iterator<?> keys = tags.keys();
+      while (keys.hasNext()) {
+         String key = keys.next().toString();
+         jo.add(key, gsonFromJSONValue(tags.opt(key)));
+      }
+      return jo;
+   }
+
+   private static JsonArray gsonFromJSONArray(JSONArray array) {
+      JsonArray ja = new JsonArray();
+      for (int i = 0; i < array.length(); ++i) {
+         ja.add(gsonFromJSONValue(array.opt(i)));
+      }
+      return ja;
+   }
+
+   private static JsonElement gsonFromJSONValue(Object value) {
+      if (value == null || JSONObject.NULL.equals(value)) {
+         return JsonNull.INSTANCE;
+      }
+      if (value instanceof JSONObject) {
+         return gsonFromJSONObject((JSONObject) value);
+      }
+      if (value instanceof JSONArray) {
+         return gsonFromJSONArray((JSONArray) value);
+      }
+      if (value instanceof String) {
+         return new JsonPrimitive((String) value);
+      }
+      if (value instanceof Boolean) {
+         return new JsonPrimitive((Boolean) value);
+      }
+      if (value instanceof Integer || value instanceof Long) {
+         return new JsonPrimitive((Number) value);
+      }
+      if (value instanceof Number) {
+         // org.json writes e.g. 5.0 as "5"; keep that textual form so that
+         // getAsString() gives the same answer as for parsed JSON.
+         try {
+            return new JsonPrimitive(numberFromText(JSONObject.numberToString((Number) value),
+                  value instanceof BigDecimal || value instanceof BigInteger));
+         } catch (JSONException e) {
+            // Non-finite numbers cannot be written to JSON by org.json
+            return new JsonPrimitive(value.toString());
+         }
+      }
+      return new JsonPrimitive(value.toString());
+   }
+
+   // Integral text becomes a Long, so that e.g. 5.0 is still given as "5"
+   private static Number numberFromText(String text, boolean isBig) {
+      try {
+         return Long.valueOf(text);
+      } catch (NumberFormatException e) {
+         return isBig ? new BigDecimal(text) : Double.valueOf(text);
+      }
+   }
+
+   /**
+    * Converts a Gson object into the equivalent org.json (as used by MMCoreJ)
+    * object, without an intermediate String.
+    *
+    * @param jo Gson object to convert
+    * @return org.json object with the same content
+    * @throws JSONException if a value cannot be represented in org.json
+    */
+   public static JSONObject jsonObjectFromGson(JsonObject jo) throws JSONException {
+      JSONObject result = new JSONObject();
+      for (Map.Entry<String, JsonElement> e : jo.entrySet()) {
+         result.put(e.getKey(), jsonValueFromGson(e.getValue()));
+      }
+      return result;
+   }
+
+   private static Object jsonValueFromGson(JsonElement je) throws JSONException {
+      if (je == null || je.isJsonNull()) {
+         return JSONObject.NULL;
+      }
+      if (je.isJsonObject()) {
+         return jsonObjectFromGson(je.getAsJsonObject());
+      }
+      if (je.isJsonArray()) {
+         JSONArray array = new JSONArray();
+         for (JsonElement item : je.getAsJsonArray()) {
+            array.put(jsonValueFromGson(item));
+         }
+         return array;
+      }
+      JsonPrimitive jp = je.getAsJsonPrimitive();
+      if (jp.isBoolean()) {
+         return jp.getAsBoolean();
+      }
+      if (jp.isNumber()) {
+         return jp.getAsNumber();
+      }
+      return jp.getAsString();
+   }
+
    public abstract PropertyMap fromGson(JsonElement je);
 
    public final JsonElement toGson(PropertyMap pmap) {
@@ -187,6 +325,32 @@ public abstract class NonPropertyMapJSONFormats {
    }
 
    private static final class MetadataFormat extends NonPropertyMapJSONFormats {
+      private static final ImmutableList<PropertyKey> WRITTEN_KEYS = ImmutableList.of(
+            PropertyKey.UUID,
+            CAMERA,
+            BINNING,
+            ROI,
+            BIT_DEPTH,
+            EXPOSURE_MS,
+            ELAPSED_TIME_MS,
+            IMAGE_NUMBER,
+            RECEIVED_TIME,
+            PIXEL_SIZE_UM,
+            PIXEL_SIZE_AFFINE,
+            PIXEL_ASPECT,
+            POSITION_NAME,
+            X_POSITION_UM,
+            Y_POSITION_UM,
+            Z_POSITION_UM,
+            SCOPE_DATA,
+            SCOPE_DATA_KEYS,
+            USER_DATA,
+            // File name should probably not be included here, since it can/should be handled
+            // a storage layer on its own, and should not be considered required metadata.
+            // but I don't know what the consequences of removing it are, so I'm leaving it
+            // in for now.
+            FILE_NAME);
+
       @Override
       public PropertyMap fromGson(JsonElement je) {
          PropertyMap.Builder builder = PropertyMaps.builder();
@@ -218,31 +382,7 @@ public abstract class NonPropertyMapJSONFormats {
 
       @Override
       public void addToGson(JsonObject jo, PropertyMap pmap) {
-         for (PropertyKey key : ImmutableList.of(
-               PropertyKey.UUID,
-               CAMERA,
-               BINNING,
-               ROI,
-               BIT_DEPTH,
-               EXPOSURE_MS,
-               ELAPSED_TIME_MS,
-               IMAGE_NUMBER,
-               RECEIVED_TIME,
-               PIXEL_SIZE_UM,
-               PIXEL_SIZE_AFFINE,
-               PIXEL_ASPECT,
-               POSITION_NAME,
-               X_POSITION_UM,
-               Y_POSITION_UM,
-               Z_POSITION_UM,
-               SCOPE_DATA,
-               SCOPE_DATA_KEYS,
-               USER_DATA,
-               // File name should probably not be included here, since it can/should be handled
-               // a storage layer on its own, and should not be considered required metadata.
-               // but I don't know what the consequences of removing it are, so I'm leaving it
-               // in for now.
-               FILE_NAME)) {
+         for (PropertyKey key : WRITTEN_KEYS) {
             try {
                key.storeInGsonObject(pmap, jo);
             } catch (NullPointerException npe) {
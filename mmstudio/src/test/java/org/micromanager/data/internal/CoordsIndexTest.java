@@ -0,0 +1,112 @@
+package org.micromanager.data.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Assert;
+import org.junit.Test;
+import org.micromanager.data.Coords;
+
+public class CoordsIndexTest {
+   private static Coords coords(int c, int z, int t) {
+      return new DefaultCoords.Builder().c(c).z(z).t(t).build();
+   }
+
+   // Like a Storage, first store the coords, then index them
+   private static void add(Set<Coords> stored, CoordsIndex index, Coords coords) {
+      stored.add(coords);
+      index.add(coords);
+   }
+
+   @Test
+   public void findsMatchesForAnyIgnoredAxes() {
+      Set<Coords> stored = new LinkedHashSet<>();
+      CoordsIndex index = new CoordsIndex(stored);
+      for (int c = 0; c < 3; ++c) {
+         for (int z = 0; z < 4; ++z) {
+            for (int t = 0; t < 5; ++t) {
+               add(stored, index, coords(c, z, t));
+            }
+         }
+      }
+
+      Assert.assertEquals(Arrays.asList(coords(0, 2, 3), coords(1, 2, 3), coords(2, 2, 3)),
+            index.getMatching(coords(0, 2, 3), Coords.CHANNEL));
+      Assert.assertEquals(Arrays.asList(coords(1, 2, 0), coords(1, 2, 1),
+            coords(1, 2, 2), coords(1, 2, 3), coords(1, 2, 4)),
+            index.getMatching(new DefaultCoords.Builder().c(1).z(2).build(),
+                  Coords.TIME_POINT));
+      Assert.assertEquals(12,
+            index.getMatching(coords(0, 0, 4), Coords.CHANNEL, Coords.Z_SLICE).size());
+      Assert.assertEquals(Collections.singletonList(coords(2, 3, 4)),
+            index.getMatching(coords(2, 3, 4)));
+      // Axes that are not in use do not matter
+      Assert.assertEquals(Collections.singletonList(coords(2, 3, 4)),
+            index.getMatching(coords(2, 3, 4), Coords.STAGE_POSITION));
+      Assert.assertEquals(Collections.emptyList(),
+            index.getMatching(coords(0, 0, 9), Coords.CHANNEL));
+
+      add(stored, index, coords(1, 1, 1)); // Already present
+      Assert.assertEquals(Arrays.asList(coords(0, 1, 1), coords(1, 1, 1), coords(2, 1, 1)),
+            index.getMatching(coords(0, 1, 1), Coords.CHANNEL));
+   }
+
+   @Test
+   public void indicesFollowAddsAndRemoves() {
+      Set<Coords> stored = new LinkedHashSet<>();
+      CoordsIndex index = new CoordsIndex(stored);
+      add(stored, index, coords(0, 0, 0));
+      add(stored, index, coords(1, 0, 0));
+      Assert.assertEquals(2, index.getMatching(coords(0, 0, 0), Coords.CHANNEL).size());
+      add(stored, index, coords(2, 0, 0));
+      stored.remove(coords(0, 0, 0));
+      index.remove(coords(0, 0, 0));
+      Assert.assertEquals(Arrays.asList(coords(1, 0, 0), coords(2, 0, 0)),
+            index.getMatching(coords(0, 0, 0), Coords.CHANNEL));
+      Assert.assertFalse(index.contains(coords(0, 0, 0)));
+   }
+
+   @Test
+   public void lookupsDuringConcurrentInserts() throws Exception {
+      final Set<Coords> stored = ConcurrentHashMap.newKeySet();
+      final CoordsIndex index = new CoordsIndex(stored);
+      final int frames = 2000;
+      final AtomicReference<Throwable> failure = new AtomicReference<>();
+      Thread writer = new Thread(() -> {
+         for (int t = 0; t < frames; ++t) {
+            for (int c = 0; c < 4; ++c) {
+               add(stored, index, coords(c, 0, t));
+            }
+         }
+      });
+      Thread reader = new Thread(() -> {
+         try {
+            for (int i = 0; i < 20000; ++i) {
+               int t = i % frames;
+               List<Coords> matches = index.getMatching(coords(0, 0, t), Coords.CHANNEL);
+               Assert.assertTrue(matches.size() <= 4);
+               index.getMatching(coords(0, 0, 0), Coords.TIME_POINT);
+            }
+         } catch (Throwable e) {
+            failure.set(e);
+         }
+      });
+      writer.start();
+      reader.start();
+      writer.join();
+      reader.join();
+      Assert.assertNull(failure.get());
+      List<Coords> expected = new ArrayList<>();
+      for (int t = 0; t < frames; ++t) {
+         expected.add(coords(2, 0, t));
+      }
+      Assert.assertEquals(new HashSet<>(expected),
+            new HashSet<>(index.getMatching(coords(2, 0, 0), Coords.TIME_POINT)));
+   }
+}
@@ -0,0 +1,51 @@
+package org.micromanager.data.internal;
+
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+import org.micromanager.data.Coords;
+
+public class DefaultCoordsTest {
+   @Test
+   public void axisOrderAndZeroIndicesDoNotMatter() {
+      Coords a = new DefaultCoords.Builder().t(3).channel(1).z(0).build();
+      Coords b = new DefaultCoords.Builder().c(1).index("other", 0).t(3).build();
+      Assert.assertEquals(a, b);
+      Assert.assertEquals(a.hashCode(), b.hashCode());
+      Assert.assertEquals(Arrays.asList(Coords.CHANNEL, Coords.TIME_POINT), a.getAxes());
+      Assert.assertEquals(0, a.getZ());
+      Assert.assertEquals(3, a.getT());
+      Assert.assertNotEquals(a, new DefaultCoords.Builder().c(1).t(4).build());
+      Assert.assertNotEquals(a, new DefaultCoords.Builder().c(1).p(3).build());
+   }
+
+   @Test
+   public void copyRemovingAxesMatchesBuilder() {
+      Coords coords = new DefaultCoords.Builder().c(2).z(5).t(7).p(1)
+            .index("other", 4).build();
+      Coords noC = coords.copyRemovingAxes(Coords.CHANNEL);
+      Assert.assertEquals(new DefaultCoords.Builder().z(5).t(7).p(1)
+            .index("other", 4).build(), noC);
+      Assert.assertEquals(0, noC.getChannel());
+      Assert.assertEquals(4, noC.getIndex("other"));
+      Assert.assertEquals(new DefaultCoords.Builder().z(5).p(1).build(),
+            coords.copyRemovingAxes("other", Coords.TIME_POINT, Coords.CHANNEL));
+      Assert.assertSame(noC, noC.copyRemovingAxes(Coords.CHANNEL));
+      Assert.assertEquals(new DefaultCoords.Builder().build(), new DefaultCoords.Builder()
+            .t(1).build().copyRemovingAxes(Coords.TIME_POINT));
+   }
+
+   @Test
+   public void copyBuilderDoesNotChangeOriginal() {
+      Coords coords = new DefaultCoords.Builder().c(2).t(7).build();
+      Coords.Builder builder = coords.copyBuilder();
+      Coords moved = builder.t(8).build();
+      Coords noC = builder.c(0).build();
+      Coords withZ = builder.z(1).build();
+      Assert.assertEquals(new DefaultCoords.Builder().c(2).t(7).build(), coords);
+      Assert.assertEquals(new DefaultCoords.Builder().c(2).t(8).build(), moved);
+      Assert.assertEquals(new DefaultCoords.Builder().t(8).build(), noC);
+      Assert.assertEquals(new DefaultCoords.Builder().t(8).z(1).build(), withZ);
+      Assert.assertEquals("<time=8 z=1>", withZ.toString());
+   }
+}
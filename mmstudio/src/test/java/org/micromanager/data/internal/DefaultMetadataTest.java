@@ -0,0 +1,101 @@
+package org.micromanager.data.internal;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Assert;
+import org.junit.Test;
+import org.micromanager.PropertyMap;
+import org.micromanager.internal.propertymap.NonPropertyMapJSONFormats;
+
+public class DefaultMetadataTest {
+   private static final String TAGS = "{"
+         + "\"Width\": 512, \"Height\": 256, \"PixelType\": \"GRAY16\","
+         + "\"FrameIndex\": 3, \"ChannelIndex\": 1,"
+         + "\"Camera\": \"Cam\", \"Binning\": 2, \"ROI\": \"0-0-512-256\","
+         + "\"Exposure-ms\": 10.5, \"ElapsedTime-ms\": 1000.0,"
+         + "\"ImageNumber\": \"17\", \"PixelSizeUm\": 0.5,"
+         + "\"UUID\": \"8e2e8d29-43f2-4a5b-8e8e-2d6a7c9f0b11\","
+         + "\"Cam-Gain\": \"4\", \"Stage-Position\": \"12.5\","
+         + "\"ScopeDataKeys\": [\"Cam-Gain\", \"Stage-Position\"],"
+         + "\"SomethingElse\": \"user value\""
+         + "}";
+
+   private static JsonObject tags() {
+      return new JsonParser().parse(TAGS).getAsJsonObject();
+   }
+
+   private static DefaultMetadata eager() {
+      return (DefaultMetadata) DefaultMetadata.fromPropertyMap(
+            NonPropertyMapJSONFormats.metadata().fromGson(tags()));
+   }
+
+   @Test
+   public void deferredGettersMatchEagerDecoding() {
+      DefaultMetadata eager = eager();
+      DefaultMetadata deferred = DefaultMetadata.fromMM1Tags(tags());
+      Assert.assertTrue(deferred.isDeferred());
+      Assert.assertEquals(eager.getCamera(), deferred.getCamera());
+      // The first getter decodes the whole map, once
+      Assert.assertFalse(deferred.isDeferred());
+      Assert.assertEquals(eager.getBinning(), deferred.getBinning());
+      Assert.assertEquals(eager.getROI(), deferred.getROI());
+      Assert.assertEquals(eager.getExposureMs(), deferred.getExposureMs());
+      Assert.assertEquals(eager.getImageNumber(), deferred.getImageNumber());
+      Assert.assertEquals(eager.getUUID(), deferred.getUUID());
+      Assert.assertEquals(eager.getScopeData(), deferred.getScopeData());
+      Assert.assertEquals(eager.getUserData(), deferred.getUserData());
+      Assert.assertNull(deferred.getZPositionUm());
+      Assert.assertEquals(eager.toPropertyMap(), deferred.toPropertyMap());
+   }
+
+   @Test
+   public void copyBuilderDoesNotDecode() {
+      DefaultMetadata deferred = DefaultMetadata.fromMM1Tags(tags());
+      DefaultMetadata copy = deferred.copyBuilderRemovingUUID()
+            .fileName("file.tif").camera("Other").build();
+      Assert.assertTrue(copy.isDeferred());
+      Assert.assertTrue(deferred.isDeferred());
+      Assert.assertNull(copy.getUUID());
+      Assert.assertEquals("file.tif", copy.getFileName());
+      Assert.assertEquals("Other", copy.getCamera());
+      Assert.assertEquals(Integer.valueOf(2), copy.getBinning());
+
+      PropertyMap expected = eager().copyBuilderRemovingUUID()
+            .fileName("file.tif").camera("Other").build().toPropertyMap();
+      Assert.assertEquals(expected, copy.toPropertyMap());
+   }
+
+   @Test
+   public void deferredMM1JsonReadsBackTheSame() {
+      DefaultMetadata deferred = DefaultMetadata.fromMM1Tags(tags())
+            .copyBuilderPreservingUUID().fileName("file.tif").build();
+      JsonObject written = new JsonObject();
+      deferred.addToMM1Gson(written);
+      // Writing decodes once, and the decoded map is kept for display
+      Assert.assertFalse(deferred.isDeferred());
+      // Coords and image format are not part of the metadata
+      Assert.assertFalse(written.has("FrameIndex"));
+      Assert.assertFalse(written.has("Width"));
+
+      PropertyMap readBack = NonPropertyMapJSONFormats.metadata().fromGson(written);
+      PropertyMap expected = deferred.toPropertyMap().copyBuilder()
+            .remove(PropertyKey.PIXEL_TYPE.key()).build();
+      Assert.assertEquals(expected, readBack);
+   }
+
+   @Test
+   public void undecodedMM1JsonIsWrittenAsIfDecoded() {
+      DefaultMetadata deferred = DefaultMetadata.fromMM1Tags(tags())
+            .copyBuilderPreservingUUID().fileName("file.tif").build();
+      DefaultMetadata decoded = eager()
+            .copyBuilderPreservingUUID().fileName("file.tif").build();
+      JsonObject fromDeferred = new JsonObject();
+      deferred.addToMM1Gson(fromDeferred);
+      JsonObject fromDecoded = new JsonObject();
+      decoded.addToMM1Gson(fromDecoded);
+      Assert.assertEquals(fromDecoded.toString(), fromDeferred.toString());
+      // Unlisted keys go to the user data, as when decoded
+      Assert.assertFalse(fromDeferred.has("SomethingElse"));
+      Assert.assertTrue(fromDeferred.has("UserData"));
+   }
+}
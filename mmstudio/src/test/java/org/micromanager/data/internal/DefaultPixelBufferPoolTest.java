@@ -0,0 +1,43 @@
+package org.micromanager.data.internal;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DefaultPixelBufferPoolTest {
+   @Test
+   public void recycledArraysAreReusedByTypeAndLength() {
+      DefaultPixelBufferPool pool = new DefaultPixelBufferPool(1 << 20);
+      short[] shorts = pool.getShorts(100);
+      pool.recycle(shorts);
+      Assert.assertEquals(200, pool.getPooledBytes());
+      Assert.assertNotSame(shorts, pool.getShorts(99));
+      Assert.assertNotSame(shorts, pool.getBytes(100));
+      Assert.assertSame(shorts, pool.getBufferLike(new short[100]));
+      Assert.assertEquals(0, pool.getPooledBytes());
+   }
+
+   @Test
+   public void arrayRecycledTwiceIsHandedOutOnce() {
+      DefaultPixelBufferPool pool = new DefaultPixelBufferPool(1 << 20);
+      byte[] bytes = new byte[10];
+      pool.recycle(bytes);
+      pool.recycle(bytes);
+      Assert.assertSame(bytes, pool.getBytes(10));
+      Assert.assertNotSame(bytes, pool.getBytes(10));
+   }
+
+   @Test
+   public void sizeLimitEvictsOtherSizes() {
+      DefaultPixelBufferPool pool = new DefaultPixelBufferPool(1000);
+      pool.recycle(new byte[600]);
+      pool.recycle(new byte[300]);
+      // Does not fit next to the others; older sizes make room
+      byte[] bytes = new byte[500];
+      pool.recycle(bytes);
+      Assert.assertTrue(pool.getPooledBytes() <= 1000);
+      Assert.assertSame(bytes, pool.getBytes(500));
+      // Larger than the whole pool
+      pool.recycle(new byte[2000]);
+      Assert.assertTrue(pool.getPooledBytes() <= 1000);
+   }
+}
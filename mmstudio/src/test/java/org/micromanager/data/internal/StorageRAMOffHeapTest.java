@@ -0,0 +1,143 @@
+package org.micromanager.data.internal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+import org.micromanager.data.Coords;
+import org.micromanager.data.Image;
+import org.micromanager.data.ImagesDifferInSizeException;
+
+public class StorageRAMOffHeapTest {
+   private static final int MB = 1024 * 1024;
+   // 3 MB per 16-bit image, so that images do not fill slabs exactly
+   private static final int WIDTH = 1536;
+   private static final int HEIGHT = 1024;
+
+   private static StorageRAMOffHeap storage() {
+      return new StorageRAMOffHeap(new DefaultDatastore(null));
+   }
+
+   private static Coords coords(int c, int t) {
+      return new DefaultCoords.Builder().c(c).t(t).build();
+   }
+
+   private static short[] pixels(int seed, int length) {
+      short[] pixels = new short[length];
+      for (int i = 0; i < length; ++i) {
+         pixels[i] = (short) (seed * 7919 + i);
+      }
+      return pixels;
+   }
+
+   private static Image image(Coords coords, int seed) {
+      return new DefaultImage(pixels(seed, WIDTH * HEIGHT), WIDTH, HEIGHT, 2, 1,
+            coords, null);
+   }
+
+   private static Image smallImage(Coords coords) {
+      return new DefaultImage(new byte[16 * 8], 16, 8, 1, 1, coords, null);
+   }
+
+   @Test
+   public void imagesReadBackTheSameAcrossSlabs() throws IOException {
+      StorageRAMOffHeap storage = storage();
+      // Slabs of 16, 16 and 32 MB hold 5, 5 and 2 of these images
+      int numImages = 12;
+      for (int t = 0; t < numImages; ++t) {
+         storage.putImage(image(coords(0, t), t));
+      }
+      Assert.assertEquals(64L * MB, storage.getBytesAllocated());
+      Assert.assertEquals(numImages, storage.getNumImages());
+      Assert.assertEquals(numImages - 1, storage.getMaxIndex(Coords.T));
+
+      // Including images stored before each new slab was allocated
+      for (int t = 0; t < numImages; ++t) {
+         Image image = storage.getImage(coords(0, t));
+         Assert.assertEquals(coords(0, t), image.getCoords());
+         Assert.assertEquals(WIDTH, image.getWidth());
+         Assert.assertEquals(HEIGHT, image.getHeight());
+         Assert.assertEquals(2, image.getBytesPerPixel());
+         Assert.assertArrayEquals(pixels(t, WIDTH * HEIGHT), (short[]) image.getRawPixels());
+      }
+      Assert.assertNull(storage.getImage(coords(0, numImages)));
+      storage.close();
+   }
+
+   @Test
+   public void duplicateCoordsAreRejected() throws IOException {
+      StorageRAMOffHeap storage = storage();
+      storage.putImage(image(coords(0, 0), 1));
+      long bytesAllocated = storage.getBytesAllocated();
+      try {
+         storage.putImage(image(coords(0, 0), 2));
+         Assert.fail("Expected duplicate coords to be rejected");
+      } catch (IllegalArgumentException expected) {
+      }
+      try {
+         storage.putImage(smallImage(coords(0, 1)));
+         Assert.fail("Expected an image of another size to be rejected");
+      } catch (ImagesDifferInSizeException expected) {
+      }
+      Assert.assertEquals(1, storage.getNumImages());
+      Assert.assertEquals(bytesAllocated, storage.getBytesAllocated());
+      Assert.assertArrayEquals(pixels(1, WIDTH * HEIGHT),
+            (short[]) storage.getImage(coords(0, 0)).getRawPixels());
+      storage.close();
+   }
+
+   @Test
+   public void findsImagesMatchingAndIgnoringAxes() throws IOException {
+      StorageRAMOffHeap storage = storage();
+      for (int c = 0; c < 3; ++c) {
+         for (int t = 0; t < 2; ++t) {
+            storage.putImage(smallImage(coords(c, t)));
+         }
+      }
+
+      Set<Coords> expected = new HashSet<>();
+      for (int c = 0; c < 3; ++c) {
+         expected.add(coords(c, 1));
+      }
+      Assert.assertEquals(expected,
+            coordsOf(storage.getImagesIgnoringAxes(coords(0, 1), Coords.CHANNEL)));
+      Assert.assertEquals(expected,
+            coordsOf(storage.getImagesMatching(new DefaultCoords.Builder().t(1).build())));
+      Assert.assertEquals(1, storage.getImagesMatching(coords(2, 0)).size());
+      Assert.assertTrue(storage.getImagesIgnoringAxes(coords(0, 2), Coords.CHANNEL).isEmpty());
+      storage.close();
+   }
+
+   @Test
+   public void closingReleasesTheSlabs() throws IOException {
+      StorageRAMOffHeap storage = storage();
+      storage.putImage(image(coords(0, 0), 3));
+      Image handedOut = storage.getImage(coords(0, 0));
+      Assert.assertTrue(storage.getBytesAllocated() > 0);
+
+      storage.close();
+      Assert.assertEquals(0, storage.getBytesAllocated());
+      Assert.assertEquals(0, storage.getNumImages());
+      Assert.assertNull(storage.getImage(coords(0, 0)));
+      Assert.assertNull(storage.getAnyImage());
+      try {
+         storage.putImage(image(coords(0, 1), 4));
+         Assert.fail("Expected a closed storage to reject images");
+      } catch (IOException expected) {
+      }
+      // Images handed out keep their own reference to the pixels
+      Assert.assertArrayEquals(pixels(3, WIDTH * HEIGHT), (short[]) handedOut.getRawPixels());
+   }
+
+   private static Set<Coords> coordsOf(List<Image> images) {
+      List<Coords> coords = new ArrayList<>();
+      for (Image image : images) {
+         coords.add(image.getCoords());
+      }
+      Assert.assertEquals("duplicate images", coords.size(), new HashSet<>(coords).size());
+      return new HashSet<>(coords);
+   }
+}
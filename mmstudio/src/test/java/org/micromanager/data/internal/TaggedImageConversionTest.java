@@ -0,0 +1,98 @@
+package org.micromanager.data.internal;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import java.util.UUID;
+import mmcorej.TaggedImage;
+import mmcorej.org.json.JSONArray;
+import mmcorej.org.json.JSONException;
+import mmcorej.org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+import org.micromanager.PropertyMap;
+import org.micromanager.internal.propertymap.NonPropertyMapJSONFormats;
+
+/**
+ * Checks that TaggedImage tags converted directly to Gson give the same
+ * metadata, coords and format as the old toString()-and-reparse path.
+ */
+public class TaggedImageConversionTest {
+   private static JSONObject makeTags(int imageNumber) throws JSONException {
+      JSONObject tags = new JSONObject();
+      tags.put("Width", 512);
+      tags.put("Height", 512);
+      tags.put("PixelType", "GRAY16");
+      tags.put("BitDepth", 16);
+      tags.put("Camera", "Camera");
+      tags.put("Binning", 1);
+      tags.put("ROI", "0-0-512-512");
+      tags.put("Exposure-ms", 10.0);
+      tags.put("ElapsedTime-ms", 1234.5);
+      tags.put("ImageNumber", String.valueOf(imageNumber));
+      tags.put("PixelSizeUm", 0.65);
+      tags.put("PixelSizeAffine", "0.65;0.0;0.0;0.0;0.65;0.0");
+      tags.put("XPositionUm", -1500.25);
+      tags.put("YPositionUm", 200.0);
+      tags.put("ZPositionUm", 3.5);
+      tags.put("UUID", UUID.randomUUID().toString());
+      tags.put("FrameIndex", imageNumber);
+      tags.put("SliceIndex", 0);
+      tags.put("ChannelIndex", 1);
+      tags.put("PositionIndex", 0);
+      // Device properties, as added by the core's system state cache
+      JSONArray scopeDataKeys = new JSONArray();
+      for (int i = 0; i < 60; ++i) {
+         String key = "Device" + (i % 7) + "-Property" + i;
+         tags.put(key, "Value " + i);
+         scopeDataKeys.put(key);
+      }
+      tags.put("ScopeDataKeys", scopeDataKeys);
+      return tags;
+   }
+
+   private static JsonElement viaString(JSONObject tags) {
+      return new JsonParser().parse(tags.toString());
+   }
+
+   private static JsonElement direct(JSONObject tags) {
+      return NonPropertyMapJSONFormats.gsonFromJSONObject(tags);
+   }
+
+   @Test
+   public void directConversionMatchesStringRoundTrip() throws JSONException {
+      JSONObject tags = makeTags(42);
+      JsonElement expected = viaString(tags);
+      JsonElement actual = direct(tags);
+      Assert.assertEquals(expected, actual);
+
+      for (NonPropertyMapJSONFormats format : new NonPropertyMapJSONFormats[] {
+            NonPropertyMapJSONFormats.metadata(),
+            NonPropertyMapJSONFormats.coords(),
+            NonPropertyMapJSONFormats.imageFormat()}) {
+         PropertyMap expectedPmap = format.fromGson(expected);
+         Assert.assertEquals(expectedPmap, format.fromGson(actual));
+         Assert.assertEquals(expectedPmap, format.fromJSONObject(tags));
+      }
+   }
+
+   @Test
+   public void integralDoublesKeepTheirTextualForm() throws JSONException {
+      JSONObject tags = new JSONObject();
+      tags.put("a", 5.0);
+      tags.put("b", 0.1);
+      tags.put("c", JSONObject.NULL);
+      Assert.assertEquals(viaString(tags), direct(tags));
+      Assert.assertEquals("5", direct(tags).getAsJsonObject().get("a").getAsString());
+   }
+
+   @Test
+   public void defaultImageFromTaggedImage() throws JSONException {
+      DefaultImage image = new DefaultImage(
+            new TaggedImage(new short[512 * 512], makeTags(7)));
+      Assert.assertEquals(512, image.getWidth());
+      Assert.assertEquals(PixelType.GRAY16, image.getPixelType());
+      Assert.assertEquals(1, image.getCoords().getChannel());
+      Assert.assertEquals(Long.valueOf(7), image.getMetadata().getImageNumber());
+      Assert.assertEquals(60, image.getMetadata().getScopeData().size());
+   }
+}
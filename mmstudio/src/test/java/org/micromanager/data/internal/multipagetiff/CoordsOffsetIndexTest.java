@@ -0,0 +1,106 @@
+package org.micromanager.data.internal.multipagetiff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import org.micromanager.data.Coords;
+import org.micromanager.data.internal.DefaultCoords;
+
+public class CoordsOffsetIndexTest {
+   private static Coords coords(int c, int z, int t, int p) {
+      return CoordsOffsetIndex.toCoords(c, z, t, p);
+   }
+
+   @Test
+   public void behavesLikeAMap() {
+      CoordsOffsetIndex index = new CoordsOffsetIndex();
+      Map<Coords, Long> expected = new HashMap<>();
+      Random random = new Random(42);
+      for (int i = 0; i < 5000; ++i) {
+         Coords coords = coords(random.nextInt(4), random.nextInt(10),
+               random.nextInt(200), random.nextInt(3));
+         index.put(coords, i);
+         expected.put(coords, (long) i);
+      }
+      Assert.assertEquals(expected.size(), index.size());
+      Assert.assertEquals(expected.keySet(), index.keySet());
+      for (Map.Entry<Coords, Long> e : expected.entrySet()) {
+         Assert.assertEquals(e.getValue().longValue(), index.get(e.getKey()));
+      }
+      Assert.assertEquals(CoordsOffsetIndex.NOT_FOUND, index.get(coords(9, 0, 0, 0)));
+   }
+
+   @Test
+   public void missingAxesAreIndexZero() {
+      CoordsOffsetIndex index = new CoordsOffsetIndex();
+      index.put(0, 0, 3, 0, 100);
+      Coords timeOnly = new DefaultCoords.Builder().t(3).build();
+      Assert.assertEquals(100, index.get(timeOnly));
+      Coords otherAxis = new DefaultCoords.Builder().t(3).index("other", 1).build();
+      Assert.assertFalse(index.containsKey(otherAxis));
+   }
+
+   @Test
+   public void entriesKeepInsertionOrder() {
+      CoordsOffsetIndex index = new CoordsOffsetIndex(1);
+      for (int t = 0; t < 100; ++t) {
+         index.put(0, 0, t, 0, 1000 + t);
+      }
+      index.put(0, 0, 5, 0, 7); // Overwrite keeps position
+      final List<Long> offsets = new ArrayList<>();
+      index.forEach((c, z, t, p, offset) -> offsets.add(offset));
+      Assert.assertEquals(100, offsets.size());
+      Assert.assertEquals(Long.valueOf(1000), offsets.get(0));
+      Assert.assertEquals(Long.valueOf(7), offsets.get(5));
+   }
+
+   @Test
+   public void findMatchingIgnoresGivenAxes() {
+      CoordsOffsetIndex index = new CoordsOffsetIndex();
+      for (int c = 0; c < 3; ++c) {
+         for (int t = 0; t < 50; ++t) {
+            if (c == 2 && t % 2 == 1) {
+               continue; // Channel 2 only every other frame
+            }
+            index.put(c, 0, t, 1, t);
+         }
+      }
+      Assert.assertEquals(new HashSet<>(Arrays.asList(
+            coords(0, 0, 7, 1), coords(1, 0, 7, 1))),
+            new HashSet<>(index.findMatching(coords(0, 0, 7, 1), Coords.CHANNEL)));
+      Assert.assertEquals(3,
+            index.findMatching(coords(0, 0, 8, 1), Coords.CHANNEL).size());
+      Assert.assertEquals(50,
+            index.findMatching(coords(0, 0, 0, 1), Coords.TIME_POINT).size());
+      Assert.assertEquals(125,
+            index.findMatching(coords(0, 0, 0, 1), Coords.CHANNEL, Coords.TIME_POINT).size());
+      Assert.assertEquals(Collections.emptyList(),
+            index.findMatching(coords(0, 0, 0, 2), Coords.CHANNEL));
+   }
+
+   @Test
+   public void coordsAndMaxIndicesComeFromTheEntries() {
+      CoordsOffsetIndex index = new CoordsOffsetIndex(1);
+      Assert.assertEquals(-1, index.getMaxIndex(Coords.T));
+      Assert.assertFalse(index.coords().iterator().hasNext());
+      index.put(2, 0, 1, 0, 10);
+      index.put(0, 4, 3, 1, 20);
+      List<Coords> coords = new ArrayList<>();
+      for (Coords c : index.coords()) {
+         coords.add(c);
+      }
+      Assert.assertEquals(Arrays.asList(coords(2, 0, 1, 0), coords(0, 4, 3, 1)), coords);
+      Assert.assertEquals(2, index.getMaxIndex(Coords.C));
+      Assert.assertEquals(4, index.getMaxIndex(Coords.Z));
+      Assert.assertEquals(3, index.getMaxIndex(Coords.T));
+      Assert.assertEquals(1, index.getMaxIndex(Coords.P));
+      Assert.assertEquals(-1, index.getMaxIndex("other"));
+   }
+}
@@ -0,0 +1,190 @@
+package org.micromanager.data.internal.multipagetiff;
+
+import java.io.File;
+import java.io.IOException;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.micromanager.data.Coords;
+import org.micromanager.data.Image;
+import org.micromanager.data.internal.DefaultCoords;
+import org.micromanager.data.internal.DefaultDatastore;
+import org.micromanager.data.internal.DefaultImage;
+import org.micromanager.data.internal.DefaultMetadata;
+import org.micromanager.data.internal.DefaultSummaryMetadata;
+
+public class MultipageTiffReaderTest {
+   private static final int WIDTH = 64;
+   private static final int HEIGHT = 48;
+   private static final int CHANNELS = 2;
+   private static final int FRAMES = 3;
+
+   @Rule
+   public TemporaryFolder tmp = new TemporaryFolder();
+
+   private static Coords coords(int c, int t) {
+      return new DefaultCoords.Builder().c(c).t(t).build();
+   }
+
+   private static Object pixels(int bytesPerPixel, int seed) {
+      int length = WIDTH * HEIGHT;
+      switch (bytesPerPixel) {
+         case 1: {
+            byte[] pixels = new byte[length];
+            for (int i = 0; i < length; ++i) {
+               pixels[i] = (byte) (seed * 31 + i);
+            }
+            return pixels;
+         }
+         case 2: {
+            short[] pixels = new short[length];
+            for (int i = 0; i < length; ++i) {
+               pixels[i] = (short) (seed * 7919 + i);
+            }
+            return pixels;
+         }
+         default: {
+            // RGB32: blue, green, red and an unused byte
+            int[] pixels = new int[length];
+            for (int i = 0; i < length; ++i) {
+               pixels[i] = (seed * 104729 + i) & 0xffffff;
+            }
+            return pixels;
+         }
+      }
+   }
+
+   private static Image image(int bytesPerPixel, int c, int t) {
+      DefaultMetadata metadata = new DefaultMetadata.Builder()
+            .camera("Camera")
+            .bitDepth(bytesPerPixel == 2 ? 12 : 8)
+            .exposureMs(10.0 + c)
+            .elapsedTimeMs(100.0 * t)
+            .pixelSizeUm(0.65)
+            .xPositionUm(-1500.25)
+            .yPositionUm(200.0)
+            .zPositionUm(3.5)
+            .generateUUID()
+            .build();
+      int numComponents = bytesPerPixel == 4 ? 3 : 1;
+      return new DefaultImage(pixels(bytesPerPixel, c * FRAMES + t), WIDTH, HEIGHT,
+            bytesPerPixel, numComponents, coords(c, t), metadata);
+   }
+
+   private File write(int bytesPerPixel) throws IOException {
+      File dir = new File(tmp.getRoot(), "data" + bytesPerPixel);
+      DefaultDatastore store = new DefaultDatastore(null);
+      StorageMultipageTiff storage = new StorageMultipageTiff(null, store,
+            dir.getAbsolutePath(), true, false, true);
+      store.setStorage(storage);
+      store.setSummaryMetadata(new DefaultSummaryMetadata.Builder()
+            .prefix("data")
+            .channelGroup("Channel")
+            .channelNames("DAPI", "GFP")
+            .axisOrder(Coords.CHANNEL, Coords.TIME_POINT)
+            .intendedDimensions(new DefaultCoords.Builder()
+                  .c(CHANNELS).t(FRAMES).z(1).p(1).build())
+            .imageWidth(WIDTH)
+            .imageHeight(HEIGHT)
+            .build());
+      for (int t = 0; t < FRAMES; ++t) {
+         for (int c = 0; c < CHANNELS; ++c) {
+            store.putImage(image(bytesPerPixel, c, t));
+         }
+      }
+      store.freeze();
+      storage.close();
+      return dir;
+   }
+
+   private static StorageMultipageTiff open(File dir, boolean memoryMapped)
+         throws IOException {
+      return new StorageMultipageTiff(null, new DefaultDatastore(null),
+            dir.getAbsolutePath(), false, false, true, memoryMapped);
+   }
+
+   /**
+    * Read every image with and without memory mapping and check that they
+    * are the same, and the same as written.
+    *
+    * @param bytesPerPixel 1 (GRAY8), 2 (GRAY16) or 4 (RGB32)
+    * @param expectMapped  whether images should be read from the mapping
+    */
+   private void checkMappedReadsMatchCopying(int bytesPerPixel, boolean expectMapped)
+         throws IOException {
+      File dir = write(bytesPerPixel);
+      StorageMultipageTiff mapped = open(dir, true);
+      StorageMultipageTiff copying = open(dir, false);
+      try {
+         Assert.assertEquals(CHANNELS * FRAMES, mapped.getNumImages());
+         for (int t = 0; t < FRAMES; ++t) {
+            for (int c = 0; c < CHANNELS; ++c) {
+               DefaultImage mappedImage = (DefaultImage) mapped.getImage(coords(c, t));
+               DefaultImage copiedImage = (DefaultImage) copying.getImage(coords(c, t));
+               Assert.assertNotNull(mappedImage);
+               Assert.assertNotNull(copiedImage);
+
+               // Only mapped images defer decoding their metadata
+               DefaultMetadata mappedMetadata = (DefaultMetadata) mappedImage.getMetadata();
+               Assert.assertEquals(expectMapped, mappedMetadata.isDeferred());
+               Assert.assertFalse(
+                     ((DefaultMetadata) copiedImage.getMetadata()).isDeferred());
+
+               Assert.assertEquals(coords(c, t), mappedImage.getCoords());
+               Assert.assertEquals(copiedImage.getCoords(), mappedImage.getCoords());
+               Assert.assertEquals(copiedImage.getPixelType(), mappedImage.getPixelType());
+               Assert.assertEquals(WIDTH, mappedImage.getWidth());
+               Assert.assertEquals(HEIGHT, mappedImage.getHeight());
+               Assert.assertEquals(bytesPerPixel, mappedImage.getBytesPerPixel());
+               assertPixelsEqual(bytesPerPixel, copiedImage.getRawPixels(),
+                     mappedImage.getRawPixels());
+               if (bytesPerPixel != 4) {
+                  // RGB is stored without its unused byte
+                  assertPixelsEqual(bytesPerPixel, pixels(bytesPerPixel, c * FRAMES + t),
+                        mappedImage.getRawPixels());
+               }
+
+               Assert.assertEquals(
+                     ((DefaultMetadata) copiedImage.getMetadata()).toPropertyMap(),
+                     mappedMetadata.toPropertyMap());
+               Assert.assertEquals("Camera", mappedMetadata.getCamera());
+               Assert.assertEquals(10.0 + c, mappedMetadata.getExposureMs(), 0.0);
+               Assert.assertEquals(100.0 * t, mappedMetadata.getElapsedTimeMs(0.0), 0.0);
+            }
+         }
+      } finally {
+         mapped.close();
+         copying.close();
+      }
+   }
+
+   private static void assertPixelsEqual(int bytesPerPixel, Object expected, Object actual) {
+      switch (bytesPerPixel) {
+         case 1:
+            Assert.assertArrayEquals((byte[]) expected, (byte[]) actual);
+            break;
+         case 2:
+            Assert.assertArrayEquals((short[]) expected, (short[]) actual);
+            break;
+         default:
+            Assert.assertArrayEquals((int[]) expected, (int[]) actual);
+            break;
+      }
+   }
+
+   @Test
+   public void mappedGray8ReadsLikeCopying() throws IOException {
+      checkMappedReadsMatchCopying(1, true);
+   }
+
+   @Test
+   public void mappedGray16ReadsLikeCopying() throws IOException {
+      checkMappedReadsMatchCopying(2, true);
+   }
+
+   @Test
+   public void rgbFallsBackToCopying() throws IOException {
+      checkMappedReadsMatchCopying(4, false);
+   }
+}
@@ -0,0 +1,97 @@
+package org.micromanager.data.internal.multipagetiff;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class WritingQueueBudgetTest {
+   @Test
+   public void blocksUntilBytesAreWritten() throws Exception {
+      final WritingQueueBudget budget = new WritingQueueBudget(100, null);
+      final ExecutorService writer = Executors.newSingleThreadExecutor();
+      final CountDownLatch diskStalled = new CountDownLatch(1);
+      try {
+         budget.execute(writer, 60, () -> {
+            try {
+               diskStalled.await();
+            } catch (InterruptedException e) {
+               Thread.currentThread().interrupt();
+            }
+         });
+         Assert.assertEquals(60, budget.getBytesInFlight());
+
+         final AtomicBoolean submitted = new AtomicBoolean(false);
+         Thread producer = new Thread(() -> {
+            budget.execute(writer, 60, () -> { });
+            submitted.set(true);
+         });
+         producer.start();
+         producer.join(200);
+         Assert.assertFalse(submitted.get());
+
+         diskStalled.countDown();
+         producer.join(5000);
+         Assert.assertTrue(submitted.get());
+         Assert.assertTrue(budget.getTotalStallNs() > 0);
+      } finally {
+         writer.shutdown();
+         writer.awaitTermination(5, TimeUnit.SECONDS);
+      }
+      Assert.assertEquals(0, budget.getBytesInFlight());
+   }
+
+   @Test
+   public void interruptedSubmitterKeepsWaitingWithinBudget() throws Exception {
+      final WritingQueueBudget budget = new WritingQueueBudget(100, null);
+      final ExecutorService writer = Executors.newSingleThreadExecutor();
+      final CountDownLatch diskStalled = new CountDownLatch(1);
+      try {
+         budget.execute(writer, 60, () -> {
+            try {
+               diskStalled.await();
+            } catch (InterruptedException e) {
+               Thread.currentThread().interrupt();
+            }
+         });
+
+         final AtomicBoolean submitted = new AtomicBoolean(false);
+         final AtomicBoolean interruptKept = new AtomicBoolean(false);
+         Thread producer = new Thread(() -> {
+            budget.execute(writer, 60, () -> { });
+            submitted.set(true);
+            interruptKept.set(Thread.currentThread().isInterrupted());
+         });
+         producer.start();
+         producer.join(200);
+         producer.interrupt();
+         producer.join(200);
+         // Still blocked, without going over the budget
+         Assert.assertFalse(submitted.get());
+         Assert.assertEquals(60, budget.getBytesInFlight());
+
+         diskStalled.countDown();
+         producer.join(5000);
+         Assert.assertTrue(submitted.get());
+         Assert.assertTrue(interruptKept.get());
+      } finally {
+         writer.shutdown();
+         writer.awaitTermination(5, TimeUnit.SECONDS);
+      }
+      Assert.assertEquals(0, budget.getBytesInFlight());
+   }
+
+   @Test
+   public void oversizedTaskIsAcceptedWhenQueueIsEmpty() throws Exception {
+      WritingQueueBudget budget = new WritingQueueBudget(100, null);
+      ExecutorService writer = Executors.newSingleThreadExecutor();
+      budget.execute(writer, 1000, () -> { });
+      writer.shutdown();
+      Assert.assertTrue(writer.awaitTermination(5, TimeUnit.SECONDS));
+      Assert.assertEquals(0, budget.getBytesInFlight());
+      Assert.assertEquals(0, budget.getTotalStallNs());
+   }
+}
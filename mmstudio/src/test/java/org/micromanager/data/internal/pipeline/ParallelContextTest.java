@@ -0,0 +1,110 @@
+package org.micromanager.data.internal.pipeline;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.micromanager.data.Image;
+import org.micromanager.data.Processor;
+import org.micromanager.data.ProcessorContext;
+
+public class ParallelContextTest {
+   private static final int THREADS = 4;
+   private static final int IMAGES = 200;
+
+   // Images are compared by identity only
+   private static Image image() {
+      return (Image) Proxy.newProxyInstance(Image.class.getClassLoader(),
+            new Class<?>[] {Image.class}, (proxy, method, args) -> {
+               throw new UnsupportedOperationException(method.getName());
+            });
+   }
+
+   /**
+    * Receives the output of the context under test.
+    */
+   private static final class CollectingSink extends BaseContext {
+      private final List<Image> images_ = Collections.synchronizedList(new ArrayList<>());
+      private volatile boolean flushed_ = false;
+
+      CollectingSink() {
+         super((Processor) (image, context) -> { }, null, null);
+      }
+
+      @Override
+      public void insertImage(ImageWrapper wrapper) {
+         if (wrapper.getImage() == null) {
+            flushed_ = true;
+         } else {
+            images_.add(wrapper.getImage());
+         }
+      }
+   }
+
+   /**
+    * Passes images on after a random delay, recording how many images have
+    * been started but not yet emitted by the context.
+    */
+   private static final class DelayingProcessor implements Processor {
+      private final CollectingSink sink_;
+      private final AtomicInteger started_ = new AtomicInteger();
+      private final AtomicInteger maxInFlight_ = new AtomicInteger();
+
+      DelayingProcessor(CollectingSink sink) {
+         sink_ = sink;
+      }
+
+      @Override
+      public void processImage(Image image, ProcessorContext context) {
+         int inFlight = started_.incrementAndGet() - sink_.images_.size();
+         maxInFlight_.accumulateAndGet(inFlight, Math::max);
+         try {
+            Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+         context.outputImage(image);
+      }
+
+      @Override
+      public boolean isThreadSafe() {
+         return true;
+      }
+   }
+
+   @Test
+   public void imagesArePassedOnInOrderAndFlushWaitsForThem() throws InterruptedException {
+      CollectingSink sink = new CollectingSink();
+      DelayingProcessor processor = new DelayingProcessor(sink);
+      ParallelContext context = new ParallelContext(processor, null, null, THREADS);
+      context.setSink(sink);
+      CountDownLatch flushLatch = new CountDownLatch(1);
+      context.setFlushLatch(flushLatch);
+
+      List<Image> inputs = new ArrayList<>();
+      for (int i = 0; i < IMAGES; ++i) {
+         Image image = image();
+         inputs.add(image);
+         context.insertImage(new ImageWrapper(image));
+      }
+      context.insertImage(new ImageWrapper(null));
+
+      // Flushing returns only once every image has been passed on
+      Assert.assertTrue(sink.flushed_);
+      Assert.assertEquals(0, flushLatch.getCount());
+      Assert.assertEquals(IMAGES, sink.images_.size());
+      for (int i = 0; i < IMAGES; ++i) {
+         Assert.assertSame(inputs.get(i), sink.images_.get(i));
+      }
+      Assert.assertEquals(IMAGES, context.getMetrics().getImagesIn());
+      Assert.assertEquals(IMAGES, context.getMetrics().getImagesOut());
+
+      Assert.assertTrue(processor.maxInFlight_.get() <= 2 * THREADS);
+      Assert.assertTrue(context.getMetrics().getMaxQueueDepth() <= 2 * THREADS);
+   }
+}
@@ -0,0 +1,59 @@
+package org.micromanager.data.internal.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SpscRingBufferTest {
+   @Test
+   public void capacityIsRoundedUpToPowerOf2() {
+      Assert.assertEquals(1, new SpscRingBuffer<Integer>(1).capacity());
+      Assert.assertEquals(16, new SpscRingBuffer<Integer>(10).capacity());
+      Assert.assertEquals(16, new SpscRingBuffer<Integer>(16).capacity());
+   }
+
+   @Test
+   public void offerFailsWhenFullAndDrainRespectsBatchSize() throws Exception {
+      SpscRingBuffer<Integer> buffer = new SpscRingBuffer<>(4);
+      for (int i = 0; i < 4; ++i) {
+         Assert.assertTrue(buffer.offer(i));
+      }
+      Assert.assertFalse(buffer.offer(4));
+      List<Integer> taken = new ArrayList<>();
+      Assert.assertEquals(3, buffer.drainTo(taken, 3, 0));
+      Assert.assertEquals(1, buffer.size());
+      Assert.assertEquals(1, buffer.drainTo(taken, 3, 0));
+      Assert.assertEquals(0, buffer.drainTo(taken, 3, TimeUnit.MILLISECONDS.toNanos(5)));
+      Assert.assertEquals(4, taken.size());
+   }
+
+   @Test
+   public void elementsArriveInOrderAcrossThreads() throws Exception {
+      final int count = 200000;
+      final SpscRingBuffer<Integer> buffer = new SpscRingBuffer<>(8);
+      Thread producer = new Thread(() -> {
+         try {
+            for (int i = 0; i < count; ++i) {
+               buffer.put(i);
+            }
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+      });
+      producer.start();
+      List<Integer> batch = new ArrayList<>();
+      int expected = 0;
+      while (expected < count) {
+         batch.clear();
+         int n = buffer.drainTo(batch, 5, TimeUnit.SECONDS.toNanos(10));
+         Assert.assertTrue(n > 0 && n <= 5);
+         for (int value : batch) {
+            Assert.assertEquals(expected++, value);
+         }
+      }
+      producer.join();
+      Assert.assertEquals(0, buffer.size());
+   }
+}
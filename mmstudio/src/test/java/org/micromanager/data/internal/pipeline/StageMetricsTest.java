@@ -0,0 +1,43 @@
+package org.micromanager.data.internal.pipeline;
+
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+import org.micromanager.internal.utils.performance.AbstractExponentialSmoothing;
+import org.micromanager.internal.utils.performance.PerformanceMonitor;
+
+public class StageMetricsTest {
+   @Test
+   public void totalsAndMeansAreAccumulated() {
+      StageMetrics metrics = new StageMetrics("Test", null);
+      Assert.assertEquals(0, metrics.getMeanProcessingMs(), 0.0);
+      metrics.recordImage(1000000L, 2000000L);
+      metrics.recordImage(3000000L, 4000000L);
+      metrics.recordImageOut();
+      metrics.recordImageDropped();
+      metrics.recordQueueDepth(5);
+      metrics.recordQueueDepth(2);
+      Assert.assertEquals(2, metrics.getImagesIn());
+      Assert.assertEquals(1, metrics.getImagesOut());
+      Assert.assertEquals(1, metrics.getImagesDropped());
+      Assert.assertEquals(2.0, metrics.getMeanQueueWaitMs(), 1e-9);
+      Assert.assertEquals(3.0, metrics.getMeanProcessingMs(), 1e-9);
+      Assert.assertEquals(2, metrics.getQueueDepth());
+      Assert.assertEquals(5, metrics.getMaxQueueDepth());
+   }
+
+   @Test
+   public void imagesAreSampledInPerformanceMonitor() {
+      PerformanceMonitor perfMon = PerformanceMonitor.createWithTimeConstantMs(1000.0);
+      StageMetrics metrics = new StageMetrics("Test", perfMon);
+      metrics.recordImage(0L, 1000000L);
+      boolean found = false;
+      for (Map.Entry<String, ? extends AbstractExponentialSmoothing> entry
+            : perfMon.getEntries()) {
+         if (entry.getKey().equals("Test processing (ms)")) {
+            found = true;
+         }
+      }
+      Assert.assertTrue(found);
+   }
+}
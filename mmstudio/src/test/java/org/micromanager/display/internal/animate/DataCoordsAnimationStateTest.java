@@ -180,6 +180,35 @@ public class DataCoordsAnimationStateTest {
       assertEquals(0, c.getChannel());
    }
 
+   @Test
+   public void testPeekNextPositions() {
+      mockAxes_ = Arrays.asList(DefaultCoords.TIME_POINT, DefaultCoords.CHANNEL);
+      for (int t = 0; t < 5; ++t) {
+         mockDataset_.put(new DefaultCoords.Builder().t(t).channel(0).build(), Boolean.TRUE);
+      }
+      mockAnimatedAxes_ = Collections.singleton(DefaultCoords.TIME_POINT);
+
+      DataCoordsAnimationState instance =
+            DataCoordsAnimationState.create(mockCoordsProvider_);
+      instance.setAnimationPosition(new DefaultCoords.Builder().t(1).channel(0).build());
+
+      // Wraps around, stopping before the current position
+      List<Coords> next = instance.peekNextPositions(10, 1);
+      assertEquals(4, next.size());
+      assertEquals(2, next.get(0).getT());
+      assertEquals(4, next.get(2).getT());
+      assertEquals(0, next.get(3).getT());
+
+      next = instance.peekNextPositions(2, 2);
+      assertEquals(2, next.size());
+      assertEquals(3, next.get(0).getT());
+      assertEquals(0, next.get(1).getT());
+
+      // The current position is unchanged
+      assertEquals(1, instance.getAnimationPosition().getT());
+      assertEquals(2, instance.advanceAnimationPosition(1.0).getT());
+   }
+
    @Test
    public void testEmptyDataset() {
       DataCoordsAnimationState instance =
@@ -0,0 +1,159 @@
+package org.micromanager.display.internal.displaywindow;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+import org.micromanager.data.Coords;
+import org.micromanager.data.Image;
+import org.micromanager.data.internal.DefaultCoords;
+
+public class PlaybackReadAheadCacheTest {
+   // An image of 100 bytes
+   private static Image image() {
+      return (Image) Proxy.newProxyInstance(Image.class.getClassLoader(),
+            new Class<?>[] {Image.class}, (proxy, method, args) -> {
+               switch (method.getName()) {
+                  case "getWidth":
+                     return 10;
+                  case "getHeight":
+                     return 5;
+                  case "getBytesPerPixel":
+                     return 2;
+                  default:
+                     throw new UnsupportedOperationException(method.getName());
+               }
+            });
+   }
+
+   private static Coords t(int t) {
+      return new DefaultCoords.Builder().t(t).build();
+   }
+
+   @Test
+   public void leastRecentlyUsedImagesAreDroppedBeyondLimit() {
+      PlaybackReadAheadCache cache = new PlaybackReadAheadCache(
+            position -> Collections.emptyList(), 250);
+      cache.put(t(0), Collections.singletonList(image()));
+      cache.put(t(1), Collections.singletonList(image()));
+      Assert.assertNotNull(cache.get(t(0)));
+      cache.put(t(2), Collections.singletonList(image()));
+      Assert.assertNull(cache.get(t(1)));
+      Assert.assertNotNull(cache.get(t(0)));
+      Assert.assertNotNull(cache.get(t(2)));
+      Assert.assertEquals(200, cache.getBytes());
+
+      // Too large to cache at all
+      cache.put(t(3), Arrays.asList(image(), image(), image()));
+      Assert.assertNull(cache.get(t(3)));
+
+      cache.invalidate(t(0));
+      Assert.assertNull(cache.get(t(0)));
+      Assert.assertEquals(100, cache.getBytes());
+      cache.shutdown();
+   }
+
+   @Test
+   public void cachesShareTheBudgetAndReleaseItWhenCleared() {
+      PlaybackReadAheadCache.Budget budget = new PlaybackReadAheadCache.Budget(250);
+      PlaybackReadAheadCache cache1 = new PlaybackReadAheadCache(
+            position -> Collections.emptyList(), budget);
+      PlaybackReadAheadCache cache2 = new PlaybackReadAheadCache(
+            position -> Collections.emptyList(), budget);
+      cache1.put(t(0), Collections.singletonList(image()));
+      cache1.put(t(1), Collections.singletonList(image()));
+      // Only the other cache's images could make room
+      cache2.put(t(0), Collections.singletonList(image()));
+      Assert.assertNull(cache2.get(t(0)));
+      Assert.assertEquals(200, budget.getBytes());
+
+      cache1.clear();
+      Assert.assertNull(cache1.get(t(0)));
+      Assert.assertEquals(0, budget.getBytes());
+      cache2.put(t(0), Collections.singletonList(image()));
+      Assert.assertNotNull(cache2.get(t(0)));
+      Assert.assertEquals(100, budget.getBytes());
+      cache1.shutdown();
+      cache2.shutdown();
+      Assert.assertEquals(0, budget.getBytes());
+   }
+
+   @Test
+   public void readsUpcomingPositionsInOrderAndCancelsStaleReads() throws Exception {
+      final CountDownLatch release = new CountDownLatch(1);
+      final List<Integer> log = Collections.synchronizedList(new ArrayList<>());
+      PlaybackReadAheadCache cache = new PlaybackReadAheadCache(position -> {
+         try {
+            release.await(5, TimeUnit.SECONDS);
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+         log.add(position.getT());
+         return Collections.singletonList(image());
+      }, 10000);
+
+      cache.readAhead(Arrays.asList(t(1), t(2), t(3)));
+      // The user moves elsewhere; reads of 2 and 3 have not started
+      cache.readAhead(Arrays.asList(t(7), t(8)));
+      release.countDown();
+      cache.readAhead(Arrays.asList(t(7), t(8)));
+      long deadline = System.currentTimeMillis() + 5000;
+      while (cache.get(t(8)) == null && System.currentTimeMillis() < deadline) {
+         Thread.sleep(5);
+      }
+      Assert.assertEquals(Arrays.asList(1, 7, 8), log);
+      Assert.assertNotNull(cache.get(t(1)));
+      Assert.assertNull(cache.get(t(2)));
+      cache.shutdown();
+   }
+
+   @Test
+   public void invalidatingAPositionDropsOnlyItsReads() throws Exception {
+      final CountDownLatch started = new CountDownLatch(1);
+      final CountDownLatch release = new CountDownLatch(1);
+      PlaybackReadAheadCache cache = new PlaybackReadAheadCache(position -> {
+         if (position.getT() == 1) {
+            started.countDown();
+            try {
+               release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+               Thread.currentThread().interrupt();
+            }
+         }
+         return Collections.singletonList(image());
+      }, 10000);
+
+      cache.readAhead(Arrays.asList(t(1), t(2), t(3)));
+      Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+      // New images elsewhere, and at the position being read
+      cache.invalidate(t(5));
+      cache.invalidate(t(1));
+      release.countDown();
+      long deadline = System.currentTimeMillis() + 5000;
+      while (cache.get(t(3)) == null && System.currentTimeMillis() < deadline) {
+         Thread.sleep(5);
+      }
+      Assert.assertNotNull(cache.get(t(2)));
+      Assert.assertNotNull(cache.get(t(3)));
+      // The images read before the invalidation may be old
+      Assert.assertNull(cache.get(t(1)));
+      cache.shutdown();
+   }
+
+   @Test
+   public void readAheadCountFollowsRateAndSize() {
+      PlaybackReadAheadCache cache = new PlaybackReadAheadCache(
+            position -> Collections.emptyList(), 1000);
+      Assert.assertEquals(15, cache.getReadAheadCount(30.0));
+      Assert.assertEquals(2, cache.getReadAheadCount(1.0));
+      cache.put(t(0), Arrays.asList(image(), image()));
+      // At most half the cache
+      Assert.assertEquals(2, cache.getReadAheadCount(30.0));
+      cache.shutdown();
+   }
+}
@@ -0,0 +1,82 @@
+package org.micromanager.display.internal.displaywindow.imagej;
+
+import ij.process.LUT;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompositeRendererTest {
+   // Black to the given (0-255) color intensities
+   private static LUT ramp(int red, int green, int blue) {
+      byte[] r = new byte[256];
+      byte[] g = new byte[256];
+      byte[] b = new byte[256];
+      for (int i = 0; i < 256; ++i) {
+         r[i] = (byte) (i * red / 255);
+         g[i] = (byte) (i * green / 255);
+         b[i] = (byte) (i * blue / 255);
+      }
+      return new LUT(r, g, b);
+   }
+
+   private static int[] render(CompositeRenderer.Request request) throws Exception {
+      final CountDownLatch rendered = new CountDownLatch(1);
+      CompositeRenderer renderer = new CompositeRenderer(rendered::countDown);
+      renderer.submit(request);
+      Assert.assertTrue(rendered.await(5, TimeUnit.SECONDS));
+      CompositeRenderer.Rendering rendering = renderer.beginDrawing();
+      try {
+         Assert.assertTrue(rendering.isCurrent());
+         int width = rendering.getImage().getWidth();
+         int height = rendering.getImage().getHeight();
+         int[] rgb = rendering.getImage().getRGB(0, 0, width, height, null, 0, width);
+         for (int i = 0; i < rgb.length; ++i) {
+            rgb[i] &= 0xffffff;
+         }
+         return rgb;
+      } finally {
+         renderer.endDrawing();
+         renderer.shutdown();
+      }
+   }
+
+   @Test
+   public void tableMapsDisplayRangeLikeImageJ() {
+      int[] table = CompositeRenderer.createTable(ramp(255, 255, 255), 100, 355, 1 << 16);
+      Assert.assertEquals(0, table[0]);
+      Assert.assertEquals(0, table[100]);
+      Assert.assertEquals(0x808080, table[228]);
+      Assert.assertEquals(0xffffff, table[355]);
+      Assert.assertEquals(0xffffff, table[65535]);
+   }
+
+   @Test
+   public void addingSaturatesEachComponent() {
+      Assert.assertEquals(0xff8040, CompositeRenderer.addSaturated(0xc04020, 0x804020));
+   }
+
+   @Test
+   public void channelsAreAddedInOnePass() throws Exception {
+      CompositeRenderer.Request request = new CompositeRenderer.Request(2, 2, 1);
+      Assert.assertTrue(request.addChannel(new byte[] {0, (byte) 255, 0, (byte) 255},
+            ramp(255, 0, 0), 0, 255));
+      Assert.assertTrue(request.addChannel(new short[] {0, 0, 4095, 4095},
+            ramp(0, 255, 255), 0, 4095));
+      Assert.assertFalse(request.addChannel(new short[3], ramp(0, 0, 255), 0, 255));
+      Assert.assertArrayEquals(new int[] {0x000000, 0xff0000, 0x00ffff, 0xffffff},
+            render(request));
+   }
+
+   @Test
+   public void downsampledRenderingUsesEveryNthPixel() throws Exception {
+      CompositeRenderer.Request request = new CompositeRenderer.Request(5, 3, 2);
+      byte[] pixels = new byte[15];
+      for (int i = 0; i < pixels.length; ++i) {
+         pixels[i] = (byte) i;
+      }
+      request.addChannel(pixels, ramp(255, 255, 255), 0, 255);
+      Assert.assertArrayEquals(new int[] {0x000000, 0x020202, 0x040404,
+            0x0a0a0a, 0x0c0c0c, 0x0e0e0e}, render(request));
+   }
+}
@@ -0,0 +1,56 @@
+package org.micromanager.display.internal.displaywindow.imagej;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DisplayPyramidTest {
+   private static short[] ramp(int width, int height) {
+      short[] pixels = new short[width * height];
+      for (int i = 0; i < pixels.length; ++i) {
+         pixels[i] = (short) i;
+      }
+      return pixels;
+   }
+
+   @Test
+   public void downsamplingMatchesZoomForLargeImages() {
+      Assert.assertEquals(1, DisplayPyramid.getDownsamplingForZoom(1.0));
+      Assert.assertEquals(1, DisplayPyramid.getDownsamplingForZoom(0.75));
+      Assert.assertEquals(2, DisplayPyramid.getDownsamplingForZoom(0.5));
+      Assert.assertEquals(8, DisplayPyramid.getDownsamplingForZoom(0.12));
+      Assert.assertEquals(8, DisplayPyramid.getDownsampling(0.12, 14000, 10000));
+      // Small images are always drawn at full resolution
+      Assert.assertEquals(1, DisplayPyramid.getDownsampling(0.12, 1024, 1024));
+   }
+
+   @Test
+   public void levelsHoldEveryNthPixelOfEveryNthRow() {
+      DisplayPyramid pyramid = new DisplayPyramid(1 << 20);
+      short[] pixels = ramp(7, 5);
+      short[] level2 = (short[]) pyramid.getLevelPixels(pixels, 7, 5, 2);
+      Assert.assertArrayEquals(new short[] {0, 2, 4, 6, 14, 16, 18, 20, 28, 30, 32, 34},
+            level2);
+      // Generated from level 2
+      short[] level4 = (short[]) pyramid.getLevelPixels(pixels, 7, 5, 4);
+      Assert.assertArrayEquals(new short[] {0, 4, 28, 32}, level4);
+      Assert.assertSame(level2, pyramid.getLevelPixels(pixels, 7, 5, 2));
+      Assert.assertEquals(2 * (12 + 4), pyramid.getBytes());
+   }
+
+   @Test
+   public void leastRecentlyUsedImagesAreEvicted() {
+      DisplayPyramid pyramid = new DisplayPyramid(33);
+      byte[] a = new byte[64];
+      byte[] b = new byte[64];
+      byte[] c = new byte[64];
+      Object levelA = pyramid.getLevelPixels(a, 8, 8, 2);
+      Object levelB = pyramid.getLevelPixels(b, 8, 8, 4);
+      Assert.assertEquals(16 + 4, pyramid.getBytes());
+      Assert.assertSame(levelA, pyramid.getLevelPixels(a, 8, 8, 2));
+      pyramid.getLevelPixels(c, 8, 8, 2);
+      // b was used least recently
+      Assert.assertEquals(16 + 16, pyramid.getBytes());
+      Assert.assertSame(levelA, pyramid.getLevelPixels(a, 8, 8, 2));
+      Assert.assertNotSame(levelB, pyramid.getLevelPixels(b, 8, 8, 4));
+   }
+}
@@ -0,0 +1,52 @@
+package org.micromanager.display.internal.imagestats;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DisplayLatencyBudgetTest {
+   private static final long MS = 1000000L;
+
+   @Test
+   public void nothingIsDroppedWithoutBudget() {
+      DisplayLatencyBudget budget = DisplayLatencyBudget.create();
+      budget.recordStatsTime(500 * MS);
+      budget.recordRenderTime(500 * MS);
+      Assert.assertFalse(budget.isEnabled());
+      Assert.assertFalse(budget.wouldExceedWithStats(0, 10000 * MS));
+      Assert.assertFalse(budget.wouldExceedWithRender(0, 10000 * MS));
+   }
+
+   @Test
+   public void remainingStagesCountAgainstBudget() {
+      DisplayLatencyBudget budget = DisplayLatencyBudget.create();
+      budget.setBudgetMs(100.0);
+      budget.recordStatsTime(30 * MS);
+      budget.recordRenderTime(20 * MS);
+      // Waited 40 ms: 40 + 30 + 20 fits, but not after 20 more ms
+      Assert.assertFalse(budget.wouldExceedWithStats(0, 40 * MS));
+      Assert.assertTrue(budget.wouldExceedWithStats(0, 60 * MS));
+      // Stats done at 60 ms: 60 + 20 fits
+      Assert.assertFalse(budget.wouldExceedWithRender(0, 60 * MS));
+      Assert.assertTrue(budget.wouldExceedWithRender(0, 90 * MS));
+
+      // Slower rendering is taken into account gradually
+      budget.recordRenderTime(120 * MS); // Estimate now 45 ms
+      Assert.assertTrue(budget.wouldExceedWithRender(0, 60 * MS));
+
+      budget.setBudgetMs(0.0);
+      Assert.assertFalse(budget.wouldExceedWithRender(0, 1000 * MS));
+   }
+
+   @Test
+   public void latencyQuantiles() {
+      DisplayLatencyBudget budget = DisplayLatencyBudget.create();
+      Assert.assertEquals(0.0, budget.getLatencyQuantileMs(0.5), 0.0);
+      for (int i = 1; i <= 101; ++i) {
+         budget.recordLatency(i * MS);
+      }
+      // Only the most recent 100 are kept
+      Assert.assertEquals(2.0, budget.getLatencyQuantileMs(0.0), 1e-9);
+      Assert.assertEquals(51.5, budget.getLatencyQuantileMs(0.5), 1e-9);
+      Assert.assertEquals(100.01, budget.getLatencyQuantileMs(0.99), 1e-9);
+   }
+}
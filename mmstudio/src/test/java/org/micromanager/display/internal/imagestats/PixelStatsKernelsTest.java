@@ -0,0 +1,162 @@
+package org.micromanager.display.internal.imagestats;
+
+import java.awt.Rectangle;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PixelStatsKernelsTest {
+   private static void assertStatsEqual(IntegerComponentStats expected,
+                                        IntegerComponentStats actual) {
+      Assert.assertArrayEquals(expected.getInRangeHistogram(), actual.getInRangeHistogram());
+      Assert.assertEquals(expected.getPixelCountBelowRange(), actual.getPixelCountBelowRange());
+      Assert.assertEquals(expected.getPixelCountAboveRange(), actual.getPixelCountAboveRange());
+      Assert.assertEquals(expected.getHistogramBinWidth(), actual.getHistogramBinWidth());
+      Assert.assertEquals(expected.getPixelCount(), actual.getPixelCount());
+      Assert.assertEquals(expected.getPixelCountExcludingZeros(),
+            actual.getPixelCountExcludingZeros());
+      Assert.assertEquals(expected.getMinIntensity(), actual.getMinIntensity());
+      Assert.assertEquals(expected.getMinIntensityExcludingZeros(),
+            actual.getMinIntensityExcludingZeros());
+      Assert.assertEquals(expected.getMaxIntensity(), actual.getMaxIntensity());
+      Assert.assertEquals(expected.getSum(), actual.getSum());
+      Assert.assertEquals(expected.getSumOfSquares(), actual.getSumOfSquares());
+   }
+
+   // Straightforward per-sample computation, as in the generic code path
+   private static IntegerComponentStats naiveStats(long[] samples, int bitDepth,
+                                                   int binCountPowerOf2) {
+      int shift = Math.max(0, bitDepth - binCountPowerOf2);
+      long[] bins = new long[(1 << binCountPowerOf2) + 2];
+      long min = Long.MAX_VALUE;
+      long minNonZero = Long.MAX_VALUE;
+      long max = Long.MIN_VALUE;
+      long sum = 0;
+      long sumSq = 0;
+      long nonZero = 0;
+      for (long v : samples) {
+         bins[v > (1L << bitDepth) - 1 ? bins.length - 1 : (int) (v >> shift) + 1]++;
+         min = Math.min(min, v);
+         max = Math.max(max, v);
+         if (v > 0) {
+            nonZero++;
+            minNonZero = Math.min(minNonZero, v);
+         }
+         sum += v;
+         sumSq += v * v;
+      }
+      return IntegerComponentStats.builder().histogram(bins, shift)
+            .pixelCount(samples.length).pixelCountExcludingZeros(nonZero)
+            .minimum(min).minimumExcludingZeros(minNonZero).maximum(max)
+            .sum(sum).sumOfSquares(sumSq).build();
+   }
+
+   @Test
+   public void gray16MatchesNaiveComputation() {
+      int width = 1000;
+      int height = 700;
+      short[] pixels = new short[width * height];
+      Random random = new Random(1);
+      for (int i = 0; i < pixels.length; ++i) {
+         // Mostly 12-bit, with some values out of range
+         pixels[i] = (short) (random.nextInt(20) == 0
+               ? random.nextInt(65536) : random.nextInt(4096));
+      }
+      Rectangle bounds = new Rectangle(13, 17, 900, 650);
+      long[] samples = new long[bounds.width * bounds.height];
+      int n = 0;
+      for (int y = bounds.y; y < bounds.y + bounds.height; ++y) {
+         for (int x = bounds.x; x < bounds.x + bounds.width; ++x) {
+            samples[n++] = pixels[y * width + x] & 0xffff;
+         }
+      }
+      IntegerComponentStats[] stats = PixelStatsKernels.compute(pixels, width, 1,
+            new int[] {0}, bounds, 12, 8, true);
+      Assert.assertEquals(1, stats.length);
+      assertStatsEqual(naiveStats(samples, 12, 8), stats[0]);
+      Assert.assertTrue(stats[0].isROIStats());
+   }
+
+   @Test
+   public void rgb32UsesComponentOffsets() {
+      int width = 64;
+      int height = 48;
+      byte[] pixels = new byte[width * height * 4];
+      Random random = new Random(2);
+      random.nextBytes(pixels);
+      int[] offsets = {2, 1, 0};
+      Rectangle bounds = new Rectangle(0, 0, width, height);
+      IntegerComponentStats[] stats = PixelStatsKernels.compute(pixels, width, 4,
+            offsets, bounds, 8, 8, false);
+      for (int component = 0; component < 3; ++component) {
+         long[] samples = new long[width * height];
+         for (int i = 0; i < samples.length; ++i) {
+            samples[i] = pixels[4 * i + offsets[component]] & 0xff;
+         }
+         assertStatsEqual(naiveStats(samples, 8, 8), stats[component]);
+      }
+   }
+
+   @Test
+   public void samplingCountsOnlyGridPixels() {
+      // Large enough to be split into bands
+      int width = 3000;
+      int height = 2000;
+      Rectangle bounds = new Rectangle(5, 7, 2900, 1900);
+      int stride = 3;
+      byte[] pixels = new byte[width * height];
+      long onGrid = 0;
+      for (int y = bounds.y; y < bounds.y + bounds.height; ++y) {
+         for (int x = bounds.x; x < bounds.x + bounds.width; ++x) {
+            if ((x - bounds.x) % stride == 1 && (y - bounds.y) % stride == 2) {
+               pixels[y * width + x] = 1;
+               ++onGrid;
+            }
+         }
+      }
+      long[][] counts = PixelStatsKernels.countValues(pixels, width, 1,
+            new int[] {0}, bounds, stride, 1, 2);
+      Assert.assertEquals(0, counts[0][0]);
+      Assert.assertEquals(onGrid, counts[0][1]);
+   }
+
+   @Test
+   public void sampledQuantilesAreWithinBound() {
+      int width = 2000;
+      int height = 1500;
+      short[] pixels = new short[width * height];
+      Random random = new Random(3);
+      for (int i = 0; i < pixels.length; ++i) {
+         pixels[i] = (short) random.nextInt(4096);
+      }
+      Rectangle bounds = new Rectangle(0, 0, width, height);
+      StatsSampling sampling = StatsSampling.create(0.01, 0.0);
+      int stride = sampling.getStride(width, height);
+      Assert.assertTrue(stride > 1);
+      long[][] sampled = PixelStatsKernels.countValues(pixels, width, 1,
+            new int[] {0}, bounds, stride, 0, 0);
+      double[][] estimates = PixelStatsKernels.estimateFullCounts(sampled,
+            (double) stride * stride, null, 0.0);
+      IntegerComponentStats approximate = PixelStatsKernels.statsFromFullHistogram(
+            PixelStatsKernels.round(estimates[0]), 12, 12, false);
+      IntegerComponentStats exact = PixelStatsKernels.compute(pixels, width, 1,
+            new int[] {0}, bounds, 12, 12, false)[0];
+      Assert.assertTrue(Math.abs(approximate.getPixelCount() - exact.getPixelCount())
+            < exact.getPixelCount() / 100);
+      for (double q : new double[] {0.01, 0.5, 0.99}) {
+         // Uniform values: an error of 1% of the pixels is 1% of the range
+         Assert.assertTrue(Math.abs(approximate.getQuantile(q) - exact.getQuantile(q))
+               < 0.01 * 4096);
+      }
+   }
+
+   @Test
+   public void sampleCountFollowsErrorBound() {
+      Assert.assertTrue(StatsSampling.fullPrecision().isFullPrecision());
+      Assert.assertEquals(1, StatsSampling.fullPrecision().getStride(4096, 4096));
+      StatsSampling sampling = StatsSampling.create(0.01, 0.0);
+      Assert.assertEquals(26492, sampling.getMinimumSampleCount());
+      Assert.assertEquals(12, sampling.getStride(2048, 2048));
+      Assert.assertEquals(1, sampling.getStride(100, 100));
+   }
+}
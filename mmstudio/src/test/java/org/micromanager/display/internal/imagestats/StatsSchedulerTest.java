@@ -0,0 +1,102 @@
+package org.micromanager.display.internal.imagestats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StatsSchedulerTest {
+   // Occupy the (single) thread until the returned latch is counted down
+   private static CountDownLatch block(StatsScheduler.Client client) throws Exception {
+      final CountDownLatch started = new CountDownLatch(1);
+      final CountDownLatch release = new CountDownLatch(1);
+      client.submit(() -> {
+         started.countDown();
+         release.await();
+         return null;
+      });
+      started.await();
+      return release;
+   }
+
+   private static List<Future<Object>> submitAll(StatsScheduler.Client client,
+                                                 final List<String> log,
+                                                 String... names) {
+      List<Future<Object>> futures = new ArrayList<>();
+      for (final String name : names) {
+         futures.add(client.submit(() -> {
+            synchronized (log) {
+               log.add(name);
+            }
+            return null;
+         }));
+      }
+      return futures;
+   }
+
+   @Test
+   public void clientsTakeTurnsAndFocusedGoesFirst() throws Exception {
+      StatsScheduler scheduler = new StatsScheduler(1);
+      StatsScheduler.Client a = scheduler.createClient();
+      StatsScheduler.Client b = scheduler.createClient();
+      StatsScheduler.Client c = scheduler.createClient();
+      List<String> log = new ArrayList<>();
+
+      CountDownLatch release = block(a);
+      submitAll(a, log, "a1", "a2", "a3");
+      submitAll(b, log, "b1", "b2");
+      List<Future<Object>> last = submitAll(c, log, "c1");
+      release.countDown();
+      last.get(0).get();
+      for (Future<Object> f : submitAll(a, log, "a4")) {
+         f.get();
+      }
+      // Round robin, continuing after the client of the blocking task
+      Assert.assertEquals(Arrays.asList("b1", "c1", "a1", "b2", "a2", "a3", "a4"), log);
+
+      log.clear();
+      release = block(a);
+      List<Future<Object>> queued = new ArrayList<>();
+      queued.addAll(submitAll(a, log, "a1", "a2"));
+      queued.addAll(submitAll(b, log, "b1", "b2"));
+      b.setFocused();
+      release.countDown();
+      // The single thread runs one task at a time, so the log is complete
+      // once all tasks are done
+      for (Future<Object> f : queued) {
+         f.get();
+      }
+      Assert.assertEquals(Arrays.asList("b1", "b2", "a1", "a2"), log);
+   }
+
+   @Test
+   public void onlyUnstartedTasksAreCancelled() throws Exception {
+      StatsScheduler scheduler = new StatsScheduler(1);
+      StatsScheduler.Client a = scheduler.createClient();
+      StatsScheduler.Client b = scheduler.createClient();
+      List<String> log = new ArrayList<>();
+
+      CountDownLatch release = block(b);
+      List<Future<Object>> queued = submitAll(a, log, "a1", "a2");
+      Assert.assertEquals(2, scheduler.getQueuedTaskCount());
+      Assert.assertTrue(a.cancelIfNoneStarted(queued));
+      Assert.assertEquals(0, scheduler.getQueuedTaskCount());
+      release.countDown();
+
+      List<Future<Object>> done = submitAll(a, log, "a3");
+      done.get(0).get();
+      Assert.assertFalse(a.cancelIfNoneStarted(done));
+      Assert.assertEquals(Collections.singletonList("a3"), log);
+   }
+
+   @Test
+   public void bandPoolIsBoundedLikeTheScheduler() {
+      Assert.assertEquals(3, new StatsScheduler(3).getBandPool().getParallelism());
+      Assert.assertEquals(StatsScheduler.defaultThreadCount(),
+            StatsScheduler.getInstance().getBandPool().getParallelism());
+   }
+}
@@ -11,6 +11,7 @@ import org.micromanager.Studio;
 import org.micromanager.data.Coords;
 import org.micromanager.data.Image;
 import org.micromanager.data.Metadata;
+import org.micromanager.data.PixelBufferPool;
 import org.micromanager.data.ProcessorContext;
 import org.micromanager.imageprocessing.ImgSharpnessAnalysis;
 import org.micromanager.imageprocessing.curvefit.Fitter;
@@ -193,12 +194,14 @@ public class SingleCombinationProcessor {
       Metadata metadata = img.getMetadata();
 
       Object resultPixels = null;
+      PixelBufferPool pool = studio_.data().pixelBufferPool();
 
       if (bytesPerPixel == 1) {
 
          // Create new array
-         float[] newPixels = new float[width * height];
-         byte[] newPixelsFinal = new byte[width * height];
+         float[] newPixels = pool.getFloats(width * height);
+         Arrays.fill(newPixels, 0.0f);
+         byte[] newPixelsFinal = pool.getBytes(width * height);
 
          // Sum up all pixels from bufferImages
          for (int i = 0; i < numberOfImagesToProcess_; i++) {
@@ -223,12 +226,14 @@ public class SingleCombinationProcessor {
          }
 
          resultPixels = newPixelsFinal;
+         pool.recycle(newPixels);
 
       } else if (bytesPerPixel == 2) {
 
          // Create new array
-         float[] newPixels = new float[width * height];
-         short[] newPixelsFinal = new short[width * height];
+         float[] newPixels = pool.getFloats(width * height);
+         Arrays.fill(newPixels, 0.0f);
+         short[] newPixelsFinal = pool.getShorts(width * height);
 
          // Sum up all pixels from bufferImages
          for (int i = 0; i < numberOfImagesToProcess_; i++) {
@@ -253,11 +258,12 @@ public class SingleCombinationProcessor {
          }
 
          resultPixels = newPixelsFinal;
+         pool.recycle(newPixels);
 
       }
 
-      // Create the processed image
-      return studio_.data().createImage(resultPixels, width, height,
+      // Create the processed image, which owns the (pooled) result array
+      return studio_.data().wrapImage(resultPixels, width, height,
             bytesPerPixel, numComponents, coords, metadata);
 
    }
@@ -281,20 +287,19 @@ public class SingleCombinationProcessor {
       Metadata metadata = img.getMetadata();
 
       Object resultPixels = null;
+      PixelBufferPool pool = studio_.data().pixelBufferPool();
 
       if (bytesPerPixel == 1) {
 
          // Create new array
-         float[] newPixels = new float[width * height];
-         byte[] newPixelsFinal = new byte[width * height];
+         float[] newPixels = pool.getFloats(width * height);
+         byte[] newPixelsFinal = pool.getBytes(width * height);
 
          float currentValue;
          float actualValue;
 
-         // Init the new array (already zero, so no need to set for max)
-         if (extremaType.equals("min")) {
-            Arrays.fill(newPixels, Byte.MAX_VALUE);
-         }
+         // Init the new array (pooled arrays are not zeroed)
+         Arrays.fill(newPixels, extremaType.equals("min") ? Byte.MAX_VALUE : 0.0f);
 
          // Iterate over all frames
          for (int i = 0; i < numberOfImagesToProcess_; i++) {
@@ -321,21 +326,19 @@ public class SingleCombinationProcessor {
          }
 
          resultPixels = newPixelsFinal;
+         pool.recycle(newPixels);
 
       } else if (bytesPerPixel == 2) {
 
          // Create new array
-         float[] newPixels = new float[width * height];
-         short[] newPixelsFinal = new short[width * height];
+         float[] newPixels = pool.getFloats(width * height);
+         short[] newPixelsFinal = pool.getShorts(width * height);
 
          float currentValue;
          float actualValue;
 
-         // Init the new array
-         // if (extremaType.equals("max")) { // no need to set new array to zero in Java
-         if (extremaType.equals("min")) {
-            Arrays.fill(newPixels, Byte.MAX_VALUE);
-         }
+         // Init the new array (pooled arrays are not zeroed)
+         Arrays.fill(newPixels, extremaType.equals("min") ? Byte.MAX_VALUE : 0.0f);
 
          // Iterate over all frames
          for (int i = 0; i < numberOfImagesToProcess_; i++) {
@@ -363,11 +366,12 @@ public class SingleCombinationProcessor {
          }
 
          resultPixels = newPixelsFinal;
+         pool.recycle(newPixels);
 
       }
 
-      // Create the processed image
-      return studio_.data().createImage(resultPixels, width, height,
+      // Create the processed image, which owns the (pooled) result array
+      return studio_.data().wrapImage(resultPixels, width, height,
             bytesPerPixel, numComponents, coords, metadata);
 
    }
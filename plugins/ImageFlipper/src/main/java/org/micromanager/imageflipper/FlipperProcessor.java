@@ -20,6 +20,7 @@
 
 package org.micromanager.imageflipper;
 
+import ij.process.ColorProcessor;
 import ij.process.ImageProcessor;
 import org.micromanager.PropertyMap;
 import org.micromanager.PropertyMaps;
@@ -98,6 +99,14 @@ public class FlipperProcessor implements Processor {
             transformImage(studio_, image, isMirrored_, rotation_));
    }
 
+   /**
+    * Images are transformed independently of each other.
+    */
+   @Override
+   public boolean isThreadSafe() {
+      return true;
+   }
+
    /**
     * Executes image transformation.
     * First mirror the image if requested, than rotate as requested
@@ -111,20 +120,22 @@ public class FlipperProcessor implements Processor {
    public static Image transformImage(Studio studio, Image image,
                                       boolean isMirrored, int rotation) {
 
-      ImageProcessor proc = studio.data().ij().createProcessor(image);
+      // Work on a pooled copy; it becomes the output unless rotated by 90
+      // degrees, which needs a new array
+      ImageProcessor proc = studio.data().ij().createPooledProcessor(image);
 
       if (isMirrored) {
          proc.flipHorizontal();
       }
-      if (rotation == R90) {
-         proc = proc.rotateRight();
+      if (rotation == R90 || rotation == R270) {
+         ImageProcessor rotated = rotation == R90 ? proc.rotateRight() : proc.rotateLeft();
+         studio.data().pixelBufferPool().recycle(proc.getPixels());
+         proc = rotated;
       }
       if (rotation == R180) {
-         proc = proc.rotateRight();
-         proc = proc.rotateRight();
-      }
-      if (rotation == R270) {
-         proc = proc.rotateLeft();
+         // Same as rotating twice, but in place
+         proc.flipHorizontal();
+         proc.flipVertical();
       }
       // Insert some metadata to indicate what we did to the image.
       PropertyMap.Builder builder;
@@ -138,8 +149,12 @@ public class FlipperProcessor implements Processor {
       builder.putString("ImageFlipper-Mirror", isMirrored ? "On" : "Off");
       Metadata newMetadata =
             image.getMetadata().copyBuilderPreservingUUID().userData(builder.build()).build();
-      Image result = studio.data().ij().createImage(proc, image.getCoords(),
+      Image result = studio.data().ij().wrapImage(proc, image.getCoords(),
             newMetadata);
+      if (proc instanceof ColorProcessor) {
+         // RGB pixels were converted for the Image; ours are scratch
+         studio.data().pixelBufferPool().recycle(proc.getPixels());
+      }
       return result;
    }
 }
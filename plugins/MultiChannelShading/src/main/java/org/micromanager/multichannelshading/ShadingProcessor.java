@@ -36,13 +36,14 @@ import coremem.enums.NativeTypeEnum;
 import ij.process.ImageProcessor;
 import java.awt.Rectangle;
 import java.io.IOException;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.micromanager.PropertyMap;
 import org.micromanager.Studio;
 import org.micromanager.data.Image;
 import org.micromanager.data.Metadata;
+import org.micromanager.data.PixelBufferPool;
 import org.micromanager.data.Processor;
 import org.micromanager.data.ProcessorContext;
 import org.micromanager.data.SummaryMetadata;
@@ -57,18 +58,20 @@ public class ShadingProcessor implements Processor {
 
    private final Studio studio_;
    private final String channelGroup_;
-   private SummaryMetadata summaryMetadata_;
-   private boolean match_ = true;
-   private Boolean useOpenCL_;
+   // Set from processSummaryMetadata(), read by processImage()
+   private volatile SummaryMetadata summaryMetadata_;
+   private volatile boolean match_ = true;
+   private volatile boolean useOpenCL_;
    private final List<String> presets_;
    private final ImageCollection imageCollection_;
    private ClearCL ccl_;
    private ClearCLContext cclContext_;
    private ClearCLProgram cclProgram_;
-   private Boolean isAcqRunning_ = false;
+   private volatile boolean isAcqRunning_ = false;
    private final String pixelSizeCalibration_;
 
-   private final Set<Class<?>> alertSet_ = new HashSet<>();
+   // Alerts that have been posted; each is posted only once
+   private final Set<Class<?>> alertSet_ = ConcurrentHashMap.newKeySet();
 
    /**
     * Constructor of the Image Processor.
@@ -102,10 +105,9 @@ public class ShadingProcessor implements Processor {
 
                assertEquals(lBuildStatus, BuildStatus.Success);
             } catch (IOException ioe) {
-               if (!alertSet_.contains(this.getClass())) {
+               if (alertSet_.add(this.getClass())) {
                   studio_.alerts().postAlert(MultiChannelShading.MENUNAME, this.getClass(),
                           "Failed to initialize OpenCL, falling back");
-                  alertSet_.add(this.getClass());
                }
                useOpenCL_ = false;
             }
@@ -229,10 +231,9 @@ public class ShadingProcessor implements Processor {
 
       // For now, this plugin only works with 8 or 16 bit grayscale images
       if (image.getNumComponents() > 1 || image.getBytesPerPixel() > 2) {
-         if (!alertSet_.contains(Not8or16BitClass.class)) {
+         if (alertSet_.add(Not8or16BitClass.class)) {
             String msg = "Cannot flatfield correct images other than 8 or 16 bit grayscale";
             studio_.alerts().postAlert(MultiChannelShading.MENUNAME, Not8or16BitClass.class, msg);
-            alertSet_.add(Not8or16BitClass.class);
          }
          context.outputImage(image);
          return;
@@ -244,31 +245,28 @@ public class ShadingProcessor implements Processor {
       // subtract background
       Integer binning = metadata.getBinning();
       if (binning == null) {
-         if (!alertSet_.contains(NoBinningInfoClass.class)) {
+         if (alertSet_.add(NoBinningInfoClass.class)) {
             String msg = "MultiShadingPlugin: Image metadata did not contain Binning information.";
             studio_.alerts().postAlert(MultiChannelShading.MENUNAME, NoBinningInfoClass.class, msg);
-            alertSet_.add(NoBinningInfoClass.class);
          }
          // Assume binning is 1
          binning = 1;
       }
       Rectangle rect = metadata.getROI();
       if (rect == null) {
-         if (!alertSet_.contains(NoRoiClass.class)) {
+         if (alertSet_.add(NoRoiClass.class)) {
             String msg = "MultiShadingPlugin: Image metadata did not list ROI.";
             studio_.alerts().postAlert(MultiChannelShading.MENUNAME, NoRoiClass.class, msg);
-            alertSet_.add(NoRoiClass.class);
          }
       }
       ImagePlusInfo background = null;
       try {
          background = imageCollection_.getBackground(binning, rect);
       } catch (ShadingException e) {
-         if (!alertSet_.contains(NoBackgroundForThisBinModeClass.class)) {
+         if (alertSet_.add(NoBackgroundForThisBinModeClass.class)) {
             String msg = "Error getting background for bin mode " + binning + " and rect " + rect;
             studio_.alerts().postAlert(MultiChannelShading.MENUNAME,
                   NoBackgroundForThisBinModeClass.class, msg);
-            alertSet_.add(NoBackgroundForThisBinModeClass.class);
          }
       }
 
@@ -276,96 +274,101 @@ public class ShadingProcessor implements Processor {
             image, binning, rect);
 
       if (useOpenCL_) {
-         try {
-            ClearCLBuffer clImg;
-            ClearCLBuffer clBackground;
-            ClearCLBuffer clFlatField;
-            String suffix;
-            if (image.getBytesPerPixel() == 2) {
-               clImg = cclContext_.createBuffer(NativeTypeEnum.UnsignedShort,
-                       (long) image.getWidth() * image.getHeight());
-               suffix = "US";
-            } else { //(image.getBytesPerPixel() == 1) 
-               clImg = cclContext_.createBuffer(NativeTypeEnum.UnsignedByte,
-                       (long) image.getWidth() * image.getHeight());
-               suffix = "UB";
-            }
+         // The OpenCL context and the cached buffers are shared by all threads
+         synchronized (cclContext_) {
+            try {
+               ClearCLBuffer clImg;
+               ClearCLBuffer clBackground;
+               ClearCLBuffer clFlatField;
+               String suffix;
+               if (image.getBytesPerPixel() == 2) {
+                  clImg = cclContext_.createBuffer(NativeTypeEnum.UnsignedShort,
+                          (long) image.getWidth() * image.getHeight());
+                  suffix = "US";
+               } else { //(image.getBytesPerPixel() == 1) 
+                  clImg = cclContext_.createBuffer(NativeTypeEnum.UnsignedByte,
+                          (long) image.getWidth() * image.getHeight());
+                  suffix = "UB";
+               }
 
-            // copy image to the GPU
-            clImg.readFrom(((DefaultImage) image).getPixelBuffer(), false);
-            // process with different kernels depending on availability of flatfield
-            // and background:
-            if (background != null && flatFieldImage == null) {
-               clBackground = background.getCLBuffer(cclContext_);
-               // need to use different kernels for different types
-               ClearCLKernel lKernel = cclProgram_.createKernel("subtract" + suffix);
-               lKernel.setArguments(clImg, clBackground);
-               lKernel.setGlobalSizes(clImg);
-               lKernel.run();
-               if (!alertSet_.contains(NotFlatFieldedClass.class)) {
-                  String msg = "MultiShadingPlugin: Only background subtracted "
-                        + "(no flatfield found).";
-                  studio_.alerts()
-                          .postAlert(MultiChannelShading.MENUNAME, NotFlatFieldedClass.class, msg);
-                  alertSet_.add(NotFlatFieldedClass.class);
+               // copy image to the GPU
+               clImg.readFrom(((DefaultImage) image).getPixelBuffer(), false);
+               // process with different kernels depending on availability of flatfield
+               // and background:
+               if (background != null && flatFieldImage == null) {
+                  clBackground = background.getCLBuffer(cclContext_);
+                  // need to use different kernels for different types
+                  ClearCLKernel lKernel = cclProgram_.createKernel("subtract" + suffix);
+                  lKernel.setArguments(clImg, clBackground);
+                  lKernel.setGlobalSizes(clImg);
+                  lKernel.run();
+                  if (alertSet_.add(NotFlatFieldedClass.class)) {
+                     String msg = "MultiShadingPlugin: Only background subtracted "
+                           + "(no flatfield found).";
+                     studio_.alerts().postAlert(MultiChannelShading.MENUNAME,
+                           NotFlatFieldedClass.class, msg);
+                  }
+               } else if (background == null && flatFieldImage != null) {
+                  clFlatField = flatFieldImage.getCLBuffer(cclContext_);
+                  ClearCLKernel lKernel = cclProgram_.createKernel("multiply" + suffix + "F");
+                  lKernel.setArguments(clImg, clFlatField);
+                  lKernel.setGlobalSizes(clImg);
+                  lKernel.run();
+               } else if (background != null) {
+                  clBackground = background.getCLBuffer(cclContext_);
+                  clFlatField = flatFieldImage.getCLBuffer(cclContext_);
+                  ClearCLKernel lKernel =
+                        cclProgram_.createKernel("subtractAndMultiply" + suffix + "F");
+                  lKernel.setArguments(clImg, clBackground, clFlatField);
+                  lKernel.setGlobalSizes(clImg);
+                  lKernel.run();
                }
-            } else if (background == null && flatFieldImage != null) {
-               clFlatField = flatFieldImage.getCLBuffer(cclContext_);
-               ClearCLKernel lKernel = cclProgram_.createKernel("multiply" + suffix + "F");
-               lKernel.setArguments(clImg, clFlatField);
-               lKernel.setGlobalSizes(clImg);
-               lKernel.run();
-            } else if (background != null) {
-               clBackground = background.getCLBuffer(cclContext_);
-               clFlatField = flatFieldImage.getCLBuffer(cclContext_);
-               ClearCLKernel lKernel =
-                     cclProgram_.createKernel("subtractAndMultiply" + suffix + "F");
-               lKernel.setArguments(clImg, clBackground, clFlatField);
-               lKernel.setGlobalSizes(clImg);
-               lKernel.run();
-            }
-            // copy processed image back from the GPU
-            clImg.writeTo(((DefaultImage) image).getPixelBuffer(), true);
-            // release resources.  If more GPU processing is desired, this should change
-            clImg.close();
-            context.outputImage(image);
-            return;
-         } catch (OpenCLException ocle) {
-            if (!alertSet_.contains(ErrorInOpenCLClass.class)) {
-               studio_.alerts().postAlert(MultiChannelShading.MENUNAME,
-                     ErrorInOpenCLClass.class, "Error using GPU: " + ocle.getMessage());
-               alertSet_.add(ErrorInOpenCLClass.class);
+               // copy processed image back from the GPU
+               clImg.writeTo(((DefaultImage) image).getPixelBuffer(), true);
+               // release resources.  If more GPU processing is desired, this should change
+               clImg.close();
+               context.outputImage(image);
+               return;
+            } catch (OpenCLException ocle) {
+               if (alertSet_.add(ErrorInOpenCLClass.class)) {
+                  studio_.alerts().postAlert(MultiChannelShading.MENUNAME,
+                        ErrorInOpenCLClass.class, "Error using GPU: " + ocle.getMessage());
+               }
+               useOpenCL_ = false;
             }
-            useOpenCL_ = false;
          }
       }
 
       PropertyMap userData = metadata.getUserData();
+      PixelBufferPool pool = studio_.data().pixelBufferPool();
+      // Pixels of the background-subtracted image, if we made one
+      Object subtractedPixels = null;
 
       if (background != null) {
-         ImageProcessor ip = studio_.data().ij().createProcessor(image);
+         ImageProcessor ip = studio_.data().ij().createPooledProcessor(image);
          ImageProcessor ipBackground = background.getProcessor();
          try {
-            ip = ImageUtils.subtractImageProcessors(ip, ipBackground);
+            ImageProcessor subtracted = ImageUtils.subtractImageProcessors(ip, ipBackground);
+            pool.recycle(ip.getPixels());
+            ip = subtracted;
             if (userData != null) {
                userData = userData.copyBuilder().putBoolean("Background-corrected", true).build();
             }
          } catch (ShadingException e) {
-            if (!alertSet_.contains(ErrorSubtractingClass.class)) {
+            if (alertSet_.add(ErrorSubtractingClass.class)) {
                String msg = "Unable to subtract background: " + e.getMessage();
                studio_.alerts().postAlert(MultiChannelShading.MENUNAME,
                      ErrorSubtractingClass.class, msg);
-               alertSet_.add(ErrorSubtractingClass.class);
             }
          }
-         image = studio_.data().ij().createImage(ip, image.getCoords(),
+         image = studio_.data().ij().wrapImage(ip, image.getCoords(),
                metadata.copyBuilderWithNewUUID().userData(userData).build());
+         subtractedPixels = ip.getPixels();
       } else {
-         if (!alertSet_.contains(NoBackgroundForThisBinModeClass.class)) {
+         if (alertSet_.add(NoBackgroundForThisBinModeClass.class)) {
             String msg = "No background available...";
             studio_.alerts().postAlert(MultiChannelShading.MENUNAME,
                   NoBackgroundForThisBinModeClass.class, msg);
-            alertSet_.add(NoBackgroundForThisBinModeClass.class);
          }
       }
 
@@ -374,11 +377,10 @@ public class ShadingProcessor implements Processor {
       // just return the background-subtracted image (which is the unmodified
       // image if we also don't have a background subtraction file).
       if (flatFieldImage == null) {
-         if (!alertSet_.contains(NotFlatFieldedClass.class)) {
+         if (alertSet_.add(NotFlatFieldedClass.class)) {
             String msg = "No flatfield found...";
             studio_.alerts().postAlert(MultiChannelShading.MENUNAME,
                     NotFlatFieldedClass.class, msg);
-            alertSet_.add(NotFlatFieldedClass.class);
          }
          context.outputImage(image);
          return;
@@ -391,7 +393,7 @@ public class ShadingProcessor implements Processor {
 
 
       if (image.getBytesPerPixel() == 1) {
-         byte[] newPixels = new byte[width * height];
+         byte[] newPixels = pool.getBytes(width * height);
          byte[] oldPixels = (byte[]) image.getRawPixels();
          int length = oldPixels.length;
          float[] flatFieldPixels = (float[]) flatFieldImage.getProcessor().getPixels();
@@ -403,11 +405,13 @@ public class ShadingProcessor implements Processor {
             }
             newPixels[index] = (byte) (newValue);
          }
-         result = studio_.data().createImage(newPixels, width, height,
+         result = studio_.data().wrapImage(newPixels, width, height,
                1, 1, image.getCoords(), metadata);
+         // The background-subtracted image was only an intermediate
+         pool.recycle(subtractedPixels);
          context.outputImage(result);
       } else if (image.getBytesPerPixel() == 2) {
-         short[] newPixels = new short[width * height];
+         short[] newPixels = pool.getShorts(width * height);
          short[] oldPixels = (short[]) image.getRawPixels();
          int length = oldPixels.length;
          for (int index = 0; index < length; index++) {
@@ -421,12 +425,23 @@ public class ShadingProcessor implements Processor {
             }
             newPixels[index] = (short) (((int) newValue) & 0x0000ffff);
          }
-         result = studio_.data().createImage(newPixels, width, height,
+         result = studio_.data().wrapImage(newPixels, width, height,
                2, 1, image.getCoords(), metadata);
+         pool.recycle(subtractedPixels);
          context.outputImage(result);
       }
    }
 
+   /**
+    * Images are corrected independently of each other. The state shared
+    * between images (alerts, OpenCL resources and the cache of binned and
+    * cropped reference images) is synchronized.
+    */
+   @Override
+   public boolean isThreadSafe() {
+      return true;
+   }
+
 
    /**
     * Given the metadata of the image currently being processed, find a match
@@ -37,6 +37,7 @@ import org.micromanager.PropertyMap;
 import org.micromanager.Studio;
 import org.micromanager.data.Coords;
 import org.micromanager.data.Image;
+import org.micromanager.data.PixelBufferPool;
 import org.micromanager.data.Processor;
 import org.micromanager.data.ProcessorContext;
 import org.micromanager.data.SummaryMetadata;
@@ -272,35 +273,52 @@ public class RatioImagingProcessor implements Processor {
       images_.add(newImage);
 
    }
+
+   /**
+    * Each ratio image is made from two input images, which arrive in
+    * separate calls to processImage(). Images therefore cannot be processed
+    * independently on several threads.
+    */
+   @Override
+   public boolean isThreadSafe() {
+      return false;
+   }
       
    private void process(Image ch1Image, Image ch2Image, ProcessorContext context) {
       
       final Coords ratioCoords = ch1Image.getCoords().copyBuilder().c(ratioIndex_).build();
       
-      ImageProcessor ch1Proc = studio_.data().ij().createProcessor(ch1Image);
-      ImageProcessor ch2Proc = studio_.data().ij().createProcessor(ch2Image);
+      PixelBufferPool pool = studio_.data().pixelBufferPool();
+      // All processors below are scratch, except the final ratio processor,
+      // which the ratio image wraps
+      ImageProcessor ch1Proc = studio_.data().ij().createPooledProcessor(ch1Image);
+      ImageProcessor ch2Proc = studio_.data().ij().createPooledProcessor(ch2Image);
       if (bc1_ != null) {
-         ch1Proc = subtractImageProcessors(ch1Proc, bc1_.getProcessor());
+         ch1Proc = recycleUnlessSame(ch1Proc,
+               subtractImageProcessors(ch1Proc, bc1_.getProcessor()));
       }
       if (bc2_ != null) {
-         ch2Proc = subtractImageProcessors(ch2Proc, bc2_.getProcessor());
+         ch2Proc = recycleUnlessSame(ch2Proc,
+               subtractImageProcessors(ch2Proc, bc2_.getProcessor()));
       }
-      ch1Proc = ch1Proc.convertToFloat();
-      ch2Proc = ch2Proc.convertToFloat();
+      ch1Proc = recycleUnlessSame(ch1Proc, ch1Proc.convertToFloat());
+      ch2Proc = recycleUnlessSame(ch2Proc, ch2Proc.convertToFloat());
       ch1Proc.subtract(bc1Constant_);
       ch2Proc.subtract(bc2Constant_);
-      ImageProcessor ch3Proc = ch1Proc.createProcessor(ch1Proc.getWidth(), 
-              ch1Proc.getHeight());
+      ImageProcessor ch3Proc = new FloatProcessor(ch1Proc.getWidth(), ch1Proc.getHeight(),
+              pool.getFloats(ch1Proc.getWidth() * ch1Proc.getHeight()), null);
       ch3Proc.insert(ch1Proc, 0, 0);
       ch3Proc.copyBits(ch2Proc, 0, 0, Blitter.DIVIDE);
       ch3Proc.multiply(factor_);
+      pool.recycle(ch1Proc.getPixels());
+      pool.recycle(ch2Proc.getPixels());
       
       if (ch1Image.getBytesPerPixel() == 1) {
          // check this actually works....
-         ch3Proc = ch3Proc.convertToByteProcessor();
+         ch3Proc = recycleUnlessSame(ch3Proc, ch3Proc.convertToByteProcessor());
       } else if (ch1Image.getBytesPerPixel() == 2) {
          // ImageJ method seems to be broken. Copied code from ImageJ1 here
-         ch3Proc = convertFloatToShort((FloatProcessor) ch3Proc);
+         ch3Proc = recycleUnlessSame(ch3Proc, convertFloatToShort((FloatProcessor) ch3Proc));
       }
       int max = (int) ch3Proc.getMax();
       int bitDepth = 1;
@@ -308,13 +326,28 @@ public class RatioImagingProcessor implements Processor {
          bitDepth += 1;
       }
       
-      Image ratioImage = studio_.data().ij().createImage(ch3Proc, ratioCoords, 
+      Image ratioImage = studio_.data().ij().wrapImage(ch3Proc, ratioCoords, 
               ch1Image.getMetadata().copyBuilderWithNewUUID().bitDepth(bitDepth)
                           .build());
       
       context.outputImage(ratioImage);
    }
    
+   /**
+    * Return the pixels of a processor that has been replaced by a new one to
+    * the pool.
+    *
+    * @param old         the processor that is no longer needed
+    * @param replacement the processor derived from it
+    * @return the replacement
+    */
+   private ImageProcessor recycleUnlessSame(ImageProcessor old, ImageProcessor replacement) {
+      if (replacement != old && replacement.getPixels() != old.getPixels()) {
+         studio_.data().pixelBufferPool().recycle(old.getPixels());
+      }
+      return replacement;
+   }
+
    /**
     * Copied from https://github.com/imagej/imagej1/blob/master/ij/process/TypeConverter.java.
     *
@@ -327,7 +360,7 @@ public class RatioImagingProcessor implements Processor {
     */
    ShortProcessor convertFloatToShort(FloatProcessor ip) {
       float[] pixels32 = (float[]) ip.getPixels();
-      short[] pixels16 = new short[ip.getWidth() * ip.getHeight()];
+      short[] pixels16 = studio_.data().pixelBufferPool().getShorts(ip.getWidth() * ip.getHeight());
       double value;
       for (int i = 0, j = 0; i < (ip.getWidth() * ip.getHeight()); i++) {
          value = pixels32[i];
@@ -0,0 +1,118 @@
+/*
+ * LICENSE:      This file is distributed under the BSD license.
+ *               License text is included with the source distribution.
+ *
+ *               This file is distributed in the hope that it will be useful,
+ *               but WITHOUT ANY WARRANTY; without even the implied warranty
+ *               of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ *               IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ *               CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *               INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES.
+ */
+
+package org.micromanager.plugins.sequencebuffermonitor;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.swing.table.AbstractTableModel;
+import org.micromanager.data.internal.pipeline.DefaultPipeline;
+import org.micromanager.data.internal.pipeline.StageMetrics;
+
+/**
+ * One row per processor of each running on-the-fly pipeline.
+ */
+class PipelineStageTableModel extends AbstractTableModel {
+   private static final String[] COLUMN_NAMES = {
+      "Data", "Processor", "In", "Out", "Dropped", "Images/s",
+      "Wait (ms)", "Processing (ms)", "Queue (max)"
+   };
+
+   private static final class Row {
+      final String dataName;
+      final StageMetrics metrics;
+      final double rate;
+
+      Row(String dataName, StageMetrics metrics, double rate) {
+         this.dataName = dataName;
+         this.metrics = metrics;
+         this.rate = rate;
+      }
+   }
+
+   private List<Row> rows_ = new ArrayList<>();
+   // Image counts at the previous update, for computing rates
+   private Map<StageMetrics, Long> previousCounts_ = new IdentityHashMap<>();
+   private long previousUpdateNs_ = 0;
+
+   /**
+    * Read the current metrics of all active pipelines.
+    */
+   void update() {
+      long now = System.nanoTime();
+      double elapsedS = previousUpdateNs_ == 0 ? 0.0 : (now - previousUpdateNs_) / 1e9;
+      previousUpdateNs_ = now;
+
+      List<Row> rows = new ArrayList<>();
+      Map<StageMetrics, Long> counts = new IdentityHashMap<>();
+      for (DefaultPipeline pipeline : DefaultPipeline.getActivePipelines()) {
+         String dataName = pipeline.getDatastore().getName();
+         for (StageMetrics metrics : pipeline.getStageMetrics()) {
+            long count = metrics.getImagesIn();
+            Long previous = previousCounts_.get(metrics);
+            double rate = previous == null || elapsedS <= 0.0
+                  ? 0.0 : (count - previous) / elapsedS;
+            counts.put(metrics, count);
+            rows.add(new Row(dataName == null ? "" : dataName, metrics, rate));
+         }
+      }
+      previousCounts_ = counts;
+      rows_ = rows;
+      fireTableDataChanged();
+   }
+
+   @Override
+   public int getRowCount() {
+      return rows_.size();
+   }
+
+   @Override
+   public int getColumnCount() {
+      return COLUMN_NAMES.length;
+   }
+
+   @Override
+   public String getColumnName(int column) {
+      return COLUMN_NAMES[column];
+   }
+
+   @Override
+   public Object getValueAt(int rowIndex, int columnIndex) {
+      Row row = rows_.get(rowIndex);
+      StageMetrics metrics = row.metrics;
+      switch (columnIndex) {
+         case 0:
+            return row.dataName;
+         case 1:
+            return metrics.getName();
+         case 2:
+            return metrics.getImagesIn();
+         case 3:
+            return metrics.getImagesOut();
+         case 4:
+            return metrics.getImagesDropped();
+         case 5:
+            return String.format("%.1f", row.rate);
+         case 6:
+            return String.format("%.2f", metrics.getMeanQueueWaitMs());
+         case 7:
+            return String.format("%.2f", metrics.getMeanProcessingMs());
+         case 8:
+            return metrics.getQueueDepth() + " (" + metrics.getMaxQueueDepth() + ")";
+         default:
+            return null;
+      }
+   }
+}
@@ -1,7 +1,8 @@
 /////////////////////////////////////////////////////////////////////////
 // SequenceBufferMonitor plugin.
 //
-// Display Core sequence buffer usage in real time.
+// Display Core sequence buffer usage and on-the-fly pipeline throughput in
+// real time.
 //
 // AUTHOR:       Mark Tsuchida
 // COPYRIGHT:    University of California, San Francisco, 2014
@@ -54,7 +55,7 @@ public class SequenceBufferMonitor implements MenuPlugin, SciJavaPlugin {
 
    @Override
    public String getHelpText() {
-      return "Display sequence buffer usage";
+      return "Display sequence buffer usage and on-the-fly pipeline throughput";
    }
 
    @Override
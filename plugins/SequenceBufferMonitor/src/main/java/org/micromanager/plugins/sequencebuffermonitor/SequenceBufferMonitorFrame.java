@@ -22,6 +22,8 @@ import java.awt.event.ActionListener;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JProgressBar;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
 import javax.swing.JTextField;
 import javax.swing.Timer;
 import org.micromanager.internal.utils.WindowPositioning;
@@ -30,6 +32,7 @@ import org.micromanager.internal.utils.WindowPositioning;
 class SequenceBufferMonitorFrame extends JFrame {
    org.micromanager.Studio app_;
    JProgressBar usageBar_;
+   PipelineStageTableModel pipelineModel_;
    Timer timer_;
 
    int previousTotalCapacity_ = -1;
@@ -44,6 +47,11 @@ class SequenceBufferMonitorFrame extends JFrame {
       usageBar_ = new JProgressBar();
       usageBar_.setStringPainted(true);
 
+      pipelineModel_ = new PipelineStageTableModel();
+      JTable pipelineTable = new JTable(pipelineModel_);
+      pipelineTable.setFillsViewportHeight(true);
+      JScrollPane pipelineScrollPane = new JScrollPane(pipelineTable);
+
       JTextField intervalField =
             new JTextField(Integer.toString(updateIntervalMs_), 4);
       intervalField.addActionListener(new ActionListener() {
@@ -68,14 +76,17 @@ class SequenceBufferMonitorFrame extends JFrame {
       setLayout(new net.miginfocom.swing.MigLayout(
             "insets dialog",
             "[grow, fill]",
-            "[]related[]"));
+            "[]related[]unrelated[]related[]"));
       add(usageBar_, "wrap");
       add(new JLabel("Update Interval:"), "split 3, gapleft push");
       add(intervalField);
-      add(new JLabel("ms"));
+      add(new JLabel("ms"), "wrap");
+      add(new JLabel("On-the-fly processing pipelines:"), "wrap");
+      add(pipelineScrollPane);
 
       Dimension size = usageBar_.getPreferredSize();
       usageBar_.setPreferredSize(new Dimension(2 * size.width, size.height));
+      pipelineScrollPane.setPreferredSize(new Dimension(4 * size.width, 8 * size.height));
 
       pack();
       setMinimumSize(getPreferredSize());
@@ -97,6 +108,11 @@ class SequenceBufferMonitorFrame extends JFrame {
    }
 
    private void update() {
+      updateBufferUsage();
+      pipelineModel_.update();
+   }
+
+   private void updateBufferUsage() {
       mmcorej.CMMCore core = app_.getCMMCore();
       if (core == null) {
          usageBar_.setValue(0);
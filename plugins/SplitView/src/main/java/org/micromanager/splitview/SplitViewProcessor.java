@@ -102,7 +102,8 @@ public class SplitViewProcessor implements Processor {
 
    @Override
    public void processImage(Image image, ProcessorContext context) {
-      ImageProcessor proc = studio_.data().ij().createProcessor(image);
+      // Only read from, so the copy goes back to the pool at the end
+      ImageProcessor proc = studio_.data().ij().createPooledProcessor(image);
 
       int width = image.getWidth();
       int height = image.getHeight();
@@ -122,10 +123,12 @@ public class SplitViewProcessor implements Processor {
 
          Coords coords = image.getCoords().copy()
                .channel(channelIndex * numSplits_ + i).build();
-         Image output = studio_.data().createImage(proc.crop().getPixels(),
+         // crop() makes a new array, which the output can own
+         Image output = studio_.data().wrapImage(proc.crop().getPixels(),
                width, height, image.getBytesPerPixel(),
                image.getNumComponents(), coords, image.getMetadata());
          context.outputImage(output);
       }
+      studio_.data().pixelBufferPool().recycle(proc.getPixels());
    }
 }